@@ -8,9 +8,9 @@ import com.alae.iam.basic_auth_mysql.exception.UserAlreadyExistsException;
 import com.alae.iam.basic_auth_mysql.repository.AuthorityRepository;
 import com.alae.iam.basic_auth_mysql.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
@@ -18,26 +18,38 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final AuthorityRepository authorityRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final TransactionTemplate transactionTemplate;
 
-    @Transactional
+    // hash first, outside of any transaction; the unique indexes on users settle concurrent signups
     public RegisterResponse register(RegisterRequest req) {
         if (userRepository.existsByUsernameOrEmail(req.username(), req.email())) {
             throw new UserAlreadyExistsException("Username or email already taken");
         }
 
+        String passwordHash = passwordHashingService.hash(req.password());
+
+        User saved;
+        try {
+            saved = transactionTemplate.execute(status -> insertUser(req, passwordHash));
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException("Username or email already taken");
+        }
+        return new RegisterResponse(saved.getId(), saved.getUsername(), saved.getEmail());
+    }
+
+    private User insertUser(RegisterRequest req, String passwordHash) {
         Authority roleUser = authorityRepository.findByName("ROLE_USER")
                 .orElseGet(() -> authorityRepository.save(Authority.builder().name("ROLE_USER").build()));
 
         User user = User.builder()
                 .username(req.username())
                 .email(req.email())
-                .password(passwordEncoder.encode(req.password()))
+                .password(passwordHash)
                 .enabled(true)
                 .build();
         user.getRoles().add(roleUser);
 
-        User saved = userRepository.save(user);
-        return new RegisterResponse(saved.getId(), saved.getUsername(), saved.getEmail());
+        return userRepository.saveAndFlush(user);
     }
 }
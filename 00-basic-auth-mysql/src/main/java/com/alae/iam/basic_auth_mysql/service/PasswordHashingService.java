@@ -0,0 +1,30 @@
+package com.alae.iam.basic_auth_mysql.service;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Lets at most one BCrypt hash per CPU run at a time; further signups wait here, on their own
+ * request thread, before any JDBC connection is taken.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final Semaphore permits = new Semaphore(Runtime.getRuntime().availableProcessors(), true);
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder) {
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    public String hash(String rawPassword) {
+        permits.acquireUninterruptibly();
+        try {
+            return passwordEncoder.encode(rawPassword);
+        } finally {
+            permits.release();
+        }
+    }
+}
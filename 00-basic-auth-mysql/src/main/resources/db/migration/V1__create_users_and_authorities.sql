@@ -0,0 +1,34 @@
+-- Initial schema for basic-auth-mysql.
+-- Column names/types mirror the JPA mappings so that `ddl-auto: validate` passes.
+
+CREATE TABLE users (
+    id       BIGINT       NOT NULL AUTO_INCREMENT,
+    username VARCHAR(100) NOT NULL,
+    email    VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    enabled  BOOLEAN      NOT NULL DEFAULT TRUE,
+    PRIMARY KEY (id),
+    -- login (findByUsername) and the registration pre-check are served by these two indexes
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE authorities (
+    id   BIGINT       NOT NULL AUTO_INCREMENT,
+    name VARCHAR(100) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_authorities_name UNIQUE (name)
+);
+
+CREATE TABLE users_authorities (
+    user_id      BIGINT NOT NULL,
+    authority_id BIGINT NOT NULL,
+    -- (user_id, authority_id) is the clustered key: loading the roles of a user is a single covering range scan
+    PRIMARY KEY (user_id, authority_id),
+    CONSTRAINT fk_users_authorities_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_users_authorities_authority FOREIGN KEY (authority_id) REFERENCES authorities (id)
+);
+
+CREATE INDEX idx_users_authorities_authority ON users_authorities (authority_id);
+
+INSERT INTO authorities (name) VALUES ('ROLE_USER');
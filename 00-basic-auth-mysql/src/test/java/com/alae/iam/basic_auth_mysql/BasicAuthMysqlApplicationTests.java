@@ -39,8 +39,8 @@ class BasicAuthMysqlApplicationTests {
         registry.add("spring.datasource.url", mysql::getJdbcUrl);
         registry.add("spring.datasource.username", mysql::getUsername);
         registry.add("spring.datasource.password", mysql::getPassword);
-        // If you want Hibernate to auto-create schema during tests:
-        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        // Flyway creates the schema; Hibernate only checks that the mappings match it
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
     }
 
     @Autowired private MockMvc mockMvc;
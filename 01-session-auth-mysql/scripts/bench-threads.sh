@@ -0,0 +1,72 @@
+#!/bin/bash
+
+# bench-threads.sh - Compare platform and virtual threads on login, /me and /api/secure/ping
+# Usage: ./bench-threads.sh [concurrency] [requests]
+#
+# Needs: a JDK 21+ runtime, MySQL as configured in application.yml, the packaged jar
+# (./mvnw -DskipTests package) and hey (https://github.com/rakyll/hey).
+# Run from the module directory. Raise the open-file limit first: ulimit -n 65535
+# /actuator/pinning needs ROLE_ADMIN: set ADMIN_USER and ADMIN_PASSWORD to an admin account to print it.
+
+CONCURRENCY=${1:-10000}
+REQUESTS=${2:-200000}
+BASE_URL=http://localhost:8080
+JAR=$(ls target/session-auth-mysql-*.jar | grep -v plain | head -n 1)
+BENCH_USER=bench-user
+BENCH_PASSWORD=BenchPassword123!
+# throwaway signing keys unless provided
+export SESSION_ID_KEYS=${SESSION_ID_KEYS:-bench:$(openssl rand -base64 32)}
+export SESSION_ID_CURRENT_KEY=${SESSION_ID_CURRENT_KEY:-bench}
+export REMEMBER_ME_KEY=${REMEMBER_ME_KEY:-$(openssl rand -base64 32)}
+
+start_app() {
+  java -jar "$JAR" \
+    --spring.profiles.active="$1" \
+    --server.tomcat.max-connections=12000 \
+    --logging.level.org.springframework.security=INFO \
+    --logging.level.org.hibernate.SQL=INFO \
+    --logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO \
+    > "bench-$2.log" 2>&1 &
+  APP_PID=$!
+  until curl -s "$BASE_URL/actuator/health" | grep -q UP; do sleep 1; done
+}
+
+run_hey() {
+  echo "--- $1"
+  shift
+  hey -c "$CONCURRENCY" -n "$REQUESTS" "$@" | grep -E "Requests/sec|99% in|Status code|\[[0-9]{3}\]"
+}
+
+bench() {
+  local label=$1
+  echo "=== $label threads (c=$CONCURRENCY, n=$REQUESTS)"
+
+  curl -s -o /dev/null -X POST -H "Content-Type: application/json" \
+    -d "{\"username\":\"$BENCH_USER\",\"email\":\"$BENCH_USER@example.com\",\"password\":\"$BENCH_PASSWORD\"}" \
+    "$BASE_URL/api/auth/register"
+  SESSION=$(curl -s -o /dev/null -c - -X POST \
+    -d "usernameOrEmail=$BENCH_USER&password=$BENCH_PASSWORD" \
+    "$BASE_URL/api/auth/login" | awk '$6 == "JSESSIONID" { print $7 }')
+
+  run_hey "POST /api/auth/login" -m POST -T "application/x-www-form-urlencoded" \
+    -d "usernameOrEmail=$BENCH_USER&password=$BENCH_PASSWORD" "$BASE_URL/api/auth/login"
+  run_hey "GET /api/auth/me" -H "Cookie: JSESSIONID=$SESSION" "$BASE_URL/api/auth/me"
+  run_hey "GET /api/secure/ping" -H "Cookie: JSESSIONID=$SESSION" "$BASE_URL/api/secure/ping"
+}
+
+start_app default platform
+bench platform
+kill "$APP_PID"; wait "$APP_PID" 2>/dev/null
+
+start_app virtual virtual
+bench virtual
+echo "--- pinning report"
+if [ -n "$ADMIN_USER" ]; then
+  ADMIN_SESSION=$(curl -s -o /dev/null -c - -X POST \
+    --data-urlencode "usernameOrEmail=$ADMIN_USER" --data-urlencode "password=$ADMIN_PASSWORD" \
+    "$BASE_URL/api/auth/login" | awk '$6 == "JSESSIONID" { print $7 }')
+  curl -s -H "Cookie: JSESSIONID=$ADMIN_SESSION" "$BASE_URL/actuator/pinning"; echo
+else
+  echo "skipped: set ADMIN_USER and ADMIN_PASSWORD"
+fi
+kill "$APP_PID"; wait "$APP_PID" 2>/dev/null
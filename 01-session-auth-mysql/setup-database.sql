@@ -13,4 +13,5 @@ CREATE DATABASE IF NOT EXISTS session_auth_db;
 -- Use the database
 USE session_auth_db;
 
--- The tables will be created automatically by Flyway when the application starts
\ No newline at end of file
+-- The tables are created by the Flyway migrations in src/main/resources/db/migration
+-- when the application starts (Hibernate only validates them: ddl-auto=validate)
@@ -2,8 +2,10 @@ package com.alae.iam.session_auth_mysql;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SessionAuthMysqlApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,92 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import com.alae.iam.session_auth_mysql.domain.User;
+import com.alae.iam.session_auth_mysql.repository.UserRepository;
+import com.alae.iam.session_auth_mysql.service.UserArchiveService;
+import com.alae.iam.session_auth_mysql.service.UserArchiveService.ArchivedCredentials;
+import org.springframework.context.support.MessageSourceAccessor;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.SpringSecurityMessageSource;
+import org.springframework.security.core.userdetails.UserDetailsChecker;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+/**
+ * Authenticates against {@code users} through {@code active}. Only when no active user matches is
+ * the identifier looked up in {@code users_archive}, and an archived user is moved back only once
+ * the password matched the archived hash. Both misses end in the same "Bad credentials", and an
+ * identifier found in neither table still pays one hash check, so it takes as long as an archived
+ * one with a wrong password.
+ */
+public class ArchivedUserAuthenticationProvider implements AuthenticationProvider {
+
+    private final MessageSourceAccessor messages = SpringSecurityMessageSource.getAccessor();
+    private final UserDetailsChecker statusChecker = new AccountStatusUserDetailsChecker();
+    private final DaoAuthenticationProvider active;
+    private final UserArchiveService userArchiveService;
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private volatile String userNotFoundHash;
+
+    // active must not hide UsernameNotFoundException: it is what sends a login to the archive
+    public ArchivedUserAuthenticationProvider(DaoAuthenticationProvider active,
+                                              UserArchiveService userArchiveService,
+                                              UserRepository userRepository,
+                                              PasswordEncoder passwordEncoder) {
+        this.active = active;
+        this.userArchiveService = userArchiveService;
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        try {
+            return active.authenticate(authentication);
+        } catch (UsernameNotFoundException e) {
+            return restoreArchived(authentication);
+        }
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return active.supports(authentication);
+    }
+
+    private Authentication restoreArchived(Authentication authentication) {
+        Object credentials = authentication.getCredentials();
+        Optional<ArchivedCredentials> archived = userArchiveService.findArchived(authentication.getName());
+        if (credentials == null || archived.isEmpty()) {
+            passwordEncoder.matches(credentials == null ? "" : credentials.toString(), userNotFoundHash());
+            throw badCredentials();
+        }
+        if (!passwordEncoder.matches(credentials.toString(), archived.get().passwordHash())
+                || !userArchiveService.restore(archived.get())) {
+            throw badCredentials();
+        }
+        User user = userRepository.findWithAuthoritiesById(archived.get().id()).orElseThrow(this::badCredentials);
+        statusChecker.check(user);
+        return UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+    }
+
+    private String userNotFoundHash() {
+        String hash = userNotFoundHash;
+        if (hash == null) {
+            hash = passwordEncoder.encode("userNotFoundPassword");
+            userNotFoundHash = hash;
+        }
+        return hash;
+    }
+
+    private BadCredentialsException badCredentials() {
+        return new BadCredentialsException(
+                messages.getMessage("AbstractUserDetailsAuthenticationProvider.badCredentials", "Bad credentials"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import com.alae.iam.session_auth_mysql.domain.User;
+import com.alae.iam.session_auth_mysql.repository.UserRepository;
+import com.alae.iam.session_auth_mysql.service.CustomUserDetailsService;
+import com.alae.iam.session_auth_mysql.service.LastLoginTracker;
+import com.alae.iam.session_auth_mysql.service.LoginAnalytics;
+import com.alae.iam.session_auth_mysql.service.PrincipalVersionRegistry;
+import com.alae.iam.session_auth_mysql.service.RememberMeTokenStore;
+import com.alae.iam.session_auth_mysql.service.RememberMeTokenStore.RememberMeToken;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.web.authentication.rememberme.AbstractRememberMeServices;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.security.web.authentication.rememberme.InvalidCookieException;
+import org.springframework.security.web.authentication.rememberme.RememberMeAuthenticationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Series/token remember-me: the cookie carries a fixed series id and a token that changes on
+ * every use, and only the token's SHA-256 is stored. Returning users are authenticated with one
+ * primary-key lookup and a hash comparison instead of a BCrypt login. A wrong token for a known
+ * series means the cookie was copied, so every series of that user is revoked. A successful
+ * cookie login is recorded like a form login: last login, login analytics and the principal
+ * version the new session is checked against.
+ */
+@Component
+public class HashedRememberMeServices extends AbstractRememberMeServices {
+
+    private static final int SERIES_BYTES = 16;
+    private static final int TOKEN_BYTES = 32;
+    // Parallel requests carrying the same cookie: the losers of the rotation still get in
+    private static final Duration ROTATION_GRACE = Duration.ofSeconds(30);
+    private static final String PENDING_VERSION_ATTRIBUTE = HashedRememberMeServices.class.getName() + ".VERSION";
+
+    private final SecureRandom random = new SecureRandom();
+    private final RememberMeTokenStore tokenStore;
+    private final UserRepository userRepository;
+    private final LastLoginTracker lastLoginTracker;
+    private final LoginAnalytics loginAnalytics;
+    private final PrincipalVersionRegistry principalVersionRegistry;
+
+    public HashedRememberMeServices(@Value("${app.remember-me.key}") String key,
+                                    @Value("${app.remember-me.validity:30d}") Duration validity,
+                                    CustomUserDetailsService userDetailsService,
+                                    RememberMeTokenStore tokenStore,
+                                    UserRepository userRepository,
+                                    LastLoginTracker lastLoginTracker,
+                                    LoginAnalytics loginAnalytics,
+                                    PrincipalVersionRegistry principalVersionRegistry) {
+        super(key, userDetailsService);
+        setTokenValiditySeconds((int) validity.toSeconds());
+        this.tokenStore = tokenStore;
+        this.userRepository = userRepository;
+        this.lastLoginTracker = lastLoginTracker;
+        this.loginAnalytics = loginAnalytics;
+        this.principalVersionRegistry = principalVersionRegistry;
+    }
+
+    @Override
+    public Authentication autoLogin(HttpServletRequest request, HttpServletResponse response) {
+        Authentication authentication = super.autoLogin(request, response);
+        // only after the account status checks of the superclass have passed
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            lastLoginTracker.recordLogin(user.getId());
+            loginAnalytics.recordSuccess(user.getId(), request.getRemoteAddr());
+            request.getSession().setAttribute(PrincipalVersionFilter.VERSION_ATTRIBUTE,
+                    request.getAttribute(PENDING_VERSION_ATTRIBUTE));
+        }
+        return authentication;
+    }
+
+    @Override
+    protected void onLoginSuccess(HttpServletRequest request, HttpServletResponse response,
+                                  Authentication successfulAuthentication) {
+        if (!(successfulAuthentication.getPrincipal() instanceof User user)) {
+            return;
+        }
+        String series = randomValue(SERIES_BYTES);
+        String token = randomValue(TOKEN_BYTES);
+        LocalDateTime now = LocalDateTime.now();
+        tokenStore.create(new RememberMeToken(series, user.getId(), hash(token), null, now,
+                now.plusSeconds(getTokenValiditySeconds())));
+        setCookie(new String[] {series, token}, getTokenValiditySeconds(), request, response);
+    }
+
+    @Override
+    protected UserDetails processAutoLoginCookie(String[] cookieTokens, HttpServletRequest request,
+                                                 HttpServletResponse response) {
+        if (cookieTokens.length != 2) {
+            throw new InvalidCookieException("Cookie token did not contain 2 tokens");
+        }
+        String series = cookieTokens[0];
+        String presentedHash = hash(cookieTokens[1]);
+
+        RememberMeToken token = tokenStore.find(series)
+                .filter(cached -> matches(cached, presentedHash))
+                // the near-cache may be behind another node's rotation; only the row is authoritative
+                .or(() -> tokenStore.reload(series))
+                .orElseThrow(() -> new RememberMeAuthenticationException("No persistent token found for series"));
+
+        LocalDateTime now = LocalDateTime.now();
+        if (token.expiresAt().isBefore(now)) {
+            tokenStore.deleteSeries(series);
+            throw new RememberMeAuthenticationException("Remember-me login has expired");
+        }
+
+        if (isEqual(presentedHash, token.tokenHash())) {
+            String newToken = randomValue(TOKEN_BYTES);
+            if (tokenStore.rotate(token, hash(newToken), now)) {
+                setCookie(new String[] {series, newToken}, getTokenValiditySeconds(), request, response);
+            }
+        } else if (!isRecentlyRotated(token, presentedHash, now)) {
+            tokenStore.deleteForUser(token.userId());
+            throw new CookieTheftException("Invalid remember-me token for an existing series: "
+                    + "the cookie was probably copied, all remembered logins of the user are revoked");
+        }
+
+        // read before the row, so a change committed in between is caught by PrincipalVersionFilter
+        request.setAttribute(PENDING_VERSION_ATTRIBUTE, principalVersionRegistry.currentVersion(token.userId()));
+        return userRepository.findWithAuthoritiesById(token.userId())
+                .orElseThrow(() -> new UsernameNotFoundException("User of remember-me series no longer exists"));
+    }
+
+    @Override
+    public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+        String cookie = extractRememberMeCookie(request);
+        if (cookie != null && !cookie.isEmpty()) {
+            try {
+                tokenStore.deleteSeries(decodeCookie(cookie)[0]);
+            } catch (InvalidCookieException ignored) {
+                // nothing stored for a cookie we cannot read
+            }
+        }
+        super.logout(request, response, authentication);
+    }
+
+    private boolean matches(RememberMeToken token, String presentedHash) {
+        return isEqual(presentedHash, token.tokenHash())
+                || (token.previousTokenHash() != null && isEqual(presentedHash, token.previousTokenHash()));
+    }
+
+    private boolean isRecentlyRotated(RememberMeToken token, String presentedHash, LocalDateTime now) {
+        return token.previousTokenHash() != null
+                && isEqual(presentedHash, token.previousTokenHash())
+                && token.lastUsedAt().plus(ROTATION_GRACE).isAfter(now);
+    }
+
+    private String randomValue(int bytes) {
+        byte[] value = new byte[bytes];
+        random.nextBytes(value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+
+    private static boolean isEqual(String a, String b) {
+        return MessageDigest.isEqual(a.getBytes(StandardCharsets.US_ASCII), b.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import com.alae.iam.session_auth_mysql.service.LoginAnalytics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "logins")
+@RequiredArgsConstructor
+public class LoginAnalyticsEndpoint {
+
+    private final LoginAnalytics loginAnalytics;
+
+    @ReadOperation
+    public LoginAnalytics.Report report() {
+        return loginAnalytics.report();
+    }
+}
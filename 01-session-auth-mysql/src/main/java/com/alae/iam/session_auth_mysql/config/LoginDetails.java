@@ -0,0 +1,22 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Form-login details that also remember the {@code PrincipalVersionRegistry} generation read
+ * before the user row is loaded, so the success handler can tell whether a bump raced the load.
+ */
+public class LoginDetails extends WebAuthenticationDetails {
+
+    private final long versionGeneration;
+
+    public LoginDetails(HttpServletRequest request, long versionGeneration) {
+        super(request);
+        this.versionGeneration = versionGeneration;
+    }
+
+    public long versionGeneration() {
+        return versionGeneration;
+    }
+}
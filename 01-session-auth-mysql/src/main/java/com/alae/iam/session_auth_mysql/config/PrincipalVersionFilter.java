@@ -0,0 +1,85 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import com.alae.iam.session_auth_mysql.domain.User;
+import com.alae.iam.session_auth_mysql.repository.UserRepository;
+import com.alae.iam.session_auth_mysql.service.PrincipalVersionRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Keeps the session's {@link User} in step with the database without reloading it on every
+ * request: the session stores the {@link PrincipalVersionRegistry} version it was built from,
+ * and the user is reloaded only when that version is stale. A user that is gone or no longer
+ * usable loses its session.
+ */
+public class PrincipalVersionFilter extends OncePerRequestFilter {
+
+    public static final String VERSION_ATTRIBUTE = PrincipalVersionFilter.class.getName() + ".VERSION";
+
+    private final PrincipalVersionRegistry versionRegistry;
+    private final UserRepository userRepository;
+    private final SecurityContextHolderStrategy securityContextHolderStrategy =
+            SecurityContextHolder.getContextHolderStrategy();
+    private final SecurityContextRepository securityContextRepository = new HttpSessionSecurityContextRepository();
+
+    public PrincipalVersionFilter(PrincipalVersionRegistry versionRegistry, UserRepository userRepository) {
+        this.versionRegistry = versionRegistry;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        HttpSession session = request.getSession(false);
+        Authentication authentication = securityContextHolderStrategy.getContext().getAuthentication();
+        if (session == null || authentication == null || !(authentication.getPrincipal() instanceof User user)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        int currentVersion = versionRegistry.currentVersion(user.getId());
+        if (!Objects.equals(session.getAttribute(VERSION_ATTRIBUTE), currentVersion)) {
+            // read the version before the row: a bump racing the reload then just causes another reload
+            Optional<User> fresh = userRepository.findWithAuthoritiesById(user.getId()).filter(this::isUsable);
+            if (fresh.isEmpty()) {
+                securityContextHolderStrategy.clearContext();
+                session.invalidate();
+            } else {
+                refresh(request, response, authentication, fresh.get());
+                session.setAttribute(VERSION_ATTRIBUTE, currentVersion);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void refresh(HttpServletRequest request, HttpServletResponse response,
+                         Authentication previous, User user) {
+        UsernamePasswordAuthenticationToken authentication =
+                UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+        authentication.setDetails(previous.getDetails());
+        SecurityContext context = securityContextHolderStrategy.createEmptyContext();
+        context.setAuthentication(authentication);
+        securityContextHolderStrategy.setContext(context);
+        securityContextRepository.saveContext(context, request, response);
+    }
+
+    private boolean isUsable(User user) {
+        return user.isEnabled() && user.isAccountNonLocked() && user.isAccountNonExpired()
+                && user.isCredentialsNonExpired();
+    }
+}
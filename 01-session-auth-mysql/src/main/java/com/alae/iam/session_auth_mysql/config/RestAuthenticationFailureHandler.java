@@ -1,6 +1,7 @@
 package com.alae.iam.session_auth_mysql.config;
 
 import com.alae.iam.session_auth_mysql.dto.ErrorResponse;
+import com.alae.iam.session_auth_mysql.service.LoginAnalytics;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,10 +19,13 @@ import java.time.LocalDateTime;
 public class RestAuthenticationFailureHandler implements AuthenticationFailureHandler {
 
     private final ObjectMapper objectMapper;
+    private final LoginAnalytics loginAnalytics;
 
     @Override
     public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
                                         AuthenticationException exception) throws IOException, ServletException {
+        loginAnalytics.recordFailure(request.getRemoteAddr());
+
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
         response.setContentType("application/json;charset=UTF-8");
 
@@ -2,6 +2,9 @@ package com.alae.iam.session_auth_mysql.config;
 
 import com.alae.iam.session_auth_mysql.domain.User;
 import com.alae.iam.session_auth_mysql.dto.UserSummary;
+import com.alae.iam.session_auth_mysql.service.LastLoginTracker;
+import com.alae.iam.session_auth_mysql.service.LoginAnalytics;
+import com.alae.iam.session_auth_mysql.service.PrincipalVersionRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,6 +21,9 @@ import java.io.IOException;
 public class RestAuthenticationSuccessHandler implements AuthenticationSuccessHandler {
 
     private final ObjectMapper objectMapper;
+    private final LastLoginTracker lastLoginTracker;
+    private final PrincipalVersionRegistry principalVersionRegistry;
+    private final LoginAnalytics loginAnalytics;
 
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
@@ -26,8 +32,25 @@ public class RestAuthenticationSuccessHandler implements AuthenticationSuccessHa
         response.setContentType("application/json;charset=UTF-8");
 
         User user = (User) authentication.getPrincipal();
+        lastLoginTracker.recordLogin(user.getId());
+        loginAnalytics.recordSuccess(user.getId(), request.getRemoteAddr());
+        request.getSession().setAttribute(PrincipalVersionFilter.VERSION_ATTRIBUTE, loadedVersion(authentication, user));
         UserSummary userSummary = UserSummary.from(user);
 
         response.getWriter().write(objectMapper.writeValueAsString(userSummary));
     }
+
+    /**
+     * The version the loaded row is known to match, or {@code null} (reload on the next request)
+     * when a bump may have landed between the load and this read. The generation in
+     * {@link LoginDetails} was read before the row, as HashedRememberMeServices reads the version.
+     */
+    private Integer loadedVersion(Authentication authentication, User user) {
+        int version = principalVersionRegistry.currentVersion(user.getId());
+        if (authentication.getDetails() instanceof LoginDetails details
+                && details.versionGeneration() == principalVersionRegistry.generation()) {
+            return version;
+        }
+        return null;
+    }
 }
@@ -1,8 +1,16 @@
 package com.alae.iam.session_auth_mysql.config;
 
+import com.alae.iam.session_auth_mysql.repository.UserRepository;
+import com.alae.iam.session_auth_mysql.service.CustomUserDetailsService;
+import com.alae.iam.session_auth_mysql.service.PrincipalVersionRegistry;
+import com.alae.iam.session_auth_mysql.service.UserArchiveService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.RememberMeAuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -10,6 +18,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -19,6 +28,9 @@ public class SecurityConfig {
     private final RestAuthenticationEntryPoint restAuthenticationEntryPoint;
     private final RestAuthenticationSuccessHandler restAuthenticationSuccessHandler;
     private final RestAuthenticationFailureHandler restAuthenticationFailureHandler;
+    private final HashedRememberMeServices hashedRememberMeServices;
+    private final PrincipalVersionRegistry principalVersionRegistry;
+    private final UserRepository userRepository;
 
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -26,22 +38,43 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public AuthenticationManager authenticationManager(CustomUserDetailsService userDetailsService,
+                                                       UserArchiveService userArchiveService,
+                                                       PasswordEncoder passwordEncoder) {
+        DaoAuthenticationProvider active = new DaoAuthenticationProvider(userDetailsService);
+        active.setPasswordEncoder(passwordEncoder);
+        active.setHideUserNotFoundExceptions(false);
+        // replaces the manager HttpSecurity would build, so the remember-me provider must be listed here too
+        return new ProviderManager(
+            new ArchivedUserAuthenticationProvider(active, userArchiveService, userRepository, passwordEncoder),
+            new RememberMeAuthenticationProvider(hashedRememberMeServices.getKey()));
+    }
+
+    @Bean
+    public SecurityFilterChain filterChain(HttpSecurity http, AuthenticationManager authenticationManager) throws Exception {
         http
+            .authenticationManager(authenticationManager)
             .csrf(AbstractHttpConfigurer::disable)
             .exceptionHandling(e -> e.authenticationEntryPoint(restAuthenticationEntryPoint))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED))
+            .addFilterAfter(new PrincipalVersionFilter(principalVersionRegistry, userRepository),
+                SecurityContextHolderFilter.class)
             .authorizeHttpRequests(authz -> authz
-                .requestMatchers("/api/auth/login", "/api/auth/register", "/error", "/health", "/actuator/**").permitAll()
+                .requestMatchers("/api/auth/login", "/api/auth/register", "/error", "/health").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                // metrics, login analytics and pinning stacks are internal
+                .requestMatchers("/api/admin/**", "/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
                 .loginProcessingUrl("/api/auth/login")
                 .usernameParameter("usernameOrEmail")
                 .passwordParameter("password")
+                .authenticationDetailsSource(request -> new LoginDetails(request, principalVersionRegistry.generation()))
                 .successHandler(restAuthenticationSuccessHandler)
                 .failureHandler(restAuthenticationFailureHandler)
             )
+            .rememberMe(remember -> remember.rememberMeServices(hashedRememberMeServices))
             .logout(logout -> logout
                 .logoutUrl("/api/auth/logout")
                 .logoutSuccessHandler((request, response, authentication) -> {
@@ -0,0 +1,140 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Signs and verifies session ids of the form {@code <kid>-<hex random><hex tag>}, where the tag is
+ * a truncated HMAC-SHA256 of the key id and the random part. Ids signed with any configured key
+ * verify, so a new key can become current while sessions issued under the old one stay valid.
+ *
+ * <p>{@link Mac} instances are not thread-safe and costly to initialise, so each key keeps a pool of
+ * them. A per-thread cache would be rebuilt for every request once requests run on virtual threads.
+ */
+public class SessionIdSigner {
+
+    static final int TAG_BYTES = 16;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final String currentKeyId;
+    private final Map<String, MacPool> macs = new LinkedHashMap<>();
+
+    /**
+     * @param keys         {@code <kid>:<base64 secret>} entries, kid made of letters and digits
+     * @param currentKeyId the key new ids are signed with
+     */
+    public SessionIdSigner(List<String> keys, String currentKeyId) {
+        for (String entry : keys) {
+            int separator = entry.indexOf(':');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Session id key must be <kid>:<base64 secret>");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            if (!keyId.chars().allMatch(Character::isLetterOrDigit)) {
+                throw new IllegalArgumentException("Session id key id must be alphanumeric: " + keyId);
+            }
+            byte[] secret = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            if (secret.length < 32) {
+                throw new IllegalArgumentException("Session id key " + keyId + " must be at least 256 bits");
+            }
+            SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+            macs.put(keyId, new MacPool(key));
+        }
+        if (!macs.containsKey(currentKeyId)) {
+            throw new IllegalArgumentException("Current session id key " + currentKeyId + " is not configured");
+        }
+        this.currentKeyId = currentKeyId;
+    }
+
+    public String sign(byte[] random) {
+        return currentKeyId + "-" + HEX.formatHex(random) + HEX.formatHex(tag(currentKeyId, random));
+    }
+
+    public Verification verify(String sessionId, int randomBytes) {
+        if (sessionId == null) {
+            return Verification.MALFORMED;
+        }
+        // a jvmRoute suffix is not covered by the signature
+        int routeStart = sessionId.indexOf('.');
+        String id = routeStart < 0 ? sessionId : sessionId.substring(0, routeStart);
+        int separator = id.indexOf('-');
+        int hexLength = 2 * (randomBytes + TAG_BYTES);
+        if (separator < 1 || id.length() - separator - 1 != hexLength) {
+            return Verification.MALFORMED;
+        }
+        MacPool mac = macs.get(id.substring(0, separator));
+        if (mac == null) {
+            return Verification.UNKNOWN_KEY;
+        }
+        byte[] decoded;
+        try {
+            decoded = HEX.parseHex(id, separator + 1, id.length());
+        } catch (IllegalArgumentException e) {
+            return Verification.MALFORMED;
+        }
+        byte[] random = new byte[randomBytes];
+        byte[] tag = new byte[TAG_BYTES];
+        System.arraycopy(decoded, 0, random, 0, randomBytes);
+        System.arraycopy(decoded, randomBytes, tag, 0, TAG_BYTES);
+        boolean valid = MessageDigest.isEqual(tag, mac.tag(id.substring(0, separator), random));
+        return valid ? Verification.VALID : Verification.BAD_SIGNATURE;
+    }
+
+    private byte[] tag(String keyId, byte[] random) {
+        return macs.get(keyId).tag(keyId, random);
+    }
+
+    private static final class MacPool {
+
+        private final SecretKeySpec key;
+        private final Queue<Mac> idle = new ConcurrentLinkedQueue<>();
+
+        MacPool(SecretKeySpec key) {
+            this.key = key;
+            idle.add(newMac(key)); // fails at startup rather than on the first request
+        }
+
+        byte[] tag(String keyId, byte[] random) {
+            Mac mac = idle.poll();
+            if (mac == null) {
+                mac = newMac(key);
+            }
+            try {
+                mac.update(keyId.getBytes(StandardCharsets.US_ASCII));
+                mac.update((byte) '-');
+                byte[] full = mac.doFinal(random);
+                byte[] truncated = new byte[TAG_BYTES];
+                System.arraycopy(full, 0, truncated, 0, TAG_BYTES);
+                return truncated;
+            } finally {
+                // doFinal leaves the Mac reset for the next caller; the pool grows to the peak concurrency
+                idle.add(mac);
+            }
+        }
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+        }
+    }
+
+    public enum Verification {
+        VALID, MALFORMED, UNKNOWN_KEY, BAD_SIGNATURE
+    }
+}
@@ -0,0 +1,34 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.catalina.session.StandardManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class SessionIdSigningConfig {
+
+    @Bean
+    public SessionIdSigner sessionIdSigner(@Value("${app.session-id.keys}") List<String> keys,
+                                           @Value("${app.session-id.current-key}") String currentKey) {
+        return new SessionIdSigner(keys, currentKey);
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> signedSessionIds(SessionIdSigner signer,
+                                                                                       MeterRegistry meterRegistry) {
+        return factory -> factory.addContextCustomizers(context -> {
+            SignedSessionManager manager = new SignedSessionManager(signer, meterRegistry);
+            // keep Boot's persistence setting (server.servlet.session.persistent) of the manager it created
+            if (context.getManager() instanceof StandardManager existing) {
+                manager.setPathname(existing.getPathname());
+            }
+            context.setManager(manager);
+        });
+    }
+}
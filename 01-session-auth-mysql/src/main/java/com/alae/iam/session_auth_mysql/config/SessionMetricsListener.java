@@ -0,0 +1,227 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import com.alae.iam.session_auth_mysql.domain.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionAttributeListener;
+import jakarta.servlet.http.HttpSessionBindingEvent;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionIdListener;
+import jakarta.servlet.http.HttpSessionListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session-store metrics. In a sampled share of sessions ({@code app.sessions.metrics.sample-rate}),
+ * every attribute written is serialized once into a byte counter, which gives an estimate of what
+ * a session retains (and would cost to replicate or persist); the security context gets its own
+ * timer and size summary. Totals are extrapolated from the sampled sessions, so the other
+ * sessions pay nothing on their request threads.
+ */
+@Component
+public class SessionMetricsListener implements HttpSessionListener, HttpSessionIdListener, HttpSessionAttributeListener {
+
+    private static final String SECURITY_CONTEXT = HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY;
+
+    private final Map<String, SessionFootprint> sessions = new ConcurrentHashMap<>();
+    private final double sampleRate;
+
+    private final Counter created;
+    private final Counter expired;
+    private final Counter invalidated;
+    private final Counter unserializable;
+    private final DistributionSummary bytesAtEnd;
+    private final Timer principalSerialization;
+    private final DistributionSummary principalSize;
+
+    public SessionMetricsListener(MeterRegistry meterRegistry,
+                                  @Value("${app.sessions.metrics.sample-rate:0.1}") double sampleRate) {
+        this.sampleRate = sampleRate;
+        this.created = Counter.builder("sessions.created").register(meterRegistry);
+        this.expired = Counter.builder("sessions.destroyed").tag("reason", "timeout").register(meterRegistry);
+        this.invalidated = Counter.builder("sessions.destroyed").tag("reason", "invalidated").register(meterRegistry);
+        this.unserializable = Counter.builder("sessions.attributes.unserializable")
+                .description("Session attributes that could not be serialized").register(meterRegistry);
+        this.bytesAtEnd = DistributionSummary.builder("sessions.retained")
+                .description("Estimated serialized size of a session when it ends")
+                .baseUnit("bytes").publishPercentileHistogram().register(meterRegistry);
+        this.principalSerialization = Timer.builder("sessions.principal.serialization")
+                .description("Time to serialize the security context stored in the session")
+                .publishPercentileHistogram().register(meterRegistry);
+        this.principalSize = DistributionSummary.builder("sessions.principal.size")
+                .baseUnit("bytes").publishPercentileHistogram().register(meterRegistry);
+
+        Gauge.builder("sessions.active", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("sessions.retained.bytes", this, SessionMetricsListener::retainedBytes)
+                .description("Estimated serialized size of all live sessions, extrapolated from the sampled ones")
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("sessions.retained.bytes.per.session", this, SessionMetricsListener::retainedBytesPerSession)
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("sessions.principal.entity.ratio", this, SessionMetricsListener::entityPrincipalRatio)
+                .description("Share of sampled live sessions whose principal is the full User entity")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void sessionCreated(HttpSessionEvent event) {
+        sessions.put(event.getSession().getId(), newFootprint());
+        created.increment();
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) {
+        HttpSession session = event.getSession();
+        SessionFootprint footprint = sessions.remove(session.getId());
+        if (footprint != null && footprint.sampled) {
+            bytesAtEnd.record(footprint.totalBytes());
+        }
+        long idleMillis = System.currentTimeMillis() - session.getLastAccessedTime();
+        boolean timedOut = session.getMaxInactiveInterval() > 0 && idleMillis >= session.getMaxInactiveInterval() * 1000L;
+        (timedOut ? expired : invalidated).increment();
+    }
+
+    @Override
+    public void sessionIdChanged(HttpSessionEvent event, String oldSessionId) {
+        // session fixation protection renames the session on login
+        SessionFootprint footprint = sessions.remove(oldSessionId);
+        if (footprint != null) {
+            sessions.put(event.getSession().getId(), footprint);
+        }
+    }
+
+    @Override
+    public void attributeAdded(HttpSessionBindingEvent event) {
+        measure(event.getSession(), event.getName(), event.getValue());
+    }
+
+    @Override
+    public void attributeReplaced(HttpSessionBindingEvent event) {
+        // the event carries the old value; the new one is already in the session
+        measure(event.getSession(), event.getName(), event.getSession().getAttribute(event.getName()));
+    }
+
+    @Override
+    public void attributeRemoved(HttpSessionBindingEvent event) {
+        SessionFootprint footprint = sessions.get(event.getSession().getId());
+        if (footprint != null) {
+            footprint.attributeBytes.remove(event.getName());
+            if (SECURITY_CONTEXT.equals(event.getName())) {
+                footprint.entityPrincipal = false;
+            }
+        }
+    }
+
+    private void measure(HttpSession session, String name, Object value) {
+        SessionFootprint footprint = sessions.computeIfAbsent(session.getId(), id -> newFootprint());
+        if (!footprint.sampled) {
+            return;
+        }
+        if (SECURITY_CONTEXT.equals(name)) {
+            long start = System.nanoTime();
+            long size = serializedSize(value);
+            principalSerialization.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (size >= 0) {
+                principalSize.record(size);
+            }
+            footprint.entityPrincipal = value instanceof SecurityContext context
+                    && context.getAuthentication() != null
+                    && context.getAuthentication().getPrincipal() instanceof User;
+            footprint.attributeBytes.put(name, Math.max(size, 0));
+        } else {
+            footprint.attributeBytes.put(name, Math.max(serializedSize(value), 0));
+        }
+    }
+
+    private SessionFootprint newFootprint() {
+        return new SessionFootprint(sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private long serializedSize(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            unserializable.increment();
+            return -1;
+        }
+        return counter.count;
+    }
+
+    private double retainedBytes() {
+        return retainedBytesPerSession() * sessions.size();
+    }
+
+    private double retainedBytesPerSession() {
+        long total = 0;
+        int sampled = 0;
+        for (SessionFootprint footprint : sessions.values()) {
+            if (footprint.sampled) {
+                total += footprint.totalBytes();
+                sampled++;
+            }
+        }
+        return sampled == 0 ? 0 : (double) total / sampled;
+    }
+
+    private double entityPrincipalRatio() {
+        long sampled = sessions.values().stream().filter(footprint -> footprint.sampled).count();
+        if (sampled == 0) {
+            return 0;
+        }
+        long withEntity = sessions.values().stream()
+                .filter(footprint -> footprint.sampled && footprint.entityPrincipal).count();
+        return (double) withEntity / sampled;
+    }
+
+    private static final class SessionFootprint {
+
+        private final boolean sampled;
+        private final Map<String, Long> attributeBytes = new ConcurrentHashMap<>();
+        private volatile boolean entityPrincipal;
+
+        SessionFootprint(boolean sampled) {
+            this.sampled = sampled;
+        }
+
+        long totalBytes() {
+            long total = 0;
+            for (long bytes : attributeBytes.values()) {
+                total += bytes;
+            }
+            return total;
+        }
+    }
+
+    // Counts bytes instead of buffering them; only the size is needed
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import org.apache.catalina.util.SessionIdGeneratorBase;
+
+/**
+ * Tomcat session id generator issuing {@link SessionIdSigner} ids. The random part still comes
+ * from Tomcat's pooled {@code SecureRandom}s, sized by {@code sessionIdLength}.
+ */
+public class SignedSessionIdGenerator extends SessionIdGeneratorBase {
+
+    private final SessionIdSigner signer;
+
+    public SignedSessionIdGenerator(SessionIdSigner signer) {
+        this.signer = signer;
+    }
+
+    @Override
+    public String generateSessionId(String route) {
+        byte[] random = new byte[getSessionIdLength()];
+        getRandomBytes(random);
+        String id = signer.sign(random);
+        return route == null || route.isEmpty() ? id : id + "." + route;
+    }
+}
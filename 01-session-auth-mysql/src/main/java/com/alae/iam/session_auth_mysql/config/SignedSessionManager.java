@@ -0,0 +1,47 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.catalina.Session;
+import org.apache.catalina.session.StandardManager;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Rejects session ids that do not carry a valid signature before the session store is consulted,
+ * so a sprayed cookie costs one HMAC instead of a store lookup.
+ */
+public class SignedSessionManager extends StandardManager {
+
+    private final SessionIdSigner signer;
+    private final Map<SessionIdSigner.Verification, Counter> rejected =
+            new EnumMap<>(SessionIdSigner.Verification.class);
+
+    public SignedSessionManager(SessionIdSigner signer, MeterRegistry meterRegistry) {
+        this.signer = signer;
+        setSessionIdGenerator(new SignedSessionIdGenerator(signer));
+        for (SessionIdSigner.Verification reason : SessionIdSigner.Verification.values()) {
+            if (reason != SessionIdSigner.Verification.VALID) {
+                rejected.put(reason, Counter.builder("session.id.rejected")
+                        .description("Requested session ids rejected without a store lookup")
+                        .tag("reason", reason.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+        }
+    }
+
+    @Override
+    public Session findSession(String id) throws IOException {
+        if (id == null) {
+            return null;
+        }
+        SessionIdSigner.Verification verification = signer.verify(id, getSessionIdGenerator().getSessionIdLength());
+        if (verification != SessionIdSigner.Verification.VALID) {
+            rejected.get(verification).increment();
+            return null;
+        }
+        return super.findSession(id);
+    }
+}
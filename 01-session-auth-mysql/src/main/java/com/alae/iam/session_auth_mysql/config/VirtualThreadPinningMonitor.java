@@ -0,0 +1,128 @@
+package com.alae.iam.session_auth_mysql.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams JFR {@code jdk.VirtualThreadPinned} events while running on virtual threads. Each pin
+ * increments the {@code jvm.threads.virtual.pinned} counter and is attributed to the first
+ * non-JDK frame on its stack; the aggregate is served at {@code /actuator/pinning}.
+ */
+@Component
+@Endpoint(id = "pinning")
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int RECENT_STACK_DEPTH = 8;
+
+    private final Counter pinnedCounter;
+    private final Duration threshold;
+    private final int recentLimit;
+    private final Map<String, LongAdder> pinsBySite = new ConcurrentHashMap<>();
+    private final Deque<PinnedEvent> recent = new ConcurrentLinkedDeque<>();
+
+    private volatile RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${app.threads.pinning.threshold:20ms}") Duration threshold,
+                                       @Value("${app.threads.pinning.recent-events:50}") int recentLimit) {
+        this.pinnedCounter = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier for longer than the JFR threshold")
+                .register(meterRegistry);
+        this.threshold = threshold;
+        this.recentLimit = recentLimit;
+    }
+
+    @Override
+    public void start() {
+        RecordingStream recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        stream = recording;
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream recording = stream;
+        stream = null;
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    @ReadOperation
+    public PinningReport report() {
+        List<PinningSite> sites = pinsBySite.entrySet().stream()
+                .map(entry -> new PinningSite(entry.getKey(), entry.getValue().sum()))
+                .sorted(Comparator.comparingLong(PinningSite::count).reversed())
+                .toList();
+        return new PinningReport((long) pinnedCounter.count(), threshold.toMillis(), sites, List.copyOf(recent));
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        List<String> frames = frames(event.getStackTrace());
+        String site = frames.stream().filter(frame -> !isJdkFrame(frame)).findFirst()
+                .orElse(frames.isEmpty() ? "unknown" : frames.get(0));
+        pinsBySite.computeIfAbsent(site, key -> new LongAdder()).increment();
+
+        String threadName = event.getThread() == null ? null : event.getThread().getJavaName();
+        recent.addFirst(new PinnedEvent(event.getStartTime(), event.getDuration().toMillis(), threadName, site,
+                frames.subList(0, Math.min(RECENT_STACK_DEPTH, frames.size()))));
+        while (recent.size() > recentLimit) {
+            recent.pollLast();
+        }
+    }
+
+    private static List<String> frames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return List.of();
+        }
+        return stackTrace.getFrames().stream().map(VirtualThreadPinningMonitor::describe).toList();
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    private static boolean isJdkFrame(String frame) {
+        return frame.startsWith("java.") || frame.startsWith("jdk.") || frame.startsWith("sun.");
+    }
+
+    public record PinningReport(long total, long thresholdMillis, List<PinningSite> sites, List<PinnedEvent> recent) {
+    }
+
+    public record PinningSite(String frame, long count) {
+    }
+
+    public record PinnedEvent(Instant at, long durationMillis, String thread, String site, List<String> stack) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.alae.iam.session_auth_mysql.controller;
+
+import com.alae.iam.session_auth_mysql.dto.AdminUserSummary;
+import com.alae.iam.session_auth_mysql.dto.AdminUserUpdateRequest;
+import com.alae.iam.session_auth_mysql.dto.UserExportFormat;
+import com.alae.iam.session_auth_mysql.dto.UserPage;
+import com.alae.iam.session_auth_mysql.service.AdminUserService;
+import com.alae.iam.session_auth_mysql.service.UserExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/api/admin/users")
+@RequiredArgsConstructor
+public class AdminUserController {
+
+    private final AdminUserService adminUserService;
+    private final UserExportService userExportService;
+
+    @GetMapping
+    public UserPage listUsers(@RequestParam(defaultValue = "0") long after,
+                              @RequestParam(defaultValue = "50") int size) {
+        return adminUserService.listUsers(after, size);
+    }
+
+    @PatchMapping("/{id}")
+    public AdminUserSummary updateUser(@PathVariable long id, @RequestBody AdminUserUpdateRequest request) {
+        return adminUserService.updateUser(id, request);
+    }
+
+    @GetMapping("/export")
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                            HttpServletResponse response) throws IOException {
+        UserExportFormat exportFormat = UserExportFormat.fromParameter(format);
+        response.setContentType(exportFormat.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"users." + exportFormat.fileExtension() + "\"");
+        userExportService.export(exportFormat, response.getOutputStream());
+    }
+}
@@ -54,7 +54,11 @@ public class User implements UserDetails {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Written only by LastLoginTracker's batched updates
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime lastLoginAt;
+
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "user_authorities",
         joinColumns = @JoinColumn(name = "user_id"),
@@ -0,0 +1,20 @@
+package com.alae.iam.session_auth_mysql.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record AdminUserSummary(Long id, String username, String email, boolean enabled, boolean accountNonLocked,
+                               LocalDateTime createdAt, List<String> authorities) {
+
+    public static AdminUserSummary from(UserRow row, List<String> authorities) {
+        return new AdminUserSummary(
+                row.id(),
+                row.username(),
+                row.email(),
+                row.enabled(),
+                row.accountNonLocked(),
+                row.createdAt(),
+                authorities
+        );
+    }
+}
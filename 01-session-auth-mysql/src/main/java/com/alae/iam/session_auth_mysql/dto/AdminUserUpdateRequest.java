@@ -0,0 +1,9 @@
+package com.alae.iam.session_auth_mysql.dto;
+
+import java.util.List;
+
+/**
+ * Partial update: {@code null} fields are left unchanged.
+ */
+public record AdminUserUpdateRequest(Boolean enabled, Boolean accountNonLocked, List<String> authorities) {
+}
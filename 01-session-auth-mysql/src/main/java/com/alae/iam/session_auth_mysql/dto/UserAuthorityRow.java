@@ -0,0 +1,4 @@
+package com.alae.iam.session_auth_mysql.dto;
+
+public record UserAuthorityRow(Long userId, String authority) {
+}
@@ -0,0 +1,10 @@
+package com.alae.iam.session_auth_mysql.dto;
+
+import java.util.List;
+
+/**
+ * One keyset page. {@code nextCursor} is the id to pass as {@code after} for the next page,
+ * or {@code null} when this was the last one.
+ */
+public record UserPage(List<AdminUserSummary> users, Long nextCursor) {
+}
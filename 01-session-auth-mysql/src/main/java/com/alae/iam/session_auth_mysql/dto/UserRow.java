@@ -0,0 +1,8 @@
+package com.alae.iam.session_auth_mysql.dto;
+
+import java.time.LocalDateTime;
+
+// JPQL constructor projection of the users table, without password or authorities
+public record UserRow(Long id, String username, String email, boolean enabled, boolean accountNonLocked,
+                      LocalDateTime createdAt) {
+}
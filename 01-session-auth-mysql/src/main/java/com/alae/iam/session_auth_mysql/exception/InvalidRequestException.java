@@ -0,0 +1,10 @@
+package com.alae.iam.session_auth_mysql.exception;
+
+/**
+ * A request parameter or body value the API does not accept; answered with 400.
+ */
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
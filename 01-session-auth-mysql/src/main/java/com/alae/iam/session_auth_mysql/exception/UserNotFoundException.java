@@ -0,0 +1,7 @@
+package com.alae.iam.session_auth_mysql.exception;
+
+public class UserNotFoundException extends RuntimeException {
+    public UserNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -4,9 +4,13 @@ import com.alae.iam.session_auth_mysql.domain.Authority;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AuthorityRepository extends JpaRepository<Authority, Long> {
     Optional<Authority> findByName(String name);
+
+    List<Authority> findByNameIn(Collection<String> names);
 }
\ No newline at end of file
@@ -1,15 +1,74 @@
 package com.alae.iam.session_auth_mysql.repository;
 
 import com.alae.iam.session_auth_mysql.domain.User;
+import com.alae.iam.session_auth_mysql.dto.UserAuthorityRow;
+import com.alae.iam.session_auth_mysql.dto.UserRow;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
-    @Query("SELECT u FROM User u WHERE u.username = :usernameOrEmail OR u.email = :usernameOrEmail")
-    Optional<User> findByUsernameOrEmail(@Param("usernameOrEmail") String usernameOrEmail);
-}
\ No newline at end of file
+
+    // Login lookups: one probe on a unique index, authorities joined in the same statement
+    @EntityGraph(attributePaths = "authorities")
+    Optional<User> findByUsername(String username);
+
+    @EntityGraph(attributePaths = "authorities")
+    Optional<User> findByEmail(String email);
+
+    // Session principal reload after a version bump
+    @EntityGraph(attributePaths = "authorities")
+    Optional<User> findWithAuthoritiesById(Long id);
+
+    // Each branch of the UNION hits its own unique index (an OR across both columns often cannot).
+    // Both values are probed against both columns: a username equal to someone's email, or the
+    // reverse, would make an identifier login ambiguous.
+    // Archived users keep their username and email reserved so they can be restored on login.
+    @Query(value = """
+            SELECT COUNT(*) FROM (
+                SELECT 1 FROM users WHERE username = :username
+                UNION ALL
+                SELECT 1 FROM users WHERE email = :email
+                UNION ALL
+                SELECT 1 FROM users WHERE username = :email
+                UNION ALL
+                SELECT 1 FROM users WHERE email = :username
+                UNION ALL
+                SELECT 1 FROM users_archive WHERE username = :username
+                UNION ALL
+                SELECT 1 FROM users_archive WHERE email = :email
+                UNION ALL
+                SELECT 1 FROM users_archive WHERE username = :email
+                UNION ALL
+                SELECT 1 FROM users_archive WHERE email = :username
+            ) matches""", nativeQuery = true)
+    long countUsernameOrEmailMatches(@Param("username") String username, @Param("email") String email);
+
+    default boolean existsByUsernameOrEmail(String username, String email) {
+        return countUsernameOrEmailMatches(username, email) > 0;
+    }
+
+    // Keyset page: a primary-key range scan, so page N costs the same as page 1
+    @Query("""
+            SELECT new com.alae.iam.session_auth_mysql.dto.UserRow(
+                u.id, u.username, u.email, u.enabled, u.accountNonLocked, u.createdAt)
+            FROM User u
+            WHERE u.id > :afterId
+            ORDER BY u.id""")
+    List<UserRow> findRowsAfter(@Param("afterId") long afterId, Limit limit);
+
+    // Authorities of a whole page in one statement instead of one per user
+    @Query("""
+            SELECT new com.alae.iam.session_auth_mysql.dto.UserAuthorityRow(u.id, a.name)
+            FROM User u JOIN u.authorities a
+            WHERE u.id IN :userIds""")
+    List<UserAuthorityRow> findAuthorityRows(@Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,91 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import com.alae.iam.session_auth_mysql.domain.Authority;
+import com.alae.iam.session_auth_mysql.domain.User;
+import com.alae.iam.session_auth_mysql.dto.AdminUserSummary;
+import com.alae.iam.session_auth_mysql.dto.AdminUserUpdateRequest;
+import com.alae.iam.session_auth_mysql.dto.UserAuthorityRow;
+import com.alae.iam.session_auth_mysql.dto.UserPage;
+import com.alae.iam.session_auth_mysql.dto.UserRow;
+import com.alae.iam.session_auth_mysql.exception.InvalidRequestException;
+import com.alae.iam.session_auth_mysql.exception.UserNotFoundException;
+import com.alae.iam.session_auth_mysql.repository.AuthorityRepository;
+import com.alae.iam.session_auth_mysql.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class AdminUserService {
+
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final AuthorityRepository authorityRepository;
+    private final PrincipalVersionRegistry principalVersionRegistry;
+
+    /**
+     * Seek pagination on {@code id}: two statements per page (rows, then their authorities)
+     * whatever the page size or depth.
+     */
+    @Transactional(readOnly = true)
+    public UserPage listUsers(long afterId, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        List<UserRow> rows = userRepository.findRowsAfter(afterId, Limit.of(pageSize));
+        if (rows.isEmpty()) {
+            return new UserPage(List.of(), null);
+        }
+
+        List<Long> ids = rows.stream().map(UserRow::id).toList();
+        Map<Long, List<String>> authoritiesByUser = userRepository.findAuthorityRows(ids).stream()
+                .collect(Collectors.groupingBy(UserAuthorityRow::userId,
+                        Collectors.mapping(UserAuthorityRow::authority, Collectors.toList())));
+
+        List<AdminUserSummary> users = rows.stream()
+                .map(row -> AdminUserSummary.from(row, authoritiesByUser.getOrDefault(row.id(), List.of())))
+                .toList();
+        Long nextCursor = rows.size() == pageSize ? rows.get(rows.size() - 1).id() : null;
+        return new UserPage(users, nextCursor);
+    }
+
+    /**
+     * Applies the non-null fields of {@code request} and bumps the user's principal version, so
+     * open sessions pick up the change on their next request.
+     */
+    @Transactional
+    public AdminUserSummary updateUser(long userId, AdminUserUpdateRequest request) {
+        User user = userRepository.findWithAuthoritiesById(userId)
+                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + userId));
+
+        if (request.enabled() != null) {
+            user.setEnabled(request.enabled());
+        }
+        if (request.accountNonLocked() != null) {
+            user.setAccountNonLocked(request.accountNonLocked());
+        }
+        if (request.authorities() != null) {
+            Set<String> names = new LinkedHashSet<>(request.authorities());
+            List<Authority> authorities = authorityRepository.findByNameIn(names);
+            if (authorities.size() != names.size()) {
+                throw new InvalidRequestException("Unknown authority in " + names);
+            }
+            user.setAuthorities(new ArrayList<>(authorities));
+        }
+        userRepository.save(user);
+        principalVersionRegistry.bump(userId);
+
+        List<String> authorityNames = user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        return new AdminUserSummary(user.getId(), user.getUsername(), user.getEmail(), user.isEnabled(),
+                user.isAccountNonLocked(), user.getCreatedAt(), authorityNames);
+    }
+}
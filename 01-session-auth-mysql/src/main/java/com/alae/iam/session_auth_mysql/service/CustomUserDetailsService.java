@@ -8,17 +8,28 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
 
+    // active users only: archived ones are restored by ArchivedUserAuthenticationProvider, once their password matched
     @Override
     public UserDetails loadUserByUsername(String userNameOrEmail) throws UsernameNotFoundException {
-        User user = userRepository
-            .findByUsernameOrEmail(userNameOrEmail)
+        User user = findByIdentifier(userNameOrEmail)
             .orElseThrow(() -> new UsernameNotFoundException("User not found with username or email: " + userNameOrEmail));
         return user;
     }
-}
\ No newline at end of file
+
+    private Optional<User> findByIdentifier(String identifier) {
+        if (identifier.indexOf('@') < 0) {
+            return userRepository.findByUsername(identifier);
+        }
+        // usernames are not restricted, so only fall back to them when no email matches
+        return userRepository.findByEmail(identifier)
+            .or(() -> userRepository.findByUsername(identifier));
+    }
+}
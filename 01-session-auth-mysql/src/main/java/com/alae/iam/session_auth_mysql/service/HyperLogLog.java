@@ -0,0 +1,114 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct counter: {@code 2^precision} one-byte registers (4 KB at the default
+ * precision of 12, about 1.6% standard error) whatever the number of values added. Sketches of
+ * the same precision merge losslessly into the sketch of the union.
+ */
+public final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    public void add(long value) {
+        addHash(mix(value));
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge precision " + other.precision + " into " + precision);
+        }
+        // copy first so two sketches are never locked at once
+        byte[] source = other.snapshot();
+        synchronized (this) {
+            for (int i = 0; i < registers.length; i++) {
+                if (source[i] > registers[i]) {
+                    registers[i] = source[i];
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    public long estimate() {
+        byte[] snapshot = snapshot();
+        int m = snapshot.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : snapshot) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // small cardinalities: linear counting on the empty registers is more accurate
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public int sizeInBytes() {
+        return registers.length;
+    }
+
+    private synchronized void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // rank of the first 1-bit in the remaining bits, capped by their count
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    private synchronized byte[] snapshot() {
+        return registers.clone();
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    // FNV-1a over the UTF-8 bytes, then the murmur3 finalizer to spread the bits
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e99adL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,85 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind tracking of {@code users.last_login_at}. Logins only touch an in-memory map;
+ * the latest timestamp per user is written periodically with batched updates, so a login
+ * storm costs one UPDATE per user per flush interval instead of one per login.
+ */
+@Service
+public class LastLoginTracker {
+
+    private static final String UPDATE_SQL =
+            "UPDATE users SET last_login_at = ? WHERE id = ? AND (last_login_at IS NULL OR last_login_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final ConcurrentHashMap<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    public LastLoginTracker(JdbcTemplate jdbcTemplate,
+                            @Value("${app.users.last-login.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    public void recordLogin(long userId) {
+        pending.merge(userId, LocalDateTime.now(), LastLoginTracker::latest);
+    }
+
+    public boolean hasPending(long userId) {
+        return pending.containsKey(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.last-login.flush-interval-ms:30000}")
+    public void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            LocalDateTime loginAt = pending.remove(userId);
+            if (loginAt == null) {
+                continue;
+            }
+            Timestamp timestamp = Timestamp.valueOf(loginAt);
+            batch.add(new Object[] {timestamp, userId, timestamp});
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void write(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+        } catch (DataAccessException e) {
+            // keep the timestamps for the next flush rather than losing them
+            for (Object[] row : batch) {
+                pending.merge((Long) row[1], ((Timestamp) row[0]).toLocalDateTime(), LastLoginTracker::latest);
+            }
+            throw e;
+        }
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
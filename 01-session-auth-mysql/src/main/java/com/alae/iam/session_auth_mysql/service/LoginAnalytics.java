@@ -0,0 +1,160 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Distinct active users and login IPs per minute, hour and day. Each granularity is a ring of
+ * time buckets holding HyperLogLog sketches; wider windows are answered by merging buckets, so
+ * memory is fixed by the ring sizes and the sketch precision, not by traffic.
+ */
+@Service
+public class LoginAnalytics {
+
+    private final Clock clock;
+    private final int precision;
+    private final Ring minutes;
+    private final Ring hours;
+    private final Ring days;
+
+    @Autowired
+    public LoginAnalytics(@Value("${app.analytics.hll-precision:12}") int precision) {
+        this(Clock.systemUTC(), precision);
+    }
+
+    LoginAnalytics(Clock clock, int precision) {
+        this.clock = clock;
+        this.precision = precision;
+        this.minutes = new Ring(Duration.ofMinutes(1), 60);
+        this.hours = new Ring(Duration.ofHours(1), 24);
+        this.days = new Ring(Duration.ofDays(1), 30);
+    }
+
+    public void recordSuccess(long userId, String ip) {
+        long now = clock.millis();
+        for (Ring ring : List.of(minutes, hours, days)) {
+            ring.record(now, bucket -> {
+                bucket.users.add(userId);
+                bucket.ips.add(ip);
+            });
+        }
+    }
+
+    public void recordFailure(String ip) {
+        long now = clock.millis();
+        for (Ring ring : List.of(minutes, hours, days)) {
+            ring.record(now, bucket -> {
+                bucket.ips.add(ip);
+                bucket.failedIps.add(ip);
+            });
+        }
+    }
+
+    public Report report() {
+        long now = clock.millis();
+        return new Report(
+                precision,
+                List.of(window("last-minute", minutes, now, 1), window("last-hour", minutes, now, 60),
+                        window("last-24-hours", hours, now, 24), window("last-30-days", days, now, 30)),
+                series(minutes, now), series(hours, now), series(days, now));
+    }
+
+    private Window window(String name, Ring ring, long now, int buckets) {
+        List<Bucket> live = ring.recent(now, buckets);
+        return new Window(name, merged(live, b -> b.users), merged(live, b -> b.ips), merged(live, b -> b.failedIps));
+    }
+
+    private List<Point> series(Ring ring, long now) {
+        List<Point> points = new ArrayList<>();
+        for (Bucket bucket : ring.recent(now, ring.buckets.length)) {
+            points.add(new Point(Instant.ofEpochMilli(bucket.index * ring.widthMillis),
+                    bucket.users.estimate(), bucket.ips.estimate(), bucket.failedIps.estimate()));
+        }
+        return points;
+    }
+
+    private long merged(List<Bucket> buckets, Function<Bucket, HyperLogLog> sketch) {
+        HyperLogLog union = new HyperLogLog(precision);
+        buckets.forEach(bucket -> union.merge(sketch.apply(bucket)));
+        return union.estimate();
+    }
+
+    private final class Ring {
+
+        private final long widthMillis;
+        private final Bucket[] buckets;
+
+        Ring(Duration width, int size) {
+            this.widthMillis = width.toMillis();
+            this.buckets = new Bucket[size];
+            for (int i = 0; i < size; i++) {
+                buckets[i] = new Bucket(precision);
+            }
+        }
+
+        // Reuses the slot of the bucket that fell out of the window. The update runs under the same
+        // lock as the reset, so it cannot land in a slot another thread has just moved on.
+        void record(long now, Consumer<Bucket> update) {
+            long index = now / widthMillis;
+            Bucket bucket = buckets[(int) (index % buckets.length)];
+            synchronized (bucket) {
+                if (bucket.index != index) {
+                    bucket.reset(index);
+                }
+                update.accept(bucket);
+            }
+        }
+
+        // The last {@code count} buckets up to now, oldest first, skipping slots not yet reused
+        List<Bucket> recent(long now, int count) {
+            long newest = now / widthMillis;
+            List<Bucket> result = new ArrayList<>();
+            for (long index = newest - count + 1; index <= newest; index++) {
+                Bucket bucket = buckets[(int) Math.floorMod(index, (long) buckets.length)];
+                if (bucket.index == index) {
+                    result.add(bucket);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Bucket {
+
+        private volatile long index = -1;
+        private final HyperLogLog users;
+        private final HyperLogLog ips;
+        private final HyperLogLog failedIps;
+
+        Bucket(int precision) {
+            this.users = new HyperLogLog(precision);
+            this.ips = new HyperLogLog(precision);
+            this.failedIps = new HyperLogLog(precision);
+        }
+
+        void reset(long newIndex) {
+            users.clear();
+            ips.clear();
+            failedIps.clear();
+            index = newIndex;
+        }
+    }
+
+    public record Report(int precision, List<Window> windows, List<Point> minutes, List<Point> hours, List<Point> days) {
+    }
+
+    public record Window(String window, long activeUsers, long loginIps, long failedLoginIps) {
+    }
+
+    public record Point(Instant start, long activeUsers, long loginIps, long failedLoginIps) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing {@code long -> int} map with primitive arrays (no boxing, no entry objects).
+ * Reads are optimistic and lock-free unless they race a write.
+ */
+final class LongIntHashMap {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    // key 0 is the empty-slot marker, so its value lives outside the table
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+    }
+
+    int get(long key, int defaultValue) {
+        long stamp = lock.tryOptimisticRead();
+        int value = find(key, defaultValue);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(key, defaultValue);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds one to the value of {@code key} (absent counts as zero) and returns the new value.
+     */
+    int increment(long key) {
+        long stamp = lock.writeLock();
+        try {
+            if (key == EMPTY) {
+                hasZeroKey = true;
+                return ++zeroValue;
+            }
+            int slot = slot(keys, key);
+            if (keys[slot] == key) {
+                return ++values[slot];
+            }
+            keys[slot] = key;
+            values[slot] = 1;
+            if (++size > keys.length * LOAD_FACTOR) {
+                grow();
+            }
+            return 1;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size + (hasZeroKey ? 1 : 0);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int find(long key, int defaultValue) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        long[] currentKeys = keys;
+        int[] currentValues = values;
+        if (currentKeys.length != currentValues.length) {
+            // torn read during a resize; the caller's validate() fails and retries under the lock
+            return defaultValue;
+        }
+        int slot = slot(currentKeys, key);
+        return currentKeys[slot] == key ? currentValues[slot] : defaultValue;
+    }
+
+    // Linear probing; the table is never full, so the loop always ends on the key or an empty slot
+    private static int slot(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = mix(key) & mask;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] newKeys = new long[oldKeys.length << 1];
+        int[] newValues = new int[newKeys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(newKeys, oldKeys[i]);
+                newKeys[slot] = oldKeys[i];
+                newValues[slot] = oldValues[i];
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    // Sequential ids would cluster under linear probing without scrambling
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,57 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user version of everything a session caches about its principal. Sessions remember the
+ * version they were built from and reload the user only when it has moved on.
+ *
+ * <p>Versions start at 0 and live only in this JVM, so a restart makes every session with a
+ * non-zero version reload once, which is safe.
+ */
+@Service
+public class PrincipalVersionRegistry {
+
+    private final LongIntHashMap versions = new LongIntHashMap(1024);
+    private final AtomicLong generation = new AtomicLong();
+
+    public int currentVersion(long userId) {
+        return versions.get(userId, 0);
+    }
+
+    /**
+     * Number of bumps applied so far, across all users. A login that does not know the user id
+     * before loading the row reads this instead: if it has not moved once the version is read,
+     * no bump raced the load.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Invalidates the cached principal of {@code userId}. Inside a transaction the bump is
+     * deferred until commit, so a concurrent reload cannot pick up the old row with the new version.
+     */
+    public void bump(long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(userId);
+                }
+            });
+        } else {
+            increment(userId);
+        }
+    }
+
+    // generation first: whoever sees the new version also sees the generation move
+    private void increment(long userId) {
+        generation.incrementAndGet();
+        versions.increment(userId);
+    }
+}
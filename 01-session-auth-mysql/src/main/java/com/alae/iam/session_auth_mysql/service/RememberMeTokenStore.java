@@ -0,0 +1,129 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Remember-me series in {@code remember_me_tokens}, looked up by primary key, with a bounded LRU
+ * near-cache of recently used series in front. The cache is only trusted when it agrees with the
+ * presented token; callers re-read the row before treating a mismatch as theft.
+ */
+@Service
+public class RememberMeTokenStore {
+
+    private static final String SELECT_SQL = """
+            SELECT series, user_id, token_hash, previous_token_hash, last_used_at, expires_at
+            FROM remember_me_tokens WHERE series = ?""";
+    private static final String INSERT_SQL = """
+            INSERT INTO remember_me_tokens (series, user_id, token_hash, previous_token_hash, last_used_at, expires_at)
+            VALUES (?, ?, ?, NULL, ?, ?)""";
+    // Conditional on the hash being rotated away, so only one of two racing requests wins
+    private static final String ROTATE_SQL = """
+            UPDATE remember_me_tokens SET token_hash = ?, previous_token_hash = token_hash, last_used_at = ?
+            WHERE series = ? AND token_hash = ?""";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM remember_me_tokens WHERE expires_at < ? LIMIT ?";
+
+    private static final RowMapper<RememberMeToken> ROW_MAPPER = (rs, rowNum) -> new RememberMeToken(
+            rs.getString("series"),
+            rs.getLong("user_id"),
+            rs.getString("token_hash"),
+            rs.getString("previous_token_hash"),
+            rs.getTimestamp("last_used_at").toLocalDateTime(),
+            rs.getTimestamp("expires_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int cleanupBatchSize;
+    private final Map<String, RememberMeToken> nearCache;
+
+    public RememberMeTokenStore(JdbcTemplate jdbcTemplate,
+                                @Value("${app.remember-me.near-cache-size:10000}") int nearCacheSize,
+                                @Value("${app.remember-me.cleanup-batch-size:1000}") int cleanupBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cleanupBatchSize = cleanupBatchSize;
+        this.nearCache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RememberMeToken> eldest) {
+                return size() > nearCacheSize;
+            }
+        });
+    }
+
+    public Optional<RememberMeToken> find(String series) {
+        RememberMeToken cached = nearCache.get(series);
+        return cached != null ? Optional.of(cached) : reload(series);
+    }
+
+    public Optional<RememberMeToken> reload(String series) {
+        List<RememberMeToken> rows = jdbcTemplate.query(SELECT_SQL, ROW_MAPPER, series);
+        if (rows.isEmpty()) {
+            nearCache.remove(series);
+            return Optional.empty();
+        }
+        nearCache.put(series, rows.get(0));
+        return Optional.of(rows.get(0));
+    }
+
+    public void create(RememberMeToken token) {
+        jdbcTemplate.update(INSERT_SQL, token.series(), token.userId(), token.tokenHash(),
+                Timestamp.valueOf(token.lastUsedAt()), Timestamp.valueOf(token.expiresAt()));
+        nearCache.put(token.series(), token);
+    }
+
+    /**
+     * Replaces the series' current token hash with {@code newHash}.
+     *
+     * @return {@code false} if another request rotated the series first
+     */
+    public boolean rotate(RememberMeToken current, String newHash, LocalDateTime usedAt) {
+        int updated = jdbcTemplate.update(ROTATE_SQL, newHash, Timestamp.valueOf(usedAt),
+                current.series(), current.tokenHash());
+        if (updated == 0) {
+            nearCache.remove(current.series());
+            return false;
+        }
+        nearCache.put(current.series(), new RememberMeToken(current.series(), current.userId(), newHash,
+                current.tokenHash(), usedAt, current.expiresAt()));
+        return true;
+    }
+
+    public void deleteSeries(String series) {
+        jdbcTemplate.update("DELETE FROM remember_me_tokens WHERE series = ?", series);
+        nearCache.remove(series);
+    }
+
+    public void deleteForUser(long userId) {
+        jdbcTemplate.update("DELETE FROM remember_me_tokens WHERE user_id = ?", userId);
+        synchronized (nearCache) {
+            nearCache.values().removeIf(token -> token.userId() == userId);
+        }
+    }
+
+    @Scheduled(cron = "${app.remember-me.cleanup-cron:0 15 * * * *}")
+    public void deleteExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp cutoff = Timestamp.valueOf(now);
+        // small batches keep each delete's locks short; expires_at is indexed
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_EXPIRED_SQL, cutoff, cleanupBatchSize);
+        } while (deleted == cleanupBatchSize);
+        synchronized (nearCache) {
+            nearCache.values().removeIf(token -> token.expiresAt().isBefore(now));
+        }
+    }
+
+    public record RememberMeToken(String series, long userId, String tokenHash, String previousTokenHash,
+                                  LocalDateTime lastUsedAt, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Moves long-inactive accounts out of {@code users} into {@code users_archive}, keeping the hot
+ * table and its indexes small, and moves them back when they log in again.
+ */
+@Service
+public class UserArchiveService {
+
+    private static final String USER_COLUMNS = "id, username, email, password, enabled, account_non_locked, "
+            + "account_non_expired, credentials_non_expired, created_at, updated_at, last_login_at";
+
+    private static final String SELECT_INACTIVE = """
+            SELECT id FROM users
+            WHERE id > :after AND (last_login_at < :cutoff OR (last_login_at IS NULL AND created_at < :cutoff))
+            ORDER BY id
+            LIMIT :limit""";
+
+    // one probe per unique index; UNION drops the duplicate when a user's username equals its email
+    private static final String SELECT_ARCHIVED = """
+            SELECT id, password FROM users_archive WHERE username = :identifier
+            UNION
+            SELECT id, password FROM users_archive WHERE email = :identifier""";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LastLoginTracker lastLoginTracker;
+    private final PrincipalVersionRegistry principalVersionRegistry;
+    private final Duration inactiveAfter;
+    private final int batchSize;
+
+    public UserArchiveService(NamedParameterJdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              LastLoginTracker lastLoginTracker,
+                              PrincipalVersionRegistry principalVersionRegistry,
+                              @Value("${app.users.archive.inactive-after:365d}") Duration inactiveAfter,
+                              @Value("${app.users.archive.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.lastLoginTracker = lastLoginTracker;
+        this.principalVersionRegistry = principalVersionRegistry;
+        this.inactiveAfter = inactiveAfter;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${app.users.archive.cron:0 30 3 * * *}")
+    public void archiveInactiveUsers() {
+        // pending logins must reach the table first, otherwise active users look inactive
+        lastLoginTracker.flush();
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(inactiveAfter));
+        // keyset over id: users skipped for a pending login are not selected again in this run
+        BatchResult result = new BatchResult(batchSize, 0);
+        while (result != null && result.selected() == batchSize) {
+            long after = result.lastId();
+            result = transactionTemplate.execute(status -> archiveBatch(cutoff, after));
+        }
+    }
+
+    /**
+     * The archived user whose username or email is {@code identifier}. Empty when none matches, and
+     * also when two archived users match (one by username, one by email): such a login is refused
+     * rather than guessed.
+     */
+    public Optional<ArchivedCredentials> findArchived(String identifier) {
+        List<ArchivedCredentials> matches = jdbcTemplate.query(SELECT_ARCHIVED, Map.of("identifier", identifier),
+                (rs, rowNum) -> new ArchivedCredentials(rs.getLong("id"), rs.getString("password")));
+        return matches.size() == 1 ? Optional.of(matches.get(0)) : Optional.empty();
+    }
+
+    /**
+     * Moves {@code archived} back into {@code users}, with its original id. Call it only once the
+     * password has been checked against {@link ArchivedCredentials#passwordHash()}.
+     *
+     * @return {@code true} if the user was moved back
+     */
+    public boolean restore(ArchivedCredentials archived) {
+        try {
+            Boolean restored = transactionTemplate.execute(status -> restoreUser(archived));
+            return Boolean.TRUE.equals(restored);
+        } catch (DataIntegrityViolationException e) {
+            // the username or email was taken again in the meantime; treat as unknown
+            return false;
+        }
+    }
+
+    private BatchResult archiveBatch(Timestamp cutoff, long after) {
+        List<Long> selected = jdbcTemplate.queryForList(SELECT_INACTIVE,
+                Map.of("cutoff", cutoff, "after", after, "limit", batchSize), Long.class);
+        if (selected.isEmpty()) {
+            return new BatchResult(0, after);
+        }
+        BatchResult result = new BatchResult(selected.size(), selected.get(selected.size() - 1));
+        List<Long> ids = new ArrayList<>(selected);
+        ids.removeIf(lastLoginTracker::hasPending);
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("archivedAt", Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.update("INSERT INTO users_archive (" + USER_COLUMNS + ", archived_at) "
+                + "SELECT " + USER_COLUMNS + ", :archivedAt FROM users WHERE id IN (:ids)", params);
+        jdbcTemplate.update("INSERT INTO user_authorities_archive (user_id, authority_id) "
+                + "SELECT user_id, authority_id FROM user_authorities WHERE user_id IN (:ids)", params);
+        jdbcTemplate.update("DELETE FROM user_authorities WHERE user_id IN (:ids)", params);
+        jdbcTemplate.update("DELETE FROM users WHERE id IN (:ids)", params);
+        // any session still open for these users is dropped on its next request
+        ids.forEach(principalVersionRegistry::bump);
+        return result;
+    }
+
+    private boolean restoreUser(ArchivedCredentials archived) {
+        // primary-key lock, only taken once the password matched; a concurrent restore finds no row
+        List<String> passwords = jdbcTemplate.queryForList(
+                "SELECT password FROM users_archive WHERE id = :id FOR UPDATE",
+                Map.of("id", archived.id()), String.class);
+        if (passwords.isEmpty() || !passwords.get(0).equals(archived.passwordHash())) {
+            return false;
+        }
+
+        Map<String, Object> params = Map.of("id", archived.id());
+        jdbcTemplate.update("INSERT INTO users (" + USER_COLUMNS + ") "
+                + "SELECT " + USER_COLUMNS + " FROM users_archive WHERE id = :id", params);
+        jdbcTemplate.update("INSERT INTO user_authorities (user_id, authority_id) "
+                + "SELECT user_id, authority_id FROM user_authorities_archive WHERE user_id = :id", params);
+        jdbcTemplate.update("DELETE FROM user_authorities_archive WHERE user_id = :id", params);
+        jdbcTemplate.update("DELETE FROM users_archive WHERE id = :id", params);
+        return true;
+    }
+
+    public record ArchivedCredentials(long id, String passwordHash) {
+    }
+
+    private record BatchResult(int selected, long lastId) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.alae.iam.session_auth_mysql.service;
+
+import com.alae.iam.session_auth_mysql.dto.UserExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Streams the users table row by row. The statement is forward-only with a bounded fetch size
+ * (a server-side cursor with {@code useCursorFetch=true} on MySQL), so memory stays flat
+ * regardless of the table size.
+ */
+@Service
+public class UserExportService {
+
+    private static final String EXPORT_SQL = """
+            SELECT id, username, email, enabled, account_non_locked, created_at
+            FROM users
+            ORDER BY id""";
+
+    private static final String CSV_HEADER = "id,username,email,enabled,account_non_locked,created_at\n";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public UserExportService(JdbcTemplate jdbcTemplate,
+                             ObjectMapper objectMapper,
+                             @Value("${app.users.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    public void export(UserExportFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        try {
+            if (format == UserExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                streamRows(rs -> writeCsvRow(writer, rs));
+            } else {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+                generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+                streamRows(rs -> writeJsonRow(generator, rs));
+                generator.flush();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void streamRows(RowWriter rowWriter) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rs -> {
+            try {
+                rowWriter.write(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void writeJsonRow(JsonGenerator generator, ResultSet rs) throws SQLException, IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", rs.getLong("id"));
+        generator.writeStringField("username", rs.getString("username"));
+        generator.writeStringField("email", rs.getString("email"));
+        generator.writeBooleanField("enabled", rs.getBoolean("enabled"));
+        generator.writeBooleanField("accountNonLocked", rs.getBoolean("account_non_locked"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        generator.writeStringField("createdAt", createdAt == null ? null : createdAt.toLocalDateTime().toString());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeCsvRow(Writer writer, ResultSet rs) throws SQLException, IOException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        writer.write(Long.toString(rs.getLong("id")));
+        writer.write(',');
+        writer.write(csv(rs.getString("username")));
+        writer.write(',');
+        writer.write(csv(rs.getString("email")));
+        writer.write(',');
+        writer.write(Boolean.toString(rs.getBoolean("enabled")));
+        writer.write(',');
+        writer.write(Boolean.toString(rs.getBoolean("account_non_locked")));
+        writer.write(',');
+        writer.write(createdAt == null ? "" : createdAt.toLocalDateTime().toString());
+        writer.write('\n');
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
@@ -7,9 +7,9 @@ import com.alae.iam.session_auth_mysql.exception.UserAlreadyExistsException;
 import com.alae.iam.session_auth_mysql.repository.AuthorityRepository;
 import com.alae.iam.session_auth_mysql.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Collections;
 
@@ -19,23 +19,37 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final AuthorityRepository authorityRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final TransactionTemplate transactionTemplate;
 
-    @Transactional
+    /**
+     * Validates, hashes outside of any transaction, then inserts in a short transaction.
+     * The pre-check only rejects the common case early; the unique indexes decide races.
+     */
     public User registerNewUser(RegisterRequest registerRequest) {
-        if (userRepository.findByUsernameOrEmail(registerRequest.username()).isPresent() || userRepository.findByUsernameOrEmail(registerRequest.email()).isPresent()) {
+        if (userRepository.existsByUsernameOrEmail(registerRequest.username(), registerRequest.email())) {
             throw new UserAlreadyExistsException("User with this username or email already exists");
         }
 
+        String passwordHash = passwordHashingService.hash(registerRequest.password());
+
+        try {
+            return transactionTemplate.execute(status -> insertUser(registerRequest, passwordHash));
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException("User with this username or email already exists");
+        }
+    }
+
+    private User insertUser(RegisterRequest registerRequest, String passwordHash) {
         User user = new User();
         user.setUsername(registerRequest.username());
         user.setEmail(registerRequest.email());
-        user.setPassword(passwordEncoder.encode(registerRequest.password()));
+        user.setPassword(passwordHash);
 
         Authority userAuthority = authorityRepository.findByName("ROLE_USER")
                 .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
         user.setAuthorities(Collections.singletonList(userAuthority));
 
-        return userRepository.save(user);
+        return userRepository.saveAndFlush(user);
     }
 }
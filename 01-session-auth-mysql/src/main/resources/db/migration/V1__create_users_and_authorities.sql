@@ -0,0 +1,40 @@
+-- Initial schema for session-auth-mysql.
+-- Column names/types mirror the JPA mappings so that `ddl-auto: validate` passes.
+
+CREATE TABLE users (
+    id                      BIGINT       NOT NULL AUTO_INCREMENT,
+    username                VARCHAR(255) NOT NULL,
+    email                   VARCHAR(255) NOT NULL,
+    password                VARCHAR(255) NOT NULL,
+    enabled                 BOOLEAN      NOT NULL DEFAULT TRUE,
+    account_non_locked      BOOLEAN      NOT NULL DEFAULT TRUE,
+    account_non_expired     BOOLEAN      NOT NULL DEFAULT TRUE,
+    credentials_non_expired BOOLEAN      NOT NULL DEFAULT TRUE,
+    created_at              DATETIME(6)  NULL,
+    updated_at              DATETIME(6)  NULL,
+    PRIMARY KEY (id),
+    -- login looks a user up by username or by email; each lookup is a single unique-index probe
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE authorities (
+    id   BIGINT       NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_authorities_name UNIQUE (name)
+);
+
+CREATE TABLE user_authorities (
+    user_id      BIGINT NOT NULL,
+    authority_id BIGINT NOT NULL,
+    -- (user_id, authority_id) is the clustered key: loading the authorities of a user is a single covering range scan
+    PRIMARY KEY (user_id, authority_id),
+    CONSTRAINT fk_user_authorities_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_user_authorities_authority FOREIGN KEY (authority_id) REFERENCES authorities (id)
+);
+
+CREATE INDEX idx_user_authorities_authority ON user_authorities (authority_id);
+
+-- UserService.registerNewUser expects this role to exist
+INSERT INTO authorities (name) VALUES ('ROLE_USER');
@@ -0,0 +1,2 @@
+-- Required by the /api/admin/** endpoints (hasRole("ADMIN"))
+INSERT INTO authorities (name) VALUES ('ROLE_ADMIN');
@@ -0,0 +1,29 @@
+-- Written in batches by LastLoginTracker; read by the archival job
+ALTER TABLE users ADD COLUMN last_login_at DATETIME(6) NULL;
+CREATE INDEX idx_users_last_login_at ON users (last_login_at);
+
+-- Long-inactive accounts are moved here by UserArchiveService and moved back on their next login.
+-- Ids are kept, so a restored user gets its original id back.
+CREATE TABLE users_archive (
+    id                      BIGINT       NOT NULL,
+    username                VARCHAR(255) NOT NULL,
+    email                   VARCHAR(255) NOT NULL,
+    password                VARCHAR(255) NOT NULL,
+    enabled                 BOOLEAN      NOT NULL,
+    account_non_locked      BOOLEAN      NOT NULL,
+    account_non_expired     BOOLEAN      NOT NULL,
+    credentials_non_expired BOOLEAN      NOT NULL,
+    created_at              DATETIME(6)  NULL,
+    updated_at              DATETIME(6)  NULL,
+    last_login_at           DATETIME(6)  NULL,
+    archived_at             DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_archive_username UNIQUE (username),
+    CONSTRAINT uk_users_archive_email UNIQUE (email)
+);
+
+CREATE TABLE user_authorities_archive (
+    user_id      BIGINT NOT NULL,
+    authority_id BIGINT NOT NULL,
+    PRIMARY KEY (user_id, authority_id)
+);
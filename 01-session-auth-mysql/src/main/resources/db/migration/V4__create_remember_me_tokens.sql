@@ -0,0 +1,15 @@
+-- Persistent remember-me series. Only a SHA-256 of the current token is stored; the previous
+-- hash is kept briefly so concurrent requests racing a rotation are not mistaken for theft.
+CREATE TABLE remember_me_tokens (
+    series              VARCHAR(64) NOT NULL,
+    user_id             BIGINT      NOT NULL,
+    token_hash          CHAR(64)    NOT NULL,
+    previous_token_hash CHAR(64)    NULL,
+    last_used_at        DATETIME(6) NOT NULL,
+    expires_at          DATETIME(6) NOT NULL,
+    PRIMARY KEY (series),
+    CONSTRAINT fk_remember_me_tokens_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_remember_me_tokens_user ON remember_me_tokens (user_id);
+CREATE INDEX idx_remember_me_tokens_expires_at ON remember_me_tokens (expires_at);
@@ -0,0 +1,5 @@
+-- The archival query selects last_login_at < cutoff OR (last_login_at IS NULL AND created_at < cutoff).
+-- With created_at as the second column both branches are ranges on this index: users who never
+-- logged in are no longer found by scanning the table on created_at.
+CREATE INDEX idx_users_last_login_created ON users (last_login_at, created_at);
+DROP INDEX idx_users_last_login_at ON users;
@@ -0,0 +1,238 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.dto.UserExportFormat;
+import com.alae.iam.session_auth_mysql.dto.UserPage;
+import com.alae.iam.session_auth_mysql.service.UserExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.OutputStream;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles("test")
+class AdminUserListingTests {
+
+    private static final int BULK_USERS = 200_000;
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.4")
+            .withDatabaseName("session_auth_test")
+            .withUsername("test")
+            .withPassword("test")
+            .withUrlParam("useCursorFetch", "true");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void keysetPagesVisitEveryUserOnceInIdOrder() throws Exception {
+        long before = maxUserId();
+        List<Long> inserted = insertUsers(23);
+
+        List<Long> visited = new ArrayList<>();
+        Long cursor = before;
+        int pages = 0;
+        while (cursor != null) {
+            String body = mockMvc.perform(get("/api/admin/users")
+                            .with(user("admin").roles("ADMIN"))
+                            .param("after", cursor.toString())
+                            .param("size", "5"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            UserPage page = objectMapper.readValue(body, UserPage.class);
+            page.users().forEach(summary -> visited.add(summary.id()));
+            assertThat(page.users()).hasSizeLessThanOrEqualTo(5);
+            cursor = page.nextCursor();
+            pages++;
+        }
+
+        assertThat(visited).containsExactlyElementsOf(inserted);
+        assertThat(pages).isEqualTo(5);
+    }
+
+    @Test
+    void pageSizeIsClampedToAtLeastOne() throws Exception {
+        long before = maxUserId();
+        List<Long> inserted = insertUsers(2);
+
+        mockMvc.perform(get("/api/admin/users")
+                        .with(user("admin").roles("ADMIN"))
+                        .param("after", Long.toString(before))
+                        .param("size", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.users[0].id").value(inserted.get(0)))
+                .andExpect(jsonPath("$.nextCursor").value(inserted.get(0)));
+    }
+
+    @Test
+    void ndjsonExportHasOneObjectPerUser() throws Exception {
+        insertUsers(3);
+        int users = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+
+        String body = mockMvc.perform(get("/api/admin/users/export")
+                        .with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(users);
+        long previousId = 0;
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+            assertThat(node.get("id").asLong()).isGreaterThan(previousId);
+            assertThat(node.get("username").asText()).isNotBlank();
+            previousId = node.get("id").asLong();
+        }
+    }
+
+    @Test
+    void csvExportQuotesValuesWithCommas() throws Exception {
+        String username = "csv," + UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (username, email, password) VALUES (?, ?, 'x')",
+                username, UUID.randomUUID() + "@example.com");
+
+        String body = mockMvc.perform(get("/api/admin/users/export")
+                        .with(user("admin").roles("ADMIN"))
+                        .param("format", "csv"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).startsWith("id,username,email,enabled,account_non_locked,created_at\n");
+        assertThat(body).contains(",\"" + username + "\",");
+    }
+
+    @Test
+    void unknownExportFormatIsABadRequest() throws Exception {
+        mockMvc.perform(get("/api/admin/users/export")
+                        .with(user("admin").roles("ADMIN"))
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unsupported export format: xml"));
+    }
+
+    @Test
+    void exportMemoryStaysFlatWhileStreaming() throws Exception {
+        bulkInsert(BULK_USERS);
+        try {
+            long baseline = usedHeapAfterGc();
+            MidpointProbe sink = new MidpointProbe(BULK_USERS * 60L);
+
+            userExportService.export(UserExportFormat.CSV, sink);
+
+            assertThat(sink.bytes).isGreaterThan(BULK_USERS * 60L);
+            // a fully buffered result set of this size holds well over 40 MB of row data
+            assertThat(sink.usedAtMidpoint - baseline).isLessThan(16L * 1024 * 1024);
+        } finally {
+            jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'bulk-%'");
+        }
+    }
+
+    private List<Long> insertUsers(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String username = "listed-" + UUID.randomUUID();
+            jdbcTemplate.update("INSERT INTO users (username, email, password) VALUES (?, ?, 'x')",
+                    username, username + "@example.com");
+            ids.add(jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username));
+        }
+        return ids;
+    }
+
+    private void bulkInsert(int count) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION cte_max_recursion_depth = " + count);
+                statement.execute("""
+                        INSERT INTO users (username, email, password, created_at)
+                        WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < %d)
+                        SELECT CONCAT('bulk-', n), CONCAT('bulk-', n, '@example.com'), 'x', NOW(6) FROM seq"""
+                        .formatted(count));
+            }
+            return null;
+        });
+    }
+
+    private long maxUserId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Discards the export, sampling used heap once half of the expected bytes went through. */
+    private static final class MidpointProbe extends OutputStream {
+
+        private final long midpoint;
+        private long bytes;
+        private long usedAtMidpoint = -1;
+
+        private MidpointProbe(long expectedBytes) {
+            this.midpoint = expectedBytes / 2;
+        }
+
+        @Override
+        public void write(int b) {
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count(len);
+        }
+
+        private void count(int len) {
+            bytes += len;
+            if (usedAtMidpoint < 0 && bytes >= midpoint) {
+                usedAtMidpoint = usedHeapAfterGc();
+            }
+        }
+    }
+}
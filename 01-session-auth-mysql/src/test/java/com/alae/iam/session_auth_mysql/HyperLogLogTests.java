@@ -0,0 +1,46 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.service.HyperLogLog;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTests {
+
+    @Test
+    void estimatesLargeCardinalitiesWithinAFewPercent() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (long i = 0; i < 200_000; i++) {
+            sketch.add(i);
+            sketch.add(i); // duplicates must not count
+        }
+
+        assertThat((double) sketch.estimate()).isCloseTo(200_000, within(200_000 * 0.05));
+        assertThat(sketch.sizeInBytes()).isEqualTo(4096);
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 100; i++) {
+            sketch.add("192.168.0." + i);
+        }
+
+        assertThat(sketch.estimate()).isBetween(98L, 102L);
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (long i = 0; i < 60_000; i++) {
+            first.add(i);
+            second.add(i + 30_000);
+        }
+
+        first.merge(second);
+
+        assertThat((double) first.estimate()).isCloseTo(90_000, within(90_000 * 0.05));
+    }
+}
@@ -0,0 +1,168 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.domain.User;
+import com.alae.iam.session_auth_mysql.dto.RegisterRequest;
+import com.alae.iam.session_auth_mysql.repository.AuthorityRepository;
+import com.alae.iam.session_auth_mysql.repository.UserRepository;
+import com.alae.iam.session_auth_mysql.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Signup spike against a deliberately small Hikari pool. Compares the current pipeline with the
+ * previous "hash inside the transaction" shape, asserts that the new one holds connections and
+ * waits for them for less time, and logs registrations per second for both.
+ *
+ * <p>Run with {@code ./mvnw test -Dperf=true -Dtest=RegistrationLoadTests}.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.connection-timeout=120000"
+})
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "perf", matches = "true")
+@ActiveProfiles("test")
+class RegistrationLoadTests {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrationLoadTests.class);
+
+    private static final int CLIENTS = 32;
+    private static final int REGISTRATIONS = 160;
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.4")
+            .withDatabaseName("session_auth_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void hashingOutsideTheTransactionShortensConnectionHoldTime() throws Exception {
+        LoadResult before = run("hash-inside-transaction", this::registerHashingInsideTransaction);
+        LoadResult after = run("hash-before-transaction", userService::registerNewUser);
+
+        log.info("{}", before);
+        log.info("{}", after);
+
+        assertThat(after.meanConnectionUsageMillis()).isLessThan(before.meanConnectionUsageMillis());
+        assertThat(after.meanAcquireMillis()).isLessThan(before.meanAcquireMillis());
+    }
+
+    // Reproduces the previous @Transactional registerNewUser: the connection is held while BCrypt runs
+    private void registerHashingInsideTransaction(RegisterRequest request) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (userRepository.existsByUsernameOrEmail(request.username(), request.email())) {
+                throw new IllegalStateException("duplicate " + request.username());
+            }
+            User user = new User();
+            user.setUsername(request.username());
+            user.setEmail(request.email());
+            user.setPassword(passwordEncoder.encode(request.password()));
+            user.setAuthorities(List.of(authorityRepository.findByName("ROLE_USER").orElseThrow()));
+            userRepository.saveAndFlush(user);
+        });
+    }
+
+    private LoadResult run(String mode, Consumer<RegisterRequest> registration) throws Exception {
+        TimerSnapshot acquireBefore = snapshot("hikaricp.connections.acquire");
+        TimerSnapshot usageBefore = snapshot("hikaricp.connections.usage");
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < REGISTRATIONS; i++) {
+                String username = mode + "-" + UUID.randomUUID();
+                RegisterRequest request = new RegisterRequest(username, username + "@example.com", "Password123!");
+                futures.add(clients.submit(() -> registration.accept(request)));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        TimerSnapshot acquire = snapshot("hikaricp.connections.acquire").minus(acquireBefore);
+        TimerSnapshot usage = snapshot("hikaricp.connections.usage").minus(usageBefore);
+        return new LoadResult(mode, REGISTRATIONS, seconds, REGISTRATIONS / seconds,
+                acquire.meanMillis(), usage.meanMillis());
+    }
+
+    private TimerSnapshot snapshot(String meterName) {
+        Timer timer = meterRegistry.get(meterName).timer();
+        return new TimerSnapshot(timer.count(), timer.totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    private record TimerSnapshot(long count, double totalMillis) {
+
+        TimerSnapshot minus(TimerSnapshot other) {
+            return new TimerSnapshot(count - other.count, totalMillis - other.totalMillis);
+        }
+
+        double meanMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+    }
+
+    private record LoadResult(String mode, int registrations, double seconds, double registrationsPerSecond,
+                              double meanAcquireMillis, double meanConnectionUsageMillis) {
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %d registrations in %.1fs (%.1f/s), pool wait %.1f ms, connection held %.1f ms",
+                    mode, registrations, seconds, registrationsPerSecond, meanAcquireMillis, meanConnectionUsageMillis);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.alae.iam.session_auth_mysql;
 
+import com.alae.iam.session_auth_mysql.config.PrincipalVersionFilter;
 import com.alae.iam.session_auth_mysql.domain.Authority;
 import com.alae.iam.session_auth_mysql.dto.RegisterRequest;
 import com.alae.iam.session_auth_mysql.repository.AuthorityRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,9 +27,12 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -50,7 +55,7 @@ class SessionAuthMysqlApplicationTests {
         registry.add("spring.datasource.url", mysql::getJdbcUrl);
         registry.add("spring.datasource.username", mysql::getUsername);
         registry.add("spring.datasource.password", mysql::getPassword);
-        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
     }
 
     @Autowired
@@ -193,6 +198,97 @@ class SessionAuthMysqlApplicationTests {
                 .andExpect(jsonPath("$.message").value("User with this username or email already exists"));
     }
 
+    @Test
+    void disablingAUserEndsTheirOpenSession() throws Exception {
+        TestUser user = registerUser();
+        LoginContext login = login(user);
+        long userId = currentUserId(login);
+
+        mockMvc.perform(patch("/api/admin/users/{id}", userId)
+                        .with(user("admin").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"enabled\": false}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled").value(false));
+
+        mockMvc.perform(get("/api/auth/me")
+                        .session(login.session()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void roleChangesApplyToOpenSessions() throws Exception {
+        authorityRepository.findByName("ROLE_ADMIN")
+                .orElseGet(() -> authorityRepository.save(Authority.builder().name("ROLE_ADMIN").build()));
+        TestUser user = registerUser();
+        LoginContext login = login(user);
+        long userId = currentUserId(login);
+
+        mockMvc.perform(get("/api/admin/users")
+                        .session(login.session()))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(patch("/api/admin/users/{id}", userId)
+                        .with(user("admin").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"authorities\": [\"ROLE_USER\", \"ROLE_ADMIN\"]}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/admin/users")
+                        .session(login.session()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void loginAnalyticsRequireTheAdminRole() throws Exception {
+        LoginContext login = login(registerUser());
+
+        mockMvc.perform(get("/actuator/logins"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/logins")
+                        .session(login.session()))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/logins")
+                        .with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.windows[0].window").value("last-minute"));
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void rememberMeCookieReauthenticatesWithoutASession() throws Exception {
+        TestUser user = registerUser();
+
+        MvcResult login = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("usernameOrEmail", user.username())
+                        .param("password", user.password())
+                        .param("remember-me", "true"))
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists("remember-me"))
+                .andReturn();
+        Cookie rememberMe = login.getResponse().getCookie("remember-me");
+
+        MvcResult returning = mockMvc.perform(get("/api/auth/me")
+                        .cookie(rememberMe))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(user.username()))
+                .andExpect(request().sessionAttribute(PrincipalVersionFilter.VERSION_ATTRIBUTE, notNullValue()))
+                .andReturn();
+
+        // the token part of the cookie is rotated on every use
+        assertThat(returning.getResponse().getCookie("remember-me").getValue()).isNotEqualTo(rememberMe.getValue());
+    }
+
+    private long currentUserId(LoginContext login) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/auth/me")
+                        .session(login.session()))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+    }
+
     private TestUser registerUser() throws Exception {
         TestUser user = randomUser();
         mockMvc.perform(post("/api/auth/register")
@@ -0,0 +1,96 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.config.SessionIdSigner;
+import com.alae.iam.session_auth_mysql.config.SessionIdSigner.Verification;
+import org.junit.jupiter.api.Test;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionIdSignerTests {
+
+    private static final int RANDOM_BYTES = 16;
+
+    private final String oldKey = "k1:" + randomSecret();
+    private final String newKey = "k2:" + randomSecret();
+
+    @Test
+    void signedIdsVerify() {
+        SessionIdSigner signer = new SessionIdSigner(List.of(oldKey), "k1");
+
+        String id = signer.sign(randomBytes());
+
+        assertThat(id).startsWith("k1-").hasSize(3 + 2 * (RANDOM_BYTES + 16));
+        assertThat(signer.verify(id, RANDOM_BYTES)).isEqualTo(Verification.VALID);
+        assertThat(signer.verify(id + ".node1", RANDOM_BYTES)).isEqualTo(Verification.VALID);
+    }
+
+    @Test
+    void forgedAndMalformedIdsAreRejected() {
+        SessionIdSigner signer = new SessionIdSigner(List.of(oldKey), "k1");
+        String id = signer.sign(randomBytes());
+        char last = id.charAt(id.length() - 1);
+        String tampered = id.substring(0, id.length() - 1) + (last == '0' ? '1' : '0');
+
+        assertThat(signer.verify(tampered, RANDOM_BYTES)).isEqualTo(Verification.BAD_SIGNATURE);
+        assertThat(signer.verify("9F2A6C1B3D4E5F60718293A4B5C6D7E8", RANDOM_BYTES)).isEqualTo(Verification.MALFORMED);
+        assertThat(signer.verify("zz" + id.substring(2), RANDOM_BYTES)).isEqualTo(Verification.UNKNOWN_KEY);
+    }
+
+    @Test
+    void rotationKeepsIdsSignedWithTheRetiredKey() {
+        SessionIdSigner before = new SessionIdSigner(List.of(oldKey), "k1");
+        SessionIdSigner after = new SessionIdSigner(List.of(oldKey, newKey), "k2");
+        String issuedBefore = before.sign(randomBytes());
+
+        assertThat(after.verify(issuedBefore, RANDOM_BYTES)).isEqualTo(Verification.VALID);
+        assertThat(after.sign(randomBytes())).startsWith("k2-");
+    }
+
+    @Test
+    void rejectsShortKeys() {
+        String shortKey = "k1:" + Base64.getEncoder().encodeToString(new byte[16]);
+
+        assertThatThrownBy(() -> new SessionIdSigner(List.of(shortKey), "k1"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void verifiesConcurrently() throws Exception {
+        SessionIdSigner signer = new SessionIdSigner(List.of(oldKey), "k1");
+        List<String> ids = IntStream.range(0, 64).mapToObj(i -> signer.sign(randomBytes())).toList();
+
+        List<Callable<Boolean>> checks = IntStream.range(0, 10_000)
+                .mapToObj(i -> (Callable<Boolean>) () -> signer.verify(ids.get(i % ids.size()), RANDOM_BYTES) == Verification.VALID)
+                .toList();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            for (Future<Boolean> check : executor.invokeAll(checks)) {
+                assertThat(check.get()).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] randomBytes() {
+        byte[] bytes = new byte[RANDOM_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+}
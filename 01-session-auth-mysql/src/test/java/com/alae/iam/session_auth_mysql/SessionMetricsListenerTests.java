@@ -0,0 +1,94 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.config.SessionMetricsListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpSessionBindingEvent;
+import jakarta.servlet.http.HttpSessionEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SessionMetricsListenerTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void unsampledSessionsAreNeverSerialized() {
+        SessionMetricsListener listener = new SessionMetricsListener(registry, 0);
+        CountingAttribute attribute = new CountingAttribute();
+
+        for (int i = 0; i < 100; i++) {
+            setAttribute(listener, openSession(listener), attribute);
+        }
+
+        assertThat(attribute.serializations.get()).isZero();
+        assertThat(gauge("sessions.active")).isEqualTo(100);
+        assertThat(gauge("sessions.retained.bytes")).isZero();
+    }
+
+    @Test
+    void sampledSessionsAreMeasuredOncePerWrite() {
+        SessionMetricsListener listener = new SessionMetricsListener(registry, 1);
+        CountingAttribute attribute = new CountingAttribute();
+
+        MockHttpSession session = openSession(listener);
+        setAttribute(listener, session, attribute);
+        setAttribute(listener, session, attribute);
+
+        assertThat(attribute.serializations.get()).isEqualTo(2);
+        assertThat(gauge("sessions.retained.bytes.per.session")).isPositive();
+    }
+
+    @Test
+    void retainedBytesAreExtrapolatedFromTheSample() {
+        SessionMetricsListener listener = new SessionMetricsListener(registry, 0.2);
+        CountingAttribute attribute = new CountingAttribute();
+
+        for (int i = 0; i < 5_000; i++) {
+            setAttribute(listener, openSession(listener), attribute);
+        }
+
+        double perSession = gauge("sessions.retained.bytes.per.session");
+        assertThat((double) attribute.serializations.get()).isCloseTo(1_000, within(200.0));
+        assertThat(gauge("sessions.retained.bytes")).isCloseTo(perSession * 5_000, within(1.0));
+    }
+
+    private static MockHttpSession openSession(SessionMetricsListener listener) {
+        MockHttpSession session = new MockHttpSession();
+        listener.sessionCreated(new HttpSessionEvent(session));
+        return session;
+    }
+
+    private static void setAttribute(SessionMetricsListener listener, MockHttpSession session, Object value) {
+        boolean replaced = session.getAttribute("cart") != null;
+        session.setAttribute("cart", value);
+        HttpSessionBindingEvent event = new HttpSessionBindingEvent(session, "cart", value);
+        if (replaced) {
+            listener.attributeReplaced(event);
+        } else {
+            listener.attributeAdded(event);
+        }
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private static final class CountingAttribute implements Serializable {
+
+        private final transient AtomicInteger serializations = new AtomicInteger();
+        private final byte[] payload = new byte[256];
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            serializations.incrementAndGet();
+            out.defaultWriteObject();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.dto.RegisterRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The signed {@code JSESSIONID} through Tomcat itself: MockMvc would bypass the session manager
+ * that issues and verifies the ids.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+@ActiveProfiles("test")
+class SignedSessionCookieTests {
+
+    private static final Pattern SESSION_COOKIE = Pattern.compile("JSESSIONID=([^;]+)");
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.4")
+            .withDatabaseName("session_auth_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void loginIssuesASignedIdThatTheServerAccepts() throws Exception {
+        String sessionId = login();
+
+        assertThat(sessionId).matches("test1-[0-9a-f]+");
+        assertThat(me(sessionId).statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void forgedIdIsRejectedBeforeTheStoreLookup() throws Exception {
+        String sessionId = login();
+        char last = sessionId.charAt(sessionId.length() - 1);
+        String forged = sessionId.substring(0, sessionId.length() - 1) + (last == '0' ? '1' : '0');
+        double before = rejected("bad_signature");
+
+        assertThat(me(forged).statusCode()).isEqualTo(401);
+        assertThat(me("0123456789ABCDEF0123456789ABCDEF").statusCode()).isEqualTo(401);
+        assertThat(rejected("bad_signature")).isEqualTo(before + 1);
+    }
+
+    private String login() throws IOException, InterruptedException {
+        String username = "signed-" + UUID.randomUUID();
+        String register = String.format("{\"username\":\"%s\",\"email\":\"%s@example.com\",\"password\":\"Password123!\"}",
+                username, username);
+        HttpResponse<String> registered = client.send(HttpRequest.newBuilder(uri("/api/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(register))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(registered.statusCode()).isEqualTo(201);
+
+        String form = "usernameOrEmail=" + URLEncoder.encode(username, StandardCharsets.UTF_8) + "&password=Password123%21";
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(uri("/api/auth/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(login.statusCode()).isEqualTo(200);
+        Matcher cookie = SESSION_COOKIE.matcher(String.join("\n", login.headers().allValues("Set-Cookie")));
+        assertThat(cookie.find()).isTrue();
+        return cookie.group(1);
+    }
+
+    private HttpResponse<String> me(String sessionId) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri("/api/auth/me"))
+                .header("Cookie", "JSESSIONID=" + sessionId)
+                .GET()
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("session.id.rejected").tag("reason", reason).counter().count();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,154 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.dto.RegisterRequest;
+import com.alae.iam.session_auth_mysql.service.CustomUserDetailsService;
+import com.alae.iam.session_auth_mysql.service.UserArchiveService;
+import com.alae.iam.session_auth_mysql.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles("test")
+class UserArchiveTests {
+
+    private static final String PASSWORD = "Password123!";
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.4")
+            .withDatabaseName("session_auth_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserArchiveService userArchiveService;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void inactiveUserIsArchivedWithItsAuthorities() {
+        RegisterRequest user = archivedUser();
+
+        assertThat(count("users", user.username())).isZero();
+        assertThat(count("users_archive", user.username())).isOne();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_authorities_archive a "
+                + "JOIN users_archive u ON u.id = a.user_id WHERE u.username = ?", Integer.class, user.username())).isOne();
+    }
+
+    @Test
+    void lookupAloneNeverRestores() {
+        RegisterRequest user = archivedUser();
+
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername(user.username()))
+                .isInstanceOf(UsernameNotFoundException.class);
+        assertThat(count("users_archive", user.username())).isOne();
+    }
+
+    @Test
+    void loginWithTheRightPasswordRestoresTheUser() throws Exception {
+        RegisterRequest user = archivedUser();
+
+        login(user.email(), PASSWORD)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(user.username()))
+                .andExpect(jsonPath("$.authorities[0]").value("ROLE_USER"));
+
+        assertThat(count("users", user.username())).isOne();
+        assertThat(count("users_archive", user.username())).isZero();
+    }
+
+    @Test
+    void loginWithAWrongPasswordLeavesTheUserArchived() throws Exception {
+        RegisterRequest user = archivedUser();
+
+        login(user.username(), "wrong-password")
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Bad credentials"));
+
+        assertThat(count("users", user.username())).isZero();
+        assertThat(count("users_archive", user.username())).isOne();
+    }
+
+    @Test
+    void identifierMatchingTwoArchivedUsersIsRefused() throws Exception {
+        RegisterRequest first = archivedUser();
+        RegisterRequest second = archivedUser();
+        // only possible for rows written before registration checked across columns
+        jdbcTemplate.update("UPDATE users_archive SET email = ? WHERE username = ?",
+                first.username(), second.username());
+
+        login(first.username(), PASSWORD)
+                .andExpect(status().isUnauthorized());
+
+        assertThat(count("users_archive", first.username())).isOne();
+        assertThat(count("users_archive", second.username())).isOne();
+    }
+
+    @Test
+    void unknownIdentifierIsBadCredentials() throws Exception {
+        login("nobody-" + UUID.randomUUID(), PASSWORD)
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Bad credentials"));
+    }
+
+    private RegisterRequest archivedUser() {
+        String username = "archived-" + UUID.randomUUID();
+        RegisterRequest request = new RegisterRequest(username, username + "@example.com", PASSWORD);
+        userService.registerNewUser(request);
+        jdbcTemplate.update("UPDATE users SET created_at = NOW() - INTERVAL 2 YEAR, last_login_at = NULL WHERE username = ?",
+                username);
+        userArchiveService.archiveInactiveUsers();
+        return request;
+    }
+
+    private ResultActions login(String identifier, String password) throws Exception {
+        return mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("usernameOrEmail", identifier)
+                .param("password", password));
+    }
+
+    private int count(String table, String username) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE username = ?", Integer.class, username);
+    }
+}
@@ -0,0 +1,121 @@
+package com.alae.iam.session_auth_mysql;
+
+import com.alae.iam.session_auth_mysql.dto.RegisterRequest;
+import com.alae.iam.session_auth_mysql.repository.UserRepository;
+import com.alae.iam.session_auth_mysql.service.CustomUserDetailsService;
+import com.alae.iam.session_auth_mysql.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the JDBC statements Hibernate prepares for the login lookup and the registration pre-check.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Testcontainers
+@ActiveProfiles("test")
+class UserLookupQueryCountTests {
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.4")
+            .withDatabaseName("session_auth_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void loginByUsernameIsASingleStatement() {
+        RegisterRequest user = registerUser();
+        statistics.clear();
+
+        UserDetails details = userDetailsService.loadUserByUsername(user.username());
+
+        assertThat(details.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void loginByEmailIsASingleStatement() {
+        RegisterRequest user = registerUser();
+        statistics.clear();
+
+        UserDetails details = userDetailsService.loadUserByUsername(user.email());
+
+        assertThat(details.getUsername()).isEqualTo(user.username());
+        assertThat(details.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void registrationPreCheckIsASingleStatementThatLoadsNoEntity() {
+        RegisterRequest user = registerUser();
+        statistics.clear();
+
+        boolean usernameTaken = userRepository.existsByUsernameOrEmail(user.username(), "other-" + user.email());
+        boolean emailTaken = userRepository.existsByUsernameOrEmail("other-" + user.username(), user.email());
+
+        assertThat(usernameTaken).isTrue();
+        assertThat(emailTaken).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void registrationPreCheckMatchesAcrossColumns() {
+        RegisterRequest user = registerUser();
+
+        // a new username equal to an existing email, and a new email equal to an existing username
+        assertThat(userRepository.existsByUsernameOrEmail(user.email(), "other-" + user.email())).isTrue();
+        assertThat(userRepository.existsByUsernameOrEmail("other-" + user.username(), user.username())).isTrue();
+        assertThat(userRepository.existsByUsernameOrEmail("other-" + user.username(), "other-" + user.email())).isFalse();
+    }
+
+    private RegisterRequest registerUser() {
+        String username = "user-" + UUID.randomUUID();
+        RegisterRequest request = new RegisterRequest(username, username + "@example.com", "Password123!");
+        userService.registerNewUser(request);
+        return request;
+    }
+}
@@ -0,0 +1,3 @@
+#!/bin/bash
+# Usage: ./loadtest.sh [-Dloadtest.rate=20] [-Dloadtest.duration=60] [-Dloadtest.baseline=path/to/report.json]
+./mvnw test -Dperf=true -Dtest=LoginFlowLoadTests "$@"
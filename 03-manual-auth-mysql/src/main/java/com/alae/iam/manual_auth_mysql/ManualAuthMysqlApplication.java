@@ -2,8 +2,10 @@ package com.alae.iam.manual_auth_mysql;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ManualAuthMysqlApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,6 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+/**
+ * One row of {@code acl_entries}; a mask of 0 stands for "no entry".
+ */
+public record AclEntry(Sid sid, String objectType, long objectId, int mask) {}
@@ -0,0 +1,95 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The in-memory form of {@code acl_entries}: object type, then sid, then a {@link ObjectMaskMap}
+ * from object id to mask. The sid key is the user id.
+ *
+ * <p>Reads take no lock. {@link #apply} copies each map it touches once per batch and publishes
+ * the copy, so a reader sees a map either before or after a batch, never halfway.
+ */
+final class AclIndex {
+
+  private final Map<String, Map<Long, ObjectMaskMap>> types = new ConcurrentHashMap<>();
+  private volatile int size;
+
+  int size() {
+    return size;
+  }
+
+  int mask(long userId, String objectType, long objectId) {
+    ObjectMaskMap objects = objects(userId, objectType);
+    return objects == null ? 0 : objects.get(objectId);
+  }
+
+  /**
+   * The ids, in their original order, on which the user holds every bit of {@code required}.
+   */
+  long[] filter(long userId, String objectType, long[] objectIds, int required) {
+    ObjectMaskMap objects = objects(userId, objectType);
+    if (objects == null) {
+      return new long[0];
+    }
+    long[] granted = new long[objectIds.length];
+    int found = 0;
+    for (long objectId : objectIds) {
+      if ((objects.get(objectId) & required) == required) {
+        granted[found++] = objectId;
+      }
+    }
+    return Arrays.copyOf(granted, found);
+  }
+
+  private ObjectMaskMap objects(long userId, String objectType) {
+    Map<Long, ObjectMaskMap> bySid = types.get(objectType);
+    return bySid == null ? null : bySid.get(userId);
+  }
+
+  /**
+   * Adds entries in place, without the copies {@link #apply} makes. Only for the initial load,
+   * before any reader can see the index.
+   */
+  synchronized void load(List<AclEntry> entries) {
+    for (AclEntry entry : entries) {
+      ObjectMaskMap objects = types.computeIfAbsent(entry.objectType(), type -> new ConcurrentHashMap<>())
+          .computeIfAbsent(sidKey(entry.sid()), key -> new ObjectMaskMap());
+      int before = objects.size();
+      objects.put(entry.objectId(), entry.mask());
+      size += objects.size() - before;
+    }
+  }
+
+  synchronized void apply(List<AclEntry> entries) {
+    Map<String, Map<Long, ObjectMaskMap>> copies = new HashMap<>();
+    for (AclEntry entry : entries) {
+      long sidKey = sidKey(entry.sid());
+      Map<Long, ObjectMaskMap> bySid = types.computeIfAbsent(entry.objectType(), type -> new ConcurrentHashMap<>());
+      ObjectMaskMap copy = copies.computeIfAbsent(entry.objectType(), type -> new HashMap<>())
+          .computeIfAbsent(sidKey, key -> {
+            ObjectMaskMap current = bySid.get(key);
+            return current == null ? new ObjectMaskMap() : current.copy();
+          });
+      copy.put(entry.objectId(), entry.mask());
+    }
+    int delta = 0;
+    for (Map.Entry<String, Map<Long, ObjectMaskMap>> type : copies.entrySet()) {
+      Map<Long, ObjectMaskMap> bySid = types.get(type.getKey());
+      for (Map.Entry<Long, ObjectMaskMap> sid : type.getValue().entrySet()) {
+        ObjectMaskMap previous = sid.getValue().size() == 0
+            ? bySid.remove(sid.getKey())
+            : bySid.put(sid.getKey(), sid.getValue());
+        delta += sid.getValue().size() - (previous == null ? 0 : previous.size());
+      }
+    }
+    size += delta;
+  }
+
+  private static long sidKey(Sid sid) {
+    return Long.parseLong(sid.name());
+  }
+}
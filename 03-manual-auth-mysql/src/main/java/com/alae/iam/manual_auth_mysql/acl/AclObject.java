@@ -0,0 +1,11 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+/**
+ * A domain object that {@code hasPermission(object, 'READ')} can be evaluated against.
+ */
+public interface AclObject {
+
+  String aclType();
+
+  long aclId();
+}
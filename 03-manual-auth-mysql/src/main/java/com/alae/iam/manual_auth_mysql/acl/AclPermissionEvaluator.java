@@ -0,0 +1,63 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+
+import java.io.Serializable;
+
+/**
+ * Backs {@code hasPermission(...)} in {@code @PreAuthorize} / {@code @PostAuthorize} with
+ * {@link AclService}, e.g. {@code @PreAuthorize("hasPermission(#id, 'document', 'WRITE')")}.
+ *
+ * <p>Method security is built while bean post-processors are still being registered, so the
+ * service is looked up on first use; creating it that early would leave it without its
+ * transactional proxy.
+ */
+public class AclPermissionEvaluator implements PermissionEvaluator {
+
+  private final ObjectProvider<AclService> aclServiceProvider;
+  private volatile AclService aclService;
+
+  public AclPermissionEvaluator(ObjectProvider<AclService> aclServiceProvider) {
+    this.aclServiceProvider = aclServiceProvider;
+  }
+
+  @Override
+  public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
+    if (!(targetDomainObject instanceof AclObject object)) {
+      return false;
+    }
+    return aclService().isGranted(authentication, object.aclType(), object.aclId(), Permission.resolve(permission));
+  }
+
+  @Override
+  public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType,
+                               Object permission) {
+    Long objectId = null;
+    if (targetId instanceof Number number) {
+      objectId = number.longValue();
+    } else if (targetId instanceof String text) {
+      objectId = parse(text);
+    }
+    return objectId != null
+        && aclService().isGranted(authentication, targetType, objectId, Permission.resolve(permission));
+  }
+
+  private AclService aclService() {
+    AclService service = aclService;
+    if (service == null) {
+      service = aclServiceProvider.getObject();
+      aclService = service;
+    }
+    return service;
+  }
+
+  private static Long parse(String text) {
+    try {
+      return Long.parseLong(text);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
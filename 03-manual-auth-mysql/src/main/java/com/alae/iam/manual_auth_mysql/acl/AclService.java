@@ -0,0 +1,153 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
+import com.alae.iam.manual_auth_mysql.repository.AclRepository;
+import com.alae.iam.manual_auth_mysql.repository.AclRepository.Change;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Object-level permissions, answered from an {@link AclIndex} of the whole {@code acl_entries}
+ * table instead of a query per check. A user holds the bits granted to their id.
+ *
+ * <p>Changes are written through this class, which records them in {@code acl_change_outbox} in the
+ * same transaction and applies them locally on commit. Every node polls the outbox, like
+ * {@link com.alae.iam.manual_auth_mysql.auth.CredentialCache} does, and reloads the entries it lists.
+ */
+@Component
+public class AclService {
+
+  private static final int LOAD_BATCH = 10_000;
+  private static final int POLL_BATCH = 500;
+
+  private final AclRepository repository;
+  private final Duration outboxLookback;
+  private final Duration outboxRetention;
+  private final AclIndex index = new AclIndex();
+
+  private volatile long outboxCursor;
+
+  public AclService(AclRepository repository,
+                    MeterRegistry meterRegistry,
+                    @Value("${app.acl.outbox-lookback:10s}") Duration outboxLookback,
+                    @Value("${app.acl.outbox-retention:1d}") Duration outboxRetention) {
+    this.repository = repository;
+    this.outboxLookback = outboxLookback;
+    this.outboxRetention = outboxRetention;
+    // taken before the load: whatever commits during it is replayed by the first poll
+    this.outboxCursor = repository.latestChangeId();
+    repository.loadAll(LOAD_BATCH, index::load);
+    Gauge.builder("acl.entries", index, AclIndex::size).register(meterRegistry);
+  }
+
+  public boolean isGranted(Authentication authentication, String objectType, long objectId, Permission... permissions) {
+    return isGranted(authentication, objectType, objectId, Permission.maskOf(permissions));
+  }
+
+  public boolean isGranted(Authentication authentication, String objectType, long objectId, int mask) {
+    return (index.mask(userId(authentication), objectType, objectId) & mask) == mask;
+  }
+
+  /**
+   * The ids among {@code objectIds}, in order, on which the user holds every permission given.
+   */
+  public long[] filterGranted(Authentication authentication, String objectType, long[] objectIds,
+                              Permission... permissions) {
+    return index.filter(userId(authentication), objectType, objectIds, Permission.maskOf(permissions));
+  }
+
+  @Transactional
+  public void grant(Sid sid, String objectType, long objectId, Permission... permissions) {
+    int mask = repository.claimMaskForUpdate(sid, objectType, objectId);
+    setMask(sid, objectType, objectId, mask | Permission.maskOf(permissions));
+  }
+
+  @Transactional
+  public void revoke(Sid sid, String objectType, long objectId, Permission... permissions) {
+    int mask = repository.findMaskForUpdate(sid, objectType, objectId);
+    setMask(sid, objectType, objectId, mask & ~Permission.maskOf(permissions));
+  }
+
+  @Scheduled(fixedDelayString = "${app.acl.poll-interval-ms:1000}")
+  public void pollOutbox() {
+    long cursor = outboxCursor;
+    List<Change> changes = new ArrayList<>();
+    List<Change> batch;
+    do {
+      batch = repository.findChangesAfter(cursor, POLL_BATCH);
+      changes.addAll(batch);
+      if (!batch.isEmpty()) {
+        cursor = batch.get(batch.size() - 1).id();
+      }
+    } while (batch.size() == POLL_BATCH);
+    changes.addAll(repository.findRecentChanges(cursor, LocalDateTime.now().minus(outboxLookback)));
+    reload(changes);
+    outboxCursor = cursor;
+  }
+
+  @Scheduled(cron = "${app.acl.outbox-purge-cron:0 0 4 * * *}")
+  public void purgeOutbox() {
+    repository.deleteChangesOlderThan(LocalDateTime.now().minus(outboxRetention));
+  }
+
+  private void setMask(Sid sid, String objectType, long objectId, int mask) {
+    repository.save(sid, objectType, objectId, mask);
+    repository.appendChange(sid, objectType, objectId);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        index.apply(List.of(new AclEntry(sid, objectType, objectId, mask)));
+      }
+    });
+  }
+
+  /**
+   * Re-reads the listed entries from the table rather than trusting the order of outbox rows: an
+   * entry that is gone is applied as mask 0.
+   */
+  private void reload(List<Change> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    Map<String, Set<Long>> objectsByType = new HashMap<>();
+    Map<ChangedKey, Integer> masks = new LinkedHashMap<>();
+    for (Change change : changes) {
+      objectsByType.computeIfAbsent(change.objectType(), type -> new HashSet<>()).add(change.objectId());
+      masks.put(new ChangedKey(change.sid(), change.objectType(), change.objectId()), 0);
+    }
+    objectsByType.forEach((objectType, objectIds) -> {
+      for (AclEntry entry : repository.findByObjects(objectType, objectIds)) {
+        masks.computeIfPresent(new ChangedKey(entry.sid(), objectType, entry.objectId()), (key, mask) -> entry.mask());
+      }
+    });
+    List<AclEntry> entries = new ArrayList<>(masks.size());
+    masks.forEach((key, mask) -> entries.add(new AclEntry(key.sid(), key.objectType(), key.objectId(), mask)));
+    index.apply(entries);
+  }
+
+  // Ids start at 1, and no entry is keyed on 0
+  private static long userId(Authentication authentication) {
+    return authentication != null && authentication.getPrincipal() instanceof AuthPrincipal principal
+        ? principal.id()
+        : 0;
+  }
+
+  private record ChangedKey(Sid sid, String objectType, long objectId) {}
+}
@@ -0,0 +1,112 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+/**
+ * Object id to permission mask, open-addressing over primitive arrays so nothing is boxed. A
+ * value of 0 means "absent" (an entry with no bits grants nothing), so no separate key marker is
+ * needed. Not thread-safe: {@link AclIndex} mutates a private copy and then publishes it.
+ */
+final class ObjectMaskMap {
+
+  private static final int MIN_CAPACITY = 8;
+
+  private long[] keys;
+  private int[] values;
+  private int size;
+
+  ObjectMaskMap() {
+    this(MIN_CAPACITY);
+  }
+
+  private ObjectMaskMap(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+  }
+
+  ObjectMaskMap copy() {
+    ObjectMaskMap copy = new ObjectMaskMap(0);
+    copy.keys = keys.clone();
+    copy.values = values.clone();
+    copy.size = size;
+    return copy;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int get(long key) {
+    int mask = keys.length - 1;
+    for (int slot = slot(key, mask); values[slot] != 0; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return values[slot];
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Sets {@code key} to {@code value}; 0 removes it.
+   */
+  void put(long key, int value) {
+    if (value == 0) {
+      remove(key);
+      return;
+    }
+    if ((size + 1) * 2 > keys.length) {
+      resize(keys.length * 2);
+    }
+    int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    while (values[slot] != 0) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
+  }
+
+  private void remove(long key) {
+    int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    while (values[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    if (values[slot] == 0) {
+      return;
+    }
+    size--;
+    // backward-shift the rest of the cluster instead of leaving a tombstone
+    int gap = slot;
+    for (int next = (gap + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+      int home = slot(keys[next], mask);
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        keys[gap] = keys[next];
+        values[gap] = values[next];
+        gap = next;
+      }
+    }
+    values[gap] = 0;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[capacity];
+    values = new int[capacity];
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != 0) {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private static int slot(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,53 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+import java.util.Locale;
+
+/**
+ * Permission bits, with the same values as Spring Security ACL's {@code BasePermission}.
+ */
+public enum Permission {
+  READ(1),
+  WRITE(2),
+  CREATE(4),
+  DELETE(8),
+  ADMINISTRATION(16);
+
+  private final int mask;
+
+  Permission(int mask) {
+    this.mask = mask;
+  }
+
+  public int mask() {
+    return mask;
+  }
+
+  public static int maskOf(Permission... permissions) {
+    int mask = 0;
+    for (Permission permission : permissions) {
+      mask |= permission.mask;
+    }
+    return mask;
+  }
+
+  /**
+   * Resolves the permission argument of {@code hasPermission}: a {@link Permission}, a mask, or
+   * names such as {@code 'read'} or {@code 'READ,WRITE'}.
+   */
+  public static int resolve(Object permission) {
+    if (permission instanceof Permission p) {
+      return p.mask;
+    }
+    if (permission instanceof Integer mask) {
+      return mask;
+    }
+    if (permission instanceof String names) {
+      int mask = 0;
+      for (String name : names.split(",")) {
+        mask |= valueOf(name.trim().toUpperCase(Locale.ROOT)).mask;
+      }
+      return mask;
+    }
+    throw new IllegalArgumentException("Unsupported permission " + permission);
+  }
+}
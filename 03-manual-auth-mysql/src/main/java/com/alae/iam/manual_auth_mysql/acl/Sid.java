@@ -0,0 +1,12 @@
+package com.alae.iam.manual_auth_mysql.acl;
+
+/**
+ * Who an ACL entry is for: one user, by id. Application users carry no authorities, so there are
+ * no role entries (see V12).
+ */
+public record Sid(String name) {
+
+  public static Sid user(long userId) {
+    return new Sid(Long.toString(userId));
+  }
+}
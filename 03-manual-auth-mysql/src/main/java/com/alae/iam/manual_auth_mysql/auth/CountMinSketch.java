@@ -0,0 +1,63 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed-size frequency sketch: {@code depth} rows of {@code width} counters, each key counted in one
+ * counter per row. The estimate is the smallest of those counters, so it never undercounts and
+ * overcounts only through collisions. Memory does not depend on the number of distinct keys.
+ */
+final class CountMinSketch {
+
+  private final int depth;
+  private final int width;
+  private final int mask;
+  private final AtomicIntegerArray counters;
+
+  /**
+   * @param width counters per row, a power of two
+   */
+  CountMinSketch(int depth, int width) {
+    if (depth < 1 || width < 2 || Integer.bitCount(width) != 1) {
+      throw new IllegalArgumentException("depth must be >= 1 and width a power of two");
+    }
+    this.depth = depth;
+    this.width = width;
+    this.mask = width - 1;
+    this.counters = new AtomicIntegerArray(depth * width);
+  }
+
+  /**
+   * Counts one occurrence of the key with this 64-bit hash and returns the new estimate.
+   */
+  int increment(long hash) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      int count = counters.incrementAndGet(row * width + ((h1 + row * h2) & mask));
+      estimate = Math.min(estimate, count);
+    }
+    return estimate;
+  }
+
+  int estimate(long hash) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters.get(row * width + ((h1 + row * h2) & mask)));
+    }
+    return estimate;
+  }
+
+  void clear() {
+    for (int i = 0; i < counters.length(); i++) {
+      counters.set(i, 0);
+    }
+  }
+
+  long sizeInBytes() {
+    return 4L * counters.length();
+  }
+}
@@ -0,0 +1,195 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import com.alae.iam.manual_auth_mysql.domain.UserChangeType;
+import com.alae.iam.manual_auth_mysql.repository.UserChangeOutboxRepository;
+import com.alae.iam.manual_auth_mysql.repository.UserChangeOutboxRepository.Change;
+import com.alae.iam.manual_auth_mysql.repository.UserStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Node-local cache of {@link CredentialRecord}s, indexed by id and by normalized username and
+ * email, so a cached login by either identifier, in any case, needs no database round trip.
+ *
+ * <p>Changes are recorded in {@code user_change_outbox} with {@link #userChanged}; every node polls
+ * the outbox every {@code app.credential-cache.poll-interval-ms} and evicts the users it lists, which
+ * bounds how long another node can keep accepting a locked account. Entries also expire after
+ * {@code app.credential-cache.max-age} as a backstop, and at most {@code app.credential-cache.max-size}
+ * are kept, least recently used first out.
+ *
+ * <p>A row read before an eviction must not be cached after it: every eviction bumps a counter,
+ * and a loaded row is only cached if the counter has not moved since the load started.
+ */
+@Component
+public class CredentialCache {
+
+  private static final int POLL_BATCH = 500;
+
+  private final UserStore userStore;
+  private final UserChangeOutboxRepository outboxRepository;
+  private final long maxAgeMillis;
+  private final Duration outboxLookback;
+  private final Duration outboxRetention;
+
+  // the three maps and the counter are guarded by lock
+  private final Object lock = new Object();
+  private final Map<Long, CredentialRecord> byId;
+  private final Map<String, Long> idsByUsername = new HashMap<>();
+  private final Map<String, Long> idsByEmail = new HashMap<>();
+  private long evictions;
+
+  private volatile long outboxCursor;
+
+  public CredentialCache(UserStore userStore,
+                         UserChangeOutboxRepository outboxRepository,
+                         @Value("${app.credential-cache.max-size:100000}") int maxSize,
+                         @Value("${app.credential-cache.max-age:5m}") Duration maxAge,
+                         @Value("${app.credential-cache.outbox-lookback:10s}") Duration outboxLookback,
+                         @Value("${app.credential-cache.outbox-retention:1d}") Duration outboxRetention) {
+    this.userStore = userStore;
+    this.outboxRepository = outboxRepository;
+    this.maxAgeMillis = maxAge.toMillis();
+    this.outboxLookback = outboxLookback;
+    this.outboxRetention = outboxRetention;
+    this.byId = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, CredentialRecord> eldest) {
+        if (size() <= maxSize) {
+          return false;
+        }
+        unindex(eldest.getValue());
+        return true;
+      }
+    };
+    // nothing is cached yet, so older changes are irrelevant to this node
+    this.outboxCursor = outboxRepository.latestId();
+  }
+
+  /**
+   * Resolves a username or email. A miss costs one query that probes both unique indexes (two with
+   * sharding: the user directory, then the owning shard).
+   */
+  public Optional<CredentialRecord> resolve(String usernameOrEmail) {
+    String normalized = Identifiers.normalize(usernameOrEmail);
+    long evictionsBeforeLoad;
+    synchronized (lock) {
+      Long id = idsByUsername.get(normalized);
+      if (id == null) {
+        id = idsByEmail.get(normalized);
+      }
+      CredentialRecord cached = id == null ? null : fresh(id);
+      if (cached != null) {
+        return Optional.of(cached);
+      }
+      evictionsBeforeLoad = evictions;
+    }
+    return userStore.findByNormalizedIdentifier(normalized).map(user -> put(user, evictionsBeforeLoad));
+  }
+
+  public Optional<CredentialRecord> get(long userId) {
+    long evictionsBeforeLoad;
+    synchronized (lock) {
+      CredentialRecord cached = fresh(userId);
+      if (cached != null) {
+        return Optional.of(cached);
+      }
+      evictionsBeforeLoad = evictions;
+    }
+    return userStore.findById(userId).map(user -> put(user, evictionsBeforeLoad));
+  }
+
+  /**
+   * Records a change to {@code userId} in the outbox, inside the caller's transaction, and evicts
+   * the local entry once that transaction commits.
+   */
+  public void userChanged(long userId, UserChangeType changeType) {
+    outboxRepository.append(userId, changeType);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        evict(userId);
+      }
+    });
+  }
+
+  public void evict(long userId) {
+    synchronized (lock) {
+      evictions++;
+      remove(userId);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.credential-cache.poll-interval-ms:1000}")
+  public void pollOutbox() {
+    long cursor = outboxCursor;
+    List<Change> changes;
+    do {
+      changes = outboxRepository.findAfter(cursor, POLL_BATCH);
+      for (Change change : changes) {
+        evict(change.userId());
+        cursor = change.id();
+      }
+    } while (changes.size() == POLL_BATCH);
+    outboxRepository.findRecent(cursor, LocalDateTime.now().minus(outboxLookback))
+        .forEach(change -> evict(change.userId()));
+    outboxCursor = cursor;
+  }
+
+  @Scheduled(cron = "${app.credential-cache.outbox-purge-cron:0 0 4 * * *}")
+  public void purgeOutbox() {
+    outboxRepository.deleteOlderThan(LocalDateTime.now().minus(outboxRetention));
+  }
+
+  // callers hold lock
+  private CredentialRecord fresh(long userId) {
+    CredentialRecord cached = byId.get(userId);
+    if (cached == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - cached.loadedAtMillis() >= maxAgeMillis) {
+      remove(userId);
+      return null;
+    }
+    return cached;
+  }
+
+  private CredentialRecord put(AppUser user, long evictionsBeforeLoad) {
+    CredentialRecord record = CredentialRecord.from(user, System.currentTimeMillis());
+    synchronized (lock) {
+      // an eviction since the load may be for this very row: serve it once, but do not keep it
+      if (evictions == evictionsBeforeLoad) {
+        remove(record.id());
+        byId.put(record.id(), record);
+        idsByUsername.put(user.getUsernameNormalized(), record.id());
+        idsByEmail.put(user.getEmailNormalized(), record.id());
+      }
+    }
+    return record;
+  }
+
+  // callers hold lock
+  private void remove(long userId) {
+    CredentialRecord removed = byId.remove(userId);
+    if (removed != null) {
+      unindex(removed);
+    }
+  }
+
+  private void unindex(CredentialRecord record) {
+    idsByUsername.remove(Identifiers.normalize(record.username()), record.id());
+    idsByEmail.remove(Identifiers.normalize(record.email()), record.id());
+  }
+}
@@ -0,0 +1,30 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * What a login needs to know about a user, detached from JPA so it can be cached.
+ */
+public record CredentialRecord(long id, String username, String email, String passwordHash,
+                               boolean enabled, boolean accountLocked, long lockedUntilMillis,
+                               long loadedAtMillis) {
+
+  /** No end: a manual lock, or no lock at all. */
+  public static final long NO_END = Long.MAX_VALUE;
+
+  public static CredentialRecord from(AppUser user, long loadedAtMillis) {
+    LocalDateTime lockedUntil = user.getLockedUntil();
+    long lockedUntilMillis = lockedUntil == null
+        ? NO_END
+        : lockedUntil.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    return new CredentialRecord(user.getId(), user.getUsername(), user.getEmail(), user.getPasswordHash(),
+        user.isEnabled(), user.isAccountLocked(), lockedUntilMillis, loadedAtMillis);
+  }
+
+  public boolean isLockedAt(long nowMillis) {
+    return accountLocked && nowMillis < lockedUntilMillis;
+  }
+}
@@ -1,8 +1,8 @@
 package com.alae.iam.manual_auth_mysql.auth;
 
-import com.alae.iam.manual_auth_mysql.domain.AppUser;
 import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
-import com.alae.iam.manual_auth_mysql.repository.AppUserRepository;
+import com.alae.iam.manual_auth_mysql.tracing.Span;
+import com.alae.iam.manual_auth_mysql.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.*;
 import org.springframework.security.core.Authentication;
@@ -17,8 +17,11 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CustomAuthenticationProvider implements AuthenticationProvider {
 
-  private final AppUserRepository userRepository;
+  private final CredentialCache credentialCache;
+  private final LoginAttemptTracker loginAttemptTracker;
   private final PasswordEncoder passwordEncoder;
+  private final PasswordRehasher passwordRehasher;
+  private final Tracer tracer;
 
   @Override
   public Authentication authenticate(Authentication authentication) throws AuthenticationException {
@@ -30,23 +33,40 @@ public class CustomAuthenticationProvider implements AuthenticationProvider {
 
     final String rawPassword = authentication.getCredentials().toString();
 
-    AppUser user = userRepository.findByUsername(usernameOrEmail)
-        .or(() -> userRepository.findByEmail(usernameOrEmail))
-        .orElseThrow(() -> new BadCredentialsException("Invalid credentials"));
+    CredentialRecord user;
+    try (Span span = tracer.span("auth.lookup")) {
+      user = credentialCache.resolve(usernameOrEmail).orElse(null);
+      span.attribute("auth.user_found", user != null);
+    }
+    if (user == null) {
+      throw new BadCredentialsException("Invalid credentials");
+    }
 
-    if (!user.isEnabled()) {
+    if (!user.enabled()) {
       throw new DisabledException("Account disabled");
     }
 
-    if (user.isAccountLocked()) {
+    // checked before the hash, so attempts against a locked account cost no BCrypt work
+    if (loginAttemptTracker.isLocked(user)) {
       throw new LockedException("Account locked");
     }
 
-    if (!passwordEncoder.matches(rawPassword, user.getPasswordHash())) {
+    boolean matches;
+    try (Span span = tracer.span("auth.password_match")) {
+      // includes the wait for hashing memory, see PasswordHashingGovernor
+      matches = passwordEncoder.matches(rawPassword, user.passwordHash());
+      span.attribute("auth.password_matches", matches);
+    }
+    if (!matches) {
+      loginAttemptTracker.recordFailure(user);
       throw new BadCredentialsException("Invalid credentials");
     }
+    loginAttemptTracker.recordSuccess(user);
+    try (Span span = tracer.span("auth.rehash")) {
+      passwordRehasher.rehashIfNeeded(user, rawPassword);
+    }
 
-    var principal = new AuthPrincipal(user.getId(), user.getUsername(), user.getEmail());
+    var principal = new AuthPrincipal(user.id(), user.username(), user.email());
 
     // never return the raw password
     return new UsernamePasswordAuthenticationToken(principal, null, java.util.Collections.emptyList());
@@ -0,0 +1,72 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Routes Argon2 work through a {@link PasswordHashingGovernor}. Encoding is charged the configured
+ * Argon2 memory cost; matching is charged the cost recorded in the stored hash ({@code m=} in KiB),
+ * so hashes made with older parameters are accounted correctly. BCrypt needs a few KB and runs
+ * ungoverned.
+ */
+public class GovernedPasswordEncoder implements PasswordEncoder {
+
+  private final PasswordEncoder delegate;
+  private final PasswordHashingGovernor governor;
+  private final int encodeCostMb;
+
+  /**
+   * @param delegate      the {@code DelegatingPasswordEncoder} that knows both formats
+   * @param encodeCostKib memory cost of the encoder new hashes are produced with
+   */
+  public GovernedPasswordEncoder(PasswordEncoder delegate, PasswordHashingGovernor governor, int encodeCostKib) {
+    this.delegate = delegate;
+    this.governor = governor;
+    this.encodeCostMb = toMegabytes(encodeCostKib);
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return governor.run(encodeCostMb, () -> delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    int costKib = argon2MemoryKib(encodedPassword);
+    if (costKib == 0) {
+      return delegate.matches(rawPassword, encodedPassword);
+    }
+    return governor.run(toMegabytes(costKib), () -> delegate.matches(rawPassword, encodedPassword));
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return delegate.upgradeEncoding(encodedPassword);
+  }
+
+  // "{argon2}$argon2id$v=19$m=65536,t=3,p=1$..." -> 65536; 0 for anything that is not Argon2
+  static int argon2MemoryKib(String encodedPassword) {
+    if (encodedPassword == null || !encodedPassword.contains("$argon2")) {
+      return 0;
+    }
+    int start = encodedPassword.indexOf("$m=");
+    if (start < 0) {
+      start = encodedPassword.indexOf(",m=");
+    }
+    if (start < 0) {
+      return 0;
+    }
+    int kib = 0;
+    for (int i = start + 3; i < encodedPassword.length(); i++) {
+      char c = encodedPassword.charAt(i);
+      if (c < '0' || c > '9' || kib > Integer.MAX_VALUE / 10) {
+        break;
+      }
+      kib = kib * 10 + (c - '0');
+    }
+    return kib;
+  }
+
+  private static int toMegabytes(int kib) {
+    return Math.max(1, (kib + 1023) / 1024);
+  }
+}
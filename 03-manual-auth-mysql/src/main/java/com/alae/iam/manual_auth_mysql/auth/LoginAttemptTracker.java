@@ -0,0 +1,187 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import com.alae.iam.manual_auth_mysql.domain.UserChangeType;
+import com.alae.iam.manual_auth_mysql.repository.UserStore;
+import com.alae.iam.manual_auth_mysql.repository.UserStore.LockUpdate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Failed-login counters per user id, kept in memory so a credential-stuffing run costs no writes.
+ * After {@code app.lockout.max-failures} failures within {@code app.lockout.window} the user is
+ * locked for {@code app.lockout.duration}: at once on this node, and in {@code app_users} (plus
+ * the outbox, for the other nodes) with the next batched flush.
+ */
+@Component
+public class LoginAttemptTracker {
+
+  private static final int SLOTS = 16;
+
+  private final CredentialCache credentialCache;
+  private final UserStore userStore;
+  private final TransactionTemplate transactionTemplate;
+  private final int maxFailures;
+  private final long slotMillis;
+  private final Duration lockDuration;
+
+  private final Map<Long, FailureWindow> windows = new ConcurrentHashMap<>();
+  // locks decided on this node, in effect before and after they reach the database
+  private final Map<Long, Long> localLocks = new ConcurrentHashMap<>();
+  private final Map<Long, LockChange> pendingWrites = new ConcurrentHashMap<>();
+
+  public LoginAttemptTracker(CredentialCache credentialCache,
+                             UserStore userStore,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${app.lockout.max-failures:5}") int maxFailures,
+                             @Value("${app.lockout.window:15m}") Duration window,
+                             @Value("${app.lockout.duration:15m}") Duration lockDuration) {
+    this.credentialCache = credentialCache;
+    this.userStore = userStore;
+    this.transactionTemplate = transactionTemplate;
+    this.maxFailures = maxFailures;
+    this.slotMillis = Math.max(1, window.toMillis() / SLOTS);
+    this.lockDuration = lockDuration;
+  }
+
+  /**
+   * Whether {@code user} must be refused before its password is even checked.
+   */
+  public boolean isLocked(CredentialRecord user) {
+    long now = System.currentTimeMillis();
+    if (user.isLockedAt(now)) {
+      return true;
+    }
+    Long until = localLocks.get(user.id());
+    if (until == null) {
+      return false;
+    }
+    if (now < until) {
+      return true;
+    }
+    localLocks.remove(user.id(), until);
+    return false;
+  }
+
+  public void recordFailure(CredentialRecord user) {
+    long now = System.currentTimeMillis();
+    FailureWindow window = windows.computeIfAbsent(user.id(), id -> new FailureWindow());
+    if (window.increment(now / slotMillis) >= maxFailures) {
+      long until = now + lockDuration.toMillis();
+      localLocks.put(user.id(), until);
+      pendingWrites.put(user.id(), new LockChange(true, until));
+      windows.remove(user.id());
+    }
+  }
+
+  public void recordSuccess(CredentialRecord user) {
+    windows.remove(user.id());
+    // an automatic lock that has run out is still set in the row; clear it lazily
+    if (user.accountLocked() && user.lockedUntilMillis() != CredentialRecord.NO_END) {
+      pendingWrites.put(user.id(), new LockChange(false, 0));
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.lockout.flush-interval-ms:1000}")
+  public void flush() {
+    if (pendingWrites.isEmpty()) {
+      return;
+    }
+    List<LockUpdate> rows = new ArrayList<>();
+    Map<Long, UserChangeType> changes = new HashMap<>();
+    for (Long userId : pendingWrites.keySet()) {
+      LockChange change = pendingWrites.remove(userId);
+      if (change == null) {
+        continue;
+      }
+      Timestamp lockedUntil = change.locked()
+          ? Timestamp.valueOf(LocalDateTime.ofInstant(Instant.ofEpochMilli(change.untilMillis()), ZoneId.systemDefault()))
+          : null;
+      rows.add(new LockUpdate(userId, change.locked(), lockedUntil));
+      changes.put(userId, change.locked() ? UserChangeType.LOCKED : UserChangeType.UNLOCKED);
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        userStore.updateLocks(rows);
+        changes.forEach(credentialCache::userChanged);
+      });
+    } catch (RuntimeException e) {
+      // retry with the next flush unless a newer change for the user has been queued meanwhile
+      for (LockUpdate row : rows) {
+        pendingWrites.putIfAbsent(row.userId(), new LockChange(row.locked(),
+            row.lockedUntil() == null ? 0 : row.lockedUntil().getTime()));
+      }
+      throw e;
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.lockout.sweep-interval-ms:60000}")
+  public void sweep() {
+    long now = System.currentTimeMillis();
+    long oldestLiveSlot = now / slotMillis - SLOTS + 1;
+    windows.values().removeIf(window -> window.newestSlot() < oldestLiveSlot);
+    localLocks.values().removeIf(until -> until <= now);
+  }
+
+  /**
+   * Sliding window of {@value #SLOTS} time slots. Each cell packs the slot number it counts for
+   * (high bits) with the count (low {@value #COUNT_BITS} bits), so resetting a stale slot and
+   * counting into it is one CAS: a concurrent increment can never be wiped. No locks.
+   */
+  private static final class FailureWindow {
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray cells = new AtomicLongArray(SLOTS);
+
+    int increment(long slotNumber) {
+      int index = (int) (slotNumber % SLOTS);
+      long cell;
+      long updated;
+      do {
+        cell = cells.get(index);
+        long cellSlot = cell >>> COUNT_BITS;
+        // a caller with a slightly older clock counts into the newer slot rather than reset it
+        long slot = Math.max(cellSlot, slotNumber);
+        long count = slot == cellSlot ? Math.min((cell & COUNT_MASK) + 1, COUNT_MASK) : 1;
+        updated = slot << COUNT_BITS | count;
+      } while (!cells.compareAndSet(index, cell, updated));
+      return total(slotNumber);
+    }
+
+    int total(long slotNumber) {
+      int total = 0;
+      for (int i = 0; i < SLOTS; i++) {
+        long cell = cells.get(i);
+        if ((cell >>> COUNT_BITS) > slotNumber - SLOTS) {
+          total += (int) (cell & COUNT_MASK);
+        }
+      }
+      return total;
+    }
+
+    long newestSlot() {
+      long newest = -1;
+      for (int i = 0; i < SLOTS; i++) {
+        newest = Math.max(newest, cells.get(i) >>> COUNT_BITS);
+      }
+      return newest;
+    }
+  }
+
+  private record LockChange(boolean locked, long untilMillis) {}
+}
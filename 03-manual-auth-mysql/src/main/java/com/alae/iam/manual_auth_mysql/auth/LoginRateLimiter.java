@@ -0,0 +1,157 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Login attempt rates per client IP, per identifier and per (IP, identifier) pair, each kept in a
+ * pair of {@link CountMinSketch}es (current and previous window). The rate over the last window is
+ * approximated as {@code current + previous * (share of the previous window still inside it)}.
+ * Memory is fixed by the sketch size, however many IPs or identifiers an attacker cycles through.
+ */
+@Component
+public class LoginRateLimiter {
+
+  public enum Dimension { IP, IDENTIFIER, PAIR }
+
+  private final boolean enabled;
+  private final long windowMillis;
+  private final Map<Dimension, RateSketch> sketches = new EnumMap<>(Dimension.class);
+  private final Map<Dimension, Counter> rejected = new EnumMap<>(Dimension.class);
+  // random per process, so colliding keys cannot be precomputed to throttle someone else
+  private final long seed = new SecureRandom().nextLong();
+
+  public LoginRateLimiter(@Value("${app.rate-limit.enabled:true}") boolean enabled,
+                          @Value("${app.rate-limit.window:1m}") Duration window,
+                          @Value("${app.rate-limit.ip-limit:100}") int ipLimit,
+                          @Value("${app.rate-limit.identifier-limit:20}") int identifierLimit,
+                          @Value("${app.rate-limit.pair-limit:10}") int pairLimit,
+                          @Value("${app.rate-limit.sketch-depth:4}") int depth,
+                          @Value("${app.rate-limit.sketch-width:32768}") int width,
+                          MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.windowMillis = window.toMillis();
+    sketches.put(Dimension.IP, new RateSketch(ipLimit, depth, width));
+    sketches.put(Dimension.IDENTIFIER, new RateSketch(identifierLimit, depth, width));
+    sketches.put(Dimension.PAIR, new RateSketch(pairLimit, depth, width));
+    for (Dimension dimension : Dimension.values()) {
+      rejected.put(dimension, Counter.builder("auth.login.throttled")
+          .description("Login attempts rejected by the rate limiter before authentication")
+          .tag("dimension", dimension.name().toLowerCase(Locale.ROOT))
+          .register(meterRegistry));
+    }
+    Gauge.builder("auth.login.rate_limit.memory", this, LoginRateLimiter::sizeInBytes)
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Duration window() {
+    return Duration.ofMillis(windowMillis);
+  }
+
+  /**
+   * Counts one attempt and returns the first dimension over its limit, or {@code null} if the
+   * attempt may proceed. Rejected attempts count too, so a client that keeps trying stays throttled.
+   *
+   * @param identifier the submitted username or email, or {@code null} if the body had none
+   */
+  public Dimension tryAcquire(String clientIp, String identifier) {
+    long now = System.currentTimeMillis();
+    long ipHash = hash(seed, clientIp);
+    Dimension over = sketches.get(Dimension.IP).record(ipHash, now) ? Dimension.IP : null;
+    if (identifier != null) {
+      String normalized = Identifiers.normalize(identifier.trim());
+      long identifierHash = hash(~seed, normalized);
+      if (sketches.get(Dimension.IDENTIFIER).record(identifierHash, now) && over == null) {
+        over = Dimension.IDENTIFIER;
+      }
+      if (sketches.get(Dimension.PAIR).record(hash(ipHash, normalized), now) && over == null) {
+        over = Dimension.PAIR;
+      }
+    }
+    if (over != null) {
+      rejected.get(over).increment();
+    }
+    return over;
+  }
+
+  private long sizeInBytes() {
+    return sketches.values().stream().mapToLong(RateSketch::sizeInBytes).sum();
+  }
+
+  // seeded FNV-1a over the chars, then the murmur3 finalizer to spread the bits over both halves
+  static long hash(long seed, String key) {
+    long h = 0xcbf29ce484222325L ^ seed;
+    for (int i = 0; i < key.length(); i++) {
+      h ^= key.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private final class RateSketch {
+
+    private final int limit;
+    private final CountMinSketch[] slots;
+    private volatile long currentWindow;
+
+    RateSketch(int limit, int depth, int width) {
+      this.limit = limit;
+      this.slots = new CountMinSketch[] {new CountMinSketch(depth, width), new CountMinSketch(depth, width)};
+      this.currentWindow = System.currentTimeMillis() / windowMillis;
+    }
+
+    /**
+     * Counts the key and returns whether its rate is now over the limit.
+     */
+    boolean record(long hash, long now) {
+      long window = now / windowMillis;
+      if (window != currentWindow) {
+        rotate(window);
+      }
+      int current = slots[(int) (window & 1)].increment(hash);
+      if (current > limit) {
+        return true;
+      }
+      double previousShare = 1.0 - (double) (now % windowMillis) / windowMillis;
+      int previous = slots[(int) ((window - 1) & 1)].estimate(hash);
+      return current + previous * previousShare > limit;
+    }
+
+    private synchronized void rotate(long window) {
+      long last = currentWindow;
+      if (window <= last) {
+        return;
+      }
+      // the slot for this window still holds window - 2; after a gap of two or more, both are stale
+      slots[(int) (window & 1)].clear();
+      if (window - last > 1) {
+        slots[(int) ((window - 1) & 1)].clear();
+      }
+      currentWindow = window;
+    }
+
+    long sizeInBytes() {
+      return slots[0].sizeInBytes() + slots[1].sizeInBytes();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import com.alae.iam.manual_auth_mysql.exception.auth.HashingOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Admits memory-hard hash operations against a budget in megabytes, so that N concurrent logins
+ * cannot allocate N x the Argon2 memory cost at once. Operations that do not fit wait in FIFO
+ * order for up to {@code maxWait}; once {@code maxQueue} are already waiting, new ones fail at once
+ * with {@link HashingOverloadedException}, which the API turns into a 503. Every acquisition goes
+ * through the fair semaphore's timed {@code tryAcquire}, which never barges ahead of a waiter.
+ */
+public class PasswordHashingGovernor {
+
+  private final int budgetMb;
+  private final int maxQueue;
+  private final long maxWaitNanos;
+  private final Semaphore permits;
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final Counter queueFull;
+  private final Counter timedOut;
+
+  public PasswordHashingGovernor(int budgetMb, int maxQueue, Duration maxWait, MeterRegistry meterRegistry) {
+    if (budgetMb < 1) {
+      throw new IllegalArgumentException("Hashing memory budget must be at least 1 MB");
+    }
+    this.budgetMb = budgetMb;
+    this.maxQueue = maxQueue;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.permits = new Semaphore(budgetMb, true);
+    Gauge.builder("auth.hashing.queue", waiting, AtomicInteger::get)
+        .description("Hash operations waiting for memory")
+        .register(meterRegistry);
+    Gauge.builder("auth.hashing.memory.in_use", permits, p -> this.budgetMb - p.availablePermits())
+        .baseUnit("megabytes")
+        .register(meterRegistry);
+    Gauge.builder("auth.hashing.memory.budget", this, g -> g.budgetMb)
+        .baseUnit("megabytes")
+        .register(meterRegistry);
+    this.queueFull = Counter.builder("auth.hashing.rejected").tag("reason", "queue_full").register(meterRegistry);
+    this.timedOut = Counter.builder("auth.hashing.rejected").tag("reason", "timeout").register(meterRegistry);
+  }
+
+  /**
+   * Sizes the budget as a share of the maximum heap.
+   */
+  public static int budgetFromHeap(double heapFraction) {
+    long maxHeapMb = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+    return (int) Math.max(1, maxHeapMb * heapFraction);
+  }
+
+  public int budgetMb() {
+    return budgetMb;
+  }
+
+  public int queueDepth() {
+    return waiting.get();
+  }
+
+  /**
+   * Runs {@code operation} once {@code megabytes} of the budget are free. An operation larger
+   * than the whole budget runs alone.
+   */
+  public <T> T run(int megabytes, Supplier<T> operation) {
+    int cost = Math.min(Math.max(megabytes, 1), budgetMb);
+    // a zero timeout still queues behind earlier waiters, unlike the untimed tryAcquire
+    if (!tryAcquire(cost, 0)) {
+      if (waiting.incrementAndGet() > maxQueue) {
+        waiting.decrementAndGet();
+        queueFull.increment();
+        throw new HashingOverloadedException("Too many password hash operations queued");
+      }
+      try {
+        if (!tryAcquire(cost, maxWaitNanos)) {
+          timedOut.increment();
+          throw new HashingOverloadedException("Timed out waiting to hash a password");
+        }
+      } finally {
+        waiting.decrementAndGet();
+      }
+    }
+    try {
+      return operation.get();
+    } finally {
+      permits.release(cost);
+    }
+  }
+
+  private boolean tryAcquire(int cost, long timeoutNanos) {
+    try {
+      return permits.tryAcquire(cost, timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HashingOverloadedException("Interrupted while waiting to hash a password");
+    }
+  }
+}
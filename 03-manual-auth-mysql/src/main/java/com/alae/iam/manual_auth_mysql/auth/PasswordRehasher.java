@@ -0,0 +1,81 @@
+package com.alae.iam.manual_auth_mysql.auth;
+
+import com.alae.iam.manual_auth_mysql.domain.UserChangeType;
+import com.alae.iam.manual_auth_mysql.exception.auth.HashingOverloadedException;
+import com.alae.iam.manual_auth_mysql.repository.UserStore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves a user to the current hash format (Argon2) on a successful login, while the raw password
+ * is at hand. Users who never log in keep their BCrypt hash, which still verifies.
+ *
+ * <p>The new hash is computed on a background thread, so the login response does not wait for a
+ * second memory-hard hash. At most {@code app.hashing.rehash-queue} upgrades wait; beyond that they
+ * are dropped and happen on a later login.
+ */
+@Component
+public class PasswordRehasher {
+
+  private final PasswordEncoder passwordEncoder;
+  private final CredentialCache credentialCache;
+  private final UserStore userStore;
+  private final TransactionTemplate transactionTemplate;
+  private final ThreadPoolExecutor executor;
+
+  public PasswordRehasher(PasswordEncoder passwordEncoder,
+                          CredentialCache credentialCache,
+                          UserStore userStore,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${app.hashing.rehash-queue:256}") int queueCapacity) {
+    this.passwordEncoder = passwordEncoder;
+    this.credentialCache = credentialCache;
+    this.userStore = userStore;
+    this.transactionTemplate = transactionTemplate;
+    this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+        runnable -> {
+          Thread thread = new Thread(runnable, "password-rehash");
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.DiscardPolicy());
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public void rehashIfNeeded(CredentialRecord user, String rawPassword) {
+    if (passwordEncoder.upgradeEncoding(user.passwordHash())) {
+      executor.execute(() -> rehash(user, rawPassword));
+    }
+  }
+
+  private void rehash(CredentialRecord user, String rawPassword) {
+    String newHash;
+    try {
+      newHash = passwordEncoder.encode(rawPassword);
+    } catch (HashingOverloadedException e) {
+      return; // the login itself succeeded; migrate on a quieter login
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        // conditional on the old hash, so a concurrent password change is never overwritten
+        if (userStore.updatePasswordHash(user.id(), user.passwordHash(), newHash)) {
+          credentialCache.userChanged(user.id(), UserChangeType.UPDATED);
+        }
+      });
+    } catch (DataAccessException e) {
+      // best effort as well: the old hash keeps working
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.alae.iam.manual_auth_mysql.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Refuses {@code app.security.context-holder=scoped-value} on a build without
+ * {@code ScopedValueSecurityContextConfig}, which lives in {@code src/main/java25} and is compiled by
+ * the {@code jdk25} Maven profile only. Runs once the configuration files are read, before any bean
+ * is created; without it the property would be silently ignored.
+ */
+public class ContextHolderCheck implements EnvironmentPostProcessor {
+
+  static final String PROPERTY = "app.security.context-holder";
+  static final String SCOPED_VALUE_CONFIG = "com.alae.iam.manual_auth_mysql.config.ScopedValueSecurityContextConfig";
+
+  @Override
+  public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+    if ("scoped-value".equals(environment.getProperty(PROPERTY))
+        && !ClassUtils.isPresent(SCOPED_VALUE_CONFIG, application.getClassLoader())) {
+      throw new IllegalStateException(PROPERTY + "=scoped-value needs a build on JDK 25 or later: the jdk25"
+          + " Maven profile adds src/main/java25, which holds the scoped-value strategy. Rebuild on JDK 25,"
+          + " or set " + PROPERTY + "=thread-local.");
+    }
+  }
+}
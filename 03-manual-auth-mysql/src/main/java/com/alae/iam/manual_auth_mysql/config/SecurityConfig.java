@@ -1,46 +1,112 @@
 package com.alae.iam.manual_auth_mysql.config;
 
+import com.alae.iam.manual_auth_mysql.acl.AclPermissionEvaluator;
+import com.alae.iam.manual_auth_mysql.acl.AclService;
+import com.alae.iam.manual_auth_mysql.auth.CredentialCache;
 import com.alae.iam.manual_auth_mysql.auth.CustomAuthenticationProvider;
+import com.alae.iam.manual_auth_mysql.auth.GovernedPasswordEncoder;
+import com.alae.iam.manual_auth_mysql.auth.LoginAttemptTracker;
+import com.alae.iam.manual_auth_mysql.auth.LoginRateLimiter;
+import com.alae.iam.manual_auth_mysql.auth.PasswordHashingGovernor;
+import com.alae.iam.manual_auth_mysql.config.security.ContextCookieRenewalFilter;
+import com.alae.iam.manual_auth_mysql.config.security.ContextCookieSealer;
 import com.alae.iam.manual_auth_mysql.config.security.CustomAccessDeniedHandler;
 import com.alae.iam.manual_auth_mysql.config.security.CustomAuthenticationEntryPoint;
+import com.alae.iam.manual_auth_mysql.config.security.EncryptedCookieSecurityContextRepository;
+import com.alae.iam.manual_auth_mysql.config.security.LoginRateLimitFilter;
+import com.alae.iam.manual_auth_mysql.config.security.ScimBearerTokenFilter;
+import com.alae.iam.manual_auth_mysql.exception.ProblemWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.alae.iam.manual_auth_mysql.domain.AppUser;
-import com.alae.iam.manual_auth_mysql.repository.AppUserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Lazy;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
+@EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+  /**
+   * {@code /actuator/health} is public; every other actuator endpoint needs {@code ROLE_ADMIN}.
+   * Application users carry no roles, so that is only the operator account of
+   * {@code app.management.username}/{@code password}, over HTTP Basic. Without a password the
+   * account does not exist and only health is reachable. The account has its own BCrypt encoder,
+   * outside the {@link PasswordHashingGovernor}: anonymous Basic attempts here, including the dummy
+   * hash run for unknown usernames, cannot use up the Argon2 budget that logins depend on.
+   */
   @Bean
-  @Lazy
-  public CustomAuthenticationProvider customAuthenticationProvider(AppUserRepository userRepository, PasswordEncoder passwordEncoder) {
-    return new CustomAuthenticationProvider(userRepository, passwordEncoder);
+  @Order(1)
+  public SecurityFilterChain actuatorFilterChain(HttpSecurity http,
+                                                 @Value("${app.management.username:admin}") String username,
+                                                 @Value("${app.management.password:}") String password) throws Exception {
+    PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    InMemoryUserDetailsManager operators = new InMemoryUserDetailsManager();
+    if (!password.isEmpty()) {
+      operators.createUser(User.withUsername(username).password(passwordEncoder.encode(password)).roles("ADMIN").build());
+    }
+    DaoAuthenticationProvider provider = new DaoAuthenticationProvider(operators);
+    provider.setPasswordEncoder(passwordEncoder);
+    http
+      .securityMatcher("/actuator/**")
+      .csrf(AbstractHttpConfigurer::disable)
+      .sessionManagement(s -> s.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+      .authenticationManager(new ProviderManager(provider))
+      .httpBasic(Customizer.withDefaults())
+      .authorizeHttpRequests(authz -> authz
+        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+        .anyRequest().hasRole("ADMIN")
+      );
+    return http.build();
   }
 
   @Bean
   public SecurityFilterChain securityFilterChain(HttpSecurity http,
                                                CustomAuthenticationProvider customAuthenticationProvider,
                                                CustomAccessDeniedHandler accessDeniedHandler,
-                                               CustomAuthenticationEntryPoint authenticationEntryPoint) throws Exception {
+                                               CustomAuthenticationEntryPoint authenticationEntryPoint,
+                                               SecurityContextRepository securityContextRepository,
+                                               ObjectProvider<EncryptedCookieSecurityContextRepository> cookieRepository,
+                                               LoginRateLimiter loginRateLimiter,
+                                               ProblemWriter problemWriter,
+                                               ObjectMapper objectMapper,
+                                               @Value("${app.scim.token:}") String scimToken) throws Exception {
+    boolean cookieStore = cookieRepository.getIfAvailable() != null;
     http
       .formLogin(AbstractHttpConfigurer::disable)
       .httpBasic(AbstractHttpConfigurer::disable)
       .csrf(AbstractHttpConfigurer::disable) // learning mode (enable later)
-      .sessionManagement(s -> s.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED))
+      .sessionManagement(s -> s.sessionCreationPolicy(cookieStore ? SessionCreationPolicy.STATELESS : SessionCreationPolicy.IF_REQUIRED))
       .exceptionHandling(e -> e
               .authenticationEntryPoint(authenticationEntryPoint)
               .accessDeniedHandler(accessDeniedHandler)
@@ -50,14 +116,47 @@ public class SecurityConfig {
         .requestMatchers("/api/auth/me").authenticated()
         .anyRequest().permitAll()
       )
-      .securityContext(context -> context.securityContextRepository(securityContextRepository()));
+      .securityContext(context -> context.securityContextRepository(securityContextRepository));
+    // ahead of everything else, so a throttled attempt costs no context lookup either
+    http.addFilterBefore(new LoginRateLimitFilter(loginRateLimiter, problemWriter, objectMapper.getFactory()),
+      SecurityContextHolderFilter.class);
+    http.addFilterBefore(new ScimBearerTokenFilter(scimToken), SecurityContextHolderFilter.class);
+    cookieRepository.ifAvailable(repository ->
+      http.addFilterAfter(new ContextCookieRenewalFilter(repository), SecurityContextHolderFilter.class));
 
     return http.build();
   }
 
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder(); // keep in sync with test data
+  public PasswordHashingGovernor passwordHashingGovernor(
+      @Value("${app.hashing.memory-budget-mb:0}") int memoryBudgetMb,
+      @Value("${app.hashing.heap-fraction:0.25}") double heapFraction,
+      @Value("${app.hashing.max-queue:64}") int maxQueue,
+      @Value("${app.hashing.max-wait:2s}") Duration maxWait,
+      MeterRegistry meterRegistry) {
+    int budget = memoryBudgetMb > 0 ? memoryBudgetMb : PasswordHashingGovernor.budgetFromHeap(heapFraction);
+    return new PasswordHashingGovernor(budget, maxQueue, maxWait, meterRegistry);
+  }
+
+  @Bean
+  public PasswordEncoder passwordEncoder(PasswordHashingGovernor governor,
+                                         @Value("${app.hashing.argon2.memory-kib:65536}") int memoryKib,
+                                         @Value("${app.hashing.argon2.iterations:3}") int iterations,
+                                         @Value("${app.hashing.argon2.parallelism:1}") int parallelism) {
+    PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+    PasswordEncoder argon2 = new Argon2PasswordEncoder(16, 32, parallelism, memoryKib, iterations);
+    DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("argon2", Map.of("argon2", argon2, "bcrypt", bcrypt));
+    // hashes stored before the switch are plain "$2a$..." BCrypt without an {id} prefix
+    delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+    return new GovernedPasswordEncoder(delegating, governor, memoryKib);
+  }
+
+  // static: method security is set up early, before this configuration class is instantiated
+  @Bean
+  static MethodSecurityExpressionHandler methodSecurityExpressionHandler(ObjectProvider<AclService> aclService) {
+    DefaultMethodSecurityExpressionHandler handler = new DefaultMethodSecurityExpressionHandler();
+    handler.setPermissionEvaluator(new AclPermissionEvaluator(aclService));
+    return handler;
   }
 
   @Bean
@@ -66,7 +165,24 @@ public class SecurityConfig {
   }
 
   @Bean
+  @ConditionalOnProperty(name = "app.security.context-store", havingValue = "session", matchIfMissing = true)
   public SecurityContextRepository securityContextRepository() {
     return new HttpSessionSecurityContextRepository();
   }
+
+  @Bean
+  @ConditionalOnProperty(name = "app.security.context-store", havingValue = "cookie")
+  public EncryptedCookieSecurityContextRepository encryptedCookieSecurityContextRepository(
+      CredentialCache credentialCache,
+      LoginAttemptTracker loginAttemptTracker,
+      @Value("${app.security.context-cookie.keys}") List<String> keys,
+      @Value("${app.security.context-cookie.current-key}") String currentKey,
+      @Value("${app.security.context-cookie.name:AUTH}") String cookieName,
+      @Value("${app.security.context-cookie.max-age:30m}") Duration maxAge,
+      @Value("${app.security.context-cookie.renew-after:5m}") Duration renewAfter,
+      @Value("${app.security.context-cookie.max-lifetime:12h}") Duration maxLifetime,
+      @Value("${app.security.context-cookie.secure:true}") boolean secure) {
+    return new EncryptedCookieSecurityContextRepository(new ContextCookieSealer(keys, currentKey), credentialCache,
+        loginAttemptTracker, cookieName, maxAge, renewAfter, maxLifetime, secure);
+  }
 }
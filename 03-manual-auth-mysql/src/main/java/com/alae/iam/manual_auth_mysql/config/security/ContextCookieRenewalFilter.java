@@ -0,0 +1,26 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Slides the context cookie forward before the request is handled, while headers can still be set.
+ */
+@RequiredArgsConstructor
+public class ContextCookieRenewalFilter extends OncePerRequestFilter {
+
+    private final EncryptedCookieSecurityContextRepository repository;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        repository.renewIfDue(request, response);
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,166 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Seals an {@link AuthPrincipal}, the time it logged in and its validity window into a cookie value
+ * {@code <kid>.<base64url(iv | AES-GCM ciphertext | tag)>}. The key id is bound as associated data.
+ * Values sealed with any configured key open, so a new key can become current while cookies issued
+ * under the old one are still in circulation.
+ */
+public class ContextCookieSealer {
+
+    // 2 added the login time; cookies of version 1 no longer open and their users log in again
+    private static final byte VERSION = 2;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(ContextCookieSealer::newCipher);
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private final String currentKeyId;
+
+    /**
+     * @param keys         {@code <kid>:<base64 key>} entries, kid made of letters and digits, key 128 or 256 bits
+     * @param currentKeyId the key new cookies are sealed with
+     */
+    public ContextCookieSealer(List<String> keys, String currentKeyId) {
+        for (String entry : keys) {
+            int separator = entry.indexOf(':');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Context cookie key must be <kid>:<base64 key>");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            if (!keyId.chars().allMatch(Character::isLetterOrDigit)) {
+                throw new IllegalArgumentException("Context cookie key id must be alphanumeric: " + keyId);
+            }
+            byte[] secret = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            if (secret.length != 16 && secret.length != 32) {
+                throw new IllegalArgumentException("Context cookie key " + keyId + " must be 128 or 256 bits");
+            }
+            this.keys.put(keyId, new SecretKeySpec(secret, "AES"));
+        }
+        if (!this.keys.containsKey(currentKeyId)) {
+            throw new IllegalArgumentException("Current context cookie key " + currentKeyId + " is not configured");
+        }
+        this.currentKeyId = currentKeyId;
+    }
+
+    public String currentKeyId() {
+        return currentKeyId;
+    }
+
+    public String seal(AuthPrincipal principal, Instant authenticatedAt, Instant issuedAt, Instant expiresAt) {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, keys.get(currentKeyId), new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(currentKeyId.getBytes(StandardCharsets.US_ASCII));
+            byte[] plaintext = encode(principal, authenticatedAt, issuedAt, expiresAt);
+            byte[] sealed = new byte[IV_BYTES + cipher.getOutputSize(plaintext.length)];
+            System.arraycopy(iv, 0, sealed, 0, IV_BYTES);
+            cipher.doFinal(plaintext, 0, plaintext.length, sealed, IV_BYTES);
+            return currentKeyId + "." + ENCODER.encodeToString(sealed);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not seal security context", e);
+        }
+    }
+
+    /**
+     * Empty when the value is malformed, names an unknown key or fails authentication. Expiry is
+     * left to the caller.
+     */
+    public Optional<SealedContext> open(String value) {
+        int separator = value.indexOf('.');
+        if (separator < 1) {
+            return Optional.empty();
+        }
+        String keyId = value.substring(0, separator);
+        SecretKeySpec key = keys.get(keyId);
+        if (key == null) {
+            return Optional.empty();
+        }
+        try {
+            byte[] sealed = DECODER.decode(value.substring(separator + 1));
+            if (sealed.length < IV_BYTES + TAG_BITS / 8) {
+                return Optional.empty();
+            }
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+            cipher.updateAAD(keyId.getBytes(StandardCharsets.US_ASCII));
+            byte[] plaintext = cipher.doFinal(sealed, IV_BYTES, sealed.length - IV_BYTES);
+            return decode(plaintext, keyId);
+        } catch (IllegalArgumentException | AEADBadTagException e) {
+            return Optional.empty();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not open security context", e);
+        }
+    }
+
+    private static byte[] encode(AuthPrincipal principal, Instant authenticatedAt, Instant issuedAt, Instant expiresAt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(principal.id());
+            out.writeLong(authenticatedAt.getEpochSecond());
+            out.writeLong(issuedAt.getEpochSecond());
+            out.writeLong(expiresAt.getEpochSecond());
+            out.writeUTF(principal.username());
+            out.writeUTF(principal.email() == null ? "" : principal.email());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Optional<SealedContext> decode(byte[] plaintext, String keyId) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plaintext))) {
+            if (in.readByte() != VERSION) {
+                return Optional.empty();
+            }
+            long id = in.readLong();
+            Instant authenticatedAt = Instant.ofEpochSecond(in.readLong());
+            Instant issuedAt = Instant.ofEpochSecond(in.readLong());
+            Instant expiresAt = Instant.ofEpochSecond(in.readLong());
+            String username = in.readUTF();
+            String email = in.readUTF();
+            AuthPrincipal principal = new AuthPrincipal(id, username, email.isEmpty() ? null : email);
+            return Optional.of(new SealedContext(principal, authenticatedAt, issuedAt, expiresAt, keyId));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    }
+
+    public record SealedContext(AuthPrincipal principal, Instant authenticatedAt, Instant issuedAt, Instant expiresAt,
+                                String keyId) {}
+}
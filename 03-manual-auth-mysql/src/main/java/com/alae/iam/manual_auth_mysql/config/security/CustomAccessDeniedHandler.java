@@ -1,42 +1,26 @@
 package com.alae.iam.manual_auth_mysql.config.security;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.alae.iam.manual_auth_mysql.exception.ProblemTemplate;
+import com.alae.iam.manual_auth_mysql.exception.ProblemWriter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ProblemDetail;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.web.access.AccessDeniedHandler;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.net.URI;
-import java.time.Instant;
 
 @Component
 @RequiredArgsConstructor
 public class CustomAccessDeniedHandler implements AccessDeniedHandler {
 
-    private final ObjectMapper objectMapper;
+    private final ProblemWriter problemWriter;
 
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response,
                        AccessDeniedException accessDeniedException) throws IOException {
 
-        response.setStatus(HttpStatus.FORBIDDEN.value());
-        response.setContentType("application/problem+json");
-
-        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(
-            HttpStatus.FORBIDDEN,
-            "You don't have permission to access this resource"
-        );
-        problemDetail.setTitle("Access Denied");
-        problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/access-denied"));
-        problemDetail.setProperty("timestamp", Instant.now());
-        problemDetail.setProperty("errorCode", "ACCESS_DENIED");
-        problemDetail.setProperty("path", request.getRequestURI());
-
-        response.getWriter().write(objectMapper.writeValueAsString(problemDetail));
+        problemWriter.write(response, ProblemTemplate.ACCESS_DENIED, null, null, "path", request.getRequestURI());
     }
 }
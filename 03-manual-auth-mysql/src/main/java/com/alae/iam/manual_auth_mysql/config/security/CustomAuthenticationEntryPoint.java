@@ -1,42 +1,26 @@
 package com.alae.iam.manual_auth_mysql.config.security;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.alae.iam.manual_auth_mysql.exception.ProblemTemplate;
+import com.alae.iam.manual_auth_mysql.exception.ProblemWriter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ProblemDetail;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.net.URI;
-import java.time.Instant;
 
 @Component
 @RequiredArgsConstructor
 public class CustomAuthenticationEntryPoint implements AuthenticationEntryPoint {
 
-    private final ObjectMapper objectMapper;
+    private final ProblemWriter problemWriter;
 
     @Override
     public void commence(HttpServletRequest request, HttpServletResponse response,
                          AuthenticationException authException) throws IOException {
 
-        response.setStatus(HttpStatus.UNAUTHORIZED.value());
-        response.setContentType("application/problem+json");
-
-        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(
-            HttpStatus.UNAUTHORIZED,
-            "Authentication required to access this resource"
-        );
-        problemDetail.setTitle("Unauthorized");
-        problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/unauthorized"));
-        problemDetail.setProperty("timestamp", Instant.now());
-        problemDetail.setProperty("errorCode", "UNAUTHORIZED");
-        problemDetail.setProperty("path", request.getRequestURI());
-
-        response.getWriter().write(objectMapper.writeValueAsString(problemDetail));
+        problemWriter.write(response, ProblemTemplate.UNAUTHORIZED, null, null, "path", request.getRequestURI());
     }
 }
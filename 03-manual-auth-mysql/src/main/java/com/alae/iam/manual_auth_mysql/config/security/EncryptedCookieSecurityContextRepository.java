@@ -0,0 +1,196 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import com.alae.iam.manual_auth_mysql.auth.CredentialCache;
+import com.alae.iam.manual_auth_mysql.auth.LoginAttemptTracker;
+import com.alae.iam.manual_auth_mysql.config.security.ContextCookieSealer.SealedContext;
+import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
+/**
+ * Keeps the security context in an encrypted cookie instead of the {@code HttpSession}, so an
+ * authenticated user costs no server memory and any node can serve any request. The cookie holds
+ * the {@link AuthPrincipal}, its login time and an expiry; {@link #renewIfDue} re-seals it once it
+ * is older than {@code renewAfter}, which slides the expiry forward and moves it to the current key.
+ * A renewal reloads the user through the {@link CredentialCache} first, so a disabled, locked or
+ * deleted account loses its cookie within {@code renewAfter}, and no renewal goes past
+ * {@code maxLifetime} after the login.
+ */
+public class EncryptedCookieSecurityContextRepository implements SecurityContextRepository {
+
+    // opened cookie (or NONE) cached for the rest of the request
+    private static final String SEALED_ATTRIBUTE = EncryptedCookieSecurityContextRepository.class.getName() + ".SEALED";
+    private static final Object NONE = new Object();
+
+    private final SecurityContextHolderStrategy holderStrategy = SecurityContextHolder.getContextHolderStrategy();
+    private final ContextCookieSealer sealer;
+    private final CredentialCache credentialCache;
+    private final LoginAttemptTracker loginAttemptTracker;
+    private final String cookieName;
+    private final Duration maxAge;
+    private final Duration renewAfter;
+    private final Duration maxLifetime;
+    private final boolean secure;
+
+    public EncryptedCookieSecurityContextRepository(ContextCookieSealer sealer, CredentialCache credentialCache,
+                                                    LoginAttemptTracker loginAttemptTracker, String cookieName,
+                                                    Duration maxAge, Duration renewAfter, Duration maxLifetime,
+                                                    boolean secure) {
+        if (renewAfter.compareTo(maxAge) >= 0) {
+            throw new IllegalArgumentException("renew-after must be shorter than max-age");
+        }
+        if (maxLifetime.compareTo(maxAge) < 0) {
+            throw new IllegalArgumentException("max-lifetime must not be shorter than max-age");
+        }
+        this.sealer = sealer;
+        this.credentialCache = credentialCache;
+        this.loginAttemptTracker = loginAttemptTracker;
+        this.cookieName = cookieName;
+        this.maxAge = maxAge;
+        this.renewAfter = renewAfter;
+        this.maxLifetime = maxLifetime;
+        this.secure = secure;
+    }
+
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        return new DeferredSecurityContext() {
+            @Override
+            public SecurityContext get() {
+                return toContext(read(request));
+            }
+
+            @Override
+            public boolean isGenerated() {
+                return read(request) == null;
+            }
+        };
+    }
+
+    @Override
+    @Deprecated
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        return toContext(read(requestResponseHolder.getRequest()));
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        Authentication authentication = context.getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthPrincipal principal) {
+            // saved on login: the lifetime starts now
+            Instant now = Instant.now();
+            seal(principal, now, now, request, response);
+        } else if (findCookie(request) != null) {
+            writeCookie(response, "", Duration.ZERO);
+            request.setAttribute(SEALED_ATTRIBUTE, NONE);
+        }
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return read(request) != null;
+    }
+
+    /**
+     * Re-issues the cookie when it was sealed more than {@code renewAfter} ago or under a retired key,
+     * from the user's current state; clears it if the user may no longer log in. Must run before the
+     * security context is first read and before the response is committed.
+     */
+    public void renewIfDue(HttpServletRequest request, HttpServletResponse response) {
+        SealedContext sealed = read(request);
+        if (sealed == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        boolean due = sealed.issuedAt().plus(renewAfter).isBefore(now);
+        if (!due && sealed.keyId().equals(sealer.currentKeyId())) {
+            return;
+        }
+        AuthPrincipal current = credentialCache.get(sealed.principal().id())
+            .filter(user -> user.enabled() && !loginAttemptTracker.isLocked(user))
+            .map(user -> new AuthPrincipal(user.id(), user.username(), user.email()))
+            .orElse(null);
+        if (current == null) {
+            writeCookie(response, "", Duration.ZERO);
+            request.setAttribute(SEALED_ATTRIBUTE, NONE);
+            return;
+        }
+        seal(current, sealed.authenticatedAt(), now, request, response);
+    }
+
+    // the idle expiry never goes past the lifetime
+    private void seal(AuthPrincipal principal, Instant authenticatedAt, Instant now,
+                      HttpServletRequest request, HttpServletResponse response) {
+        Instant expiresAt = min(now.plus(maxAge), authenticatedAt.plus(maxLifetime));
+        writeCookie(response, sealer.seal(principal, authenticatedAt, now, expiresAt), Duration.between(now, expiresAt));
+        request.setAttribute(SEALED_ATTRIBUTE,
+            new SealedContext(principal, authenticatedAt, now, expiresAt, sealer.currentKeyId()));
+    }
+
+    private SealedContext read(HttpServletRequest request) {
+        Object cached = request.getAttribute(SEALED_ATTRIBUTE);
+        if (cached != null) {
+            return cached == NONE ? null : (SealedContext) cached;
+        }
+        String value = findCookie(request);
+        Instant now = Instant.now();
+        SealedContext sealed = value == null ? null : sealer.open(value)
+            .filter(opened -> opened.expiresAt().isAfter(now))
+            .filter(opened -> opened.authenticatedAt().plus(maxLifetime).isAfter(now))
+            .orElse(null);
+        request.setAttribute(SEALED_ATTRIBUTE, sealed == null ? NONE : sealed);
+        return sealed;
+    }
+
+    private SecurityContext toContext(SealedContext sealed) {
+        SecurityContext context = holderStrategy.createEmptyContext();
+        if (sealed != null) {
+            context.setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(sealed.principal(), null, Collections.emptyList()));
+        }
+        return context;
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private String findCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void writeCookie(HttpServletResponse response, String value, Duration age) {
+        ResponseCookie cookie = ResponseCookie.from(cookieName, value)
+            .path("/")
+            .httpOnly(true)
+            .secure(secure)
+            .sameSite("Lax")
+            .maxAge(age)
+            .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+}
@@ -0,0 +1,173 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import com.alae.iam.manual_auth_mysql.auth.LoginRateLimiter;
+import com.alae.iam.manual_auth_mysql.exception.ProblemTemplate;
+import com.alae.iam.manual_auth_mysql.exception.ProblemWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Throttles {@code POST /api/auth/login} per client IP, identifier and (IP, identifier) pair before
+ * the request reaches the controller, so over-limit attempts cost neither the user lookup nor
+ * BCrypt. The identifier is read from the JSON body, which is read whole and replayed downstream.
+ * A login body over {@value #MAX_BODY} bytes is refused with 413: a larger one could otherwise
+ * push the identifier out of what is parsed and escape the identifier and pair limits.
+ */
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String LOGIN_PATH = "/api/auth/login";
+    private static final int MAX_BODY = 4096;
+
+    private final LoginRateLimiter rateLimiter;
+    private final ProblemWriter problemWriter;
+    private final JsonFactory jsonFactory;
+
+    public LoginRateLimitFilter(LoginRateLimiter rateLimiter, ProblemWriter problemWriter, JsonFactory jsonFactory) {
+        this.rateLimiter = rateLimiter;
+        this.problemWriter = problemWriter;
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimiter.isEnabled()
+            || !"POST".equals(request.getMethod())
+            || !LOGIN_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        byte[] body = request.getInputStream().readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) {
+            problemWriter.write(response, ProblemTemplate.LOGIN_BODY_TOO_LARGE, request.getRequestURI());
+            return;
+        }
+
+        if (rateLimiter.tryAcquire(request.getRemoteAddr(), readIdentifier(body)) != null) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(rateLimiter.window().toSeconds()));
+            problemWriter.write(response, ProblemTemplate.TOO_MANY_LOGIN_ATTEMPTS, request.getRequestURI());
+            return;
+        }
+        filterChain.doFilter(new ReplayedBodyRequest(request, body), response);
+    }
+
+    private String readIdentifier(byte[] body) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                token = parser.nextToken();
+                if ("usernameOrEmail".equals(field)) {
+                    return token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null; // not our problem here; the controller reports malformed bodies
+        }
+    }
+
+    /**
+     * Serves the body already read in full.
+     */
+    private static final class ReplayedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+        private ServletInputStream inputStream;
+
+        ReplayedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            if (inputStream == null) {
+                inputStream = new ReplayedInputStream(body);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    private static final class ReplayedInputStream extends ServletInputStream {
+
+        private final byte[] body;
+        private int position;
+
+        ReplayedInputStream(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public int read() {
+            return position < body.length ? body[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= body.length) {
+                return -1;
+            }
+            int count = Math.min(length, body.length - position);
+            System.arraycopy(body, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return position >= body.length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        // everything is in memory: the data is available at once and reading it never blocks
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            try {
+                if (!isFinished()) {
+                    readListener.onDataAvailable();
+                }
+                if (isFinished()) {
+                    readListener.onAllDataRead();
+                }
+            } catch (IOException e) {
+                readListener.onError(e);
+            }
+        }
+    }
+}
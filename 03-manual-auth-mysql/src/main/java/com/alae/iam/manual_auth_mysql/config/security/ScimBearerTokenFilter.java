@@ -0,0 +1,62 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Requires {@code Authorization: Bearer <app.scim.token>} on {@code /scim/**}. Provisioning
+ * clients are machines with a shared secret, not users, so they never get a security context.
+ * With no token configured the SCIM API is closed altogether.
+ */
+public class ScimBearerTokenFilter extends OncePerRequestFilter {
+
+    private static final String SCIM_PATH = "/scim/";
+    private static final String BEARER = "Bearer ";
+    private static final byte[] UNAUTHORIZED_BODY = ("{\"schemas\":[\"urn:ietf:params:scim:api:messages:2.0:Error\"],"
+        + "\"status\":\"401\",\"detail\":\"A valid bearer token is required\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] expectedDigest;
+
+    public ScimBearerTokenFilter(String token) {
+        this.expectedDigest = token == null || token.isEmpty() ? null : sha256(token);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + SCIM_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        // digests have a fixed length, so the comparison time says nothing about the token
+        if (expectedDigest != null && authorization != null && authorization.startsWith(BEARER)
+            && MessageDigest.isEqual(expectedDigest, sha256(authorization.substring(BEARER.length())))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer realm=\"scim\"");
+        response.setContentType("application/scim+json");
+        response.setContentLength(UNAUTHORIZED_BODY.length);
+        response.getOutputStream().write(UNAUTHORIZED_BODY);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -9,6 +9,8 @@ import com.alae.iam.manual_auth_mysql.exception.auth.AccountLockedException;
 import com.alae.iam.manual_auth_mysql.exception.auth.InvalidCredentialsException;
 import com.alae.iam.manual_auth_mysql.exception.auth.NotAuthenticatedException;
 import com.alae.iam.manual_auth_mysql.service.AuthService;
+import com.alae.iam.manual_auth_mysql.tracing.Span;
+import com.alae.iam.manual_auth_mysql.tracing.Tracer;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -32,13 +34,19 @@ public class AuthController {
 
   private final AuthenticationManager authenticationManager;
   private final AuthService authService;
+  private final Tracer tracer;
 
   @PostMapping("/login")
   public ResponseEntity<UserResponse> login(@RequestBody LoginRequest req, HttpServletRequest request, HttpServletResponse response) {
     Authentication token = new UsernamePasswordAuthenticationToken(req.usernameOrEmail(), req.password());
     try {
-      Authentication auth = authenticationManager.authenticate(token);
-      return ResponseEntity.ok(authService.completeLogin(auth, request, response));
+      Authentication auth;
+      try (Span span = tracer.span("auth.authenticate")) {
+        auth = authenticationManager.authenticate(token);
+      }
+      try (Span span = tracer.span("auth.complete_login")) {
+        return ResponseEntity.ok(authService.completeLogin(auth, request, response));
+      }
     } catch (BadCredentialsException e) {
       throw new InvalidCredentialsException("Invalid username/email or password", req.usernameOrEmail());
     } catch (LockedException e) {
@@ -0,0 +1,75 @@
+package com.alae.iam.manual_auth_mysql.controller;
+
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimBulkRequest;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimBulkResponse;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimUser;
+import com.alae.iam.manual_auth_mysql.exception.ScimException;
+import com.alae.iam.manual_auth_mysql.service.ScimUserService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * SCIM 2.0 Users and Bulk endpoints (RFC 7644) for identity providers that provision accounts.
+ * Guarded by {@link com.alae.iam.manual_auth_mysql.config.security.ScimBearerTokenFilter}.
+ */
+@RestController
+@RequestMapping("/scim/v2")
+@RequiredArgsConstructor
+public class ScimController {
+
+  public static final MediaType SCIM_JSON = MediaType.parseMediaType("application/scim+json");
+
+  private final ScimUserService scimUserService;
+
+  @GetMapping("/Users")
+  public void list(@RequestParam(required = false) String filter,
+                   @RequestParam(required = false) Integer startIndex,
+                   @RequestParam(required = false) Integer count,
+                   HttpServletResponse response) throws IOException {
+    response.setContentType(SCIM_JSON.toString());
+    response.setCharacterEncoding("UTF-8");
+    scimUserService.list(filter, startIndex, count, response.getOutputStream());
+  }
+
+  @GetMapping("/Users/{id}")
+  public ResponseEntity<ScimUser> get(@PathVariable String id) {
+    return ResponseEntity.ok().contentType(SCIM_JSON).body(scimUserService.get(userId(id)));
+  }
+
+  @PostMapping("/Users")
+  public ResponseEntity<ScimUser> create(@RequestBody ScimUser user) {
+    ScimUser created = scimUserService.create(user);
+    return ResponseEntity.created(URI.create(created.meta().location())).contentType(SCIM_JSON).body(created);
+  }
+
+  @PutMapping("/Users/{id}")
+  public ResponseEntity<ScimUser> replace(@PathVariable String id, @RequestBody ScimUser user) {
+    return ResponseEntity.ok().contentType(SCIM_JSON).body(scimUserService.replace(userId(id), user));
+  }
+
+  @DeleteMapping("/Users/{id}")
+  public ResponseEntity<Void> delete(@PathVariable String id) {
+    scimUserService.delete(userId(id));
+    return ResponseEntity.noContent().build();
+  }
+
+  @PostMapping("/Bulk")
+  public ResponseEntity<ScimBulkResponse> bulk(@RequestBody ScimBulkRequest request) {
+    return ResponseEntity.status(HttpStatus.OK).contentType(SCIM_JSON).body(scimUserService.bulk(request));
+  }
+
+  private static long userId(String id) {
+    try {
+      return Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      throw new ScimException(404, null, "User " + id + " not found");
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * {@code app.datagen.*}, read by {@link DatagenRunner} under the {@code datagen} profile.
+ */
+@ConfigurationProperties("app.datagen")
+public record DatagenProperties(@DefaultValue("1000000") long users,
+                                @DefaultValue("42") long seed,
+                                @DefaultValue("0") int threads,
+                                @DefaultValue("10000") int chunkSize,
+                                @DefaultValue("1000") int rowsPerInsert,
+                                @DefaultValue("database") Output output,
+                                @DefaultValue("target/datagen") String directory,
+                                @DefaultValue("1.0") double nameSkew,
+                                @DefaultValue("1.3") double domainSkew,
+                                @DefaultValue("0.05") double mixedCaseRatio,
+                                @DefaultValue("0.01") double lockedRatio,
+                                @DefaultValue("0.005") double disabledRatio,
+                                @DefaultValue("730d") Duration createdSpan,
+                                LocalDateTime createdUntil,
+                                @DefaultValue("8") int hashPoolSize,
+                                @DefaultValue("datagen-") String passwordPrefix) {
+
+  public enum Output { DATABASE, TSV }
+
+  public int threadsOrProcessors() {
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+  }
+
+  public IdentityDatasetGenerator.Settings settings() {
+    // midnight rather than now, so that a rerun on the same day writes the same rows
+    LocalDateTime until = createdUntil != null ? createdUntil : LocalDate.now().atStartOfDay();
+    return new IdentityDatasetGenerator.Settings(users, seed, chunkSize, nameSkew, domainSkew, mixedCaseRatio,
+        lockedRatio, disabledRatio, until, createdSpan);
+  }
+}
@@ -0,0 +1,93 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import com.alae.iam.manual_auth_mysql.datagen.IdentityDatasetGenerator.WriterFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code --spring.profiles.active=datagen}: fills {@code app_users} with {@code app.datagen.users}
+ * synthetic users, or writes them as {@code LOAD DATA} files, then exits.
+ */
+@Component
+@Profile("datagen")
+@EnableConfigurationProperties(DatagenProperties.class)
+public class DatagenRunner implements ApplicationRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(DatagenRunner.class);
+
+  private final ConfigurableApplicationContext context;
+  private final DatagenProperties properties;
+  private final DataSource dataSource;
+  private final JdbcTemplate jdbcTemplate;
+  private final PasswordEncoder passwordEncoder;
+  private final boolean sharded;
+
+  public DatagenRunner(ConfigurableApplicationContext context,
+                       DatagenProperties properties,
+                       DataSource dataSource,
+                       JdbcTemplate jdbcTemplate,
+                       PasswordEncoder passwordEncoder,
+                       @Value("${app.sharding.enabled:false}") boolean sharded) {
+    this.context = context;
+    this.properties = properties;
+    this.dataSource = dataSource;
+    this.jdbcTemplate = jdbcTemplate;
+    this.passwordEncoder = passwordEncoder;
+    this.sharded = sharded;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    if (sharded) {
+      throw new IllegalStateException("datagen writes the primary app_users table; run it with app.sharding.enabled=false");
+    }
+    int threads = properties.threadsOrProcessors();
+    IdentityDatasetGenerator generator = new IdentityDatasetGenerator(properties.settings());
+
+    long start = System.nanoTime();
+    HashPool hashPool = HashPool.compute(passwordEncoder, properties.passwordPrefix(), properties.hashPoolSize(), threads);
+    log.info("Hashed {} pool passwords in {} ms", properties.hashPoolSize(), (System.nanoTime() - start) / 1_000_000);
+
+    boolean files = properties.output() == DatagenProperties.Output.TSV;
+    Path directory = Path.of(properties.directory());
+    long firstId = files ? 1 : jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM app_users", Long.class);
+    WriterFactory writers = files
+        ? () -> new TsvChunkWriter(directory, hashPool)
+        : () -> new JdbcChunkWriter(dataSource, hashPool, properties.rowsPerInsert());
+
+    long users = properties.users();
+    long step = Math.max(properties.chunkSize(), users / 20);
+    AtomicLong lastStep = new AtomicLong();
+    long generationStart = System.nanoTime();
+    generator.run(firstId, threads, writers, written -> {
+      long previous = lastStep.get();
+      if (written / step > previous && lastStep.compareAndSet(previous, written / step)) {
+        log.info("{} / {} users", written, users);
+      }
+    });
+    if (files) {
+      TsvChunkWriter.writeLoadScript(directory, generator.chunks());
+    }
+    double seconds = (System.nanoTime() - generationStart) / 1e9;
+    log.info("Generated {} users, ids {} to {}, in {} s ({} users/s, {} threads){}", users, firstId,
+        firstId + users - 1, Math.round(seconds), Math.round(users / seconds), threads,
+        files ? " into " + directory.toAbsolutePath() + "; load them with load.sql" : "");
+    log.info("User <id> logs in with password {}<id % {}>", properties.passwordPrefix(), properties.hashPoolSize());
+
+    System.exit(SpringApplication.exit(context));
+  }
+}
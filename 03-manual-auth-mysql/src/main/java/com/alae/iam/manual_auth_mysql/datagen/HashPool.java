@@ -0,0 +1,56 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A few real hashes shared by every generated user: hashing each of tens of millions of passwords
+ * would take days. User {@code id} gets password {@code <prefix><id % size>}, so a load test can
+ * compute the password of any generated user and log in with it.
+ */
+public final class HashPool {
+
+  private final String passwordPrefix;
+  private final String[] hashes;
+
+  private HashPool(String passwordPrefix, String[] hashes) {
+    this.passwordPrefix = passwordPrefix;
+    this.hashes = hashes;
+  }
+
+  /**
+   * Hashes the {@code size} passwords with the application's encoder, in parallel.
+   */
+  public static HashPool compute(PasswordEncoder passwordEncoder, String passwordPrefix, int size, int threads)
+      throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, size)));
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        String password = passwordPrefix + i;
+        futures.add(executor.submit(() -> passwordEncoder.encode(password)));
+      }
+      String[] hashes = new String[size];
+      for (int i = 0; i < size; i++) {
+        hashes[i] = futures.get(i).get();
+      }
+      return new HashPool(passwordPrefix, hashes);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public String password(long userId) {
+    return passwordPrefix + Math.floorMod(userId, hashes.length);
+  }
+
+  public String hash(long userId) {
+    return hashes[Math.floorMod(userId, hashes.length)];
+  }
+}
@@ -0,0 +1,193 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Generates realistic {@code app_users} rows for performance work: usernames and emails built from
+ * first and last names and mail domains drawn with a Zipf skew, a share of locked and disabled
+ * accounts, and creation dates spread over {@code createdSpan}.
+ *
+ * <p>Rows are produced in chunks of {@code chunkSize}, each from its own {@link SplittableRandom}
+ * seeded with {@code (seed, chunk)}: the same settings give the same rows whatever the number of
+ * threads and whichever thread takes which chunk. Usernames and emails end with the user id, which
+ * keeps them unique without any lookup.
+ */
+public class IdentityDatasetGenerator {
+
+  private static final String[] FIRST_NAMES = {
+      "james", "mary", "john", "patricia", "robert", "jennifer", "michael", "linda", "william", "elizabeth",
+      "david", "barbara", "richard", "susan", "joseph", "jessica", "thomas", "sarah", "charles", "karen",
+      "mohamed", "fatima", "ahmed", "amina", "youssef", "khadija", "omar", "salma", "ali", "nadia",
+      "josé", "maría", "lucía", "zoë", "chloé", "françois", "björn", "jürgen", "søren", "añaïs",
+      "wei", "li", "hiroshi", "yuki", "raj", "priya", "olga", "ivan", "kwame", "ama",
+      "lucas", "emma", "noah", "olivia", "liam", "ava", "ethan", "mia", "mateo", "léa"};
+  private static final String[] LAST_NAMES = {
+      "smith", "johnson", "williams", "brown", "jones", "garcia", "miller", "davis", "rodriguez", "martinez",
+      "hernandez", "lopez", "gonzalez", "wilson", "anderson", "thomas", "taylor", "moore", "jackson", "martin",
+      "benali", "elamrani", "touba", "haddad", "mansour", "nguyen", "kim", "wang", "chen", "singh",
+      "müller", "schröder", "dubois", "lefèvre", "núñez", "peña", "østergaard", "åberg", "çelik", "kowalski",
+      "rossi", "bianchi", "silva", "santos", "ivanov", "petrov", "okafor", "mensah", "tanaka", "sato"};
+  private static final String[] DOMAINS = {
+      "gmail.com", "yahoo.com", "outlook.com", "hotmail.com", "icloud.com", "proton.me", "gmx.de",
+      "orange.fr", "yahoo.fr", "live.com", "aol.com", "mail.ru", "qq.com", "example.org", "corp.example.com"};
+
+  private final Settings settings;
+  private final ZipfSampler firstNames;
+  private final ZipfSampler lastNames;
+  private final ZipfSampler domains;
+
+  public IdentityDatasetGenerator(Settings settings) {
+    if (settings.chunkSize() < 1) {
+      throw new IllegalArgumentException("chunk-size must be >= 1");
+    }
+    this.settings = settings;
+    this.firstNames = new ZipfSampler(FIRST_NAMES.length, settings.nameSkew());
+    this.lastNames = new ZipfSampler(LAST_NAMES.length, settings.nameSkew());
+    this.domains = new ZipfSampler(DOMAINS.length, settings.domainSkew());
+  }
+
+  public long chunks() {
+    return (settings.users() + settings.chunkSize() - 1) / settings.chunkSize();
+  }
+
+  /**
+   * The rows of chunk {@code chunk}, with ids from {@code firstId + chunk * chunkSize}.
+   */
+  public List<SyntheticUser> chunk(long chunk, long firstId) {
+    long from = chunk * settings.chunkSize();
+    int size = (int) Math.min(settings.chunkSize(), settings.users() - from);
+    SplittableRandom random = new SplittableRandom(mix(settings.seed(), chunk));
+    long spanSeconds = settings.createdSpan().toSeconds();
+    List<SyntheticUser> users = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      long index = from + i;
+      long id = firstId + index;
+      String first = FIRST_NAMES[firstNames.sample(random)];
+      String last = LAST_NAMES[lastNames.sample(random)];
+      String base = username(first, last, random.nextInt(6));
+      boolean mixedCase = random.nextDouble() < settings.mixedCaseRatio();
+
+      String username = (mixedCase ? capitalize(base) : base) + id;
+      String local = ascii(base) + id;
+      String domain = DOMAINS[domains.sample(random)];
+      String email = mixedCase ? capitalize(local) + "@" + capitalize(domain) : local + "@" + domain;
+
+      boolean enabled = random.nextDouble() >= settings.disabledRatio();
+      boolean locked = random.nextDouble() < settings.lockedRatio();
+      // half the locks are automatic ones that end by themselves, half are set by an administrator
+      LocalDateTime lockedUntil = locked && random.nextBoolean()
+          ? settings.createdUntil().plusMinutes(1 + random.nextInt(24 * 60))
+          : null;
+      // ids grow with time, with a little jitter as concurrent registrations would have
+      long secondsAgo = spanSeconds - (spanSeconds * index / Math.max(1, settings.users() - 1));
+      LocalDateTime createdAt = settings.createdUntil().minusSeconds(secondsAgo + random.nextInt(60));
+
+      users.add(new SyntheticUser(id, username, email, enabled, locked, lockedUntil, createdAt));
+    }
+    return users;
+  }
+
+  /**
+   * Generates and writes every chunk on {@code threads} threads, each with its own writer.
+   * {@code progress} receives the number of rows written so far after each chunk.
+   */
+  public void run(long firstId, int threads, WriterFactory writers, LongConsumer progress)
+      throws InterruptedException, ExecutionException {
+    AtomicLong nextChunk = new AtomicLong();
+    AtomicLong written = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        workers.add(executor.submit(() -> {
+          try (ChunkWriter writer = writers.open()) {
+            long chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunks()) {
+              List<SyntheticUser> users = chunk(chunk, firstId);
+              writer.write(chunk, users);
+              progress.accept(written.addAndGet(users.size()));
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static String username(String first, String last, int pattern) {
+    // none ends with a digit, so the id appended after it can be read back unambiguously
+    return switch (pattern) {
+      case 0 -> first + "." + last;
+      case 1 -> first + last;
+      case 2 -> first.charAt(0) + last;
+      case 3 -> first + "_" + last;
+      case 4 -> first + last.charAt(0);
+      default -> last + "." + first;
+    };
+  }
+
+  private static String capitalize(String value) {
+    StringBuilder out = new StringBuilder(value.length());
+    boolean start = true;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      out.append(start ? Character.toUpperCase(c) : c);
+      start = c == '.' || c == '_';
+    }
+    return out.toString();
+  }
+
+  /**
+   * Mail local parts are kept to ASCII: {@code josé} becomes {@code jose}, {@code søren} {@code soren}.
+   */
+  private static String ascii(String value) {
+    String stripped = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    return stripped.replace('ø', 'o').replace('ł', 'l').toLowerCase(Locale.ROOT);
+  }
+
+  private static long mix(long seed, long chunk) {
+    long z = seed + (chunk + 1) * 0x9e3779b97f4a7c15L;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  public record Settings(long users,
+                         long seed,
+                         int chunkSize,
+                         double nameSkew,
+                         double domainSkew,
+                         double mixedCaseRatio,
+                         double lockedRatio,
+                         double disabledRatio,
+                         LocalDateTime createdUntil,
+                         Duration createdSpan) {}
+
+  public interface ChunkWriter extends AutoCloseable {
+
+    void write(long chunk, List<SyntheticUser> users) throws Exception;
+  }
+
+  @FunctionalInterface
+  public interface WriterFactory {
+
+    ChunkWriter open() throws Exception;
+  }
+}
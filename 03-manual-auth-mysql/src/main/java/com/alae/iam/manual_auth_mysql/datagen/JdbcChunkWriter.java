@@ -0,0 +1,88 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inserts generated users with multi-row {@code INSERT ... VALUES (...), (...)} statements of
+ * {@code rowsPerInsert} rows on one connection per thread, committing once per chunk. That is far
+ * fewer round trips and log flushes than one statement per row, on MySQL as on H2.
+ */
+public class JdbcChunkWriter implements IdentityDatasetGenerator.ChunkWriter {
+
+  private static final String COLUMNS = "id, username, username_normalized, email, email_normalized, password_hash,"
+      + " enabled, account_locked, locked_until, created_at";
+  private static final int COLUMN_COUNT = 10;
+
+  private final Connection connection;
+  private final HashPool hashPool;
+  private final int rowsPerInsert;
+  private final PreparedStatement fullInsert;
+
+  public JdbcChunkWriter(DataSource dataSource, HashPool hashPool, int rowsPerInsert) throws SQLException {
+    this.connection = dataSource.getConnection();
+    this.hashPool = hashPool;
+    this.rowsPerInsert = rowsPerInsert;
+    connection.setAutoCommit(false);
+    this.fullInsert = connection.prepareStatement(insert(rowsPerInsert));
+  }
+
+  @Override
+  public void write(long chunk, List<SyntheticUser> users) throws SQLException {
+    try {
+      for (int from = 0; from < users.size(); from += rowsPerInsert) {
+        List<SyntheticUser> rows = users.subList(from, Math.min(users.size(), from + rowsPerInsert));
+        if (rows.size() == rowsPerInsert) {
+          bind(fullInsert, rows);
+          fullInsert.executeUpdate();
+        } else {
+          try (PreparedStatement partial = connection.prepareStatement(insert(rows.size()))) {
+            bind(partial, rows);
+            partial.executeUpdate();
+          }
+        }
+      }
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    try {
+      fullInsert.close();
+    } finally {
+      connection.close();
+    }
+  }
+
+  private void bind(PreparedStatement insert, List<SyntheticUser> rows) throws SQLException {
+    int p = 1;
+    for (SyntheticUser user : rows) {
+      insert.setLong(p++, user.id());
+      insert.setString(p++, user.username());
+      insert.setString(p++, Identifiers.normalize(user.username()));
+      insert.setString(p++, user.email());
+      insert.setString(p++, Identifiers.normalize(user.email()));
+      insert.setString(p++, hashPool.hash(user.id()));
+      insert.setBoolean(p++, user.enabled());
+      insert.setBoolean(p++, user.accountLocked());
+      insert.setTimestamp(p++, user.lockedUntil() == null ? null : Timestamp.valueOf(user.lockedUntil()));
+      insert.setTimestamp(p++, Timestamp.valueOf(user.createdAt()));
+    }
+  }
+
+  private static String insert(int rows) {
+    String row = "(" + String.join(", ", Collections.nCopies(COLUMN_COUNT, "?")) + ")";
+    return "INSERT INTO app_users (" + COLUMNS + ") VALUES " + String.join(", ", Collections.nCopies(rows, row));
+  }
+}
@@ -0,0 +1,14 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import java.time.LocalDateTime;
+
+/**
+ * One generated {@code app_users} row, before its password hash is picked from the {@link HashPool}.
+ */
+public record SyntheticUser(long id,
+                            String username,
+                            String email,
+                            boolean enabled,
+                            boolean accountLocked,
+                            LocalDateTime lockedUntil,
+                            LocalDateTime createdAt) {}
@@ -0,0 +1,93 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes each chunk to {@code app_users-<chunk>.tsv} in the default format of MySQL's
+ * {@code LOAD DATA}: tab-separated, {@code \N} for NULL, 1/0 for booleans. {@link #writeLoadScript}
+ * adds the {@code load.sql} that loads them all.
+ */
+public class TsvChunkWriter implements IdentityDatasetGenerator.ChunkWriter {
+
+  static final String COLUMNS = "id, username, username_normalized, email, email_normalized, password_hash,"
+      + " enabled, account_locked, locked_until, created_at";
+  private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+  private final Path directory;
+  private final HashPool hashPool;
+
+  public TsvChunkWriter(Path directory, HashPool hashPool) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.hashPool = hashPool;
+  }
+
+  @Override
+  public void write(long chunk, List<SyntheticUser> users) throws IOException {
+    try (BufferedWriter out = Files.newBufferedWriter(directory.resolve(fileName(chunk)), StandardCharsets.UTF_8)) {
+      StringBuilder line = new StringBuilder(256);
+      for (SyntheticUser user : users) {
+        line.setLength(0);
+        line.append(user.id()).append('\t');
+        field(line, user.username());
+        field(line, Identifiers.normalize(user.username()));
+        field(line, user.email());
+        field(line, Identifiers.normalize(user.email()));
+        field(line, hashPool.hash(user.id()));
+        line.append(user.enabled() ? '1' : '0').append('\t');
+        line.append(user.accountLocked() ? '1' : '0').append('\t');
+        line.append(user.lockedUntil() == null ? "\\N" : timestamp(user.lockedUntil())).append('\t');
+        line.append(timestamp(user.createdAt())).append('\n');
+        out.append(line);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    // one file per chunk, closed as it is written
+  }
+
+  /**
+   * For {@code mysql --local-infile=1 <database> < load.sql}, run from {@code directory}.
+   */
+  public static void writeLoadScript(Path directory, long chunks) throws IOException {
+    try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("load.sql"), StandardCharsets.UTF_8)) {
+      for (long chunk = 0; chunk < chunks; chunk++) {
+        out.append("LOAD DATA LOCAL INFILE '").append(fileName(chunk))
+            .append("' INTO TABLE app_users CHARACTER SET utf8mb4 (").append(COLUMNS).append(");\n");
+      }
+    }
+  }
+
+  static String fileName(long chunk) {
+    return String.format(Locale.ROOT, "app_users-%06d.tsv", chunk);
+  }
+
+  private static void field(StringBuilder line, String value) {
+    // escapes as LOAD DATA expects, although generated values hold none of these
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\' -> line.append("\\\\");
+        case '\t' -> line.append("\\t");
+        case '\n' -> line.append("\\n");
+        default -> line.append(c);
+      }
+    }
+    line.append('\t');
+  }
+
+  private static String timestamp(LocalDateTime value) {
+    return TIMESTAMP.format(value);
+  }
+}
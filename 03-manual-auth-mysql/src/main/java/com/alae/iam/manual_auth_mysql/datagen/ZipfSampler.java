@@ -0,0 +1,39 @@
+package com.alae.iam.manual_auth_mysql.datagen;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws indexes {@code 0..n-1} with probability proportional to {@code 1 / (k + 1)^exponent}:
+ * exponent 0 is uniform, around 1 is the long tail of real name and mail-domain frequencies.
+ */
+final class ZipfSampler {
+
+  private final double[] cumulative;
+
+  ZipfSampler(int n, double exponent) {
+    cumulative = new double[n];
+    double total = 0;
+    for (int k = 0; k < n; k++) {
+      total += 1 / Math.pow(k + 1, exponent);
+      cumulative[k] = total;
+    }
+    for (int k = 0; k < n; k++) {
+      cumulative[k] /= total;
+    }
+  }
+
+  int sample(SplittableRandom random) {
+    double u = random.nextDouble();
+    int low = 0;
+    int high = cumulative.length - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (cumulative[mid] < u) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -1,6 +1,7 @@
 package com.alae.iam.manual_auth_mysql.domain;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
@@ -27,7 +28,15 @@ public class AppUser {
     @Column(nullable = false, unique = true, length = 255)
     private String email;
 
-    @Column(name = "password_hash", nullable = false, length = 100)
+    @Setter(AccessLevel.NONE)
+    @Column(name = "username_normalized", nullable = false, unique = true, length = 100)
+    private String usernameNormalized;
+
+    @Setter(AccessLevel.NONE)
+    @Column(name = "email_normalized", nullable = false, unique = true, length = 255)
+    private String emailNormalized;
+
+    @Column(name = "password_hash", nullable = false, length = 255)
     private String passwordHash;
 
     @Column(nullable = false)
@@ -38,7 +47,17 @@ public class AppUser {
     @Builder.Default
     private boolean accountLocked = false;
 
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
+
+    @PrePersist
+    @PreUpdate
+    void normalizeIdentifiers() {
+        usernameNormalized = Identifiers.normalize(username);
+        emailNormalized = Identifiers.normalize(email);
+    }
 }
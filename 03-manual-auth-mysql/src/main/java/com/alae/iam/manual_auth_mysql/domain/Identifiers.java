@@ -0,0 +1,43 @@
+package com.alae.iam.manual_auth_mysql.domain;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * The form usernames and emails are compared in: Unicode NFKC, lower-cased. It is stored next to
+ * the original in {@code username_normalized} / {@code email_normalized}, which carry the unique
+ * indexes, so a lookup is an exact index match rather than {@code LOWER(column) = ?} over every row.
+ *
+ * <p>NFKC can lengthen text (a single ligature or compatibility character may expand to several),
+ * so an identifier within the length of its original column may still overflow the normalized one.
+ * Callers check {@link #fits} before storing.
+ */
+public final class Identifiers {
+
+  /** Length, in characters, of {@code username_normalized}. */
+  public static final int USERNAME_MAX_LENGTH = 100;
+
+  /** Length, in characters, of {@code email_normalized}. */
+  public static final int EMAIL_MAX_LENGTH = 255;
+
+  private Identifiers() {
+  }
+
+  public static String normalize(String identifier) {
+    if (identifier == null) {
+      return null;
+    }
+    // lower-casing can undo NFKC for a few characters, so normalise again afterwards
+    String folded = Normalizer.normalize(identifier, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    return Normalizer.isNormalized(folded, Normalizer.Form.NFKC) ? folded : Normalizer.normalize(folded, Normalizer.Form.NFKC);
+  }
+
+  /** Whether the normalized form of {@code identifier} is at most {@code maxLength} characters. */
+  public static boolean fits(String identifier, int maxLength) {
+    if (identifier == null) {
+      return true;
+    }
+    String normalized = normalize(identifier);
+    return normalized.codePointCount(0, normalized.length()) <= maxLength;
+  }
+}
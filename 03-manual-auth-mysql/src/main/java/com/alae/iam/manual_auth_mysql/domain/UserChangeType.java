@@ -0,0 +1,8 @@
+package com.alae.iam.manual_auth_mysql.domain;
+
+public enum UserChangeType {
+  UPDATED,
+  LOCKED,
+  UNLOCKED,
+  DELETED
+}
@@ -1,5 +1,7 @@
 package com.alae.iam.manual_auth_mysql.dto;
 
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -16,4 +18,15 @@ public record RegisterRequest(
 
     @NotBlank(message = "Password is required")
     @Size(min = 6, max = 100, message = "Password must be between 6 and 100 characters")
-    String password) {}
+    String password) {
+
+  @AssertTrue(message = "Username must be at most 100 characters once normalized")
+  public boolean isUsernameNormalizable() {
+    return Identifiers.fits(username, Identifiers.USERNAME_MAX_LENGTH);
+  }
+
+  @AssertTrue(message = "Email must be at most 255 characters once normalized")
+  public boolean isEmailNormalizable() {
+    return Identifiers.fits(email, Identifiers.EMAIL_MAX_LENGTH);
+  }
+}
@@ -0,0 +1,18 @@
+package com.alae.iam.manual_auth_mysql.dto.scim;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ScimBulkRequest(
+    List<String> schemas,
+    Integer failOnErrors,
+    @JsonProperty("Operations") List<Operation> operations) {
+
+  public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkRequest";
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public record Operation(String method, String bulkId, String path, ScimUser data) {}
+}
@@ -0,0 +1,33 @@
+package com.alae.iam.manual_auth_mysql.dto.scim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record ScimBulkResponse(
+    List<String> schemas,
+    @JsonProperty("Operations") List<Result> operations) {
+
+  public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkResponse";
+
+  public ScimBulkResponse(List<Result> operations) {
+    this(List.of(SCHEMA), operations);
+  }
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Result(String method, String bulkId, String location, String status, ScimError response) {
+
+    public static Result success(String method, String bulkId, String location, int status) {
+      return new Result(method, bulkId, location, Integer.toString(status), null);
+    }
+
+    public static Result failure(String method, String bulkId, ScimError error) {
+      return new Result(method, bulkId, null, error.status(), error);
+    }
+
+    public boolean failed() {
+      return response != null;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.alae.iam.manual_auth_mysql.dto.scim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * SCIM error body (RFC 7644 section 3.12); {@code status} is a string there.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ScimError(List<String> schemas, String status, String scimType, String detail) {
+
+  public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:Error";
+
+  public static ScimError of(int status, String scimType, String detail) {
+    return new ScimError(List.of(SCHEMA), Integer.toString(status), scimType, detail);
+  }
+}
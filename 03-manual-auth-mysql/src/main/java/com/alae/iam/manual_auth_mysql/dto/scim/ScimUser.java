@@ -0,0 +1,46 @@
+package com.alae.iam.manual_auth_mysql.dto.scim;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The subset of the SCIM core User schema (RFC 7643) that maps onto {@code app_users}: userName,
+ * one email, active and a write-only password. Other attributes are accepted and ignored.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ScimUser(
+    List<String> schemas,
+    String id,
+    String userName,
+    List<Email> emails,
+    Boolean active,
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY) String password,
+    Meta meta) {
+
+  public static final String SCHEMA = "urn:ietf:params:scim:schemas:core:2.0:User";
+
+  /**
+   * The primary email, or the first one if none is marked primary.
+   */
+  public String primaryEmail() {
+    if (emails == null || emails.isEmpty()) {
+      return null;
+    }
+    return emails.stream()
+        .filter(email -> Boolean.TRUE.equals(email.primary()))
+        .findFirst()
+        .orElse(emails.get(0))
+        .value();
+  }
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public record Email(String value, String type, Boolean primary) {}
+
+  public record Meta(String resourceType, Instant created, String location) {}
+}
@@ -2,69 +2,68 @@ package com.alae.iam.manual_auth_mysql.exception;
 
 import com.alae.iam.manual_auth_mysql.exception.auth.AccountDisabledException;
 import com.alae.iam.manual_auth_mysql.exception.auth.AccountLockedException;
+import com.alae.iam.manual_auth_mysql.exception.auth.HashingOverloadedException;
 import com.alae.iam.manual_auth_mysql.exception.auth.InvalidCredentialsException;
 import com.alae.iam.manual_auth_mysql.exception.auth.NotAuthenticatedException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.io.IOException;
 import java.net.URI;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Authentication failures are the high-volume errors, so they go through {@link ProblemWriter};
+ * validation errors carry a variable field map and still use {@link ProblemDetail}.
+ */
 @RestControllerAdvice
+@RequiredArgsConstructor
 public class ApiExceptionHandler {
 
+  private final ProblemWriter problemWriter;
+
   @ExceptionHandler(InvalidCredentialsException.class)
-  public ProblemDetail handleInvalidCredentials(InvalidCredentialsException ex) {
-    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.UNAUTHORIZED, ex.getMessage());
-    problemDetail.setTitle("Invalid Credentials");
-    problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/invalid-credentials"));
-    problemDetail.setProperty("timestamp", Instant.now());
-    problemDetail.setProperty("errorCode", "INVALID_CREDENTIALS");
-    if (ex.getUsernameAttempted() != null) {
-      problemDetail.setProperty("usernameAttempted", ex.getUsernameAttempted());
-    }
-    return problemDetail;
+  public void handleInvalidCredentials(InvalidCredentialsException ex, HttpServletRequest request,
+                                       HttpServletResponse response) throws IOException {
+    problemWriter.write(response, ProblemTemplate.INVALID_CREDENTIALS, ex.getMessage(), request.getRequestURI(),
+        "usernameAttempted", ex.getUsernameAttempted());
   }
 
   @ExceptionHandler(AccountLockedException.class)
-  public ProblemDetail handleAccountLocked(AccountLockedException ex) {
-    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.LOCKED, ex.getMessage());
-    problemDetail.setTitle("Account Locked");
-    problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/account-locked"));
-    problemDetail.setProperty("timestamp", Instant.now());
-    problemDetail.setProperty("errorCode", "ACCOUNT_LOCKED");
-    if (ex.getUsername() != null) {
-      problemDetail.setProperty("username", ex.getUsername());
-    }
-    return problemDetail;
+  public void handleAccountLocked(AccountLockedException ex, HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+    problemWriter.write(response, ProblemTemplate.ACCOUNT_LOCKED, ex.getMessage(), request.getRequestURI(),
+        "username", ex.getUsername());
   }
 
   @ExceptionHandler(AccountDisabledException.class)
-  public ProblemDetail handleAccountDisabled(AccountDisabledException ex) {
-    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.FORBIDDEN, ex.getMessage());
-    problemDetail.setTitle("Account Disabled");
-    problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/account-disabled"));
-    problemDetail.setProperty("timestamp", Instant.now());
-    problemDetail.setProperty("errorCode", "ACCOUNT_DISABLED");
-    if (ex.getUsername() != null) {
-      problemDetail.setProperty("username", ex.getUsername());
-    }
-    return problemDetail;
+  public void handleAccountDisabled(AccountDisabledException ex, HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+    problemWriter.write(response, ProblemTemplate.ACCOUNT_DISABLED, ex.getMessage(), request.getRequestURI(),
+        "username", ex.getUsername());
   }
 
   @ExceptionHandler(NotAuthenticatedException.class)
-  public ProblemDetail handleNotAuthenticated(NotAuthenticatedException ex) {
-    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.UNAUTHORIZED, ex.getMessage());
-    problemDetail.setTitle("Not Authenticated");
-    problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/not-authenticated"));
-    problemDetail.setProperty("timestamp", Instant.now());
-    problemDetail.setProperty("errorCode", "NOT_AUTHENTICATED");
-    return problemDetail;
+  public void handleNotAuthenticated(NotAuthenticatedException ex, HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+    problemWriter.write(response, ProblemTemplate.NOT_AUTHENTICATED, ex.getMessage(), request.getRequestURI(),
+        null, null);
+  }
+
+  @ExceptionHandler(HashingOverloadedException.class)
+  public void handleHashingOverloaded(HashingOverloadedException ex, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+    problemWriter.write(response, ProblemTemplate.HASHING_OVERLOADED, request.getRequestURI());
   }
 
   @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -85,13 +84,9 @@ public class ApiExceptionHandler {
   }
 
   @ExceptionHandler(Exception.class)
-  public ProblemDetail handleGeneric(Exception ex) {
-    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.INTERNAL_SERVER_ERROR, "An unexpected error occurred");
-    problemDetail.setTitle("Internal Server Error");
-    problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/server-error"));
-    problemDetail.setProperty("timestamp", Instant.now());
-    problemDetail.setProperty("errorCode", "SERVER_ERROR");
+  public void handleGeneric(Exception ex, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
     // Don't expose sensitive information
-    return problemDetail;
+    problemWriter.write(response, ProblemTemplate.SERVER_ERROR, request.getRequestURI());
   }
 }
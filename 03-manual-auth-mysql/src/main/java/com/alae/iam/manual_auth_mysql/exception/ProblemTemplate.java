@@ -0,0 +1,67 @@
+package com.alae.iam.manual_auth_mysql.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The fixed part of each RFC 7807 error this API returns, rendered to JSON bytes once at class
+ * initialisation. {@link ProblemWriter} appends the per-request fields.
+ */
+public enum ProblemTemplate {
+
+  UNAUTHORIZED(HttpStatus.UNAUTHORIZED, "Unauthorized", "unauthorized", "UNAUTHORIZED",
+      "Authentication required to access this resource"),
+  ACCESS_DENIED(HttpStatus.FORBIDDEN, "Access Denied", "access-denied", "ACCESS_DENIED",
+      "You don't have permission to access this resource"),
+  INVALID_CREDENTIALS(HttpStatus.UNAUTHORIZED, "Invalid Credentials", "invalid-credentials", "INVALID_CREDENTIALS",
+      "Invalid username/email or password"),
+  ACCOUNT_LOCKED(HttpStatus.LOCKED, "Account Locked", "account-locked", "ACCOUNT_LOCKED",
+      "Account is locked"),
+  ACCOUNT_DISABLED(HttpStatus.FORBIDDEN, "Account Disabled", "account-disabled", "ACCOUNT_DISABLED",
+      "Account is disabled"),
+  NOT_AUTHENTICATED(HttpStatus.UNAUTHORIZED, "Not Authenticated", "not-authenticated", "NOT_AUTHENTICATED",
+      "User is not authenticated"),
+  LOGIN_BODY_TOO_LARGE(HttpStatus.PAYLOAD_TOO_LARGE, "Payload Too Large", "payload-too-large", "LOGIN_BODY_TOO_LARGE",
+      "Login request body is too large"),
+  TOO_MANY_LOGIN_ATTEMPTS(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", "too-many-requests", "TOO_MANY_LOGIN_ATTEMPTS",
+      "Too many login attempts, try again later"),
+  HASHING_OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", "overloaded", "HASHING_OVERLOADED",
+      "Too many logins in progress, try again shortly"),
+  SERVER_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error", "server-error", "SERVER_ERROR",
+      "An unexpected error occurred");
+
+  static final String TYPE_BASE = "https://api.manual-auth-mysql.com/errors/";
+
+  private final HttpStatus status;
+  private final String defaultDetail;
+  private final byte[] head;
+  private final byte[] defaultDetailJson;
+
+  ProblemTemplate(HttpStatus status, String title, String typeSlug, String errorCode, String defaultDetail) {
+    this.status = status;
+    this.defaultDetail = defaultDetail;
+    this.head = ("{\"type\":\"" + TYPE_BASE + typeSlug + "\""
+        + ",\"title\":" + ProblemWriter.quote(title)
+        + ",\"status\":" + status.value()
+        + ",\"errorCode\":\"" + errorCode + "\""
+        + ",\"detail\":").getBytes(StandardCharsets.UTF_8);
+    this.defaultDetailJson = ProblemWriter.quote(defaultDetail).getBytes(StandardCharsets.UTF_8);
+  }
+
+  public HttpStatus status() {
+    return status;
+  }
+
+  public String defaultDetail() {
+    return defaultDetail;
+  }
+
+  byte[] head() {
+    return head;
+  }
+
+  byte[] defaultDetailJson() {
+    return defaultDetailJson;
+  }
+}
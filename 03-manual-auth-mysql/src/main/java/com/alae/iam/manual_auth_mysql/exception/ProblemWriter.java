@@ -0,0 +1,139 @@
+package com.alae.iam.manual_auth_mysql.exception;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Streams a {@link ProblemTemplate} and the few per-request fields (detail, instance, timestamp,
+ * one optional extra property) straight to the response buffer: no {@code ProblemDetail}, no
+ * {@code URI}, no Jackson tree or intermediate JSON string. The output matches what the
+ * {@code ProblemDetail}-based handlers produced. Whatever the failed handler left in the buffer is
+ * discarded; if it had already taken the writer, the problem goes through that writer instead.
+ */
+@Component
+public class ProblemWriter {
+
+  public static final String CONTENT_TYPE = "application/problem+json";
+
+  private static final byte[] INSTANCE = ",\"instance\":".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TIMESTAMP = ",\"timestamp\":\"".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  public void write(HttpServletResponse response, ProblemTemplate template, String instance) throws IOException {
+    write(response, template, template.defaultDetail(), instance, null, null);
+  }
+
+  /**
+   * @param extraName  name of an additional string property, or {@code null}
+   * @param extraValue its value; the property is omitted when {@code null}
+   */
+  public void write(HttpServletResponse response, ProblemTemplate template, String detail, String instance,
+                    String extraName, String extraValue) throws IOException {
+    if (response.isCommitted()) {
+      // status and part of another body are already on the wire; nothing sensible can follow
+      return;
+    }
+    response.resetBuffer();
+    response.setStatus(template.status().value());
+    response.setContentType(CONTENT_TYPE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+    OutputStream out;
+    ByteArrayOutputStream forWriter = null;
+    try {
+      out = response.getOutputStream();
+    } catch (IllegalStateException writerAlreadyObtained) {
+      // the failing handler already took the writer: render aside, then go through it
+      forWriter = new ByteArrayOutputStream(256);
+      out = forWriter;
+    }
+    out.write(template.head());
+    if (detail == null || detail.equals(template.defaultDetail())) {
+      out.write(template.defaultDetailJson());
+    } else {
+      writeString(out, detail);
+    }
+    if (instance != null) {
+      out.write(INSTANCE);
+      writeString(out, instance);
+    }
+    out.write(TIMESTAMP);
+    writeAscii(out, Instant.now().toString());
+    out.write('"');
+    if (extraName != null && extraValue != null) {
+      out.write(',');
+      writeString(out, extraName);
+      out.write(':');
+      writeString(out, extraValue);
+    }
+    out.write('}');
+    if (forWriter != null) {
+      response.getWriter().write(forWriter.toString(StandardCharsets.UTF_8));
+    }
+  }
+
+  static String quote(String value) {
+    StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  // JSON string, escaped and UTF-8 encoded char by char into the stream's own buffer
+  private static void writeString(OutputStream out, String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write('\\');
+        out.write('u');
+        out.write('0');
+        out.write('0');
+        out.write(HEX[c >> 4]);
+        out.write(HEX[c & 0xF]);
+      } else if (c < 0x80) {
+        out.write(c);
+      } else if (c < 0x800) {
+        out.write(0xC0 | (c >> 6));
+        out.write(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        out.write(0xF0 | (codePoint >> 18));
+        out.write(0x80 | ((codePoint >> 12) & 0x3F));
+        out.write(0x80 | ((codePoint >> 6) & 0x3F));
+        out.write(0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        out.write('?');
+      } else {
+        out.write(0xE0 | (c >> 12));
+        out.write(0x80 | ((c >> 6) & 0x3F));
+        out.write(0x80 | (c & 0x3F));
+      }
+    }
+    out.write('"');
+  }
+
+  private static void writeAscii(OutputStream out, String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      out.write(value.charAt(i));
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.alae.iam.manual_auth_mysql.exception;
+
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimError;
+
+/**
+ * An error reported to SCIM clients in the SCIM error format rather than as a problem detail.
+ */
+public class ScimException extends RuntimeException {
+
+  private final int status;
+  private final String scimType;
+
+  public ScimException(int status, String scimType, String detail) {
+    super(detail);
+    this.status = status;
+    this.scimType = scimType;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public ScimError toError() {
+    return ScimError.of(status, scimType, getMessage());
+  }
+}
@@ -0,0 +1,49 @@
+package com.alae.iam.manual_auth_mysql.exception;
+
+import com.alae.iam.manual_auth_mysql.controller.ScimController;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimError;
+import com.alae.iam.manual_auth_mysql.exception.auth.HashingOverloadedException;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+/**
+ * SCIM clients expect SCIM error bodies, so errors from {@link ScimController} are answered here
+ * ahead of {@link ApiExceptionHandler}.
+ */
+@RestControllerAdvice(assignableTypes = ScimController.class)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ScimExceptionHandler {
+
+  @ExceptionHandler(ScimException.class)
+  public ResponseEntity<ScimError> handleScim(ScimException ex) {
+    return error(ex.getStatus(), ex.toError());
+  }
+
+  @ExceptionHandler(HashingOverloadedException.class)
+  public ResponseEntity<ScimError> handleHashingOverloaded(HashingOverloadedException ex) {
+    return ResponseEntity.status(503)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .contentType(ScimController.SCIM_JSON)
+        .body(ScimError.of(503, null, ex.getMessage()));
+  }
+
+  @ExceptionHandler({HttpMessageNotReadableException.class, MethodArgumentTypeMismatchException.class})
+  public ResponseEntity<ScimError> handleUnreadable(Exception ex) {
+    return error(400, ScimError.of(400, "invalidSyntax", "The request could not be parsed"));
+  }
+
+  @ExceptionHandler(Exception.class)
+  public ResponseEntity<ScimError> handleGeneric(Exception ex) {
+    return error(500, ScimError.of(500, null, "Internal server error"));
+  }
+
+  private static ResponseEntity<ScimError> error(int status, ScimError body) {
+    return ResponseEntity.status(status).contentType(ScimController.SCIM_JSON).body(body);
+  }
+}
@@ -0,0 +1,8 @@
+package com.alae.iam.manual_auth_mysql.exception.auth;
+
+public class HashingOverloadedException extends RuntimeException {
+
+    public HashingOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,139 @@
+package com.alae.iam.manual_auth_mysql.repository;
+
+import com.alae.iam.manual_auth_mysql.acl.AclEntry;
+import com.alae.iam.manual_auth_mysql.acl.Sid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class AclRepository {
+
+  private static final RowMapper<AclEntry> ENTRY_MAPPER = (rs, rowNum) -> new AclEntry(
+      new Sid(rs.getString("sid")),
+      rs.getString("object_type"),
+      rs.getLong("object_id"),
+      rs.getInt("mask"));
+
+  private static final RowMapper<Change> CHANGE_MAPPER = (rs, rowNum) -> new Change(
+      rs.getLong("id"),
+      new Sid(rs.getString("sid")),
+      rs.getString("object_type"),
+      rs.getLong("object_id"));
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedJdbc;
+
+  /**
+   * Reads the whole table in id order, {@code batchSize} rows per query.
+   */
+  public void loadAll(int batchSize, Consumer<List<AclEntry>> batches) {
+    long[] lastId = {0};
+    List<AclEntry> page;
+    do {
+      page = jdbcTemplate.query(
+          "SELECT id, sid, object_type, object_id, mask FROM acl_entries WHERE id > ? ORDER BY id LIMIT ?",
+          (rs, rowNum) -> {
+            lastId[0] = rs.getLong("id");
+            return ENTRY_MAPPER.mapRow(rs, rowNum);
+          }, lastId[0], batchSize);
+      if (!page.isEmpty()) {
+        batches.accept(page);
+      }
+    } while (page.size() == batchSize);
+  }
+
+  public List<AclEntry> findByObjects(String objectType, Collection<Long> objectIds) {
+    return namedJdbc.query("SELECT sid, object_type, object_id, mask FROM acl_entries"
+            + " WHERE object_type = :objectType AND object_id IN (:objectIds)",
+        new MapSqlParameterSource("objectType", objectType).addValue("objectIds", objectIds), ENTRY_MAPPER);
+  }
+
+  /**
+   * The current mask of one entry, inserting it with mask 0 if it is missing, locked until the
+   * transaction ends so that concurrent grants on it are applied one after the other.
+   *
+   * <p>Locking a missing row with {@code SELECT ... FOR UPDATE} would take a gap lock in InnoDB;
+   * two first grants in the same gap would then both block on the other's insert and deadlock. The
+   * upsert locks the row itself, new or existing, and the read that follows only finds it.
+   */
+  public int claimMaskForUpdate(Sid sid, String objectType, long objectId) {
+    jdbcTemplate.update("INSERT INTO acl_entries (sid, object_type, object_id, mask) VALUES (?, ?, ?, 0)"
+            + " ON DUPLICATE KEY UPDATE mask = mask",
+        sid.name(), objectType, objectId);
+    return findMaskForUpdate(sid, objectType, objectId);
+  }
+
+  /**
+   * The current mask of one entry, locked until the transaction ends. A missing entry is not
+   * created: use {@link #claimMaskForUpdate} when the caller may insert it.
+   */
+  public int findMaskForUpdate(Sid sid, String objectType, long objectId) {
+    List<Integer> masks = jdbcTemplate.queryForList("SELECT mask FROM acl_entries"
+            + " WHERE sid = ? AND object_type = ? AND object_id = ? FOR UPDATE",
+        Integer.class, sid.name(), objectType, objectId);
+    return masks.isEmpty() ? 0 : masks.get(0);
+  }
+
+  /**
+   * Sets the mask of one entry; 0 deletes it.
+   */
+  public void save(Sid sid, String objectType, long objectId, int mask) {
+    if (mask == 0) {
+      jdbcTemplate.update("DELETE FROM acl_entries WHERE sid = ? AND object_type = ? AND object_id = ?",
+          sid.name(), objectType, objectId);
+      return;
+    }
+    int updated = jdbcTemplate.update("UPDATE acl_entries SET mask = ?"
+            + " WHERE sid = ? AND object_type = ? AND object_id = ?",
+        mask, sid.name(), objectType, objectId);
+    if (updated == 0) {
+      jdbcTemplate.update("INSERT INTO acl_entries (sid, object_type, object_id, mask) VALUES (?, ?, ?, ?)",
+          sid.name(), objectType, objectId, mask);
+    }
+  }
+
+  // Must share the transaction that changes the entry, like UserChangeOutboxRepository#append
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void appendChange(Sid sid, String objectType, long objectId) {
+    jdbcTemplate.update("INSERT INTO acl_change_outbox (sid, object_type, object_id, created_at)"
+            + " VALUES (?, ?, ?, ?)",
+        sid.name(), objectType, objectId, Timestamp.valueOf(LocalDateTime.now()));
+  }
+
+  public long latestChangeId() {
+    Long latest = jdbcTemplate.queryForObject("SELECT MAX(id) FROM acl_change_outbox", Long.class);
+    return latest == null ? 0 : latest;
+  }
+
+  public List<Change> findChangesAfter(long afterId, int limit) {
+    return jdbcTemplate.query("SELECT id, sid, object_type, object_id FROM acl_change_outbox"
+        + " WHERE id > ? ORDER BY id LIMIT ?", CHANGE_MAPPER, afterId, limit);
+  }
+
+  /**
+   * See {@link UserChangeOutboxRepository#findRecent}.
+   */
+  public List<Change> findRecentChanges(long upToId, LocalDateTime since) {
+    return jdbcTemplate.query("SELECT id, sid, object_type, object_id FROM acl_change_outbox"
+        + " WHERE created_at >= ? AND id <= ?", CHANGE_MAPPER, Timestamp.valueOf(since), upToId);
+  }
+
+  public int deleteChangesOlderThan(LocalDateTime cutoff) {
+    return jdbcTemplate.update("DELETE FROM acl_change_outbox WHERE created_at < ?", Timestamp.valueOf(cutoff));
+  }
+
+  public record Change(long id, Sid sid, String objectType, long objectId) {}
+}
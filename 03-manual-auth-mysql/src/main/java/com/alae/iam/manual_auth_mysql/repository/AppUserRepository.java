@@ -1,11 +1,29 @@
 package com.alae.iam.manual_auth_mysql.repository;
 
 import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface AppUserRepository extends JpaRepository<AppUser, Long> {
-  Optional<AppUser> findByUsername(String username);
-  Optional<AppUser> findByEmail(String email);
+  Optional<AppUser> findByUsernameNormalized(String usernameNormalized);
+  Optional<AppUser> findByEmailNormalized(String emailNormalized);
+  boolean existsByUsernameNormalized(String usernameNormalized);
+  boolean existsByEmailNormalized(String emailNormalized);
+
+  default Optional<AppUser> findByUsername(String username) {
+    return findByUsernameNormalized(Identifiers.normalize(username));
+  }
+
+  default Optional<AppUser> findByEmail(String email) {
+    return findByEmailNormalized(Identifiers.normalize(email));
+  }
+
+  // One round trip for either identifier; MySQL answers the OR with an index merge of both unique keys
+  @Query("SELECT u FROM AppUser u WHERE u.usernameNormalized = :normalized OR u.emailNormalized = :normalized")
+  List<AppUser> findByNormalizedIdentifier(@Param("normalized") String normalizedIdentifier);
 }
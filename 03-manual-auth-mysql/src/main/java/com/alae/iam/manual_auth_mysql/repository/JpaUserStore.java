@@ -0,0 +1,60 @@
+package com.alae.iam.manual_auth_mysql.repository;
+
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "false", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaUserStore implements UserStore {
+
+  private final AppUserRepository userRepository;
+  private final JdbcTemplate jdbcTemplate;
+
+  @Override
+  public Optional<AppUser> findById(long id) {
+    return userRepository.findById(id);
+  }
+
+  @Override
+  public Optional<AppUser> findByNormalizedIdentifier(String normalized) {
+    List<AppUser> matches = userRepository.findByNormalizedIdentifier(normalized);
+    return matches.stream()
+        .filter(user -> user.getUsernameNormalized().equals(normalized))
+        .findFirst()
+        .or(() -> matches.stream().findFirst());
+  }
+
+  @Override
+  public boolean existsByUsername(String normalizedUsername) {
+    return userRepository.existsByUsernameNormalized(normalizedUsername);
+  }
+
+  @Override
+  public boolean existsByEmail(String normalizedEmail) {
+    return userRepository.existsByEmailNormalized(normalizedEmail);
+  }
+
+  @Override
+  public AppUser create(AppUser user) {
+    return userRepository.save(user);
+  }
+
+  @Override
+  public void updateLocks(List<LockUpdate> updates) {
+    jdbcTemplate.batchUpdate("UPDATE app_users SET account_locked = ?, locked_until = ? WHERE id = ?",
+        updates.stream().map(update -> new Object[] {update.locked(), update.lockedUntil(), update.userId()}).toList());
+  }
+
+  @Override
+  public boolean updatePasswordHash(long userId, String expectedHash, String newHash) {
+    return jdbcTemplate.update("UPDATE app_users SET password_hash = ? WHERE id = ? AND password_hash = ?",
+        newHash, userId, expectedHash) == 1;
+  }
+}
@@ -0,0 +1,146 @@
+package com.alae.iam.manual_auth_mysql.repository;
+
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import com.alae.iam.manual_auth_mysql.service.ScimFilterParser.SqlFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Set-based access to {@code app_users} for SCIM provisioning: batched inserts and conflict checks
+ * for a whole chunk of users, and keyset-paged reads for streamed list responses.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ScimUserRepository {
+
+  private static final String COLUMNS = "id, username, email, enabled, created_at";
+
+  private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> new Row(
+      rs.getLong("id"),
+      rs.getString("username"),
+      rs.getString("email"),
+      rs.getBoolean("enabled"),
+      rs.getTimestamp("created_at").toLocalDateTime());
+
+  private final NamedParameterJdbcTemplate jdbc;
+
+  public Optional<Row> findById(long id) {
+    return jdbc.query("SELECT " + COLUMNS + " FROM app_users WHERE id = :id", Map.of("id", id), ROW_MAPPER)
+        .stream().findFirst();
+  }
+
+  public long count(SqlFilter filter) {
+    Long count = jdbc.queryForObject("SELECT COUNT(*) FROM app_users WHERE " + filter.where(), filter.params(), Long.class);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * One page in id order. The first page of a listing is positioned with {@code offset}; the next
+   * ones with {@code afterId}, which the primary key answers without skipping rows.
+   */
+  public List<Row> findPage(SqlFilter filter, long afterId, long offset, int limit) {
+    MapSqlParameterSource params = new MapSqlParameterSource(filter.params().getValues())
+        .addValue("afterId", afterId)
+        .addValue("offset", offset)
+        .addValue("limit", limit);
+    return jdbc.query("SELECT " + COLUMNS + " FROM app_users WHERE (" + filter.where() + ") AND id > :afterId"
+        + " ORDER BY id LIMIT :limit OFFSET :offset", params, ROW_MAPPER);
+  }
+
+  /**
+   * Normalized usernames and emails among the given ones that already belong to a user, answered
+   * from the unique indexes on the normalized columns. The two are kept apart: a username only
+   * conflicts with usernames, an email only with emails.
+   */
+  public Taken findTaken(Collection<String> usernames, Collection<String> emails) {
+    Taken taken = new Taken(new HashSet<>(), new HashSet<>());
+    if (usernames.isEmpty() && emails.isEmpty()) {
+      return taken;
+    }
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("usernames", usernames.isEmpty() ? List.of("") : usernames.stream().map(Identifiers::normalize).toList())
+        .addValue("emails", emails.isEmpty() ? List.of("") : emails.stream().map(Identifiers::normalize).toList());
+    jdbc.query("SELECT username_normalized, email_normalized FROM app_users"
+            + " WHERE username_normalized IN (:usernames) OR email_normalized IN (:emails)",
+        params, (RowCallbackHandler) rs -> {
+          taken.usernames().add(rs.getString("username_normalized"));
+          taken.emails().add(rs.getString("email_normalized"));
+        });
+    return taken;
+  }
+
+  public boolean isTakenByOther(long id, String username, String email) {
+    Integer count = jdbc.queryForObject(
+        "SELECT COUNT(*) FROM app_users WHERE (username_normalized = :username OR email_normalized = :email) AND id <> :id",
+        Map.of("id", id, "username", Identifiers.normalize(username), "email", Identifiers.normalize(email)), Integer.class);
+    return count != null && count > 0;
+  }
+
+  /**
+   * Inserts the users in one JDBC batch and returns their ids by normalized username.
+   */
+  public Map<String, Long> insertAll(List<NewUser> users) {
+    LocalDateTime now = LocalDateTime.now();
+    SqlParameterSource[] batch = users.stream()
+        .map(user -> new MapSqlParameterSource()
+            .addValue("username", user.username())
+            .addValue("usernameNormalized", Identifiers.normalize(user.username()))
+            .addValue("email", user.email())
+            .addValue("emailNormalized", Identifiers.normalize(user.email()))
+            .addValue("passwordHash", user.passwordHash())
+            .addValue("enabled", user.enabled())
+            .addValue("createdAt", Timestamp.valueOf(now)))
+        .toArray(SqlParameterSource[]::new);
+    jdbc.batchUpdate("INSERT INTO app_users (username, username_normalized, email, email_normalized, password_hash,"
+        + " enabled, account_locked, created_at) VALUES (:username, :usernameNormalized, :email, :emailNormalized,"
+        + " :passwordHash, :enabled, FALSE, :createdAt)", batch);
+
+    Map<String, Long> ids = new HashMap<>();
+    jdbc.query("SELECT id, username_normalized FROM app_users WHERE username_normalized IN (:usernames)",
+        Map.of("usernames", users.stream().map(user -> Identifiers.normalize(user.username())).toList()),
+        (RowCallbackHandler) rs -> ids.put(rs.getString("username_normalized"), rs.getLong("id")));
+    return ids;
+  }
+
+  /**
+   * @param passwordHash the new hash, or {@code null} to keep the current one
+   */
+  public boolean update(long id, String username, String email, boolean enabled, String passwordHash) {
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("id", id)
+        .addValue("username", username)
+        .addValue("usernameNormalized", Identifiers.normalize(username))
+        .addValue("email", email)
+        .addValue("emailNormalized", Identifiers.normalize(email))
+        .addValue("enabled", enabled)
+        .addValue("passwordHash", passwordHash, Types.VARCHAR);
+    return jdbc.update("UPDATE app_users SET username = :username, username_normalized = :usernameNormalized,"
+        + " email = :email, email_normalized = :emailNormalized, enabled = :enabled, password_hash = COALESCE(:passwordHash, password_hash) WHERE id = :id", params) == 1;
+  }
+
+  public boolean delete(long id) {
+    return jdbc.update("DELETE FROM app_users WHERE id = :id", Map.of("id", id)) == 1;
+  }
+
+  public record Row(long id, String username, String email, boolean enabled, LocalDateTime createdAt) {}
+
+  public record NewUser(String username, String email, String passwordHash, boolean enabled) {}
+
+  public record Taken(Set<String> usernames, Set<String> emails) {}
+}
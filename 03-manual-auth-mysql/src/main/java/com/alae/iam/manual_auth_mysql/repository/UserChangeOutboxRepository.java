@@ -0,0 +1,56 @@
+package com.alae.iam.manual_auth_mysql.repository;
+
+import com.alae.iam.manual_auth_mysql.domain.UserChangeType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class UserChangeOutboxRepository {
+
+  private static final RowMapper<Change> CHANGE_MAPPER =
+      (rs, rowNum) -> new Change(rs.getLong("id"), rs.getLong("user_id"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  // Must share the transaction that changes the user, otherwise the change and its event can diverge
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void append(long userId, UserChangeType changeType) {
+    jdbcTemplate.update("INSERT INTO user_change_outbox (user_id, change_type, created_at) VALUES (?, ?, ?)",
+        userId, changeType.name(), Timestamp.valueOf(LocalDateTime.now()));
+  }
+
+  public long latestId() {
+    Long latest = jdbcTemplate.queryForObject("SELECT MAX(id) FROM user_change_outbox", Long.class);
+    return latest == null ? 0 : latest;
+  }
+
+  public List<Change> findAfter(long afterId, int limit) {
+    return jdbcTemplate.query("SELECT id, user_id FROM user_change_outbox WHERE id > ? ORDER BY id LIMIT ?",
+        CHANGE_MAPPER, afterId, limit);
+  }
+
+  /**
+   * Changes up to {@code upToId} created since {@code since}. Ids are assigned at insert, so a slow
+   * transaction can commit a lower id after the cursor has moved past it; re-reading the recent
+   * tail catches those.
+   */
+  public List<Change> findRecent(long upToId, LocalDateTime since) {
+    return jdbcTemplate.query("SELECT id, user_id FROM user_change_outbox WHERE created_at >= ? AND id <= ?",
+        CHANGE_MAPPER, Timestamp.valueOf(since), upToId);
+  }
+
+  public int deleteOlderThan(LocalDateTime cutoff) {
+    return jdbcTemplate.update("DELETE FROM user_change_outbox WHERE created_at < ?", Timestamp.valueOf(cutoff));
+  }
+
+  public record Change(long id, long userId) {}
+}
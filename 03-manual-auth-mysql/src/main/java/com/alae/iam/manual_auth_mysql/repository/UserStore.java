@@ -0,0 +1,37 @@
+package com.alae.iam.manual_auth_mysql.repository;
+
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Where the login path reads and writes {@code app_users}: {@link JpaUserStore} on the single
+ * datasource, or {@link com.alae.iam.manual_auth_mysql.sharding.ShardedUserStore} when
+ * {@code app.sharding.enabled} spreads users over several.
+ */
+public interface UserStore {
+
+  Optional<AppUser> findById(long id);
+
+  /**
+   * Resolves a normalized username or email. A username match wins over another user's email.
+   */
+  Optional<AppUser> findByNormalizedIdentifier(String normalized);
+
+  boolean existsByUsername(String normalizedUsername);
+
+  boolean existsByEmail(String normalizedEmail);
+
+  AppUser create(AppUser user);
+
+  void updateLocks(List<LockUpdate> updates);
+
+  /**
+   * Replaces the hash only if it is still {@code expectedHash}, so a concurrent change wins.
+   */
+  boolean updatePasswordHash(long userId, String expectedHash, String newHash);
+
+  record LockUpdate(long userId, boolean locked, Timestamp lockedUntil) {}
+}
@@ -2,8 +2,11 @@ package com.alae.iam.manual_auth_mysql.service;
 
 import com.alae.iam.manual_auth_mysql.domain.AppUser;
 import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
 import com.alae.iam.manual_auth_mysql.dto.UserResponse;
-import com.alae.iam.manual_auth_mysql.repository.AppUserRepository;
+import com.alae.iam.manual_auth_mysql.repository.UserStore;
+import com.alae.iam.manual_auth_mysql.tracing.Span;
+import com.alae.iam.manual_auth_mysql.tracing.Tracer;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -19,14 +22,23 @@ import org.springframework.stereotype.Service;
 public class AuthService {
 
   private final SecurityContextRepository securityContextRepository;
-  private final AppUserRepository appUserRepository;
+  private final UserStore userStore;
   private final PasswordEncoder passwordEncoder;
+  private final Tracer tracer;
 
+  /**
+   * Stores the context through the configured {@link SecurityContextRepository}: the session-backed
+   * repository creates the session itself, the cookie-backed one never needs one.
+   */
   public UserResponse completeLogin(Authentication authentication, HttpServletRequest request, HttpServletResponse response) {
     SecurityContext context = SecurityContextHolder.createEmptyContext();
     context.setAuthentication(authentication);
-    request.getSession(true); // ensure session is created so cookie is issued
-    securityContextRepository.saveContext(context, request, response);
+    try (Span span = tracer.span("auth.save_context")) {
+      boolean hadSession = request.getSession(false) != null;
+      securityContextRepository.saveContext(context, request, response);
+      span.attribute("auth.context_repository", securityContextRepository.getClass().getSimpleName())
+          .attribute("auth.session_created", !hadSession && request.getSession(false) != null);
+    }
     SecurityContextHolder.setContext(context);
     AuthPrincipal principal = (AuthPrincipal) authentication.getPrincipal();
     return new UserResponse(principal.id(), principal.username(), principal.email());
@@ -40,10 +52,14 @@ public class AuthService {
   }
 
   public AppUser register(String username, String email, String rawPassword) {
-    if (appUserRepository.findByUsername(username).isPresent()) {
+    if (!Identifiers.fits(username, Identifiers.USERNAME_MAX_LENGTH)
+        || !Identifiers.fits(email, Identifiers.EMAIL_MAX_LENGTH)) {
+      throw new IllegalArgumentException("Username or email too long once normalized");
+    }
+    if (userStore.existsByUsername(Identifiers.normalize(username))) {
       throw new IllegalArgumentException("Username already exists");
     }
-    if (appUserRepository.findByEmail(email).isPresent()) {
+    if (userStore.existsByEmail(Identifiers.normalize(email))) {
       throw new IllegalArgumentException("Email already exists");
     }
 
@@ -55,6 +71,6 @@ public class AuthService {
         .accountLocked(false)
         .build();
 
-    return appUserRepository.save(user);
+    return userStore.create(user);
   }
 }
@@ -0,0 +1,244 @@
+package com.alae.iam.manual_auth_mysql.service;
+
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import com.alae.iam.manual_auth_mysql.exception.ScimException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Translates a SCIM filter (RFC 7644 section 3.4.2.2) into a parameterised SQL condition on
+ * {@code app_users}. Only the operators an index can answer are accepted: {@code eq}, {@code sw} (a
+ * prefix {@code LIKE}), the range operators, {@code pr}, {@code and}, {@code or} and parentheses.
+ * {@code ne}, {@code co} and {@code ew} would scan the table and are rejected as invalidFilter.
+ * {@code active} has no index of its own, and {@code pr} matches every row, so both are only
+ * accepted {@code and}-ed with a comparison on an indexed attribute; every {@code or} branch must
+ * carry one as well.
+ */
+public final class ScimFilterParser {
+
+  private static final String USER_SCHEMA_PREFIX = "urn:ietf:params:scim:schemas:core:2.0:user:";
+  private static final int MAX_COMPARISONS = 20;
+
+  private enum Type { STRING, LONG, BOOLEAN, TIMESTAMP }
+
+  private record Column(String name, Type type, boolean indexed) {}
+
+  // a piece of WHERE clause, and whether an index narrows the rows it matches
+  private record Condition(String sql, boolean indexed) {}
+
+  // lower-cased SCIM attribute paths. userName and emails are not case-exact (RFC 7643), so they
+  // compare through the normalized columns
+  private static final Map<String, Column> COLUMNS = Map.of(
+      "id", new Column("id", Type.LONG, true),
+      "username", new Column("username_normalized", Type.STRING, true),
+      "emails", new Column("email_normalized", Type.STRING, true),
+      "emails.value", new Column("email_normalized", Type.STRING, true),
+      "active", new Column("enabled", Type.BOOLEAN, false),
+      "meta.created", new Column("created_at", Type.TIMESTAMP, true));
+
+  public record SqlFilter(String where, MapSqlParameterSource params) {
+
+    public static final SqlFilter ALL = new SqlFilter("1 = 1", new MapSqlParameterSource());
+  }
+
+  private final List<String> tokens;
+  private final MapSqlParameterSource params = new MapSqlParameterSource();
+  private int position;
+  private int comparisons;
+
+  private ScimFilterParser(List<String> tokens) {
+    this.tokens = tokens;
+  }
+
+  public static SqlFilter parse(String filter) {
+    if (filter == null || filter.isBlank()) {
+      return SqlFilter.ALL;
+    }
+    ScimFilterParser parser = new ScimFilterParser(tokenize(filter));
+    Condition where = parser.orExpression();
+    if (parser.position != parser.tokens.size()) {
+      throw invalid("Unexpected '" + parser.tokens.get(parser.position) + "'");
+    }
+    if (!where.indexed()) {
+      throw invalid("'active' and 'pr' cannot use an index; combine them with 'and' and a comparison on id,"
+          + " userName, emails or meta.created");
+    }
+    return new SqlFilter(where.sql(), parser.params);
+  }
+
+  private Condition orExpression() {
+    Condition left = andExpression();
+    while (acceptKeyword("or")) {
+      Condition right = andExpression();
+      left = new Condition("(" + left.sql() + " OR " + right.sql() + ")", left.indexed() && right.indexed());
+    }
+    return left;
+  }
+
+  private Condition andExpression() {
+    Condition left = term();
+    while (acceptKeyword("and")) {
+      Condition right = term();
+      left = new Condition("(" + left.sql() + " AND " + right.sql() + ")", left.indexed() || right.indexed());
+    }
+    return left;
+  }
+
+  private Condition term() {
+    if (accept("(")) {
+      Condition inner = orExpression();
+      expect(")");
+      return inner;
+    }
+    return comparison();
+  }
+
+  private Condition comparison() {
+    if (++comparisons > MAX_COMPARISONS) {
+      throw invalid("Filter has more than " + MAX_COMPARISONS + " comparisons");
+    }
+    String attribute = next().toLowerCase(Locale.ROOT);
+    if (attribute.startsWith(USER_SCHEMA_PREFIX)) {
+      attribute = attribute.substring(USER_SCHEMA_PREFIX.length());
+    }
+    Column column = COLUMNS.get(attribute);
+    if (column == null) {
+      throw invalid("Filtering on '" + attribute + "' is not supported");
+    }
+    String operator = next().toLowerCase(Locale.ROOT);
+    if (operator.equals("pr")) {
+      // every filterable column is NOT NULL, so this matches the whole table
+      return new Condition(column.name() + " IS NOT NULL", false);
+    }
+    String sqlOperator = switch (operator) {
+      case "eq" -> "=";
+      case "gt" -> ">";
+      case "ge" -> ">=";
+      case "lt" -> "<";
+      case "le" -> "<=";
+      case "sw" -> "LIKE";
+      case "ne", "co", "ew" -> throw invalid("'" + operator + "' cannot use an index; use eq or sw");
+      default -> throw invalid("Unknown operator '" + operator + "'");
+    };
+    String parameter = "p" + params.getValues().size();
+    Object value = value(next(), column.type());
+    if (operator.equals("sw")) {
+      if (column.type() != Type.STRING) {
+        throw invalid("'sw' applies to string attributes only");
+      }
+      value = escapeLike((String) value) + "%";
+    } else if (column.type() == Type.BOOLEAN && !operator.equals("eq")) {
+      throw invalid("'" + operator + "' does not apply to a boolean");
+    }
+    params.addValue(parameter, value);
+    return new Condition(column.name() + " " + sqlOperator + " :" + parameter, column.indexed());
+  }
+
+  private static Object value(String token, Type type) {
+    boolean quoted = token.length() >= 2 && token.charAt(0) == '"';
+    String text = quoted ? token.substring(1, token.length() - 1) : token;
+    try {
+      return switch (type) {
+        case STRING -> {
+          if (!quoted) {
+            throw invalid("Expected a quoted string, got " + token);
+          }
+          yield Identifiers.normalize(text);
+        }
+        case LONG -> Long.parseLong(text);
+        case BOOLEAN -> {
+          if (!text.equals("true") && !text.equals("false")) {
+            throw invalid("Expected true or false, got " + token);
+          }
+          yield Boolean.parseBoolean(text);
+        }
+        // created_at holds local date-times of the server zone
+        case TIMESTAMP -> Timestamp.valueOf(LocalDateTime.ofInstant(Instant.parse(text), ZoneId.systemDefault()));
+      };
+    } catch (NumberFormatException | DateTimeParseException e) {
+      throw invalid("Invalid value " + token);
+    }
+  }
+
+  private static String escapeLike(String value) {
+    return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+  }
+
+  private static List<String> tokenize(String filter) {
+    List<String> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < filter.length()) {
+      char c = filter.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '(' || c == ')') {
+        tokens.add(String.valueOf(c));
+        i++;
+      } else if (c == '"') {
+        StringBuilder text = new StringBuilder("\"");
+        i++;
+        while (i < filter.length() && filter.charAt(i) != '"') {
+          if (filter.charAt(i) == '\\' && i + 1 < filter.length()) {
+            i++;
+          }
+          text.append(filter.charAt(i++));
+        }
+        if (i >= filter.length()) {
+          throw invalid("Unterminated string");
+        }
+        tokens.add(text.append('"').toString());
+        i++;
+      } else {
+        int start = i;
+        while (i < filter.length() && !Character.isWhitespace(filter.charAt(i))
+            && filter.charAt(i) != '(' && filter.charAt(i) != ')' && filter.charAt(i) != '"') {
+          i++;
+        }
+        tokens.add(filter.substring(start, i));
+      }
+    }
+    return tokens;
+  }
+
+  private String next() {
+    if (position >= tokens.size()) {
+      throw invalid("Filter ends unexpectedly");
+    }
+    return tokens.get(position++);
+  }
+
+  private boolean accept(String token) {
+    if (position < tokens.size() && tokens.get(position).equals(token)) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean acceptKeyword(String keyword) {
+    if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(String token) {
+    if (!accept(token)) {
+      throw invalid("Expected '" + token + "'");
+    }
+  }
+
+  private static ScimException invalid(String detail) {
+    return new ScimException(400, "invalidFilter", detail);
+  }
+}
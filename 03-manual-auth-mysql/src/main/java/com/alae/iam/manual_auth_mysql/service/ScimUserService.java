@@ -0,0 +1,452 @@
+package com.alae.iam.manual_auth_mysql.service;
+
+import com.alae.iam.manual_auth_mysql.auth.CredentialCache;
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import com.alae.iam.manual_auth_mysql.domain.UserChangeType;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimBulkRequest;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimBulkResponse;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimBulkResponse.Result;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimError;
+import com.alae.iam.manual_auth_mysql.dto.scim.ScimUser;
+import com.alae.iam.manual_auth_mysql.exception.ScimException;
+import com.alae.iam.manual_auth_mysql.exception.auth.HashingOverloadedException;
+import com.alae.iam.manual_auth_mysql.repository.ScimUserRepository;
+import com.alae.iam.manual_auth_mysql.repository.ScimUserRepository.NewUser;
+import com.alae.iam.manual_auth_mysql.repository.ScimUserRepository.Row;
+import com.alae.iam.manual_auth_mysql.repository.ScimUserRepository.Taken;
+import com.alae.iam.manual_auth_mysql.service.ScimFilterParser.SqlFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * SCIM provisioning of {@code app_users}. A bulk request is validated up front, its passwords are
+ * hashed in parallel (still within the hashing governor's memory budget), and the operations then
+ * run in order in chunks of {@code app.scim.bulk.batch-size}, one transaction per chunk, with runs
+ * of creates checked for conflicts in one query and inserted in one JDBC batch.
+ */
+@Service
+public class ScimUserService {
+
+  public static final String LIST_RESPONSE_SCHEMA = "urn:ietf:params:scim:api:messages:2.0:ListResponse";
+  private static final String USERS_PATH = "/Users";
+  private static final String LOCATION_PREFIX = "/scim/v2/Users/";
+  private static final int PAGE_SIZE = 500;
+
+  private final ScimUserRepository repository;
+  private final PasswordEncoder passwordEncoder;
+  private final CredentialCache credentialCache;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper objectMapper;
+  private final int batchSize;
+  private final int maxOperations;
+  private final int maxResults;
+  private final ExecutorService hashExecutor;
+  private volatile String unusablePasswordHash;
+
+  public ScimUserService(ScimUserRepository repository,
+                         PasswordEncoder passwordEncoder,
+                         CredentialCache credentialCache,
+                         TransactionTemplate transactionTemplate,
+                         ObjectMapper objectMapper,
+                         @Value("${app.scim.bulk.batch-size:500}") int batchSize,
+                         @Value("${app.scim.bulk.max-operations:10000}") int maxOperations,
+                         @Value("${app.scim.bulk.hash-threads:0}") int hashThreads,
+                         @Value("${app.scim.max-results:10000}") int maxResults) {
+    this.repository = repository;
+    this.passwordEncoder = passwordEncoder;
+    this.credentialCache = credentialCache;
+    this.transactionTemplate = transactionTemplate;
+    this.objectMapper = objectMapper;
+    this.batchSize = batchSize;
+    this.maxOperations = maxOperations;
+    this.maxResults = maxResults;
+    int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+    this.hashExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "scim-hash");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  void shutdown() {
+    hashExecutor.shutdownNow();
+  }
+
+  public ScimUser get(long id) {
+    return repository.findById(id).map(ScimUserService::toScim)
+        .orElseThrow(() -> new ScimException(404, null, "User " + id + " not found"));
+  }
+
+  public ScimUser create(ScimUser user) {
+    Op op = run(List.of(plan("POST", null, USERS_PATH, user)), Integer.MAX_VALUE).get(0);
+    return get(op.userId);
+  }
+
+  public ScimUser replace(long id, ScimUser user) {
+    run(List.of(plan("PUT", null, USERS_PATH + "/" + id, user)), Integer.MAX_VALUE);
+    return get(id);
+  }
+
+  public void delete(long id) {
+    run(List.of(plan("DELETE", null, USERS_PATH + "/" + id, null)), Integer.MAX_VALUE);
+  }
+
+  public ScimBulkResponse bulk(ScimBulkRequest request) {
+    List<ScimBulkRequest.Operation> operations = request.operations() == null ? List.of() : request.operations();
+    if (operations.size() > maxOperations) {
+      throw new ScimException(413, null, "A bulk request may hold at most " + maxOperations + " operations");
+    }
+    List<Op> ops = new ArrayList<>(operations.size());
+    for (int i = 0; i < operations.size(); i++) {
+      ScimBulkRequest.Operation operation = operations.get(i);
+      ops.add(plan(operation.method(), operation.bulkId(), operation.path(), operation.data()));
+    }
+    int failOnErrors = request.failOnErrors() == null || request.failOnErrors() <= 0
+        ? Integer.MAX_VALUE : request.failOnErrors();
+    hashPasswords(ops);
+    execute(ops, failOnErrors);
+    return new ScimBulkResponse(ops.stream().filter(op -> op.result != null).map(op -> op.result).toList());
+  }
+
+  /**
+   * Writes a ListResponse page by page. The filter is parsed and the total counted before anything
+   * is written, so an invalid filter is still reported as a proper error.
+   */
+  public void list(String filter, Integer startIndex, Integer count, OutputStream out) throws IOException {
+    SqlFilter sqlFilter = ScimFilterParser.parse(filter);
+    long start = startIndex == null || startIndex < 1 ? 1 : startIndex;
+    int wanted = count == null ? maxResults : Math.max(0, Math.min(count, maxResults));
+    long total = repository.count(sqlFilter);
+    // one flush per page rather than per user
+    ObjectWriter userWriter = objectMapper.writerFor(ScimUser.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+      json.writeStartObject();
+      json.writeArrayFieldStart("schemas");
+      json.writeString(LIST_RESPONSE_SCHEMA);
+      json.writeEndArray();
+      json.writeNumberField("totalResults", total);
+      json.writeNumberField("startIndex", start);
+      json.writeArrayFieldStart("Resources");
+      int written = 0;
+      long afterId = 0;
+      long offset = start - 1;
+      while (written < wanted) {
+        List<Row> page = repository.findPage(sqlFilter, afterId, offset, Math.min(PAGE_SIZE, wanted - written));
+        for (Row row : page) {
+          userWriter.writeValue(json, toScim(row));
+        }
+        written += page.size();
+        json.flush();
+        if (page.size() < PAGE_SIZE) {
+          break;
+        }
+        afterId = page.get(page.size() - 1).id();
+        offset = 0;
+      }
+      json.writeEndArray();
+      json.writeNumberField("itemsPerPage", written);
+      json.writeEndObject();
+    }
+  }
+
+  // ----- planning -----
+
+  private Op plan(String method, String bulkId, String path, ScimUser data) {
+    Op op = new Op(method == null ? "" : method.toUpperCase(Locale.ROOT), bulkId, data);
+    try {
+      switch (op.method) {
+        case "POST" -> {
+          if (!USERS_PATH.equals(path)) {
+            throw new ScimException(400, "invalidPath", "POST applies to " + USERS_PATH);
+          }
+          validate(data);
+        }
+        case "PUT" -> {
+          op.userId = userId(path);
+          validate(data);
+        }
+        case "DELETE" -> op.userId = userId(path);
+        case "PATCH" -> throw new ScimException(501, null, "PATCH is not supported; send the full user with PUT");
+        default -> throw new ScimException(400, "invalidSyntax", "Unsupported method '" + method + "'");
+      }
+    } catch (ScimException e) {
+      op.error = Result.failure(op.method, bulkId, e.toError());
+    }
+    return op;
+  }
+
+  private static long userId(String path) {
+    if (path == null || !path.startsWith(USERS_PATH + "/")) {
+      throw new ScimException(400, "invalidPath", "Expected " + USERS_PATH + "/{id}");
+    }
+    try {
+      return Long.parseLong(path.substring(USERS_PATH.length() + 1));
+    } catch (NumberFormatException e) {
+      throw new ScimException(404, null, "User " + path.substring(USERS_PATH.length() + 1) + " not found");
+    }
+  }
+
+  private static void validate(ScimUser user) {
+    if (user == null) {
+      throw new ScimException(400, "invalidSyntax", "Missing user data");
+    }
+    if (user.userName() == null || user.userName().isBlank() || user.userName().length() > 100
+        || !Identifiers.fits(user.userName(), Identifiers.USERNAME_MAX_LENGTH)) {
+      throw new ScimException(400, "invalidValue", "userName is required, at most 100 characters");
+    }
+    String email = user.primaryEmail();
+    if (email == null || email.length() > 255 || email.indexOf('@') < 1
+        || !Identifiers.fits(email, Identifiers.EMAIL_MAX_LENGTH)) {
+      throw new ScimException(400, "invalidValue", "A valid email is required, at most 255 characters");
+    }
+    if (user.password() != null && (user.password().length() < 6 || user.password().length() > 100)) {
+      throw new ScimException(400, "invalidValue", "password must be between 6 and 100 characters");
+    }
+  }
+
+  private void hashPasswords(List<Op> ops) {
+    List<CompletableFuture<Void>> hashes = new ArrayList<>();
+    for (Op op : ops) {
+      if (op.error != null || op.data == null) {
+        continue;
+      }
+      if (op.data.password() != null) {
+        hashes.add(CompletableFuture.runAsync(() -> op.passwordHash = passwordEncoder.encode(op.data.password()), hashExecutor)
+            .exceptionally(failure -> {
+              Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+              op.error = Result.failure(op.method, op.bulkId, cause instanceof HashingOverloadedException
+                  ? ScimError.of(503, null, cause.getMessage())
+                  : ScimError.of(500, null, "Could not hash the password"));
+              return null;
+            }));
+      } else if (op.method.equals("POST")) {
+        // provisioned for single sign-on: a hash nobody knows the password of
+        op.passwordHash = unusablePasswordHash();
+      }
+    }
+    hashes.forEach(CompletableFuture::join);
+  }
+
+  private String unusablePasswordHash() {
+    String hash = unusablePasswordHash;
+    if (hash == null) {
+      synchronized (this) {
+        hash = unusablePasswordHash;
+        if (hash == null) {
+          byte[] secret = new byte[32];
+          new SecureRandom().nextBytes(secret);
+          hash = passwordEncoder.encode(Base64.getEncoder().encodeToString(secret));
+          unusablePasswordHash = hash;
+        }
+      }
+    }
+    return hash;
+  }
+
+  // ----- execution -----
+
+  /**
+   * Runs single-user operations and turns a failure into an exception.
+   */
+  private List<Op> run(List<Op> ops, int failOnErrors) {
+    hashPasswords(ops);
+    execute(ops, failOnErrors);
+    for (Op op : ops) {
+      if (op.result != null && op.result.failed()) {
+        ScimError error = op.result.response();
+        throw new ScimException(Integer.parseInt(error.status()), error.scimType(), error.detail());
+      }
+    }
+    return ops;
+  }
+
+  private void execute(List<Op> ops, int failOnErrors) {
+    int errors = 0;
+    for (int from = 0; from < ops.size() && errors < failOnErrors; from += batchSize) {
+      List<Op> chunk = ops.subList(from, Math.min(from + batchSize, ops.size()));
+      errors += executeChunk(chunk, failOnErrors - errors);
+    }
+  }
+
+  private int executeChunk(List<Op> chunk, int allowedErrors) {
+    try {
+      Integer errors = transactionTemplate.execute(status -> apply(chunk, allowedErrors));
+      return errors == null ? 0 : errors;
+    } catch (DataIntegrityViolationException e) {
+      // lost a race on a unique key: redo the chunk one operation per transaction
+      chunk.forEach(Op::reset);
+      int errors = 0;
+      for (Op op : chunk) {
+        if (errors >= allowedErrors) {
+          break;
+        }
+        try {
+          Integer failed = transactionTemplate.execute(status -> apply(List.of(op), 1));
+          errors += failed == null ? 0 : failed;
+        } catch (DataIntegrityViolationException conflict) {
+          op.reset();
+          op.result = Result.failure(op.method, op.bulkId, ScimError.of(409, "uniqueness", "userName or email already exists"));
+          errors++;
+        }
+      }
+      return errors;
+    }
+  }
+
+  /**
+   * Applies the operations in order inside the current transaction and returns the number that
+   * failed. Consecutive creates are inserted together.
+   */
+  private int apply(List<Op> ops, int allowedErrors) {
+    int errors = 0;
+    List<Op> creates = new ArrayList<>();
+    for (Op op : ops) {
+      if (op.error == null && op.method.equals("POST")) {
+        creates.add(op);
+        continue;
+      }
+      errors += insert(creates, allowedErrors - errors);
+      creates.clear();
+      if (errors >= allowedErrors) {
+        return errors;
+      }
+      if (op.error != null) {
+        op.result = op.error;
+      } else if (op.method.equals("PUT")) {
+        update(op);
+      } else {
+        delete(op);
+      }
+      if (op.result.failed() && ++errors >= allowedErrors) {
+        return errors;
+      }
+    }
+    return errors + insert(creates, allowedErrors - errors);
+  }
+
+  private int insert(List<Op> creates, int allowedErrors) {
+    if (creates.isEmpty() || allowedErrors <= 0) {
+      return 0;
+    }
+    Set<String> usernames = new HashSet<>();
+    Set<String> emails = new HashSet<>();
+    for (Op op : creates) {
+      usernames.add(op.data.userName());
+      emails.add(op.data.primaryEmail());
+    }
+    Taken taken = repository.findTaken(usernames, emails);
+
+    int errors = 0;
+    List<Op> inserted = new ArrayList<>();
+    for (Op op : creates) {
+      String username = Identifiers.normalize(op.data.userName());
+      String email = Identifiers.normalize(op.data.primaryEmail());
+      // taken also collects the keys of earlier creates in this run, which catches duplicates within the request
+      if (!taken.usernames().add(username) | !taken.emails().add(email)) {
+        op.result = Result.failure("POST", op.bulkId, ScimError.of(409, "uniqueness", "userName or email already exists"));
+        if (++errors >= allowedErrors) {
+          break;
+        }
+      } else {
+        inserted.add(op);
+      }
+    }
+    if (!inserted.isEmpty()) {
+      Map<String, Long> ids = repository.insertAll(inserted.stream()
+          .map(op -> new NewUser(op.data.userName(), op.data.primaryEmail(), op.passwordHash,
+              !Boolean.FALSE.equals(op.data.active())))
+          .toList());
+      for (Op op : inserted) {
+        op.userId = ids.get(Identifiers.normalize(op.data.userName()));
+        op.result = Result.success("POST", op.bulkId, LOCATION_PREFIX + op.userId, 201);
+      }
+    }
+    return errors;
+  }
+
+  private void update(Op op) {
+    if (repository.isTakenByOther(op.userId, op.data.userName(), op.data.primaryEmail())) {
+      op.result = Result.failure("PUT", op.bulkId, ScimError.of(409, "uniqueness", "userName or email already exists"));
+    } else if (!repository.update(op.userId, op.data.userName(), op.data.primaryEmail(),
+        !Boolean.FALSE.equals(op.data.active()), op.passwordHash)) {
+      op.result = Result.failure("PUT", op.bulkId, ScimError.of(404, null, "User " + op.userId + " not found"));
+    } else {
+      credentialCache.userChanged(op.userId, UserChangeType.UPDATED);
+      op.result = Result.success("PUT", op.bulkId, LOCATION_PREFIX + op.userId, 200);
+    }
+  }
+
+  private void delete(Op op) {
+    if (!repository.delete(op.userId)) {
+      op.result = Result.failure("DELETE", op.bulkId, ScimError.of(404, null, "User " + op.userId + " not found"));
+    } else {
+      credentialCache.userChanged(op.userId, UserChangeType.DELETED);
+      op.result = Result.success("DELETE", op.bulkId, null, 204);
+    }
+  }
+
+  private static ScimUser toScim(Row row) {
+    return new ScimUser(
+        List.of(ScimUser.SCHEMA),
+        Long.toString(row.id()),
+        row.username(),
+        List.of(new ScimUser.Email(row.email(), "work", true)),
+        row.enabled(),
+        null,
+        new ScimUser.Meta("User", row.createdAt().atZone(ZoneId.systemDefault()).toInstant(), LOCATION_PREFIX + row.id()));
+  }
+
+  /**
+   * One operation through planning, hashing and execution.
+   */
+  private static final class Op {
+
+    final String method;
+    final String bulkId;
+    final ScimUser data;
+    Long userId;
+    String passwordHash;
+    // planning or hashing failure, reported without touching the database
+    volatile Result error;
+    Result result;
+
+    Op(String method, String bulkId, ScimUser data) {
+      this.method = method;
+      this.bulkId = bulkId;
+      this.data = data;
+    }
+
+    void reset() {
+      result = null;
+      if (method.equals("POST")) {
+        userId = null;
+      }
+    }
+  }
+}
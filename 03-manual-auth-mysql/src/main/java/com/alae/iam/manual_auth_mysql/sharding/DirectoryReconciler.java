@@ -0,0 +1,80 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Releases directory reservations whose user never reached a shard: {@link ShardedUserStore#create}
+ * reserves the email first, and a node that dies before the shard write leaves the email taken by
+ * nobody. Only reservations between {@code window} and {@code grace} old are checked; anything
+ * younger may still be in flight.
+ *
+ * <p>A user is looked for on its previous owner before its owner, the order that never misses one
+ * the rebalancer is moving (see {@link ShardRouter}).
+ */
+public class DirectoryReconciler {
+
+  private static final int PAGE = 500;
+
+  private final ShardRouter router;
+  private final UserDirectory directory;
+  private final Duration grace;
+  private final Duration window;
+
+  public DirectoryReconciler(ShardRouter router, UserDirectory directory, Duration grace, Duration window) {
+    this.router = router;
+    this.directory = directory;
+    this.grace = grace;
+    this.window = window;
+  }
+
+  /**
+   * Returns the ids whose reservation was released.
+   */
+  @Scheduled(fixedDelayString = "${app.sharding.reconcile-interval-ms:300000}")
+  public synchronized List<Long> reconcile() {
+    LocalDateTime to = LocalDateTime.now().minus(grace);
+    LocalDateTime from = to.minus(window);
+    List<Long> released = new ArrayList<>();
+    long lastId = 0;
+    List<UserDirectory.Entry> page;
+    do {
+      page = directory.findCreatedBetween(from, to, lastId, PAGE);
+      if (page.isEmpty()) {
+        break;
+      }
+      lastId = page.get(page.size() - 1).id();
+      for (long id : missing(page)) {
+        directory.delete(id);
+        released.add(id);
+      }
+    } while (page.size() == PAGE);
+    return released;
+  }
+
+  private List<Long> missing(List<UserDirectory.Entry> entries) {
+    Set<Long> found = new HashSet<>();
+    for (int round = 0; round < 2; round++) {
+      Map<Shard, List<Long>> idsByShard = new LinkedHashMap<>();
+      for (UserDirectory.Entry entry : entries) {
+        List<Shard> candidates = router.candidates(entry.username());
+        if (round < candidates.size() && !found.contains(entry.id())) {
+          idsByShard.computeIfAbsent(candidates.get(round), shard -> new ArrayList<>()).add(entry.id());
+        }
+      }
+      idsByShard.forEach((shard, ids) -> found.addAll(shard.jdbcTemplate().queryForList(
+          "SELECT id FROM app_users WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")",
+          Long.class, ids.toArray())));
+    }
+    return entries.stream().map(UserDirectory.Entry::id).filter(id -> !found.contains(id)).toList();
+  }
+}
@@ -0,0 +1,9 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One database holding a share of {@code app_users}.
+ */
+public record Shard(String name, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {}
@@ -0,0 +1,103 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves every user to the shard the current ring assigns it, while the application keeps serving
+ * logins. To add a shard: list it in {@code app.sharding.ring}, set {@code app.sharding.previous-ring}
+ * to the old ring, roll the nodes, run {@link #rebalance}, then drop {@code previous-ring} again.
+ *
+ * <p>Each move locks the row on its old shard, copies it to the new one, which commits on its own,
+ * and deletes the original before releasing the lock. Users are also registered in the
+ * {@link UserDirectory} if they are missing, which is how a database from before sharding is
+ * adopted as a shard.
+ */
+public class ShardRebalancer {
+
+  private static final int PAGE = 500;
+
+  private final ShardRouter router;
+  private final UserDirectory directory;
+
+  public ShardRebalancer(ShardRouter router, UserDirectory directory) {
+    this.router = router;
+    this.directory = directory;
+  }
+
+  public synchronized Result rebalance() {
+    long scanned = 0;
+    long moved = 0;
+    long registered = 0;
+    List<Long> conflicts = new ArrayList<>();
+    // a user moved to a shard that is scanned later in this pass was already counted on its old one
+    Set<Long> movedIn = new HashSet<>();
+    for (Shard shard : router.shards()) {
+      long lastId = 0;
+      List<AppUser> page;
+      do {
+        page = shard.jdbcTemplate().query("SELECT " + ShardedUserStore.COLUMNS + " FROM app_users WHERE id > ?"
+            + " ORDER BY id LIMIT " + PAGE, ShardedUserStore.USER_MAPPER, lastId);
+        Map<Long, String> known = directory.usernames(page.stream().map(AppUser::getId).toList());
+        for (AppUser user : page) {
+          lastId = user.getId();
+          if (movedIn.contains(user.getId())) {
+            continue;
+          }
+          scanned++;
+          String username = known.get(user.getId());
+          if (username == null) {
+            try {
+              directory.insert(user.getId(), user.getUsernameNormalized(), user.getEmailNormalized());
+              registered++;
+            } catch (DuplicateKeyException e) {
+              conflicts.add(user.getId()); // its username or email belongs to another id
+              continue;
+            }
+          } else if (!username.equals(user.getUsernameNormalized())) {
+            conflicts.add(user.getId()); // the id was given to someone else
+            continue;
+          }
+          Shard owner = router.owner(user.getUsernameNormalized());
+          try {
+            if (owner != shard && move(user.getId(), shard, owner)) {
+              movedIn.add(user.getId());
+              moved++;
+            }
+          } catch (DuplicateKeyException e) {
+            conflicts.add(user.getId()); // its username is another id's on the owner
+          }
+        }
+      } while (page.size() == PAGE);
+    }
+    return new Result(scanned, moved, registered, conflicts);
+  }
+
+  private boolean move(long id, Shard from, Shard to) {
+    return Boolean.TRUE.equals(from.transactionTemplate().execute(status -> {
+      List<AppUser> locked = from.jdbcTemplate().query("SELECT " + ShardedUserStore.COLUMNS
+          + " FROM app_users WHERE id = ? FOR UPDATE", ShardedUserStore.USER_MAPPER, id);
+      if (locked.isEmpty()) {
+        return false;
+      }
+      AppUser user = locked.get(0);
+      // a copy left by an interrupted run is overwritten: the locked row is the current one
+      to.jdbcTemplate().update("DELETE FROM app_users WHERE id = ?", id);
+      ShardedUserStore.insert(to.jdbcTemplate(), user);
+      from.jdbcTemplate().update("DELETE FROM app_users WHERE id = ?", id);
+      return true;
+    }));
+  }
+
+  /**
+   * {@code conflicts} are ids whose email or id clashes with another user in the directory, or
+   * whose username clashes with another user on its owner; they are left where they are.
+   */
+  public record Result(long scanned, long moved, long registered, List<Long> conflicts) {}
+}
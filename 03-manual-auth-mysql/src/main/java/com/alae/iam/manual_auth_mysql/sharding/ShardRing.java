@@ -0,0 +1,88 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent-hash ring: each shard owns {@code virtualNodes} points on a 64-bit circle and a key
+ * belongs to the first point at or after its hash. Adding a shard to N takes about 1/(N+1) of the
+ * keys, all of them to the new shard; the others stay where they are.
+ */
+public final class ShardRing {
+
+  private final List<String> shardNames;
+  private final long[] points;
+  private final int[] owners;
+
+  public ShardRing(List<String> shardNames, int virtualNodes) {
+    if (shardNames.isEmpty() || virtualNodes < 1) {
+      throw new IllegalArgumentException("A ring needs at least one shard and one virtual node per shard");
+    }
+    if (shardNames.stream().distinct().count() != shardNames.size()) {
+      throw new IllegalArgumentException("Duplicate shard names in " + shardNames);
+    }
+    this.shardNames = List.copyOf(shardNames);
+    int size = shardNames.size() * virtualNodes;
+    long[] packed = new long[size];
+    long[] hashes = new long[size];
+    int n = 0;
+    for (int shard = 0; shard < shardNames.size(); shard++) {
+      for (int vnode = 0; vnode < virtualNodes; vnode++) {
+        hashes[n++] = hash(shardNames.get(shard) + "#" + vnode);
+      }
+    }
+    // sort the points, carrying their owner along
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compareUnsigned(hashes[a], hashes[b]));
+    this.points = new long[size];
+    this.owners = new int[size];
+    for (int i = 0; i < size; i++) {
+      points[i] = hashes[order[i]];
+      owners[i] = order[i] / virtualNodes;
+    }
+  }
+
+  public List<String> shardNames() {
+    return shardNames;
+  }
+
+  /**
+   * The shard owning {@code key}, a normalized username.
+   */
+  public String owner(String key) {
+    long hash = hash(key);
+    int low = 0;
+    int high = points.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(points[mid], hash) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return shardNames.get(owners[low == points.length ? 0 : low]);
+  }
+
+  /**
+   * FNV-1a over the UTF-8 bytes, then the MurmurHash3 finalizer: FNV alone clusters short,
+   * similar keys such as {@code user1}, {@code user2}.
+   */
+  static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
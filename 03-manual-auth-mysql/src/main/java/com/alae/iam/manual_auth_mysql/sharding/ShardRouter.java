@@ -0,0 +1,68 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps a normalized username to the shard that owns it. While shards are being added or removed,
+ * {@code previousRing} is the ring before the change and a user may still live on its old owner:
+ * {@link #candidates} then lists the old owner first, then the new one.
+ *
+ * <p>That order is what makes {@link ShardRebalancer} safe online. It copies a user to the new
+ * owner before deleting it, with the old row locked throughout; a reader or writer that finds
+ * nothing on the old owner is therefore sure to find the copy on the new one.
+ */
+public class ShardRouter {
+
+  private final Map<String, Shard> shards = new LinkedHashMap<>();
+  private final ShardRing ring;
+  private final ShardRing previousRing;
+
+  public ShardRouter(List<Shard> shards, List<String> ring, List<String> previousRing, int virtualNodes) {
+    shards.forEach(shard -> this.shards.put(shard.name(), shard));
+    this.ring = new ShardRing(ring, virtualNodes);
+    this.previousRing = previousRing.isEmpty() ? null : new ShardRing(previousRing, virtualNodes);
+    for (List<String> names : List.of(ring, previousRing)) {
+      for (String name : names) {
+        if (!this.shards.containsKey(name)) {
+          throw new IllegalArgumentException("Shard " + name + " is in a ring but has no datasource");
+        }
+      }
+    }
+  }
+
+  public Shard owner(String normalizedUsername) {
+    return shards.get(ring.owner(normalizedUsername));
+  }
+
+  /**
+   * The shards that may hold the user: its owner, preceded by its previous owner while a
+   * rebalance is pending.
+   */
+  public List<Shard> candidates(String normalizedUsername) {
+    Shard owner = owner(normalizedUsername);
+    if (previousRing == null) {
+      return List.of(owner);
+    }
+    Shard previous = shards.get(previousRing.owner(normalizedUsername));
+    return previous == owner ? List.of(owner) : List.of(previous, owner);
+  }
+
+  public Collection<Shard> shards() {
+    return shards.values();
+  }
+
+  public List<String> ring() {
+    return ring.shardNames();
+  }
+
+  public List<String> previousRing() {
+    return previousRing == null ? List.of() : previousRing.shardNames();
+  }
+
+  public boolean isRebalancing() {
+    return previousRing != null;
+  }
+}
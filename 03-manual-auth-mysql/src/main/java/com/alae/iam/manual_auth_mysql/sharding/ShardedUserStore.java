@@ -0,0 +1,194 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import com.alae.iam.manual_auth_mysql.repository.UserStore;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link UserStore} over several databases: a user's row lives on the shard its normalized
+ * username hashes to, and the {@link UserDirectory} on the primary database resolves emails and
+ * ids to that username. A login by username is one shard query, with no directory query; one by
+ * email or a lookup by id adds a directory query. Each shard query is two while that user's shard
+ * is being rebalanced.
+ */
+public class ShardedUserStore implements UserStore {
+
+  static final String COLUMNS = "id, username, username_normalized, email, email_normalized, password_hash,"
+      + " enabled, account_locked, locked_until, created_at";
+
+  static final RowMapper<AppUser> USER_MAPPER = (rs, row) -> {
+    Timestamp lockedUntil = rs.getTimestamp("locked_until");
+    return AppUser.builder()
+        .id(rs.getLong("id"))
+        .username(rs.getString("username"))
+        .usernameNormalized(rs.getString("username_normalized"))
+        .email(rs.getString("email"))
+        .emailNormalized(rs.getString("email_normalized"))
+        .passwordHash(rs.getString("password_hash"))
+        .enabled(rs.getBoolean("enabled"))
+        .accountLocked(rs.getBoolean("account_locked"))
+        .lockedUntil(lockedUntil == null ? null : lockedUntil.toLocalDateTime())
+        .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+        .build();
+  };
+
+  private static final String UPDATE_LOCKS = "UPDATE app_users SET account_locked = ?, locked_until = ? WHERE id = ?";
+
+  private final ShardRouter router;
+  private final UserDirectory directory;
+
+  public ShardedUserStore(ShardRouter router, UserDirectory directory) {
+    this.router = router;
+    this.directory = directory;
+  }
+
+  @Override
+  public Optional<AppUser> findById(long id) {
+    return directory.username(id).flatMap(username -> find(username, id));
+  }
+
+  @Override
+  public Optional<AppUser> findByNormalizedIdentifier(String normalized) {
+    Optional<AppUser> byUsername = findByUsername(normalized);
+    if (byUsername.isPresent()) {
+      return byUsername;
+    }
+    return directory.findByEmail(normalized).flatMap(entry -> find(entry.username(), entry.id()));
+  }
+
+  @Override
+  public boolean existsByUsername(String normalizedUsername) {
+    return findByUsername(normalizedUsername).isPresent();
+  }
+
+  @Override
+  public boolean existsByEmail(String normalizedEmail) {
+    return directory.existsByEmail(normalizedEmail);
+  }
+
+  /**
+   * Reserves the email in the directory, whose unique key settles concurrent registrations, then
+   * writes the row to its owner, whose unique key does the same for the username. The reservation
+   * is released if that write fails; one left behind by a crash in between is released by
+   * {@link DirectoryReconciler}.
+   *
+   * <p>While a rebalance is pending, the username may still be on its previous owner. The
+   * rebalancer copies a user to the owner before deleting the original, so checking the previous
+   * owner first, then inserting on the owner, never misses it.
+   */
+  @Override
+  public AppUser create(AppUser user) {
+    String username = Identifiers.normalize(user.getUsername());
+    String email = Identifiers.normalize(user.getEmail());
+    List<Shard> candidates = router.candidates(username);
+    for (Shard previous : candidates.subList(0, candidates.size() - 1)) {
+      if (findByUsername(previous, username).isPresent()) {
+        throw new DuplicateKeyException("Username " + username + " is taken on shard " + previous.name());
+      }
+    }
+    long id = directory.insert(username, email);
+    AppUser created = AppUser.builder()
+        .id(id)
+        .username(user.getUsername())
+        .usernameNormalized(username)
+        .email(user.getEmail())
+        .emailNormalized(email)
+        .passwordHash(user.getPasswordHash())
+        .enabled(user.isEnabled())
+        .accountLocked(user.isAccountLocked())
+        .lockedUntil(user.getLockedUntil())
+        .createdAt(user.getCreatedAt())
+        .build();
+    try {
+      insert(router.owner(username).jdbcTemplate(), created);
+    } catch (RuntimeException e) {
+      directory.delete(id);
+      throw e;
+    }
+    return created;
+  }
+
+  /**
+   * Batches the updates per shard. A user with two candidate shards is updated on its previous
+   * owner in the first round and on its new owner in the second, the order a concurrent move
+   * needs (see {@link ShardRouter}).
+   */
+  @Override
+  public void updateLocks(List<LockUpdate> updates) {
+    Map<Long, String> usernames = directory.usernames(updates.stream().map(LockUpdate::userId).toList());
+    for (int round = 0; round < 2; round++) {
+      Map<Shard, List<Object[]>> rowsByShard = new LinkedHashMap<>();
+      for (LockUpdate update : updates) {
+        String username = usernames.get(update.userId());
+        if (username == null) {
+          continue;
+        }
+        List<Shard> candidates = router.candidates(username);
+        if (round < candidates.size()) {
+          rowsByShard.computeIfAbsent(candidates.get(round), shard -> new ArrayList<>())
+              .add(new Object[] {update.locked(), update.lockedUntil(), update.userId()});
+        }
+      }
+      rowsByShard.forEach((shard, rows) -> shard.jdbcTemplate().batchUpdate(UPDATE_LOCKS, rows));
+    }
+  }
+
+  @Override
+  public boolean updatePasswordHash(long userId, String expectedHash, String newHash) {
+    Optional<String> username = directory.username(userId);
+    if (username.isEmpty()) {
+      return false;
+    }
+    for (Shard shard : router.candidates(username.get())) {
+      if (shard.jdbcTemplate().update("UPDATE app_users SET password_hash = ? WHERE id = ? AND password_hash = ?",
+          newHash, userId, expectedHash) == 1) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Optional<AppUser> findByUsername(String normalizedUsername) {
+    for (Shard shard : router.candidates(normalizedUsername)) {
+      Optional<AppUser> user = findByUsername(shard, normalizedUsername);
+      if (user.isPresent()) {
+        return user;
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static Optional<AppUser> findByUsername(Shard shard, String normalizedUsername) {
+    return shard.jdbcTemplate().query("SELECT " + COLUMNS + " FROM app_users WHERE username_normalized = ?",
+        USER_MAPPER, normalizedUsername).stream().findFirst();
+  }
+
+  private Optional<AppUser> find(String username, long id) {
+    for (Shard shard : router.candidates(username)) {
+      List<AppUser> users = shard.jdbcTemplate().query("SELECT " + COLUMNS + " FROM app_users WHERE id = ?",
+          USER_MAPPER, id);
+      if (!users.isEmpty()) {
+        return Optional.of(users.get(0));
+      }
+    }
+    return Optional.empty();
+  }
+
+  static void insert(JdbcTemplate jdbcTemplate, AppUser user) {
+    jdbcTemplate.update("INSERT INTO app_users (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+        user.getId(), user.getUsername(), user.getUsernameNormalized(), user.getEmail(), user.getEmailNormalized(),
+        user.getPasswordHash(), user.isEnabled(), user.isAccountLocked(),
+        user.getLockedUntil() == null ? null : Timestamp.valueOf(user.getLockedUntil()),
+        Timestamp.valueOf(user.getCreatedAt()));
+  }
+}
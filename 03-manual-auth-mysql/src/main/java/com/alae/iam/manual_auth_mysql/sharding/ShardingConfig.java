@@ -0,0 +1,87 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import com.alae.iam.manual_auth_mysql.sharding.ShardingProperties.ShardDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sharded mode ({@code app.sharding.enabled=true}): {@code app_users} is spread over the databases
+ * in {@code app.sharding.shards}, each migrated by Flyway like the primary one. The primary
+ * database keeps everything else: the user directory, the outboxes, the ACL tables.
+ *
+ * <p>The shard pools are not registered as {@code DataSource} beans, so the primary datasource,
+ * JPA and Flyway stay auto-configured as before.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig implements DisposableBean {
+
+  private final List<HikariDataSource> dataSources = new ArrayList<>();
+
+  @Bean
+  public ShardRouter shardRouter(ShardingProperties properties, @Value("${app.scim.token:}") String scimToken) {
+    if (!scimToken.isBlank()) {
+      // ScimUserService reads and writes app_users on the primary database only
+      throw new IllegalStateException("SCIM provisioning is not supported with app.sharding.enabled");
+    }
+    List<Shard> shards = new ArrayList<>();
+    for (ShardDataSource config : properties.shards()) {
+      HikariDataSource dataSource = new HikariDataSource();
+      dataSource.setPoolName("shard-" + config.name());
+      dataSource.setJdbcUrl(config.url());
+      dataSource.setUsername(config.username());
+      dataSource.setPassword(config.password());
+      dataSource.setMaximumPoolSize(config.maxPoolSize());
+      dataSources.add(dataSource);
+      Flyway.configure().dataSource(dataSource).load().migrate();
+      shards.add(new Shard(config.name(), new JdbcTemplate(dataSource),
+          new TransactionTemplate(new DataSourceTransactionManager(dataSource))));
+    }
+    return new ShardRouter(shards, properties.ringOrAllShards(), properties.previousRing(), properties.virtualNodes());
+  }
+
+  @Bean
+  public UserDirectory userDirectory(JdbcTemplate jdbcTemplate) {
+    return new UserDirectory(jdbcTemplate);
+  }
+
+  @Bean
+  public ShardedUserStore shardedUserStore(ShardRouter shardRouter, UserDirectory userDirectory) {
+    return new ShardedUserStore(shardRouter, userDirectory);
+  }
+
+  @Bean
+  public ShardRebalancer shardRebalancer(ShardRouter shardRouter, UserDirectory userDirectory) {
+    return new ShardRebalancer(shardRouter, userDirectory);
+  }
+
+  @Bean
+  public DirectoryReconciler directoryReconciler(ShardRouter shardRouter, UserDirectory userDirectory,
+                                                 ShardingProperties properties) {
+    return new DirectoryReconciler(shardRouter, userDirectory, properties.reconcileGrace(),
+        properties.reconcileWindow());
+  }
+
+  @Bean
+  public ShardsEndpoint shardsEndpoint(ShardRouter shardRouter, ShardRebalancer shardRebalancer) {
+    return new ShardsEndpoint(shardRouter, shardRebalancer);
+  }
+
+  @Override
+  public void destroy() {
+    dataSources.forEach(HikariDataSource::close);
+  }
+}
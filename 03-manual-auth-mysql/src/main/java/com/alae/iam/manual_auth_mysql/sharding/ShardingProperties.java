@@ -0,0 +1,35 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@code app.sharding.*}: a list of shard datasources, which of them form the ring, the ring
+ * before the last change while users are being moved, and how far back {@link DirectoryReconciler}
+ * looks for abandoned reservations.
+ */
+@ConfigurationProperties("app.sharding")
+public record ShardingProperties(boolean enabled,
+                                 @DefaultValue("128") int virtualNodes,
+                                 @DefaultValue List<ShardDataSource> shards,
+                                 @DefaultValue List<String> ring,
+                                 @DefaultValue List<String> previousRing,
+                                 @DefaultValue("1m") Duration reconcileGrace,
+                                 @DefaultValue("1d") Duration reconcileWindow) {
+
+  /**
+   * The shard names in the ring: {@code ring} if set, else every configured shard.
+   */
+  public List<String> ringOrAllShards() {
+    return ring.isEmpty() ? shards.stream().map(ShardDataSource::name).toList() : ring;
+  }
+
+  public record ShardDataSource(String name,
+                                String url,
+                                String username,
+                                String password,
+                                @DefaultValue("10") int maxPoolSize) {}
+}
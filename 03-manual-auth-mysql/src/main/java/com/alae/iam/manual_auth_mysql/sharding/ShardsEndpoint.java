@@ -0,0 +1,42 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/shards}: users per shard, and a write operation that runs the
+ * {@link ShardRebalancer}. Not exposed over HTTP by default: it moves data.
+ */
+@Endpoint(id = "shards")
+public class ShardsEndpoint {
+
+  private final ShardRouter router;
+  private final ShardRebalancer rebalancer;
+
+  public ShardsEndpoint(ShardRouter router, ShardRebalancer rebalancer) {
+    this.router = router;
+    this.rebalancer = rebalancer;
+  }
+
+  @ReadOperation
+  public Map<String, Object> shards() {
+    Map<String, Long> users = new LinkedHashMap<>();
+    for (Shard shard : router.shards()) {
+      users.put(shard.name(), shard.jdbcTemplate().queryForObject("SELECT COUNT(*) FROM app_users", Long.class));
+    }
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("ring", router.ring());
+    body.put("previousRing", router.previousRing());
+    body.put("users", users);
+    return body;
+  }
+
+  @WriteOperation
+  public ShardRebalancer.Result rebalance() {
+    return rebalancer.rebalance();
+  }
+}
@@ -0,0 +1,109 @@
+package com.alae.iam.manual_auth_mysql.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The {@code user_directory} table on the primary database: one row per user, whatever its shard.
+ * It hands out user ids, keeps emails unique across shards, and turns an email or an id into the
+ * username the ring is keyed on. Usernames need none of this: they are unique on the shard they
+ * hash to. It holds no shard name, so moving users never touches it.
+ */
+public class UserDirectory {
+
+  private static final int IN_BATCH = 500;
+
+  private static final RowMapper<Entry> ENTRY_MAPPER = (rs, row) -> new Entry(rs.getLong(1), rs.getString(2));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public UserDirectory(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  public Optional<Entry> findByEmail(String normalizedEmail) {
+    return jdbcTemplate.query("SELECT id, username_normalized FROM user_directory WHERE email_normalized = ?",
+        ENTRY_MAPPER, normalizedEmail).stream().findFirst();
+  }
+
+  public Optional<String> username(long id) {
+    return jdbcTemplate.queryForList("SELECT username_normalized FROM user_directory WHERE id = ?", String.class, id)
+        .stream().findFirst();
+  }
+
+  public Map<Long, String> usernames(Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return Map.of();
+    }
+    Map<Long, String> usernames = new HashMap<>();
+    List<Long> all = List.copyOf(ids);
+    for (int from = 0; from < all.size(); from += IN_BATCH) {
+      List<Long> batch = all.subList(from, Math.min(all.size(), from + IN_BATCH));
+      jdbcTemplate.query("SELECT id, username_normalized FROM user_directory WHERE id IN ("
+              + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")",
+          rs -> {
+            usernames.put(rs.getLong(1), rs.getString(2));
+          }, batch.toArray());
+    }
+    return usernames;
+  }
+
+  public boolean existsByEmail(String normalizedEmail) {
+    return !jdbcTemplate.queryForList("SELECT id FROM user_directory WHERE email_normalized = ?", Long.class,
+        normalizedEmail).isEmpty();
+  }
+
+  /**
+   * Reserves the email and returns the new user id. Throws
+   * {@link org.springframework.dao.DuplicateKeyException} if the email is taken.
+   */
+  public long insert(String normalizedUsername, String normalizedEmail) {
+    KeyHolder keys = new GeneratedKeyHolder();
+    jdbcTemplate.update(connection -> {
+      PreparedStatement insert = connection.prepareStatement(
+          "INSERT INTO user_directory (username_normalized, email_normalized, created_at) VALUES (?, ?, ?)",
+          new String[] {"id"});
+      insert.setString(1, normalizedUsername);
+      insert.setString(2, normalizedEmail);
+      insert.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+      return insert;
+    }, keys);
+    return keys.getKey().longValue();
+  }
+
+  /**
+   * Registers a user that already has an id, such as one found on a shard that was a single
+   * database before sharding.
+   */
+  public void insert(long id, String normalizedUsername, String normalizedEmail) {
+    jdbcTemplate.update("INSERT INTO user_directory (id, username_normalized, email_normalized, created_at)"
+        + " VALUES (?, ?, ?, ?)", id, normalizedUsername, normalizedEmail, Timestamp.valueOf(LocalDateTime.now()));
+  }
+
+  /**
+   * Entries reserved in {@code [from, to)}, in id order, at most {@code limit} after {@code afterId}.
+   */
+  public List<Entry> findCreatedBetween(LocalDateTime from, LocalDateTime to, long afterId, int limit) {
+    return jdbcTemplate.query("SELECT id, username_normalized FROM user_directory"
+            + " WHERE created_at >= ? AND created_at < ? AND id > ? ORDER BY id LIMIT ?",
+        ENTRY_MAPPER, Timestamp.valueOf(from), Timestamp.valueOf(to), afterId, limit);
+  }
+
+  public void delete(long id) {
+    jdbcTemplate.update("DELETE FROM user_directory WHERE id = ?", id);
+  }
+
+  public record Entry(long id, String username) {}
+}
@@ -0,0 +1,266 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes kept traces to {@code <directory>/traces.jsonl}, one OTLP/JSON
+ * {@code ExportTraceServiceRequest} per line: the format of the OpenTelemetry Collector's file
+ * exporter, which {@code otelcol}'s {@code otlpjsonfile} receiver reads back.
+ * Past {@code maxFileBytes} the file rolls to {@code traces.1.jsonl}, {@code traces.2.jsonl}...,
+ * keeping {@code maxFiles} of them.
+ *
+ * <p>Request threads only enqueue; a daemon thread serializes and writes. When the queue is full
+ * traces are dropped and counted in {@code tracing.traces.dropped}, never waited for.
+ */
+public class OtlpJsonFileExporter implements SpanExporter, AutoCloseable {
+
+  static final String FILE_NAME = "traces.jsonl";
+  private static final String SCOPE_NAME = "com.alae.iam.manual_auth_mysql";
+
+  private final Path directory;
+  private final long maxFileBytes;
+  private final int maxFiles;
+  private final String serviceName;
+  private final BlockingQueue<List<SpanData>> queue;
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private final Counter exported;
+  private final Counter dropped;
+  private final Thread writer;
+  private final Object fileLock = new Object();
+  // queued or being written, for flush() to wait on
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private OutputStream out;
+  private long fileBytes;
+  private volatile boolean running = true;
+
+  public OtlpJsonFileExporter(Path directory, long maxFileBytes, int maxFiles, int queueCapacity, String serviceName,
+                              MeterRegistry meterRegistry) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.maxFileBytes = maxFileBytes;
+    this.maxFiles = maxFiles;
+    this.serviceName = serviceName;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.exported = Counter.builder("tracing.traces.exported").register(meterRegistry);
+    this.dropped = Counter.builder("tracing.traces.dropped").register(meterRegistry);
+    this.writer = new Thread(this::run, "otlp-file-exporter");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void export(List<SpanData> trace) {
+    pending.incrementAndGet();
+    if (!queue.offer(trace)) {
+      pending.decrementAndGet();
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Writes whatever is queued on the calling thread, then waits for the writer thread to finish
+   * the batch it may have taken.
+   */
+  public void flush() throws InterruptedException {
+    List<List<SpanData>> traces = new ArrayList<>();
+    queue.drainTo(traces);
+    write(traces);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (pending.get() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    running = false;
+    writer.interrupt();
+    writer.join(TimeUnit.SECONDS.toMillis(5));
+    flush();
+    synchronized (fileLock) {
+      closeFile();
+    }
+  }
+
+  private void run() {
+    List<List<SpanData>> traces = new ArrayList<>();
+    while (running) {
+      try {
+        List<SpanData> first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        traces.add(first);
+        queue.drainTo(traces);
+        write(traces);
+        traces.clear();
+      } catch (InterruptedException e) {
+        return; // close() drains what is left
+      }
+    }
+  }
+
+  private void write(List<List<SpanData>> traces) {
+    if (traces.isEmpty()) {
+      return;
+    }
+    synchronized (fileLock) {
+      int written = 0;
+      try {
+        for (List<SpanData> trace : traces) {
+          byte[] line = serialize(trace);
+          if (out == null) {
+            openFile();
+          } else if (fileBytes > 0 && fileBytes + line.length > maxFileBytes) {
+            roll();
+          }
+          out.write(line);
+          fileBytes += line.length;
+          written++;
+        }
+        out.flush();
+        exported.increment(written);
+      } catch (IOException e) {
+        // a full disk or a deleted directory must not take requests down: count, and reopen next time
+        dropped.increment(traces.size() - written);
+        exported.increment(written);
+        closeFile();
+      } finally {
+        pending.addAndGet(-traces.size());
+      }
+    }
+  }
+
+  private void openFile() throws IOException {
+    Files.createDirectories(directory);
+    Path file = directory.resolve(FILE_NAME);
+    out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    fileBytes = Files.size(file);
+  }
+
+  private void roll() throws IOException {
+    closeFile();
+    Files.deleteIfExists(rolled(maxFiles));
+    for (int i = maxFiles - 1; i >= 1; i--) {
+      if (Files.exists(rolled(i))) {
+        Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    if (maxFiles > 0) {
+      Files.move(directory.resolve(FILE_NAME), rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.deleteIfExists(directory.resolve(FILE_NAME));
+    }
+    openFile();
+  }
+
+  private Path rolled(int index) {
+    return directory.resolve("traces." + index + ".jsonl");
+  }
+
+  private void closeFile() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException ignored) {
+        // nothing left to save
+      }
+      out = null;
+    }
+  }
+
+  private byte[] serialize(List<SpanData> trace) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    try (JsonGenerator json = jsonFactory.createGenerator(buffer)) {
+      json.writeStartObject();
+      json.writeArrayFieldStart("resourceSpans");
+      json.writeStartObject();
+      json.writeObjectFieldStart("resource");
+      writeAttributes(json, Map.of("service.name", serviceName));
+      json.writeEndObject();
+      json.writeArrayFieldStart("scopeSpans");
+      json.writeStartObject();
+      json.writeObjectFieldStart("scope");
+      json.writeStringField("name", SCOPE_NAME);
+      json.writeEndObject();
+      json.writeArrayFieldStart("spans");
+      for (SpanData span : trace) {
+        writeSpan(json, span);
+      }
+      json.writeEndArray();
+      json.writeEndObject();
+      json.writeEndArray();
+      json.writeEndObject();
+      json.writeEndArray();
+      json.writeEndObject();
+    }
+    buffer.write('\n');
+    return buffer.toByteArray();
+  }
+
+  private static void writeSpan(JsonGenerator json, SpanData span) throws IOException {
+    json.writeStartObject();
+    json.writeStringField("traceId", span.traceId());
+    json.writeStringField("spanId", span.spanId());
+    if (span.parentSpanId() != null) {
+      json.writeStringField("parentSpanId", span.parentSpanId());
+    }
+    json.writeStringField("name", span.name());
+    json.writeNumberField("kind", span.kind().otlpValue());
+    // 64-bit integers are strings in OTLP/JSON
+    json.writeStringField("startTimeUnixNano", Long.toString(span.startEpochNanos()));
+    json.writeStringField("endTimeUnixNano", Long.toString(span.endEpochNanos()));
+    writeAttributes(json, span.attributes());
+    json.writeObjectFieldStart("status");
+    if (span.error()) {
+      json.writeNumberField("code", 2);
+      if (span.statusMessage() != null) {
+        json.writeStringField("message", span.statusMessage());
+      }
+    } else {
+      json.writeNumberField("code", 0);
+    }
+    json.writeEndObject();
+    json.writeEndObject();
+  }
+
+  private static void writeAttributes(JsonGenerator json, Map<String, Object> attributes) throws IOException {
+    json.writeArrayFieldStart("attributes");
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      json.writeStartObject();
+      json.writeStringField("key", attribute.getKey());
+      json.writeObjectFieldStart("value");
+      Object value = attribute.getValue();
+      if (value instanceof Boolean bool) {
+        json.writeBooleanField("boolValue", bool);
+      } else if (value instanceof Integer || value instanceof Long) {
+        json.writeStringField("intValue", value.toString());
+      } else if (value instanceof Double number) {
+        json.writeNumberField("doubleValue", number);
+      } else {
+        json.writeStringField("stringValue", String.valueOf(value));
+      }
+      json.writeEndObject();
+      json.writeEndObject();
+    }
+    json.writeEndArray();
+  }
+}
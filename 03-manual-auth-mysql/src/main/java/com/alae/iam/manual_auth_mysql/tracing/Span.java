@@ -0,0 +1,82 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A span in progress, ended by {@link #close}: {@code try (Span span = tracer.span("...")) {...}}.
+ * Spans belong to the request thread; {@link #NOOP} stands in when nothing is being traced.
+ */
+public class Span implements AutoCloseable {
+
+  public static final Span NOOP = new Span(null, null, null, null, SpanData.Kind.INTERNAL);
+
+  final Tracer.ActiveTrace trace;
+  final Span parent;
+  final String spanId;
+  final String parentSpanId;
+  final String name;
+  final SpanData.Kind kind;
+  final long startNanos;
+  private Map<String, Object> attributes;
+  private boolean error;
+  private String statusMessage;
+  private boolean closed;
+
+  Span(Tracer.ActiveTrace trace, Span parent, String spanId, String name, SpanData.Kind kind) {
+    this(trace, parent, spanId, parent == null ? null : parent.spanId, name, kind);
+  }
+
+  Span(Tracer.ActiveTrace trace, Span parent, String spanId, String parentSpanId, String name, SpanData.Kind kind) {
+    this.trace = trace;
+    this.parent = parent;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.name = name;
+    this.kind = kind;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Strings, booleans, ints and longs; anything else is written as its {@code toString()}.
+   */
+  public Span attribute(String key, Object value) {
+    if (trace != null) {
+      if (attributes == null) {
+        attributes = new LinkedHashMap<>();
+      }
+      attributes.put(key, value);
+    }
+    return this;
+  }
+
+  public Span error(Throwable failure) {
+    if (trace != null) {
+      error = true;
+      statusMessage = failure.getClass().getSimpleName();
+      attribute("exception.type", failure.getClass().getName());
+    }
+    return this;
+  }
+
+  public Span error(String message) {
+    if (trace != null) {
+      error = true;
+      statusMessage = message;
+    }
+    return this;
+  }
+
+  @Override
+  public void close() {
+    if (trace != null && !closed) {
+      closed = true;
+      trace.end(this);
+    }
+  }
+
+  SpanData toData(long endNanos) {
+    return new SpanData(trace.traceId, spanId, parentSpanId, name, kind, trace.epochNanos(startNanos),
+        trace.epochNanos(endNanos), error, statusMessage, attributes == null ? Map.of() : attributes);
+  }
+}
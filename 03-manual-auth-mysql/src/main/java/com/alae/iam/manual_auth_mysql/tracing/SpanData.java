@@ -0,0 +1,38 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import java.util.Map;
+
+/**
+ * A finished span. {@code parentSpanId} is {@code null} for a root without an inbound parent;
+ * {@code error} follows OpenTelemetry's rule for server spans: an exception or a 5xx, not a 4xx.
+ */
+public record SpanData(String traceId,
+                       String spanId,
+                       String parentSpanId,
+                       String name,
+                       Kind kind,
+                       long startEpochNanos,
+                       long endEpochNanos,
+                       boolean error,
+                       String statusMessage,
+                       Map<String, Object> attributes) {
+
+  public long durationNanos() {
+    return endEpochNanos - startEpochNanos;
+  }
+
+  // numbered as in OTLP's SpanKind
+  public enum Kind {
+    INTERNAL(1), SERVER(2);
+
+    private final int otlpValue;
+
+    Kind(int otlpValue) {
+      this.otlpValue = otlpValue;
+    }
+
+    public int otlpValue() {
+      return otlpValue;
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import java.util.List;
+
+/**
+ * Receives the spans of each trace the {@link TailSampler} keeps, root last, on the request thread:
+ * implementations must hand them off rather than do I/O.
+ */
+public interface SpanExporter {
+
+  void export(List<SpanData> trace);
+}
@@ -0,0 +1,42 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether to keep a trace once it is complete, when it is known to be slow or failed:
+ * head sampling would have to guess at the start of the request. Keeps every trace that errored,
+ * that ended with a 4xx when {@code keepFailed} is on, that took at least {@code slowThreshold},
+ * or that a trusted caller marked as sampled ({@link TracingFilter} drops the flag of any other
+ * caller, so clients cannot force exports); then {@code sampleRate} of the rest, for a baseline.
+ */
+public class TailSampler {
+
+  static final String STATUS_CODE = "http.response.status_code";
+
+  private final long slowThresholdNanos;
+  private final boolean keepFailed;
+  private final double sampleRate;
+
+  public TailSampler(Duration slowThreshold, boolean keepFailed, double sampleRate) {
+    this.slowThresholdNanos = slowThreshold.toNanos();
+    this.keepFailed = keepFailed;
+    this.sampleRate = sampleRate;
+  }
+
+  public boolean keep(List<SpanData> trace, SpanData root, boolean upstreamSampled) {
+    if (root.durationNanos() >= slowThresholdNanos || upstreamSampled) {
+      return true;
+    }
+    for (SpanData span : trace) {
+      if (span.error()) {
+        return true;
+      }
+    }
+    if (keepFailed && root.attributes().get(STATUS_CODE) instanceof Integer status && status >= 400) {
+      return true;
+    }
+    return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+}
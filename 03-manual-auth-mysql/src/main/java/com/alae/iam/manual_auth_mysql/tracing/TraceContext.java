@@ -0,0 +1,53 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+/**
+ * The part of a W3C {@code traceparent} header (Trace Context, level 1) that a server continues:
+ * {@code 00-<trace id>-<parent span id>-<flags>}, lower-case hex.
+ */
+public record TraceContext(String traceId, String spanId, boolean sampled) {
+
+  public static final String HEADER = "traceparent";
+
+  private static final String INVALID_TRACE_ID = "0".repeat(32);
+  private static final String INVALID_SPAN_ID = "0".repeat(16);
+
+  /**
+   * Returns {@code null} for a missing or malformed header, which starts a new trace. Versions
+   * above 00 are read as 00, as the spec asks, as long as the 00 fields are there.
+   */
+  public static TraceContext parse(String header) {
+    if (header == null || header.length() < 55) {
+      return null;
+    }
+    String version = header.substring(0, 2);
+    if (!isHex(version) || version.equals("ff") || (version.equals("00") && header.length() != 55)
+        || (header.length() > 55 && header.charAt(55) != '-')) {
+      return null;
+    }
+    if (header.charAt(2) != '-' || header.charAt(35) != '-' || header.charAt(52) != '-') {
+      return null;
+    }
+    String traceId = header.substring(3, 35);
+    String spanId = header.substring(36, 52);
+    String flags = header.substring(53, 55);
+    if (!isHex(traceId) || !isHex(spanId) || !isHex(flags)
+        || traceId.equals(INVALID_TRACE_ID) || spanId.equals(INVALID_SPAN_ID)) {
+      return null;
+    }
+    return new TraceContext(traceId, spanId, (Integer.parseInt(flags, 16) & 1) == 1);
+  }
+
+  public String toHeader() {
+    return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+  }
+
+  private static boolean isHex(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
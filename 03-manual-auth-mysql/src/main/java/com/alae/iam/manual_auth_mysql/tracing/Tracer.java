@@ -0,0 +1,123 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Minimal in-process tracer for the authentication pipeline. {@link TracingFilter} opens a trace
+ * per request; code along the way adds child spans with {@link #span}, which costs nothing when
+ * no trace is open. Spans are buffered per request and only reach the {@link SpanExporter} if the
+ * {@link TailSampler} keeps the whole trace.
+ */
+public class Tracer {
+
+  private static final ThreadLocal<ActiveTrace> CURRENT = new ThreadLocal<>();
+  private static final HexFormat HEX = HexFormat.of();
+
+  private final TailSampler sampler;
+  private final SpanExporter exporter;
+
+  /**
+   * {@code exporter} may be {@code null}: tracing is then off and every span is {@link Span#NOOP}.
+   */
+  public Tracer(TailSampler sampler, SpanExporter exporter) {
+    this.sampler = sampler;
+    this.exporter = exporter;
+  }
+
+  /**
+   * Opens the root span of a request, continuing {@code parent} if the caller sent one.
+   */
+  public Span startTrace(String name, TraceContext parent) {
+    if (exporter == null || CURRENT.get() != null) {
+      return Span.NOOP;
+    }
+    ActiveTrace trace = new ActiveTrace(parent == null ? newTraceId() : parent.traceId(),
+        parent != null && parent.sampled());
+    Span root = new Span(trace, null, newSpanId(), parent == null ? null : parent.spanId(), name, SpanData.Kind.SERVER);
+    trace.current = root;
+    CURRENT.set(trace);
+    return root;
+  }
+
+  /**
+   * A child of the innermost open span, or {@link Span#NOOP} outside a trace.
+   */
+  public Span span(String name) {
+    ActiveTrace trace = CURRENT.get();
+    if (trace == null) {
+      return Span.NOOP;
+    }
+    Span span = new Span(trace, trace.current, newSpanId(), name, SpanData.Kind.INTERNAL);
+    trace.current = span;
+    return span;
+  }
+
+  /**
+   * The {@code traceparent} to send downstream or to log, or {@code null} outside a trace.
+   */
+  public TraceContext currentContext() {
+    ActiveTrace trace = CURRENT.get();
+    return trace == null ? null : new TraceContext(trace.traceId, trace.current.spanId, trace.upstreamSampled);
+  }
+
+  private void finish(ActiveTrace trace, SpanData root) {
+    CURRENT.remove();
+    trace.finished.add(root);
+    if (sampler.keep(trace.finished, root, trace.upstreamSampled)) {
+      exporter.export(trace.finished);
+    }
+  }
+
+  private static String newTraceId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long high;
+    long low;
+    do {
+      high = random.nextLong();
+      low = random.nextLong();
+    } while (high == 0 && low == 0);
+    return HEX.toHexDigits(high) + HEX.toHexDigits(low);
+  }
+
+  private static String newSpanId() {
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0);
+    return HEX.toHexDigits(id);
+  }
+
+  final class ActiveTrace {
+
+    final String traceId;
+    final boolean upstreamSampled;
+    final List<SpanData> finished = new ArrayList<>();
+    // wall clock once per trace, then the monotonic clock for every span
+    private final long startEpochNanos = System.currentTimeMillis() * 1_000_000;
+    private final long startNanos = System.nanoTime();
+    Span current;
+
+    ActiveTrace(String traceId, boolean upstreamSampled) {
+      this.traceId = traceId;
+      this.upstreamSampled = upstreamSampled;
+    }
+
+    long epochNanos(long nanoTime) {
+      return startEpochNanos + (nanoTime - startNanos);
+    }
+
+    void end(Span span) {
+      SpanData data = span.toData(System.nanoTime());
+      // spans close innermost first; one closed out of order takes its open children with it
+      current = span.parent;
+      if (span.parent == null) {
+        finish(this, data);
+      } else {
+        finished.add(data);
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * {@code app.tracing.*}. The {@link Tracer} always exists, so instrumented code needs no checks;
+ * without {@code app.tracing.enabled} it has no exporter and no filter opens traces.
+ */
+@Configuration
+public class TracingConfig {
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true")
+  public OtlpJsonFileExporter otlpJsonFileExporter(@Value("${app.tracing.file.directory:traces}") String directory,
+                                                   @Value("${app.tracing.file.max-size:10MB}") DataSize maxSize,
+                                                   @Value("${app.tracing.file.max-history:5}") int maxHistory,
+                                                   @Value("${app.tracing.queue-capacity:1024}") int queueCapacity,
+                                                   @Value("${spring.application.name:manual-auth-mysql}") String serviceName,
+                                                   MeterRegistry meterRegistry) throws IOException {
+    return new OtlpJsonFileExporter(Path.of(directory), maxSize.toBytes(), maxHistory, queueCapacity, serviceName, meterRegistry);
+  }
+
+  @Bean
+  public Tracer tracer(ObjectProvider<SpanExporter> exporter,
+                       @Value("${app.tracing.sampling.slow-threshold:500ms}") Duration slowThreshold,
+                       @Value("${app.tracing.sampling.keep-failed:true}") boolean keepFailed,
+                       @Value("${app.tracing.sampling.rate:0.0}") double rate) {
+    return new Tracer(new TailSampler(slowThreshold, keepFailed, rate), exporter.getIfAvailable());
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true")
+  public FilterRegistrationBean<TracingFilter> tracingFilter(Tracer tracer,
+                                                             @Value("${app.tracing.sampling.trusted-callers:}") Set<String> trustedCallers) {
+    FilterRegistrationBean<TracingFilter> registration =
+        new FilterRegistrationBean<>(new TracingFilter(tracer, trustedCallers));
+    // just outside Spring Security's filter chain
+    registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+    return registration;
+  }
+}
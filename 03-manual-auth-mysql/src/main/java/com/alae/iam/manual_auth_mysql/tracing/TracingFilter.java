@@ -0,0 +1,54 @@
+package com.alae.iam.manual_auth_mysql.tracing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Opens the root span of each request, ahead of the security filter chain so that rate limiting,
+ * context loading and the controller all fall inside it. An inbound {@code traceparent} is
+ * continued: its trace id is kept and its span becomes the root's parent. Its {@code sampled}
+ * flag is only honored from the {@code trustedCallers} addresses (a gateway or an upstream service);
+ * from anyone else it would let a client force traces to be exported.
+ */
+public class TracingFilter extends OncePerRequestFilter {
+
+  private final Tracer tracer;
+  private final Set<String> trustedCallers;
+
+  public TracingFilter(Tracer tracer, Set<String> trustedCallers) {
+    this.tracer = tracer;
+    this.trustedCallers = trustedCallers;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                  FilterChain filterChain) throws ServletException, IOException {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    TraceContext parent = TraceContext.parse(request.getHeader(TraceContext.HEADER));
+    if (parent != null && parent.sampled() && !trustedCallers.contains(request.getRemoteAddr())) {
+      parent = new TraceContext(parent.traceId(), parent.spanId(), false);
+    }
+    try (Span span = tracer.startTrace(request.getMethod() + " " + path, parent)) {
+      span.attribute("http.request.method", request.getMethod())
+          .attribute("url.path", path);
+      try {
+        filterChain.doFilter(request, response);
+      } catch (IOException | ServletException | RuntimeException e) {
+        span.error(e);
+        throw e;
+      } finally {
+        int status = response.getStatus();
+        span.attribute(TailSampler.STATUS_CODE, status);
+        if (status >= 500) {
+          span.error("HTTP " + status);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package db.migration;
+
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills {@code username_normalized} and {@code email_normalized} with {@link Identifiers#normalize}
+ * (NFKC is not something SQL can compute portably). Rows are read by id and updated in batches of
+ * {@value #BATCH_SIZE}, each committed on its own, so a large table is never locked as a whole and
+ * an interrupted run resumes where it stopped.
+ *
+ * <p>Fails, before V8 adds the unique indexes, if two users only differ in case or in Unicode form,
+ * or if a username or email grows past its normalized column under NFKC.
+ */
+public class V7__Backfill_normalized_identifiers extends BaseJavaMigration {
+
+  private static final int BATCH_SIZE = 1000;
+
+  @Override
+  public boolean canExecuteInTransaction() {
+    return false;
+  }
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    Connection connection = context.getConnection();
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try (PreparedStatement select = connection.prepareStatement(
+             "SELECT id, username, email FROM app_users WHERE id > ? AND username_normalized IS NULL"
+                 + " ORDER BY id LIMIT " + BATCH_SIZE);
+         PreparedStatement update = connection.prepareStatement(
+             "UPDATE app_users SET username_normalized = ?, email_normalized = ? WHERE id = ?")) {
+      long lastId = 0;
+      int rows;
+      do {
+        rows = 0;
+        select.setLong(1, lastId);
+        try (ResultSet rs = select.executeQuery()) {
+          while (rs.next()) {
+            lastId = rs.getLong("id");
+            String username = rs.getString("username");
+            String email = rs.getString("email");
+            if (!Identifiers.fits(username, Identifiers.USERNAME_MAX_LENGTH)
+                || !Identifiers.fits(email, Identifiers.EMAIL_MAX_LENGTH)) {
+              throw new FlywayException("User " + lastId + " has a username or email too long once normalized."
+                  + " Shorten it, then run flyway repair and migrate again.");
+            }
+            update.setString(1, Identifiers.normalize(username));
+            update.setString(2, Identifiers.normalize(email));
+            update.setLong(3, lastId);
+            update.addBatch();
+            rows++;
+          }
+        }
+        if (rows > 0) {
+          update.executeBatch();
+          connection.commit();
+        }
+      } while (rows == BATCH_SIZE);
+
+      List<String> duplicates = new ArrayList<>();
+      duplicates.addAll(duplicates(connection, "username_normalized"));
+      duplicates.addAll(duplicates(connection, "email_normalized"));
+      if (!duplicates.isEmpty()) {
+        throw new FlywayException("Users collide once usernames/emails are normalized: " + duplicates
+            + ". Rename or merge them, then run flyway repair and migrate again.");
+      }
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  private static List<String> duplicates(Connection connection, String column) throws SQLException {
+    List<String> values = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT " + column + " FROM app_users GROUP BY " + column
+             + " HAVING COUNT(*) > 1 ORDER BY " + column + " LIMIT 20")) {
+      while (rs.next()) {
+        values.add(rs.getString(1));
+      }
+    }
+    return values;
+  }
+}
@@ -0,0 +1,57 @@
+package com.alae.iam.manual_auth_mysql.config;
+
+import com.alae.iam.manual_auth_mysql.config.security.ScopedSecurityContextFilter;
+import com.alae.iam.manual_auth_mysql.config.security.ScopedSecurityContextTaskDecorator;
+import com.alae.iam.manual_auth_mysql.config.security.ScopedValueSecurityContextHolderStrategy;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+
+/**
+ * {@code app.security.context-holder=scoped-value}, only compiled on JDK 25 (see the {@code jdk25}
+ * Maven profile). Spring Security's filters pick the strategy up as a bean; code calling
+ * {@link SecurityContextHolder} directly gets it as the global strategy, restored on shutdown.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.security.context-holder", havingValue = "scoped-value")
+public class ScopedValueSecurityContextConfig implements DisposableBean {
+
+  private SecurityContextHolderStrategy previous;
+
+  @Bean
+  public SecurityContextHolderStrategy securityContextHolderStrategy() {
+    previous = SecurityContextHolder.getContextHolderStrategy();
+    SecurityContextHolderStrategy fallback = previous instanceof ScopedValueSecurityContextHolderStrategy scoped
+        ? scoped.fallback() : previous;
+    ScopedValueSecurityContextHolderStrategy strategy = new ScopedValueSecurityContextHolderStrategy(fallback);
+    SecurityContextHolder.setContextHolderStrategy(strategy);
+    return strategy;
+  }
+
+  @Bean
+  public FilterRegistrationBean<ScopedSecurityContextFilter> scopedSecurityContextFilter() {
+    FilterRegistrationBean<ScopedSecurityContextFilter> registration =
+        new FilterRegistrationBean<>(new ScopedSecurityContextFilter());
+    // the outermost of the application's filters: ahead of tracing and of Spring Security
+    registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 2);
+    return registration;
+  }
+
+  @Bean
+  public TaskDecorator scopedSecurityContextTaskDecorator(SecurityContextHolderStrategy securityContextHolderStrategy) {
+    return new ScopedSecurityContextTaskDecorator(securityContextHolderStrategy);
+  }
+
+  @Override
+  public void destroy() {
+    if (previous != null) {
+      SecurityContextHolder.setContextHolderStrategy(previous);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Runs the rest of the request, Spring Security's filter chain included, inside its own
+ * {@link ScopedValueSecurityContextHolderStrategy} binding. Async and error dispatches run the
+ * security chain again on whatever thread picks them up, so they get a binding too.
+ */
+public class ScopedSecurityContextFilter extends OncePerRequestFilter {
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected boolean shouldNotFilterErrorDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        try {
+            ScopedValueSecurityContextHolderStrategy.callWith(null, () -> {
+                filterChain.doFilter(request, response);
+                return null;
+            });
+        } catch (IOException | ServletException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException(e); // doFilter throws nothing else
+        }
+    }
+}
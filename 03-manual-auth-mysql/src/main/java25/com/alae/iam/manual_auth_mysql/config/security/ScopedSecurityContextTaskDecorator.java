@@ -0,0 +1,28 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+
+/**
+ * Hands the submitting thread's security context to an async task, explicitly: the task runs in a
+ * binding of its own holding that context, which ends with the task. Spring Boot applies a
+ * {@code TaskDecorator} bean to the executors it auto-configures ({@code @Async}, MVC async).
+ */
+public class ScopedSecurityContextTaskDecorator implements TaskDecorator {
+
+    private final SecurityContextHolderStrategy strategy;
+
+    public ScopedSecurityContextTaskDecorator(SecurityContextHolderStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        SecurityContext context = strategy.getContext();
+        return () -> ScopedValueSecurityContextHolderStrategy.callWith(context, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package com.alae.iam.manual_auth_mysql.config.security;
+
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.util.Assert;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link SecurityContextHolderStrategy} backed by a {@link ScopedValue} instead of a
+ * {@link ThreadLocal}. {@link ScopedSecurityContextFilter} binds a fresh {@link Slot} for each
+ * request and {@link ScopedSecurityContextTaskDecorator} one for each async task. The binding ends
+ * with the scope, so there is nothing to clear or to leak into the next task of a pooled thread,
+ * and no per-thread map entry for each of thousands of virtual threads.
+ *
+ * <p>A {@code ScopedValue} cannot be re-bound from inside its scope, while Spring Security sets and
+ * clears the context in the middle of a request. The bound value is therefore a mutable slot, only
+ * ever touched by the thread that bound it. Outside any binding (startup, scheduled jobs, tests
+ * calling {@code SecurityContextHolder} directly) the strategy falls back to {@code fallback}.
+ */
+public final class ScopedValueSecurityContextHolderStrategy implements SecurityContextHolderStrategy {
+
+    static final ScopedValue<Slot> SLOT = ScopedValue.newInstance();
+
+    private final SecurityContextHolderStrategy fallback;
+
+    public ScopedValueSecurityContextHolderStrategy(SecurityContextHolderStrategy fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Runs {@code op} with its own slot, holding {@code context} if not {@code null}.
+     */
+    public static <R, X extends Throwable> R callWith(SecurityContext context, ScopedValue.CallableOp<R, X> op) throws X {
+        Slot slot = new Slot();
+        if (context != null) {
+            slot.context = () -> context;
+        }
+        return ScopedValue.where(SLOT, slot).call(op);
+    }
+
+    public static boolean isBound() {
+        return SLOT.isBound();
+    }
+
+    public SecurityContextHolderStrategy fallback() {
+        return fallback;
+    }
+
+    @Override
+    public void clearContext() {
+        if (SLOT.isBound()) {
+            SLOT.get().context = null;
+        } else {
+            fallback.clearContext();
+        }
+    }
+
+    @Override
+    public SecurityContext getContext() {
+        return getDeferredContext().get();
+    }
+
+    @Override
+    public Supplier<SecurityContext> getDeferredContext() {
+        if (!SLOT.isBound()) {
+            return fallback.getDeferredContext();
+        }
+        Slot slot = SLOT.get();
+        if (slot.context == null) {
+            SecurityContext empty = createEmptyContext();
+            slot.context = () -> empty;
+        }
+        return slot.context;
+    }
+
+    @Override
+    public void setContext(SecurityContext context) {
+        Assert.notNull(context, "Only non-null SecurityContext instances are permitted");
+        if (SLOT.isBound()) {
+            SLOT.get().context = () -> context;
+        } else {
+            fallback.setContext(context);
+        }
+    }
+
+    @Override
+    public void setDeferredContext(Supplier<SecurityContext> deferredContext) {
+        Assert.notNull(deferredContext, "Only non-null Supplier instances are permitted");
+        if (!SLOT.isBound()) {
+            fallback.setDeferredContext(deferredContext);
+            return;
+        }
+        SLOT.get().context = () -> {
+            SecurityContext result = deferredContext.get();
+            Assert.notNull(result, "A Supplier<SecurityContext> returned null and is not allowed.");
+            return result;
+        };
+    }
+
+    @Override
+    public SecurityContext createEmptyContext() {
+        return new SecurityContextImpl();
+    }
+
+    static final class Slot {
+
+        Supplier<SecurityContext> context;
+    }
+}
@@ -0,0 +1,13 @@
+-- Sharded mode (app.sharding.enabled): one row per user, whatever shard holds its app_users row.
+-- It hands out user ids, keeps usernames and emails unique across shards, and resolves an email
+-- or an id to the username the shard ring is keyed on. Unused, though migrated, on single-database
+-- deployments and on the shards themselves.
+
+CREATE TABLE user_directory (
+    id                  BIGINT       NOT NULL AUTO_INCREMENT,
+    username_normalized VARCHAR(100) NOT NULL,
+    email_normalized    VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_user_directory_username UNIQUE (username_normalized),
+    CONSTRAINT uk_user_directory_email UNIQUE (email_normalized)
+);
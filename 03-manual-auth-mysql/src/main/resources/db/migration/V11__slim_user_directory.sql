@@ -0,0 +1,9 @@
+-- Sharded mode: usernames are now unique on the shard they hash to, and logins by username go
+-- straight there, so the directory only indexes emails (and ids) to the username that is routed.
+-- created_at dates each reservation, so that ones whose shard write never happened can be found.
+
+ALTER TABLE user_directory DROP CONSTRAINT uk_user_directory_username;
+
+ALTER TABLE user_directory ADD COLUMN created_at DATETIME(6) NULL;   -- NULL for rows from before V11
+
+CREATE INDEX idx_user_directory_created_at ON user_directory (created_at);
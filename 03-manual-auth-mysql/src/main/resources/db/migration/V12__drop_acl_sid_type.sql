@@ -0,0 +1,12 @@
+-- ACL entries are granted to users only: application users carry no authorities, so the ROLE sids
+-- V9 made room for never occur. sid is always an app_users.id, and sid_type goes. Rows of any
+-- other type (none are written since role grants were removed) are dropped with it.
+
+DELETE FROM acl_entries WHERE sid_type <> 'USER';
+DELETE FROM acl_change_outbox WHERE sid_type <> 'USER';
+
+ALTER TABLE acl_entries DROP CONSTRAINT uk_acl_entries_sid_object;
+ALTER TABLE acl_entries DROP COLUMN sid_type;
+ALTER TABLE acl_entries ADD CONSTRAINT uk_acl_entries_sid_object UNIQUE (sid, object_type, object_id);
+
+ALTER TABLE acl_change_outbox DROP COLUMN sid_type;
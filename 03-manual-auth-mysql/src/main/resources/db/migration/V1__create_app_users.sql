@@ -0,0 +1,16 @@
+-- Initial schema for manual-auth-mysql.
+-- Column names/types mirror the JPA mappings so that `ddl-auto: validate` passes.
+
+CREATE TABLE app_users (
+    id             BIGINT       NOT NULL AUTO_INCREMENT,
+    username       VARCHAR(100) NOT NULL,
+    email          VARCHAR(255) NOT NULL,
+    password_hash  VARCHAR(100) NOT NULL,
+    enabled        BOOLEAN      NOT NULL DEFAULT TRUE,
+    account_locked BOOLEAN      NOT NULL DEFAULT FALSE,
+    created_at     DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    -- CustomAuthenticationProvider resolves the login identifier against these two indexes
+    CONSTRAINT uk_app_users_username UNIQUE (username),
+    CONSTRAINT uk_app_users_email UNIQUE (email)
+);
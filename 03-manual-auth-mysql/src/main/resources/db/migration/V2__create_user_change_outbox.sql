@@ -0,0 +1,13 @@
+-- Transactional outbox of changes to app_users. A row is written in the same transaction as the
+-- change; every node polls the table with an id cursor and evicts its cached credentials.
+
+CREATE TABLE user_change_outbox (
+    id          BIGINT      NOT NULL AUTO_INCREMENT,
+    user_id     BIGINT      NOT NULL,
+    change_type VARCHAR(32) NOT NULL,
+    created_at  DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Re-reading the recent tail (rows committed out of id order) and purging old rows
+CREATE INDEX idx_user_change_outbox_created_at ON user_change_outbox (created_at);
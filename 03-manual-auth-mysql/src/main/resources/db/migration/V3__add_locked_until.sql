@@ -0,0 +1,3 @@
+-- Automatic lockouts end by themselves: account_locked with a NULL locked_until is a manual,
+-- open-ended lock, otherwise the lock is ignored once locked_until has passed.
+ALTER TABLE app_users ADD COLUMN locked_until DATETIME(6) NULL;
@@ -0,0 +1,3 @@
+-- {argon2}$argon2id$v=19$m=...,t=...,p=...$<salt>$<hash> is longer than the 60-char BCrypt hashes
+-- the column was sized for; existing BCrypt hashes stay valid and are re-hashed on next login.
+ALTER TABLE app_users MODIFY password_hash VARCHAR(255) NOT NULL;
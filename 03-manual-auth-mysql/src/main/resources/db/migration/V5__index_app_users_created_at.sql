@@ -0,0 +1,2 @@
+-- SCIM filters on meta.created
+CREATE INDEX idx_app_users_created_at ON app_users (created_at);
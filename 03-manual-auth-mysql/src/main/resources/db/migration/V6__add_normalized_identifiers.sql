@@ -0,0 +1,4 @@
+-- Normalized (NFKC, lower-cased) copies of username and email. They are filled by
+-- db.migration.V7__Backfill_normalized_identifiers and made NOT NULL and unique by V8.
+ALTER TABLE app_users ADD COLUMN username_normalized VARCHAR(100) NULL;
+ALTER TABLE app_users ADD COLUMN email_normalized VARCHAR(255) NULL;
@@ -0,0 +1,6 @@
+-- Logins and registrations look users up by these columns only, so "Alice@Example.com" and
+-- "alice@example.com" hit the same index entry instead of needing LOWER(email) and a table scan.
+ALTER TABLE app_users MODIFY username_normalized VARCHAR(100) NOT NULL;
+ALTER TABLE app_users MODIFY email_normalized VARCHAR(255) NOT NULL;
+CREATE UNIQUE INDEX uk_app_users_username_normalized ON app_users (username_normalized);
+CREATE UNIQUE INDEX uk_app_users_email_normalized ON app_users (email_normalized);
@@ -0,0 +1,28 @@
+-- Object-level permissions: (user or role, object type, object id) -> permission bit mask.
+-- AclService keeps the whole table in memory; the outbox tells every node which entries changed.
+
+CREATE TABLE acl_entries (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    sid_type    VARCHAR(8)   NOT NULL,   -- USER (sid = app_users.id) or ROLE (sid = authority name)
+    sid         VARCHAR(100) NOT NULL,
+    object_type VARCHAR(50)  NOT NULL,
+    object_id   BIGINT       NOT NULL,
+    mask        INT          NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_acl_entries_sid_object UNIQUE (sid_type, sid, object_type, object_id)
+);
+
+-- Reloading the entries of the objects listed in the outbox
+CREATE INDEX idx_acl_entries_object ON acl_entries (object_type, object_id);
+
+CREATE TABLE acl_change_outbox (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    sid_type    VARCHAR(8)   NOT NULL,
+    sid         VARCHAR(100) NOT NULL,
+    object_type VARCHAR(50)  NOT NULL,
+    object_id   BIGINT       NOT NULL,
+    created_at  DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_acl_change_outbox_created_at ON acl_change_outbox (created_at);
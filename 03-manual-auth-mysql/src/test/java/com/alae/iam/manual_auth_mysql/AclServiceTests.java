@@ -0,0 +1,227 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.acl.AclObject;
+import com.alae.iam.manual_auth_mysql.acl.AclService;
+import com.alae.iam.manual_auth_mysql.acl.Permission;
+import com.alae.iam.manual_auth_mysql.acl.Sid;
+import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
+import com.alae.iam.manual_auth_mysql.repository.AclRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:acl;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.acl.poll-interval-ms=3600000"
+})
+class AclServiceTests {
+
+  private static final AtomicLong USER_IDS = new AtomicLong(1000);
+
+  @Autowired AclService aclService;
+  @Autowired AclRepository aclRepository;
+  @Autowired JdbcTemplate jdbcTemplate;
+  @Autowired Documents documents;
+
+  @AfterEach
+  void clearContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  @DisplayName("grants and revokes apply to the index on commit")
+  void grantAndRevoke() {
+    Authentication user = user();
+    long userId = ((AuthPrincipal) user.getPrincipal()).id();
+
+    aclService.grant(Sid.user(userId), "document", 1, Permission.READ, Permission.WRITE);
+    assertTrue(aclService.isGranted(user, "document", 1, Permission.READ, Permission.WRITE));
+    assertFalse(aclService.isGranted(user, "document", 1, Permission.DELETE));
+    assertFalse(aclService.isGranted(user, "document", 2, Permission.READ));
+    assertFalse(aclService.isGranted(user, "folder", 1, Permission.READ));
+
+    aclService.revoke(Sid.user(userId), "document", 1, Permission.WRITE);
+    assertTrue(aclService.isGranted(user, "document", 1, Permission.READ));
+    assertFalse(aclService.isGranted(user, "document", 1, Permission.WRITE));
+
+    aclService.revoke(Sid.user(userId), "document", 1, Permission.READ);
+    assertFalse(aclService.isGranted(user, "document", 1, Permission.READ));
+    assertEquals(0, jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM acl_entries WHERE sid = ? AND object_id = 1", Integer.class, Long.toString(userId)));
+  }
+
+  @Test
+  @DisplayName("concurrent first grants on one entry all land")
+  void concurrentFirstGrants() throws Exception {
+    Authentication user = user();
+    long userId = ((AuthPrincipal) user.getPrincipal()).id();
+    Permission[] permissions = {Permission.READ, Permission.WRITE, Permission.CREATE, Permission.DELETE};
+    ExecutorService executor = Executors.newFixedThreadPool(permissions.length);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> grants = new ArrayList<>();
+      for (Permission permission : permissions) {
+        grants.add(executor.submit(() -> {
+          start.await();
+          aclService.grant(Sid.user(userId), "page", 9, permission);
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> grant : grants) {
+        grant.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertTrue(aclService.isGranted(user, "page", 9, permissions));
+    assertEquals(Permission.maskOf(permissions), jdbcTemplate.queryForObject(
+        "SELECT mask FROM acl_entries WHERE sid = ? AND object_type = 'page'", Integer.class, Long.toString(userId)));
+  }
+
+  @Test
+  @DisplayName("filterGranted keeps the readable ids, in order")
+  void filterGranted() {
+    Authentication user = user();
+    long userId = ((AuthPrincipal) user.getPrincipal()).id();
+    for (long id = 0; id < 100; id += 3) {
+      aclService.grant(Sid.user(userId), "invoice", id, Permission.READ);
+    }
+    aclService.grant(Sid.user(userId), "invoice", 50, Permission.WRITE);
+
+    long[] ids = LongStream.range(0, 100).map(id -> 99 - id).toArray();
+    long[] expected = LongStream.of(ids).filter(id -> id % 3 == 0).toArray();
+    assertArrayEquals(expected, aclService.filterGranted(user, "invoice", ids, Permission.READ));
+    assertEquals(0, aclService.filterGranted(user(), "invoice", ids, Permission.READ).length);
+  }
+
+  @Test
+  @DisplayName("an entry written on another node is picked up from the outbox")
+  void outboxChangesApply() {
+    Authentication user = user();
+    long userId = ((AuthPrincipal) user.getPrincipal()).id();
+    jdbcTemplate.update("INSERT INTO acl_entries (sid, object_type, object_id, mask) VALUES (?, 'ticket', 5, 1)",
+        Long.toString(userId));
+    jdbcTemplate.update("INSERT INTO acl_change_outbox (sid, object_type, object_id, created_at)"
+        + " VALUES (?, 'ticket', 5, ?)", Long.toString(userId), Timestamp.valueOf(LocalDateTime.now()));
+    assertFalse(aclService.isGranted(user, "ticket", 5, Permission.READ));
+
+    aclService.pollOutbox();
+
+    assertTrue(aclService.isGranted(user, "ticket", 5, Permission.READ));
+  }
+
+  @Test
+  @DisplayName("@PreAuthorize hasPermission goes through the ACL")
+  void preAuthorize() {
+    Authentication user = user();
+    long userId = ((AuthPrincipal) user.getPrincipal()).id();
+    aclService.grant(Sid.user(userId), "document", 42, Permission.READ);
+    SecurityContextHolder.getContext().setAuthentication(user);
+
+    assertEquals("document 42", documents.read(42));
+    assertThrows(AccessDeniedException.class, () -> documents.read(43));
+    assertEquals("document 42", documents.read(new Document(42)));
+    assertThrows(AccessDeniedException.class, () -> documents.read(new Document(43)));
+  }
+
+  @Nested
+  @Perf.Enabled
+  class Benchmark {
+
+    @Test
+    @DisplayName("filter 10k ids against a 1M-entry index")
+    void filterTenThousand() throws Exception {
+      Authentication user = user();
+      long userId = ((AuthPrincipal) user.getPrincipal()).id();
+      // straight into the table: grant() one entry at a time would take minutes
+      jdbcTemplate.batchUpdate("INSERT INTO acl_entries (sid, object_type, object_id, mask) VALUES (?, 'bench', ?, 1)",
+          LongStream.range(0, 1_000_000).mapToObj(id -> new Object[] {
+              Long.toString(id % 2 == 0 ? userId : userId + 1), id}).toList());
+      // loads the table like a starting node
+      long loadStart = System.nanoTime();
+      AclService aclService = new AclService(aclRepository, new SimpleMeterRegistry(), Duration.ofSeconds(10), Duration.ofDays(1));
+      Perf.report("loaded 1M entries in %d ms", (System.nanoTime() - loadStart) / 1_000_000);
+
+      long[] ids = LongStream.range(0, 10_000).map(id -> id * 97 % 2_000_000).toArray();
+      int[] kept = new int[1];
+      Perf.Result filter = Perf.measure("filterGranted 10k ids", 2_000, 10_000,
+          i -> kept[0] = aclService.filterGranted(user, "bench", ids, Permission.READ).length);
+      Perf.report(filter);
+
+      // the even ids below 1M are the user's, the odd ones another user's
+      assertEquals(LongStream.of(ids).filter(id -> id < 1_000_000 && id % 2 == 0).count(), kept[0]);
+    }
+  }
+
+  private static Authentication user() {
+    long id = USER_IDS.addAndGet(2); // the benchmark also grants to id + 1
+    return new UsernamePasswordAuthenticationToken(new AuthPrincipal(id, "user" + id, "user" + id + "@example.com"), null,
+        List.of());
+  }
+
+  record Document(long id) implements AclObject {
+
+    @Override
+    public String aclType() {
+      return "document";
+    }
+
+    @Override
+    public long aclId() {
+      return id;
+    }
+  }
+
+  public static class Documents {
+
+    @PreAuthorize("hasPermission(#id, 'document', 'READ')")
+    public String read(long id) {
+      return "document " + id;
+    }
+
+    @PreAuthorize("hasPermission(#document, 'read')")
+    public String read(Document document) {
+      return "document " + document.id();
+    }
+  }
+
+  @TestConfiguration
+  static class DocumentsConfig {
+
+    @Bean
+    Documents documents() {
+      return new Documents();
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.auth.CredentialCache;
+import com.alae.iam.manual_auth_mysql.config.security.ContextCookieSealer;
+import com.alae.iam.manual_auth_mysql.config.security.EncryptedCookieSecurityContextRepository;
+import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:cookie-context;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.security.context-store=cookie",
+    "app.security.context-cookie.keys=" + CookieContextStoreTests.OLD_KEY + "," + CookieContextStoreTests.NEW_KEY,
+    "app.security.context-cookie.current-key=new"
+})
+@AutoConfigureMockMvc
+class CookieContextStoreTests {
+
+  static final String OLD_KEY = "old:qBtf0hvdcc1kkGkCg3S3SQ==";
+  static final String NEW_KEY = "new:xDGYLkOkovmdXmLa57rquRgH4vxZoMAGffjHStG+r64=";
+  private static final String COOKIE = "AUTH";
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+  @Autowired SecurityContextRepository securityContextRepository;
+  @Autowired CredentialCache credentialCache;
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Test
+  @DisplayName("login → me → logout works from the cookie alone, without an HttpSession")
+  void statelessFlow() throws Exception {
+    String username = register().username();
+
+    MvcResult login = mvc.perform(post("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of("usernameOrEmail", username, "password", "secret"))))
+        .andExpect(status().isOk())
+        .andReturn();
+    Cookie cookie = login.getResponse().getCookie(COOKIE);
+    assertNotNull(cookie);
+    assertTrue(cookie.isHttpOnly());
+    assertNull(login.getRequest().getSession(false));
+
+    MvcResult me = mvc.perform(get("/api/auth/me").cookie(cookie))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username").value(username))
+        .andReturn();
+    assertNull(me.getRequest().getSession(false));
+
+    MvcResult logout = mvc.perform(post("/api/auth/logout").cookie(cookie))
+        .andExpect(status().isOk())
+        .andReturn();
+    assertEquals(0, logout.getResponse().getCookie(COOKIE).getMaxAge());
+  }
+
+  @Test
+  @DisplayName("a tampered cookie is rejected")
+  void tamperedCookieRejected() throws Exception {
+    String value = new ContextCookieSealer(List.of(NEW_KEY), "new")
+        .seal(new AuthPrincipal(1L, "alice", "alice@example.com"), Instant.now(), Instant.now(), Instant.now().plusSeconds(600));
+    int middle = value.length() / 2;
+    String tampered = value.substring(0, middle) + (value.charAt(middle) == 'A' ? 'B' : 'A') + value.substring(middle + 1);
+
+    mvc.perform(get("/api/auth/me").cookie(new Cookie(COOKIE, tampered)))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("an expired cookie is rejected")
+  void expiredCookieRejected() throws Exception {
+    Instant issuedAt = Instant.now().minus(Duration.ofHours(1));
+    String value = new ContextCookieSealer(List.of(NEW_KEY), "new")
+        .seal(new AuthPrincipal(1L, "alice", "alice@example.com"), issuedAt, issuedAt, issuedAt.plusSeconds(60));
+
+    mvc.perform(get("/api/auth/me").cookie(new Cookie(COOKIE, value)))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("a cookie sealed under a retired key is accepted and re-sealed under the current one")
+  void retiredKeyRenewed() throws Exception {
+    AuthPrincipal principal = register();
+    String value = new ContextCookieSealer(List.of(OLD_KEY), "old")
+        .seal(principal, Instant.now(), Instant.now(), Instant.now().plusSeconds(600));
+
+    MvcResult me = mvc.perform(get("/api/auth/me").cookie(new Cookie(COOKIE, value)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value(principal.id()))
+        .andReturn();
+
+    Cookie renewed = me.getResponse().getCookie(COOKIE);
+    assertNotNull(renewed);
+    assertTrue(renewed.getValue().startsWith("new."));
+  }
+
+  @Test
+  @DisplayName("a renewal reloads the user: a locked account loses its cookie")
+  void lockedUserNotRenewed() throws Exception {
+    AuthPrincipal principal = register();
+    Instant issuedAt = Instant.now().minus(Duration.ofMinutes(10));
+    String value = new ContextCookieSealer(List.of(NEW_KEY), "new")
+        .seal(principal, issuedAt, issuedAt, Instant.now().plusSeconds(600));
+    jdbcTemplate.update("UPDATE app_users SET account_locked = TRUE WHERE id = ?", principal.id());
+    credentialCache.evict(principal.id());
+
+    MvcResult me = mvc.perform(get("/api/auth/me").cookie(new Cookie(COOKIE, value)))
+        .andExpect(status().isUnauthorized())
+        .andReturn();
+    assertEquals(0, me.getResponse().getCookie(COOKIE).getMaxAge());
+  }
+
+  @Test
+  @DisplayName("a cookie past the absolute lifetime is rejected, however recently renewed")
+  void lifetimeEnforced() throws Exception {
+    AuthPrincipal principal = register();
+    Instant now = Instant.now();
+    String value = new ContextCookieSealer(List.of(NEW_KEY), "new")
+        .seal(principal, now.minus(Duration.ofHours(13)), now, now.plusSeconds(600));
+
+    mvc.perform(get("/api/auth/me").cookie(new Cookie(COOKIE, value)))
+        .andExpect(status().isUnauthorized());
+  }
+
+  private AuthPrincipal register() throws Exception {
+    String username = "user-" + UUID.randomUUID().toString().substring(0, 8);
+    MvcResult result = mvc.perform(post("/api/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of(
+                "username", username, "email", username + "@example.com", "password", "secret"))))
+        .andExpect(status().isCreated())
+        .andReturn();
+    return objectMapper.readValue(result.getResponse().getContentAsString(), AuthPrincipal.class);
+  }
+
+  /**
+   * Server memory held per logged-in user and time to restore the context per request, session
+   * store against cookie store. Run with {@code ./mvnw test -Dperf=true -Dtest=CookieContextStoreTests}.
+   */
+  @Nested
+  @Perf.Enabled
+  class Benchmark {
+
+    private static final int USERS = 50_000;
+    private static final int REQUESTS = 500_000;
+
+    @Test
+    @DisplayName("cookie store keeps no per-user state on the server")
+    void sessionVersusCookie() {
+      HttpSessionSecurityContextRepository sessionRepository = new HttpSessionSecurityContextRepository();
+      EncryptedCookieSecurityContextRepository cookieRepository =
+          (EncryptedCookieSecurityContextRepository) securityContextRepository;
+
+      // the session store is what stays on the server; cookies stay with the clients
+      long heapBefore = usedHeap();
+      List<MockHttpSession> sessions = new ArrayList<>(USERS);
+      for (int i = 0; i < USERS; i++) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        sessionRepository.saveContext(context(i), request, new MockHttpServletResponse());
+        sessions.add((MockHttpSession) request.getSession(false));
+      }
+      long sessionBytes = usedHeap() - heapBefore;
+
+      heapBefore = usedHeap();
+      List<Cookie> cookies = new ArrayList<>(USERS);
+      for (int i = 0; i < USERS; i++) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cookieRepository.saveContext(context(i), new MockHttpServletRequest(), response);
+        cookies.add(response.getCookie(COOKIE));
+      }
+      long cookieClientBytes = usedHeap() - heapBefore;
+
+      long sessionNanos = time(i -> {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(sessions.get(i % USERS));
+        return sessionRepository.loadDeferredContext(request).get();
+      });
+      long cookieNanos = time(i -> {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(cookies.get(i % USERS));
+        return cookieRepository.loadDeferredContext(request).get();
+      });
+
+      Perf.report("session store: %,d bytes held on the server per user, %,d ns per request",
+          sessionBytes / USERS, sessionNanos / REQUESTS);
+      Perf.report("cookie store:  0 bytes held on the server per user (%,d bytes per client), %d-char cookie, %,d ns per request",
+          cookieClientBytes / USERS, cookies.get(0).getValue().length(), cookieNanos / REQUESTS);
+
+      // what a client can carry: browsers drop cookies over 4096 bytes
+      assertTrue(cookies.get(0).getValue().length() < 4096);
+    }
+
+    private SecurityContext context(int i) {
+      AuthPrincipal principal = new AuthPrincipal((long) i, "user-" + i, "user-" + i + "@example.com");
+      return new SecurityContextImpl(
+          UsernamePasswordAuthenticationToken.authenticated(principal, null, Collections.emptyList()));
+    }
+
+    private long time(Load load) {
+      for (int i = 0; i < REQUESTS / 5; i++) {
+        assertNotNull(load.apply(i).getAuthentication());
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < REQUESTS; i++) {
+        Authentication authentication = load.apply(i).getAuthentication();
+        if (authentication == null || ((AuthPrincipal) authentication.getPrincipal()).id() != i % USERS) {
+          fail("context of user " + i % USERS + " not restored");
+        }
+      }
+      return System.nanoTime() - start;
+    }
+
+    private long usedHeap() {
+      System.gc();
+      return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+  }
+
+  @FunctionalInterface
+  private interface Load {
+    SecurityContext apply(int i);
+  }
+}
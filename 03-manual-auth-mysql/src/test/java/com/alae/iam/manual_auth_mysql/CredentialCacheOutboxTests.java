@@ -0,0 +1,151 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.auth.CredentialCache;
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import com.alae.iam.manual_auth_mysql.domain.UserChangeType;
+import com.alae.iam.manual_auth_mysql.repository.AppUserRepository;
+import com.alae.iam.manual_auth_mysql.repository.UserChangeOutboxRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against H2 in MySQL mode with the Flyway migrations, so no Docker is needed. The outbox
+ * poll is triggered by hand; a change written without the local eviction stands in for another node.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:credential-cache;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "app.credential-cache.poll-interval-ms=3600000",
+    "app.credential-cache.max-size=2"
+})
+class CredentialCacheOutboxTests {
+
+  private static final String PASSWORD = "secret";
+
+  @Autowired AuthenticationManager authenticationManager;
+  @Autowired CredentialCache credentialCache;
+  @Autowired AppUserRepository userRepository;
+  @Autowired UserChangeOutboxRepository outboxRepository;
+  @Autowired PasswordEncoder passwordEncoder;
+  @Autowired JdbcTemplate jdbcTemplate;
+  @Autowired TransactionTemplate transactionTemplate;
+  @Autowired EntityManagerFactory entityManagerFactory;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  @Test
+  @DisplayName("cached logins by username and by email need no database round trip")
+  void cachedLoginsNeedNoQuery() {
+    AppUser user = createUser();
+    credentialCache.resolve(user.getUsername());
+    statistics.clear();
+
+    assertTrue(authenticate(user.getUsername()).isAuthenticated());
+    assertTrue(authenticate(user.getEmail()).isAuthenticated());
+
+    assertEquals(0, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  @DisplayName("identifiers match in any case, from the cache as from the database")
+  void identifiersMatchInAnyCase() {
+    AppUser user = createUser();
+
+    assertTrue(authenticate(user.getEmail().toUpperCase(Locale.ROOT)).isAuthenticated());
+    statistics.clear();
+    assertTrue(authenticate(user.getUsername().toUpperCase(Locale.ROOT)).isAuthenticated());
+    assertTrue(authenticate(user.getEmail()).isAuthenticated());
+    assertEquals(0, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  @DisplayName("a lock written on another node reaches this node through the outbox")
+  void lockReachesCacheThroughOutbox() {
+    AppUser user = createUser();
+    assertTrue(authenticate(user.getEmail()).isAuthenticated());
+
+    transactionTemplate.executeWithoutResult(status -> {
+      jdbcTemplate.update("UPDATE app_users SET account_locked = TRUE WHERE id = ?", user.getId());
+      outboxRepository.append(user.getId(), UserChangeType.LOCKED);
+    });
+
+    // still cached until the outbox is polled
+    assertFalse(credentialCache.resolve(user.getEmail()).orElseThrow().accountLocked());
+
+    credentialCache.pollOutbox();
+
+    assertThrows(LockedException.class, () -> authenticate(user.getEmail()));
+  }
+
+  @Test
+  @DisplayName("a change made on this node evicts locally on commit")
+  void localChangeEvictsOnCommit() {
+    AppUser user = createUser();
+    credentialCache.resolve(user.getUsername());
+
+    transactionTemplate.executeWithoutResult(status -> {
+      jdbcTemplate.update("UPDATE app_users SET account_locked = TRUE WHERE id = ?", user.getId());
+      credentialCache.userChanged(user.getId(), UserChangeType.LOCKED);
+    });
+
+    assertTrue(credentialCache.resolve(user.getUsername()).orElseThrow().accountLocked());
+  }
+
+  @Test
+  @DisplayName("beyond max-size the least recently used entry is dropped")
+  void leastRecentlyUsedEntryIsDropped() {
+    AppUser first = createUser();
+    AppUser second = createUser();
+    AppUser third = createUser();
+    credentialCache.resolve(first.getUsername());
+    credentialCache.resolve(second.getUsername());
+    credentialCache.resolve(first.getEmail());
+    credentialCache.resolve(third.getUsername());
+    statistics.clear();
+
+    credentialCache.resolve(first.getUsername());
+    credentialCache.resolve(third.getEmail());
+    assertEquals(0, statistics.getPrepareStatementCount());
+
+    credentialCache.resolve(second.getUsername());
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  private AppUser createUser() {
+    String username = "user-" + UUID.randomUUID();
+    return userRepository.save(AppUser.builder()
+        .username(username)
+        .email(username + "@example.com")
+        .passwordHash(passwordEncoder.encode(PASSWORD))
+        .build());
+  }
+
+  private Authentication authenticate(String usernameOrEmail) {
+    return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(usernameOrEmail, PASSWORD));
+  }
+}
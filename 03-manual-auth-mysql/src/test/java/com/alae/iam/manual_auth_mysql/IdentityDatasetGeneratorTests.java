@@ -0,0 +1,147 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.datagen.HashPool;
+import com.alae.iam.manual_auth_mysql.datagen.IdentityDatasetGenerator;
+import com.alae.iam.manual_auth_mysql.datagen.JdbcChunkWriter;
+import com.alae.iam.manual_auth_mysql.datagen.SyntheticUser;
+import com.alae.iam.manual_auth_mysql.datagen.TsvChunkWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:datagen;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.rate-limit.enabled=false"
+})
+class IdentityDatasetGeneratorTests {
+
+  private static final LocalDateTime UNTIL = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+  @Autowired DataSource dataSource;
+  @Autowired JdbcTemplate jdbcTemplate;
+  @Autowired PasswordEncoder passwordEncoder;
+  @Autowired AuthenticationManager authenticationManager;
+
+  @Test
+  @DisplayName("the same seed gives the same rows whatever the number of threads")
+  void reproducible() throws Exception {
+    IdentityDatasetGenerator generator = new IdentityDatasetGenerator(settings(5_000, 7));
+    assertEquals(generator.chunk(3, 1), new IdentityDatasetGenerator(settings(5_000, 7)).chunk(3, 1));
+    assertNotEquals(generator.chunk(3, 1), new IdentityDatasetGenerator(settings(5_000, 8)).chunk(3, 1));
+
+    assertEquals(collect(generator, 1), collect(generator, 4));
+  }
+
+  @Test
+  @DisplayName("identifiers are unique once normalized, and the lock and disable ratios hold")
+  void realisticRows() {
+    IdentityDatasetGenerator generator = new IdentityDatasetGenerator(settings(20_000, 1));
+    Set<String> usernames = new HashSet<>();
+    Set<String> emails = new HashSet<>();
+    int locked = 0;
+    int disabled = 0;
+    int gmail = 0;
+    for (long chunk = 0; chunk < generator.chunks(); chunk++) {
+      for (SyntheticUser user : generator.chunk(chunk, 1)) {
+        assertTrue(usernames.add(user.username().toLowerCase()), user.username());
+        assertTrue(emails.add(user.email().toLowerCase()), user.email());
+        assertTrue(user.email().matches("[A-Za-z._]+\\d+@[A-Za-z.]+"), user.email());
+        assertFalse(user.createdAt().isAfter(UNTIL.plusMinutes(1)));
+        locked += user.accountLocked() ? 1 : 0;
+        disabled += user.enabled() ? 0 : 1;
+        gmail += user.email().toLowerCase().endsWith("@gmail.com") ? 1 : 0;
+      }
+    }
+    assertEquals(20_000, usernames.size());
+    assertEquals(200, locked, 60);   // 1%
+    assertEquals(100, disabled, 45); // 0.5%
+    assertTrue(gmail > 20_000 / 5, "the most common domain should dominate: " + gmail);
+  }
+
+  @Test
+  @DisplayName("multi-row inserts on several threads, and generated users log in with their pool password")
+  void writesToTheDatabase() throws Exception {
+    long before = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_users", Long.class);
+    long firstId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM app_users", Long.class);
+    HashPool hashPool = HashPool.compute(passwordEncoder, "datagen-", 2, 2);
+    IdentityDatasetGenerator generator = new IdentityDatasetGenerator(settings(3_500, 3));
+
+    generator.run(firstId, 3, () -> new JdbcChunkWriter(dataSource, hashPool, 200), written -> {});
+
+    assertEquals(before + 3_500, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_users", Long.class));
+    SyntheticUser user = generator.chunk(0, firstId).stream()
+        .filter(candidate -> candidate.enabled() && !candidate.accountLocked())
+        .findFirst().orElseThrow();
+    assertTrue(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
+        user.email().toUpperCase(), hashPool.password(user.id()))).isAuthenticated());
+  }
+
+  @Test
+  @DisplayName("LOAD DATA files hold one line per user and a load script lists them")
+  void writesLoadDataFiles(@TempDir Path directory) throws Exception {
+    HashPool hashPool = HashPool.compute(passwordEncoder, "datagen-", 1, 1);
+    IdentityDatasetGenerator generator = new IdentityDatasetGenerator(settings(2_500, 5));
+
+    generator.run(1, 2, () -> new TsvChunkWriter(directory, hashPool), written -> {});
+    TsvChunkWriter.writeLoadScript(directory, generator.chunks());
+
+    long lines = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : files.filter(path -> path.toString().endsWith(".tsv")).toList()) {
+        for (String line : Files.readAllLines(file)) {
+          assertEquals(10, line.split("\t", -1).length, line);
+          lines++;
+        }
+      }
+    }
+    assertEquals(2_500, lines);
+    assertEquals(generator.chunks(), Files.readAllLines(directory.resolve("load.sql")).stream()
+        .filter(line -> line.startsWith("LOAD DATA")).count());
+  }
+
+  private static List<SyntheticUser> collect(IdentityDatasetGenerator generator, int threads) throws Exception {
+    List<List<SyntheticUser>> chunks = new ArrayList<>();
+    for (long chunk = 0; chunk < generator.chunks(); chunk++) {
+      chunks.add(null);
+    }
+    generator.run(1, threads, () -> new IdentityDatasetGenerator.ChunkWriter() {
+      @Override
+      public void write(long chunk, List<SyntheticUser> users) {
+        synchronized (chunks) {
+          chunks.set((int) chunk, users);
+        }
+      }
+
+      @Override
+      public void close() {
+      }
+    }, written -> {});
+    return chunks.stream().flatMap(List::stream).toList();
+  }
+
+  private static IdentityDatasetGenerator.Settings settings(long users, long seed) {
+    return new IdentityDatasetGenerator.Settings(users, seed, 1_000, 1.0, 1.3, 0.05, 0.01, 0.005, UNTIL,
+        Duration.ofDays(730));
+  }
+}
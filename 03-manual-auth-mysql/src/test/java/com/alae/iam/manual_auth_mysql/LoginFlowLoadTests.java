@@ -0,0 +1,249 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Open-model load test of register → login → me → logout against the app on an embedded H2
+ * database. Scenarios start at a constant arrival rate whether or not earlier ones have finished,
+ * so a slow server shows up as latency (measured from the intended start) instead of as a lower
+ * request rate. Per-step HdrHistogram percentiles are written to {@code target/loadtest/report.json}.
+ *
+ * <p>Run with {@code ./loadtest.sh}, or {@code ./mvnw test -Dperf=true -Dtest=LoginFlowLoadTests}.
+ * System properties:
+ * <ul>
+ *   <li>{@code loadtest.rate}: scenarios started per second (default 20)</li>
+ *   <li>{@code loadtest.duration} / {@code loadtest.warmup}: seconds measured / discarded (60 / 10)</li>
+ *   <li>{@code loadtest.baseline}: a previous report; the test fails if p99 or throughput regressed
+ *       by more than {@code loadtest.tolerance} (default 0.20)</li>
+ * </ul>
+ * Other application properties can be passed the same way, e.g. {@code -Dapp.security.context-store=cookie}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+@Perf.Enabled
+class LoginFlowLoadTests {
+
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+  private static final int MAX_IN_FLIGHT = 1024;
+
+  private enum Step { REGISTER, LOGIN, ME, LOGOUT, SCENARIO }
+
+  @LocalServerPort int port;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+  private final AtomicLong userSequence = new AtomicLong();
+  private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+  @Test
+  @DisplayName("register/login/me/logout at a constant arrival rate")
+  void constantArrivalRate() throws Exception {
+    double rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+    Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 60));
+    Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup", 10));
+
+    run(rate, warmup);
+    Phase measured = run(rate, duration);
+
+    Map<String, Object> report = report(rate, duration, measured);
+    Path output = Path.of("target", "loadtest", "report.json");
+    Files.createDirectories(output.getParent());
+    objectMapper.writeValue(output.toFile(), report);
+    Perf.report("%s", objectMapper.writeValueAsString(report));
+
+    long errors = measured.errors.values().stream().mapToLong(LongAdder::sum).sum() + measured.dropped.sum();
+    assertTrue(errors <= measured.started.sum() / 100, "more than 1% of scenarios failed: " + errors);
+
+    String baseline = System.getProperty("loadtest.baseline");
+    if (baseline != null) {
+      compareWithBaseline(objectMapper.readTree(Path.of(baseline).toFile()), objectMapper.valueToTree(report),
+          Double.parseDouble(System.getProperty("loadtest.tolerance", "0.20")));
+    }
+  }
+
+  private Phase run(double rate, Duration duration) throws InterruptedException {
+    Phase phase = new Phase();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(0, MAX_IN_FLIGHT, 30, TimeUnit.SECONDS, new SynchronousQueue<>());
+
+    long intervalNanos = (long) (1e9 / rate);
+    long start = System.nanoTime();
+    long end = start + duration.toNanos();
+    for (long intendedStart = start; intendedStart < end; intendedStart += intervalNanos) {
+      long wait;
+      while ((wait = intendedStart - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      long scheduled = intendedStart;
+      phase.started.increment();
+      try {
+        pool.execute(() -> scenario(phase, scheduled));
+      } catch (RejectedExecutionException e) {
+        phase.dropped.increment(); // more than MAX_IN_FLIGHT scenarios outstanding: the server is not keeping up
+      }
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES), "scenarios still running after 5 minutes");
+    phase.elapsedNanos = System.nanoTime() - start;
+    return phase;
+  }
+
+  private void scenario(Phase phase, long intendedStart) {
+    // each virtual user keeps its own cookies, so the session (or context cookie) is its own
+    Map<String, String> cookies = new LinkedHashMap<>();
+    String username = "load-" + ProcessHandle.current().pid() + "-" + userSequence.incrementAndGet();
+    String credentials = "{\"usernameOrEmail\":\"" + username + "\",\"password\":\"secret1\"}";
+    String registration = "{\"username\":\"" + username + "\",\"email\":\"" + username
+        + "@example.com\",\"password\":\"secret1\"}";
+
+    // the first step is timed from the intended start, so queueing behind a slow server is counted
+    boolean ok = step(phase, Step.REGISTER, intendedStart, cookies, post("/api/auth/register", registration), 201)
+        && step(phase, Step.LOGIN, System.nanoTime(), cookies, post("/api/auth/login", credentials), 200)
+        && step(phase, Step.ME, System.nanoTime(), cookies, request("/api/auth/me").GET(), 200)
+        && step(phase, Step.LOGOUT, System.nanoTime(), cookies, post("/api/auth/logout", ""), 200);
+    if (ok) {
+      phase.histograms.get(Step.SCENARIO).recordValue(micros(System.nanoTime() - intendedStart));
+    }
+  }
+
+  private boolean step(Phase phase, Step step, long startNanos, Map<String, String> cookies,
+                       HttpRequest.Builder request, int expected) {
+    if (!cookies.isEmpty()) {
+      StringJoiner header = new StringJoiner("; ");
+      cookies.forEach((name, value) -> header.add(name + "=" + value));
+      request.header("Cookie", header.toString());
+    }
+    try {
+      HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+      for (String setCookie : response.headers().allValues("Set-Cookie")) {
+        for (HttpCookie cookie : HttpCookie.parse(setCookie)) {
+          if (cookie.getMaxAge() == 0) {
+            cookies.remove(cookie.getName());
+          } else {
+            cookies.put(cookie.getName(), cookie.getValue());
+          }
+        }
+      }
+      if (response.statusCode() != expected) {
+        phase.errors.get(step).increment();
+        return false;
+      }
+      phase.histograms.get(step).recordValue(micros(System.nanoTime() - startNanos));
+      return true;
+    } catch (Exception e) {
+      phase.errors.get(step).increment();
+      return false;
+    }
+  }
+
+  private HttpRequest.Builder post(String path, String json) {
+    return request(path)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(json));
+  }
+
+  private HttpRequest.Builder request(String path) {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).timeout(Duration.ofSeconds(60));
+  }
+
+  private static long micros(long nanos) {
+    return Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  private Map<String, Object> report(double rate, Duration duration, Phase phase) {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("timestamp", Instant.now().toString());
+    report.put("targetRatePerSecond", rate);
+    report.put("durationSeconds", duration.toSeconds());
+    report.put("contextStore", System.getProperty("app.security.context-store", "session"));
+    report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+    report.put("javaVersion", Runtime.version().toString());
+    report.put("scenariosStarted", phase.started.sum());
+    report.put("scenariosDropped", phase.dropped.sum());
+    Histogram scenarios = phase.histograms.get(Step.SCENARIO);
+    report.put("scenariosPerSecond", scenarios.getTotalCount() / (phase.elapsedNanos / 1e9));
+
+    Map<String, Object> steps = new LinkedHashMap<>();
+    for (Step step : Step.values()) {
+      Histogram histogram = phase.histograms.get(step);
+      Map<String, Object> stats = new LinkedHashMap<>();
+      stats.put("count", histogram.getTotalCount());
+      stats.put("errors", step == Step.SCENARIO ? 0 : phase.errors.get(step).sum());
+      stats.put("meanMs", histogram.getMean() / 1000);
+      for (double percentile : new double[] {50, 90, 99, 99.9}) {
+        stats.put("p" + (percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile)) + "Ms",
+            histogram.getValueAtPercentile(percentile) / 1000.0);
+      }
+      stats.put("maxMs", histogram.getMaxValue() / 1000.0);
+      steps.put(step.name().toLowerCase(Locale.ROOT), stats);
+    }
+    report.put("steps", steps);
+    return report;
+  }
+
+  private void compareWithBaseline(JsonNode baseline, JsonNode current, double tolerance) {
+    List<String> regressions = new ArrayList<>();
+    double baselineThroughput = baseline.path("scenariosPerSecond").asDouble();
+    double throughput = current.path("scenariosPerSecond").asDouble();
+    if (throughput < baselineThroughput * (1 - tolerance)) {
+      regressions.add(String.format("throughput %.1f/s vs %.1f/s", throughput, baselineThroughput));
+    }
+    current.path("steps").properties().forEach(entry -> {
+      double before = baseline.path("steps").path(entry.getKey()).path("p99Ms").asDouble(0);
+      double now = entry.getValue().path("p99Ms").asDouble();
+      if (before > 0 && now > before * (1 + tolerance)) {
+        regressions.add(String.format("%s p99 %.1f ms vs %.1f ms", entry.getKey(), now, before));
+      }
+    });
+    assertTrue(regressions.isEmpty(), "regressions against baseline: " + regressions);
+  }
+
+  private static final class Phase {
+
+    final Map<Step, Histogram> histograms = new EnumMap<>(Step.class);
+    final Map<Step, LongAdder> errors = new EnumMap<>(Step.class);
+    final LongAdder started = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    long elapsedNanos;
+
+    Phase() {
+      for (Step step : Step.values()) {
+        histograms.put(step, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+        errors.put(step, new LongAdder());
+      }
+    }
+  }
+}
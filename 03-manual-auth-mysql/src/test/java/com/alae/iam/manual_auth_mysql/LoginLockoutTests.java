@@ -0,0 +1,102 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.auth.LoginAttemptTracker;
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import com.alae.iam.manual_auth_mysql.repository.AppUserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:lockout;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.lockout.max-failures=3",
+    "app.lockout.flush-interval-ms=3600000"
+})
+class LoginLockoutTests {
+
+  private static final String PASSWORD = "secret";
+
+  @Autowired AuthenticationManager authenticationManager;
+  @Autowired LoginAttemptTracker loginAttemptTracker;
+  @Autowired AppUserRepository userRepository;
+  @Autowired JdbcTemplate jdbcTemplate;
+  @MockitoSpyBean PasswordEncoder passwordEncoder;
+
+  @Test
+  @DisplayName("too many failures lock the account without hashing further attempts")
+  void failuresLockBeforeHashing() {
+    AppUser user = createUser();
+    clearInvocations(passwordEncoder);
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(BadCredentialsException.class, () -> authenticate(user.getUsername(), "wrong"));
+    }
+    assertThrows(LockedException.class, () -> authenticate(user.getUsername(), PASSWORD));
+
+    verify(passwordEncoder, times(3)).matches(any(), any());
+  }
+
+  @Test
+  @DisplayName("a success resets the failure count")
+  void successResetsCount() {
+    AppUser user = createUser();
+
+    assertThrows(BadCredentialsException.class, () -> authenticate(user.getEmail(), "wrong"));
+    assertThrows(BadCredentialsException.class, () -> authenticate(user.getEmail(), "wrong"));
+    assertTrue(authenticate(user.getEmail(), PASSWORD).isAuthenticated());
+    assertThrows(BadCredentialsException.class, () -> authenticate(user.getEmail(), "wrong"));
+
+    assertTrue(authenticate(user.getEmail(), PASSWORD).isAuthenticated());
+  }
+
+  @Test
+  @DisplayName("locks reach app_users and the outbox with the batched flush")
+  void lockIsFlushedInBatch() {
+    AppUser user = createUser();
+    for (int i = 0; i < 3; i++) {
+      assertThrows(BadCredentialsException.class, () -> authenticate(user.getUsername(), "wrong"));
+    }
+    assertFalse(userRepository.findById(user.getId()).orElseThrow().isAccountLocked());
+
+    loginAttemptTracker.flush();
+
+    AppUser stored = userRepository.findById(user.getId()).orElseThrow();
+    assertTrue(stored.isAccountLocked());
+    assertNotNull(stored.getLockedUntil());
+    assertEquals(1, jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM user_change_outbox WHERE user_id = ? AND change_type = 'LOCKED'",
+        Integer.class, user.getId()));
+  }
+
+  private AppUser createUser() {
+    String username = "user-" + UUID.randomUUID();
+    return userRepository.save(AppUser.builder()
+        .username(username)
+        .email(username + "@example.com")
+        .passwordHash(passwordEncoder.encode(PASSWORD))
+        .build());
+  }
+
+  private Authentication authenticate(String usernameOrEmail, String password) {
+    return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(usernameOrEmail, password));
+  }
+}
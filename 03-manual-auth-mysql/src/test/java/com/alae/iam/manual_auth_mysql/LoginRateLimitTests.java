@@ -0,0 +1,143 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.auth.LoginRateLimiter;
+import com.alae.iam.manual_auth_mysql.auth.LoginRateLimiter.Dimension;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:rate-limit;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.rate-limit.window=1d",
+    "app.rate-limit.pair-limit=3",
+    "app.rate-limit.identifier-limit=5",
+    "app.lockout.max-failures=100"
+})
+@AutoConfigureMockMvc
+class LoginRateLimitTests {
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+  @Autowired MeterRegistry meterRegistry;
+  @MockitoSpyBean PasswordEncoder passwordEncoder;
+
+  @Test
+  @DisplayName("attempts over the (IP, identifier) limit get 429 without reaching the password hash")
+  void pairLimitRejectsBeforeAuthentication() throws Exception {
+    String username = "victim-" + UUID.randomUUID().toString().substring(0, 8);
+    mvc.perform(post("/api/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of(
+                "username", username, "email", username + "@example.com", "password", "secret"))))
+        .andExpect(status().isCreated());
+    double rejectedBefore = rejected("pair");
+    clearInvocations(passwordEncoder);
+
+    for (int i = 0; i < 3; i++) {
+      login(username, "wrong-" + i, "10.0.0.1").andExpect(status().isUnauthorized());
+    }
+    login(username, "wrong-3", "10.0.0.1")
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().exists("Retry-After"))
+        .andExpect(jsonPath("$.errorCode").value("TOO_MANY_LOGIN_ATTEMPTS"));
+
+    verify(passwordEncoder, times(3)).matches(any(), any());
+    assertEquals(rejectedBefore + 1, rejected("pair"));
+
+    // another client trying other accounts is not affected
+    login("someone-else-" + UUID.randomUUID(), "wrong", "10.0.0.1").andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("one identifier tried from many IPs hits the identifier limit")
+  void identifierLimitAcrossIps() throws Exception {
+    String username = "spread-" + UUID.randomUUID();
+    for (int i = 0; i < 5; i++) {
+      login(username, "wrong", "10.1.0." + i).andExpect(status().isUnauthorized());
+    }
+    login(username, "wrong", "10.1.0.99").andExpect(status().isTooManyRequests());
+  }
+
+  @Test
+  @DisplayName("a login body padded past 4 KiB is refused with 413 instead of skipping the identifier limits")
+  void oversizedBodyRefused() throws Exception {
+    String body = objectMapper.writeValueAsString(Map.of(
+        "padding", "x".repeat(5000), "usernameOrEmail", "padded-" + UUID.randomUUID(), "password", "wrong"));
+    clearInvocations(passwordEncoder);
+
+    mvc.perform(post("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+        .andExpect(status().isPayloadTooLarge())
+        .andExpect(jsonPath("$.errorCode").value("LOGIN_BODY_TOO_LARGE"));
+
+    verify(passwordEncoder, times(0)).matches(any(), any());
+  }
+
+  private double rejected(String dimension) {
+    return meterRegistry.get("auth.login.throttled").tag("dimension", dimension).counter().count();
+  }
+
+  private ResultActions login(String username, String password, String ip) throws Exception {
+    return mvc.perform(post("/api/auth/login")
+        .with(request -> {
+          request.setRemoteAddr(ip);
+          return request;
+        })
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Map.of("usernameOrEmail", username, "password", password))));
+  }
+
+  @Nested
+  @DisplayName("sketch accuracy")
+  class SketchAccuracy {
+
+    @Test
+    @DisplayName("a million distinct IPs neither grow memory nor throttle a newcomer")
+    void boundedMemoryAndFewFalsePositives() {
+      LoginRateLimiter limiter = new LoginRateLimiter(true, Duration.ofHours(1), 100, 20, 10, 4, 32768,
+          new SimpleMeterRegistry());
+
+      int throttled = 0;
+      for (int i = 0; i < 1_000_000; i++) {
+        if (limiter.tryAcquire("ip-" + i, null) != null) {
+          throttled++;
+        }
+      }
+
+      assertEquals(0, throttled);
+      assertNull(limiter.tryAcquire("newcomer", "alice"));
+      for (int i = 0; i < 100; i++) {
+        limiter.tryAcquire("hammering", null);
+      }
+      assertEquals(Dimension.IP, limiter.tryAcquire("hammering", null));
+    }
+  }
+}
@@ -80,7 +80,7 @@ class ManualAuthMysqlApplicationTests {
     registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
     registry.add("spring.datasource.username", MYSQL::getUsername);
     registry.add("spring.datasource.password", MYSQL::getPassword);
-    registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
   }
 
   @Autowired MockMvc mvc;
@@ -0,0 +1,216 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The V6–V8 migrations and the query plans of identifier lookups, on plain JDBC without Spring.
+ */
+class NormalizedIdentifierTests {
+
+  @Test
+  @DisplayName("normalize lower-cases and folds compatibility characters")
+  void normalize() {
+    assertEquals("alice@example.com", Identifiers.normalize("Alice@Example.COM"));
+    assertEquals("john", Identifiers.normalize("Ｊｏｈｎ")); // fullwidth "John"
+    assertEquals("office", Identifiers.normalize("Oﬃce")); // "ffi" ligature
+  }
+
+  @Test
+  @DisplayName("fits measures the normalized form, which NFKC can make longer")
+  void fitsMeasuresTheNormalizedForm() {
+    String ligatures = "ﬃ".repeat(40); // 40 characters, 120 once normalized
+    assertTrue(ligatures.length() <= Identifiers.USERNAME_MAX_LENGTH);
+    assertFalse(Identifiers.fits(ligatures, Identifiers.USERNAME_MAX_LENGTH));
+    assertTrue(Identifiers.fits("ﬃ".repeat(33), Identifiers.USERNAME_MAX_LENGTH));
+  }
+
+  @Test
+  @DisplayName("the backfill stops on users whose identifiers overflow once normalized")
+  void backfillRejectsOverflow() throws SQLException {
+    String url = h2Url();
+    migrate(url, "6");
+    try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+      insert(connection, "ﬃ".repeat(40), "long@example.com");
+    }
+
+    FlywayException failure = assertThrows(FlywayException.class, () -> migrate(url, null));
+    assertTrue(causeMessages(failure).contains("too long"), causeMessages(failure));
+  }
+
+  @Test
+  @DisplayName("the backfill fills the normalized columns of existing users")
+  void backfill() throws SQLException {
+    String url = h2Url();
+    migrate(url, "6");
+    try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+      for (int i = 0; i < 2500; i++) { // more than one batch
+        insert(connection, "User" + i, "User" + i + "@Example.COM");
+      }
+      insert(connection, "Ｊｏｈｎ", "john@example.com");
+    }
+    migrate(url, null);
+
+    try (Connection connection = DriverManager.getConnection(url, "sa", "");
+         Statement statement = connection.createStatement()) {
+      ResultSet missing = statement.executeQuery("SELECT COUNT(*) FROM app_users WHERE username_normalized IS NULL");
+      missing.next();
+      assertEquals(0, missing.getLong(1));
+      ResultSet john = statement.executeQuery("SELECT username_normalized, email_normalized FROM app_users"
+          + " WHERE email = 'john@example.com'");
+      assertTrue(john.next());
+      assertEquals("john", john.getString(1));
+      ResultSet user = statement.executeQuery("SELECT email_normalized FROM app_users WHERE username = 'User42'");
+      assertTrue(user.next());
+      assertEquals("user42@example.com", user.getString(1));
+    }
+  }
+
+  @Test
+  @DisplayName("the backfill stops on users that collide once normalized")
+  void backfillRejectsCollisions() throws SQLException {
+    String url = h2Url();
+    migrate(url, "6");
+    try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+      insert(connection, "Bob", "bob@example.com");
+      insert(connection, "bob", "other-bob@example.com");
+    }
+
+    FlywayException failure = assertThrows(FlywayException.class, () -> migrate(url, null));
+    assertTrue(causeMessages(failure).contains("bob"), causeMessages(failure));
+  }
+
+  @Test
+  @DisplayName("H2 answers normalized lookups from the unique indexes")
+  void h2PlansUseTheIndexes() throws SQLException {
+    String url = h2Url();
+    migrate(url, null);
+    try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+      assertTrue(h2Plan(connection, "SELECT id FROM app_users WHERE email_normalized = 'a@example.com'")
+          .contains("uk_app_users_email_normalized"));
+      assertTrue(h2Plan(connection, "SELECT id FROM app_users WHERE username_normalized = 'a'")
+          .contains("uk_app_users_username_normalized"));
+      // what the normalized columns replace
+      String lowered = h2Plan(connection, "SELECT id FROM app_users WHERE LOWER(email) = 'a@example.com'");
+      // H2 may still walk an index end to end; only a seek lists a condition after the index name
+      String access = lowered.substring(lowered.indexOf("/*"), lowered.indexOf("*/"));
+      assertFalse(access.contains(":"), lowered);
+    }
+  }
+
+  @Nested
+  @Testcontainers(disabledWithoutDocker = true)
+  class OnMySql {
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.4")
+        .withDatabaseName("manual_auth_plans")
+        .withUsername("test")
+        .withPassword("test");
+
+    @Test
+    @DisplayName("MySQL answers normalized lookups from the unique indexes, LOWER(email) scans")
+    void mysqlPlansUseTheIndexes() throws SQLException {
+      Flyway.configure().dataSource(mysql.getJdbcUrl(), mysql.getUsername(), mysql.getPassword()).load().migrate();
+      try (Connection connection = DriverManager.getConnection(mysql.getJdbcUrl(), mysql.getUsername(), mysql.getPassword())) {
+        for (int i = 0; i < 500; i++) {
+          String username = "plan-" + i;
+          insertNormalized(connection, username, username + "@example.com");
+        }
+        connection.createStatement().execute("ANALYZE TABLE app_users");
+
+        Plan byEmail = mysqlPlan(connection, "SELECT id FROM app_users WHERE email_normalized = 'plan-7@example.com'");
+        assertEquals("uk_app_users_email_normalized", byEmail.key());
+        assertEquals("const", byEmail.type());
+
+        Plan byUsername = mysqlPlan(connection, "SELECT id FROM app_users WHERE username_normalized = 'plan-7'");
+        assertEquals("uk_app_users_username_normalized", byUsername.key());
+
+        Plan lowered = mysqlPlan(connection, "SELECT id FROM app_users WHERE LOWER(email) = 'plan-7@example.com'");
+        assertTrue(lowered.type().equals("ALL") || lowered.type().equals("index"), lowered.toString());
+      }
+    }
+
+    private void insertNormalized(Connection connection, String username, String email) throws SQLException {
+      try (PreparedStatement insert = connection.prepareStatement("INSERT INTO app_users (username, username_normalized,"
+          + " email, email_normalized, password_hash, enabled, account_locked, created_at)"
+          + " VALUES (?, ?, ?, ?, 'x', TRUE, FALSE, ?)")) {
+        insert.setString(1, username);
+        insert.setString(2, Identifiers.normalize(username));
+        insert.setString(3, email);
+        insert.setString(4, Identifiers.normalize(email));
+        insert.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+        insert.executeUpdate();
+      }
+    }
+
+    private Plan mysqlPlan(Connection connection, String query) throws SQLException {
+      try (Statement statement = connection.createStatement();
+           ResultSet rs = statement.executeQuery("EXPLAIN " + query)) {
+        assertTrue(rs.next());
+        return new Plan(rs.getString("type"), rs.getString("key"));
+      }
+    }
+  }
+
+  private record Plan(String type, String key) {}
+
+  private static String h2Url() {
+    return "jdbc:h2:mem:normalized-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+  }
+
+  private static void migrate(String url, String target) {
+    var configuration = Flyway.configure().dataSource(url, "sa", "");
+    if (target != null) {
+      configuration.target(target);
+    }
+    configuration.load().migrate();
+  }
+
+  private static void insert(Connection connection, String username, String email) throws SQLException {
+    try (PreparedStatement insert = connection.prepareStatement("INSERT INTO app_users (username, email, password_hash,"
+        + " enabled, account_locked, created_at) VALUES (?, ?, 'x', TRUE, FALSE, ?)")) {
+      insert.setString(1, username);
+      insert.setString(2, email);
+      insert.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+      insert.executeUpdate();
+    }
+  }
+
+  // Flyway wraps the migration's own exception, whose message says what was wrong
+  private static String causeMessages(Throwable failure) {
+    StringBuilder messages = new StringBuilder();
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      messages.append(cause.getMessage()).append('\n');
+    }
+    return messages.toString();
+  }
+
+  private static String h2Plan(Connection connection, String query) throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("EXPLAIN " + query)) {
+      assertTrue(rs.next());
+      return rs.getString(1).toLowerCase(Locale.ROOT);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.auth.GovernedPasswordEncoder;
+import com.alae.iam.manual_auth_mysql.auth.PasswordHashingGovernor;
+import com.alae.iam.manual_auth_mysql.exception.auth.HashingOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingGovernorTests {
+
+  private static final int ARGON2_KIB = 32 * 1024;
+
+  @Test
+  @DisplayName("10x the admitted concurrency never holds more Argon2 memory than the budget")
+  void tenTimesAdmittedConcurrency() throws Exception {
+    int budgetMb = 128; // admits 4 hashes of 32 MB
+    PasswordHashingGovernor governor =
+        new PasswordHashingGovernor(budgetMb, 1000, Duration.ofMinutes(2), new SimpleMeterRegistry());
+    CountingEncoder argon2 = new CountingEncoder(new Argon2PasswordEncoder(16, 32, 1, ARGON2_KIB, 1));
+    PasswordEncoder encoder = new GovernedPasswordEncoder(delegating(argon2), governor, ARGON2_KIB);
+
+    int clients = 10 * budgetMb / 32;
+    ExecutorService pool = Executors.newFixedThreadPool(clients);
+    CountDownLatch go = new CountDownLatch(1);
+    List<Future<Boolean>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < clients; i++) {
+        String password = "password-" + i;
+        results.add(pool.submit(() -> {
+          go.await();
+          return encoder.matches(password, encoder.encode(password));
+        }));
+      }
+      go.countDown();
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get(2, TimeUnit.MINUTES)); // an OutOfMemoryError would surface here
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    assertEquals(2 * clients, argon2.calls.get());
+    assertTrue(argon2.peak.get() <= budgetMb / 32, "peak concurrent Argon2 hashes: " + argon2.peak.get());
+    assertEquals(0, governor.queueDepth());
+  }
+
+  @Test
+  @DisplayName("a full queue fails fast instead of waiting")
+  void fullQueueFailsFast() throws Exception {
+    PasswordHashingGovernor governor = new PasswordHashingGovernor(32, 0, Duration.ofSeconds(30), new SimpleMeterRegistry());
+    CountDownLatch holding = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> first = pool.submit(() -> governor.run(32, () -> {
+        holding.countDown();
+        await(release);
+        return null;
+      }));
+      assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+      long start = System.nanoTime();
+      assertThrows(HashingOverloadedException.class, () -> governor.run(32, () -> null));
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+      release.countDown();
+      first.get(10, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("a small operation does not barge ahead of a larger one already waiting")
+  void noBarging() throws Exception {
+    PasswordHashingGovernor governor = new PasswordHashingGovernor(64, 1, Duration.ofSeconds(30), new SimpleMeterRegistry());
+    CountDownLatch holding = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> holder = pool.submit(() -> governor.run(48, () -> {
+        holding.countDown();
+        await(release);
+        return null;
+      }));
+      assertTrue(holding.await(10, TimeUnit.SECONDS));
+      Future<Object> waiter = pool.submit(() -> governor.run(32, () -> null));
+      while (governor.queueDepth() == 0) {
+        Thread.onSpinWait();
+      }
+      Thread.sleep(200); // from counted as waiting to parked on the semaphore
+
+      // 16 MB are free, but the 32 MB operation is first in line: this one queues, and the queue is full
+      assertThrows(HashingOverloadedException.class, () -> governor.run(16, () -> null));
+
+      release.countDown();
+      holder.get(10, TimeUnit.SECONDS);
+      waiter.get(10, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("legacy BCrypt hashes still match and are flagged for upgrade; Argon2 hashes are not")
+  void mixedHashes() {
+    PasswordHashingGovernor governor = new PasswordHashingGovernor(64, 10, Duration.ofSeconds(5), new SimpleMeterRegistry());
+    PasswordEncoder encoder = new GovernedPasswordEncoder(
+        delegating(new Argon2PasswordEncoder(16, 32, 1, 8 * 1024, 1)), governor, 8 * 1024);
+    String legacy = new BCryptPasswordEncoder().encode("secret");
+
+    assertTrue(encoder.matches("secret", legacy));
+    assertTrue(encoder.upgradeEncoding(legacy));
+
+    String current = encoder.encode("secret");
+    assertTrue(current.startsWith("{argon2}$argon2id$"));
+    assertTrue(encoder.matches("secret", current));
+    assertFalse(encoder.matches("wrong", current));
+    assertFalse(encoder.upgradeEncoding(current));
+  }
+
+  private static PasswordEncoder delegating(PasswordEncoder argon2) {
+    PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+    DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("argon2", Map.of("argon2", argon2, "bcrypt", bcrypt));
+    delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+    return delegating;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class CountingEncoder implements PasswordEncoder {
+
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger peak = new AtomicInteger();
+    final AtomicInteger calls = new AtomicInteger();
+    private final PasswordEncoder delegate;
+
+    CountingEncoder(PasswordEncoder delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      enter();
+      try {
+        return delegate.encode(rawPassword);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      enter();
+      try {
+        return delegate.matches(rawPassword, encodedPassword);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }
+
+    private void enter() {
+      calls.incrementAndGet();
+      peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+  }
+}
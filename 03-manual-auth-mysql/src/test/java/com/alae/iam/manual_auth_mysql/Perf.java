@@ -0,0 +1,86 @@
+package com.alae.iam.manual_auth_mysql;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.management.ManagementFactory;
+
+/**
+ * What the perf-gated tests share: the {@code -Dperf=true} gate, a warmed-up timing loop that also
+ * counts the bytes the calling thread allocates, and logging of the figures. Whether a run passes
+ * is decided by each test's own assertions, never by the logged output.
+ */
+final class Perf {
+
+  private static final Logger log = LoggerFactory.getLogger(Perf.class);
+
+  private Perf() {
+  }
+
+  /** Runs the annotated test class or method only with {@code -Dperf=true}. */
+  @Target({ElementType.TYPE, ElementType.METHOD})
+  @Retention(RetentionPolicy.RUNTIME)
+  @EnabledIfSystemProperty(named = "perf", matches = "true")
+  @interface Enabled {
+  }
+
+  @FunctionalInterface
+  interface Task {
+    void run(int i) throws Exception;
+  }
+
+  /**
+   * Runs {@code task} {@code warmup} times untimed, then {@code operations} times timed, on the
+   * calling thread.
+   */
+  static Result measure(String name, int warmup, int operations, Task task) throws Exception {
+    for (int i = 0; i < warmup; i++) {
+      task.run(i);
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+    long start = System.nanoTime();
+    for (int i = 0; i < operations; i++) {
+      task.run(i);
+    }
+    long nanos = System.nanoTime() - start;
+    return new Result(name, operations, nanos, threads.getThreadAllocatedBytes(thread) - allocatedBefore);
+  }
+
+  static void report(Result... results) {
+    for (Result result : results) {
+      log.info("{}", result);
+    }
+  }
+
+  static void report(String format, Object... args) {
+    log.info(String.format(format, args));
+  }
+
+  record Result(String name, int operations, long nanos, long allocatedBytes) {
+
+    double nanosPerOp() {
+      return (double) nanos / operations;
+    }
+
+    double opsPerSecond() {
+      return operations / (nanos / 1e9);
+    }
+
+    double bytesPerOp() {
+      return (double) allocatedBytes / operations;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-22s %,.0f ops/s, %,.1f ns/op, %,.0f bytes/op", name, opsPerSecond(), nanosPerOp(),
+          bytesPerOp());
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.exception.ProblemTemplate;
+import com.alae.iam.manual_auth_mysql.exception.ProblemWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProblemWriterTests {
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+  private final ProblemWriter problemWriter = new ProblemWriter();
+
+  @Test
+  @DisplayName("writer output carries the same fields as the ProblemDetail it replaces")
+  void matchesProblemDetail() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    problemWriter.write(response, ProblemTemplate.INVALID_CREDENTIALS, "Invalid username/email or password",
+        "/api/auth/login", "usernameAttempted", "al\"iceé\n");
+
+    JsonNode written = objectMapper.readTree(response.getContentAsByteArray());
+    JsonNode expected = objectMapper.readTree(jacksonInvalidCredentials("al\"iceé\n"));
+
+    assertEquals(401, response.getStatus());
+    assertTrue(response.getContentType().startsWith(ProblemWriter.CONTENT_TYPE));
+    for (String field : new String[] {"type", "title", "status", "detail", "instance", "errorCode", "usernameAttempted"}) {
+      assertEquals(expected.get(field), written.get(field), field);
+    }
+    assertDoesNotThrow(() -> Instant.parse(written.get("timestamp").asText()));
+  }
+
+  @Test
+  @DisplayName("a null extra value is omitted")
+  void omitsNullExtra() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    problemWriter.write(response, ProblemTemplate.ACCOUNT_LOCKED, null, "/api/auth/login", "username", null);
+
+    JsonNode written = objectMapper.readTree(response.getContentAsByteArray());
+    assertEquals(423, written.get("status").asInt());
+    assertEquals(ProblemTemplate.ACCOUNT_LOCKED.defaultDetail(), written.get("detail").asText());
+    assertFalse(written.has("username"));
+  }
+
+  @Test
+  @DisplayName("a response whose writer is already in use still gets the problem, without the partial body")
+  void fallsBackToTheWriter() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    // as a servlet container does once getWriter() has been called
+    response.setOutputStreamAccessAllowed(false);
+    response.getWriter().write("{\"partial\":");
+
+    problemWriter.write(response, ProblemTemplate.SERVER_ERROR, "/api/users");
+
+    JsonNode written = objectMapper.readTree(response.getContentAsString());
+    assertEquals(500, written.get("status").asInt());
+    assertEquals("/api/users", written.get("instance").asText());
+  }
+
+  @Test
+  @DisplayName("a committed response is left alone")
+  void leavesCommittedResponseAlone() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    response.getOutputStream().write("partial".getBytes(StandardCharsets.US_ASCII));
+    response.flushBuffer();
+
+    problemWriter.write(response, ProblemTemplate.SERVER_ERROR, "/api/users");
+
+    assertEquals(200, response.getStatus());
+    assertEquals("partial", response.getContentAsString());
+  }
+
+  private byte[] jacksonInvalidCredentials(String username) throws Exception {
+    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.UNAUTHORIZED, "Invalid username/email or password");
+    problemDetail.setTitle("Invalid Credentials");
+    problemDetail.setType(URI.create("https://api.manual-auth-mysql.com/errors/invalid-credentials"));
+    problemDetail.setInstance(URI.create("/api/auth/login"));
+    problemDetail.setProperty("timestamp", Instant.now());
+    problemDetail.setProperty("errorCode", "INVALID_CREDENTIALS");
+    problemDetail.setProperty("usernameAttempted", username);
+    return objectMapper.writeValueAsString(problemDetail).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 401 flood on one thread: the previous ProblemDetail + Jackson path against the template writer.
+   * Run with {@code ./mvnw test -Dperf=true -Dtest=ProblemWriterTests}.
+   */
+  @Nested
+  @Perf.Enabled
+  class Flood {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    @DisplayName("template writer allocates less and renders faster than ProblemDetail + Jackson")
+    void floodOf401s() throws Exception {
+      Perf.Result jackson = Perf.measure("problemdetail+jackson", WARMUP, ITERATIONS, i -> {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(401);
+        response.setContentType(ProblemWriter.CONTENT_TYPE);
+        response.getWriter().write(new String(jacksonInvalidCredentials("user-42"), StandardCharsets.UTF_8));
+      });
+      Perf.Result template = Perf.measure("problem-template", WARMUP, ITERATIONS, i -> {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        problemWriter.write(response, ProblemTemplate.INVALID_CREDENTIALS, "Invalid username/email or password",
+            "/api/auth/login", "usernameAttempted", "user-42");
+      });
+      Perf.report(jackson, template);
+
+      assertTrue(template.bytesPerOp() < jackson.bytesPerOp());
+      assertTrue(template.opsPerSecond() > jackson.opsPerSecond());
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:scim;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.scim.token=" + ScimProvisioningTests.TOKEN,
+    "app.scim.bulk.batch-size=3",
+    "app.hashing.argon2.memory-kib=4096"
+})
+@AutoConfigureMockMvc
+class ScimProvisioningTests {
+
+  static final String TOKEN = "test-scim-token";
+  private static final MediaType SCIM_JSON = MediaType.parseMediaType("application/scim+json");
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+
+  @Test
+  @DisplayName("requests without the bearer token get a SCIM 401")
+  void requiresToken() throws Exception {
+    mvc.perform(get("/scim/v2/Users"))
+        .andExpect(status().isUnauthorized())
+        .andExpect(header().string("WWW-Authenticate", "Bearer realm=\"scim\""))
+        .andExpect(jsonPath("$.status").value("401"));
+    mvc.perform(get("/scim/v2/Users").header("Authorization", "Bearer wrong"))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("create, read, replace and delete a user")
+  void crud() throws Exception {
+    String name = unique("crud");
+    JsonNode created = json(mvc.perform(scim(post("/scim/v2/Users"), user(name, "secret1")))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.userName").value(name))
+        .andExpect(jsonPath("$.password").doesNotExist())
+        .andReturn().getResponse().getContentAsString());
+    String location = created.path("meta").path("location").asText();
+    assertEquals("/scim/v2/Users/" + created.path("id").asText(), location);
+
+    mvc.perform(scim(get(location), null)).andExpect(status().isOk()).andExpect(jsonPath("$.active").value(true));
+
+    Map<String, Object> replacement = user(name + "-renamed", null);
+    replacement.put("active", false);
+    mvc.perform(scim(put(location), replacement))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.userName").value(name + "-renamed"))
+        .andExpect(jsonPath("$.active").value(false));
+
+    mvc.perform(scim(delete(location), null)).andExpect(status().isNoContent());
+    mvc.perform(scim(get(location), null)).andExpect(status().isNotFound()).andExpect(jsonPath("$.status").value("404"));
+  }
+
+  @Test
+  @DisplayName("a provisioned password works for login")
+  void provisionedUserCanLogIn() throws Exception {
+    String name = unique("login");
+    mvc.perform(scim(post("/scim/v2/Users"), user(name, "secret1"))).andExpect(status().isCreated());
+
+    mvc.perform(post("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of("usernameOrEmail", name, "password", "secret1"))))
+        .andExpect(status().isOk());
+  }
+
+  @Test
+  @DisplayName("filters translate eq, sw and and; co, ne, and pr or active on their own are refused")
+  void filters() throws Exception {
+    String prefix = unique("filter");
+    for (int i = 0; i < 3; i++) {
+      mvc.perform(scim(post("/scim/v2/Users"), user(prefix + "-" + i, null))).andExpect(status().isCreated());
+    }
+
+    list("userName sw \"" + prefix + "\"", null, null)
+        .andExpect(jsonPath("$.totalResults").value(3))
+        .andExpect(jsonPath("$.Resources.length()").value(3));
+    list("userName eq \"" + prefix + "-1\" and active eq true", null, null)
+        .andExpect(jsonPath("$.totalResults").value(1))
+        .andExpect(jsonPath("$.Resources[0].userName").value(prefix + "-1"));
+    list("userName eq \"" + prefix + "-2\" and emails pr", null, null)
+        .andExpect(jsonPath("$.totalResults").value(1));
+    list("userName sw \"" + prefix + "\"", 2, 1)
+        .andExpect(jsonPath("$.totalResults").value(3))
+        .andExpect(jsonPath("$.startIndex").value(2))
+        .andExpect(jsonPath("$.itemsPerPage").value(1))
+        .andExpect(jsonPath("$.Resources[0].userName").value(prefix + "-1"));
+
+    for (String unindexed : List.of("userName co \"x\"", "userName ne \"x\"", "active eq false",
+        "userName eq \"x\" or active eq false", "userName pr", "meta.created pr")) {
+      mvc.perform(scim(get("/scim/v2/Users").param("filter", unindexed), null))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.scimType").value("invalidFilter"));
+    }
+  }
+
+  @Test
+  @DisplayName("bulk creates across several batches and reports each failure in its own operation")
+  void bulk() throws Exception {
+    String prefix = unique("bulk");
+    List<Map<String, Object>> operations = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      operations.add(operation("POST", "/Users", "b" + i, user(prefix + "-" + i, i == 0 ? "secret1" : null)));
+    }
+    operations.add(operation("POST", "/Users", "dup", user(prefix + "-3", null)));
+    operations.add(operation("DELETE", "/Users/999999999", "missing", null));
+
+    JsonNode response = json(mvc.perform(scim(post("/scim/v2/Bulk"), Map.of(
+            "schemas", List.of("urn:ietf:params:scim:api:messages:2.0:BulkRequest"),
+            "Operations", operations)))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString());
+
+    JsonNode results = response.path("Operations");
+    assertEquals(9, results.size());
+    for (int i = 0; i < 7; i++) {
+      assertEquals("201", results.get(i).path("status").asText(), results.get(i).toString());
+      assertTrue(results.get(i).path("location").asText().startsWith("/scim/v2/Users/"));
+    }
+    assertEquals("409", results.get(7).path("status").asText());
+    assertEquals("uniqueness", results.get(7).path("response").path("scimType").asText());
+    assertEquals("404", results.get(8).path("status").asText());
+
+    list("userName sw \"" + prefix + "\"", null, null).andExpect(jsonPath("$.totalResults").value(7));
+  }
+
+  @Test
+  @DisplayName("a bulk userName equal to another user's email is not a conflict")
+  void bulkUserNameMayEqualAnotherEmail() throws Exception {
+    String name = unique("cross");
+    mvc.perform(scim(post("/scim/v2/Users"), user(name, null))).andExpect(status().isCreated());
+
+    Map<String, Object> other = user(name + "@example.com", null);
+    other.put("emails", List.of(Map.of("value", name + "-other@example.com", "primary", true)));
+    mvc.perform(scim(post("/scim/v2/Bulk"), Map.of("Operations", List.of(operation("POST", "/Users", "x", other)))))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.Operations[0].status").value("201"));
+  }
+
+  @Test
+  @DisplayName("bulk stops after failOnErrors failures")
+  void bulkFailOnErrors() throws Exception {
+    String prefix = unique("fail");
+    List<Map<String, Object>> operations = List.of(
+        operation("DELETE", "/Users/999999998", "a", null),
+        operation("POST", "/Users", "b", user(prefix, null)));
+
+    mvc.perform(scim(post("/scim/v2/Bulk"), Map.of("failOnErrors", 1, "Operations", operations)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.Operations.length()").value(1))
+        .andExpect(jsonPath("$.Operations[0].status").value("404"));
+    list("userName eq \"" + prefix + "\"", null, null).andExpect(jsonPath("$.totalResults").value(0));
+  }
+
+  private ResultActions list(String filter, Integer startIndex, Integer count) throws Exception {
+    MockHttpServletRequestBuilder request = get("/scim/v2/Users").param("filter", filter);
+    if (startIndex != null) {
+      request.param("startIndex", startIndex.toString());
+    }
+    if (count != null) {
+      request.param("count", count.toString());
+    }
+    return mvc.perform(scim(request, null)).andExpect(status().isOk());
+  }
+
+  private MockHttpServletRequestBuilder scim(MockHttpServletRequestBuilder request, Object body) throws Exception {
+    request.header("Authorization", "Bearer " + TOKEN);
+    if (body != null) {
+      request.contentType(SCIM_JSON).content(objectMapper.writeValueAsString(body));
+    }
+    return request;
+  }
+
+  private static Map<String, Object> user(String userName, String password) {
+    Map<String, Object> user = new LinkedHashMap<>();
+    user.put("schemas", List.of("urn:ietf:params:scim:schemas:core:2.0:User"));
+    user.put("userName", userName);
+    user.put("emails", List.of(Map.of("value", userName + "@example.com", "primary", true)));
+    if (password != null) {
+      user.put("password", password);
+    }
+    return user;
+  }
+
+  private static Map<String, Object> operation(String method, String path, String bulkId, Object data) {
+    Map<String, Object> operation = new LinkedHashMap<>();
+    operation.put("method", method);
+    operation.put("path", path);
+    operation.put("bulkId", bulkId);
+    if (data != null) {
+      operation.put("data", data);
+    }
+    return operation;
+  }
+
+  private JsonNode json(String content) throws Exception {
+    return objectMapper.readTree(content);
+  }
+
+  private static String unique(String prefix) {
+    return prefix + "-" + UUID.randomUUID().toString().substring(0, 8);
+  }
+}
@@ -0,0 +1,276 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.auth.CredentialCache;
+import com.alae.iam.manual_auth_mysql.auth.CredentialRecord;
+import com.alae.iam.manual_auth_mysql.auth.LoginAttemptTracker;
+import com.alae.iam.manual_auth_mysql.domain.AppUser;
+import com.alae.iam.manual_auth_mysql.domain.Identifiers;
+import com.alae.iam.manual_auth_mysql.repository.UserStore;
+import com.alae.iam.manual_auth_mysql.service.AuthService;
+import com.alae.iam.manual_auth_mysql.sharding.DirectoryReconciler;
+import com.alae.iam.manual_auth_mysql.sharding.Shard;
+import com.alae.iam.manual_auth_mysql.sharding.ShardRebalancer;
+import com.alae.iam.manual_auth_mysql.sharding.ShardRouter;
+import com.alae.iam.manual_auth_mysql.sharding.ShardedUserStore;
+import com.alae.iam.manual_auth_mysql.sharding.UserDirectory;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sharded mode against four H2 databases: the primary (directory, outboxes) and three shards.
+ * The rebalancing tests build their own router over fresh databases.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:sharded-primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.credential-cache.poll-interval-ms=3600000",
+    "app.sharding.enabled=true",
+    "app.sharding.shards[0].name=s0",
+    "app.sharding.shards[0].url=jdbc:h2:mem:sharded-s0;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "app.sharding.shards[0].username=sa",
+    "app.sharding.shards[1].name=s1",
+    "app.sharding.shards[1].url=jdbc:h2:mem:sharded-s1;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "app.sharding.shards[1].username=sa",
+    "app.sharding.shards[2].name=s2",
+    "app.sharding.shards[2].url=jdbc:h2:mem:sharded-s2;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "app.sharding.shards[2].username=sa"
+})
+class ShardedUserStoreTests {
+
+  private static final String PASSWORD = "secret";
+
+  @Autowired AuthService authService;
+  @Autowired AuthenticationManager authenticationManager;
+  @Autowired CredentialCache credentialCache;
+  @Autowired LoginAttemptTracker loginAttemptTracker;
+  @Autowired UserStore userStore;
+  @Autowired ShardRouter shardRouter;
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Test
+  @DisplayName("registered users are spread over the shards, each on its owner only")
+  void usersAreSpread() {
+    assertInstanceOf(ShardedUserStore.class, userStore);
+    String prefix = "spread-" + UUID.randomUUID().toString().substring(0, 8);
+    for (int i = 0; i < 60; i++) {
+      AppUser user = authService.register(prefix + "-" + i, prefix + "-" + i + "@example.com", PASSWORD);
+      Shard owner = shardRouter.owner(user.getUsernameNormalized());
+      for (Shard shard : shardRouter.shards()) {
+        assertEquals(shard == owner ? 1 : 0, count(shard, user.getId()), shard.name());
+      }
+    }
+    for (Shard shard : shardRouter.shards()) {
+      assertTrue(shard.jdbcTemplate().queryForObject("SELECT COUNT(*) FROM app_users WHERE username LIKE ?",
+          Integer.class, prefix + "%") > 0, shard.name() + " got no users");
+    }
+    assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_users", Integer.class));
+  }
+
+  @Test
+  @DisplayName("logins by username and by email, in any case, reach the owning shard")
+  void loginByEitherIdentifier() {
+    AppUser user = register();
+
+    assertTrue(authenticate(user.getUsername().toUpperCase(Locale.ROOT)));
+    credentialCache.evict(user.getId());
+    assertTrue(authenticate(user.getEmail().toUpperCase(Locale.ROOT)));
+    assertFalse(authenticate("nobody-" + UUID.randomUUID()));
+  }
+
+  @Test
+  @DisplayName("usernames and emails stay unique across shards")
+  void identifiersAreGloballyUnique() {
+    AppUser user = register();
+    String other = "other-" + UUID.randomUUID();
+
+    assertThrows(IllegalArgumentException.class,
+        () -> authService.register(user.getUsername().toUpperCase(Locale.ROOT), other + "@example.com", PASSWORD));
+    assertThrows(IllegalArgumentException.class,
+        () -> authService.register(other, user.getEmail().toUpperCase(Locale.ROOT), PASSWORD));
+  }
+
+  @Test
+  @DisplayName("an automatic lock is written to the owning shard")
+  void lockReachesTheShard() {
+    AppUser user = register();
+    CredentialRecord record = credentialCache.resolve(user.getUsername()).orElseThrow();
+    for (int i = 0; i < 5; i++) {
+      loginAttemptTracker.recordFailure(record);
+    }
+    loginAttemptTracker.flush();
+
+    Shard owner = shardRouter.owner(user.getUsernameNormalized());
+    assertTrue(owner.jdbcTemplate().queryForObject("SELECT account_locked FROM app_users WHERE id = ?",
+        Boolean.class, user.getId()));
+    assertTrue(userStore.findById(user.getId()).orElseThrow().isAccountLocked());
+  }
+
+  @Test
+  @DisplayName("a username resolves on its shard alone, an email through the directory")
+  void usernamesBypassTheDirectory() {
+    String db = UUID.randomUUID().toString().substring(0, 8);
+    Shard directoryDb = migrated("directory-" + db);
+    UserDirectory directory = new UserDirectory(directoryDb.jdbcTemplate());
+    List<Shard> shards = List.of(migrated("a-" + db), migrated("b-" + db));
+    ShardedUserStore store = new ShardedUserStore(
+        new ShardRouter(shards, List.of(shards.get(0).name(), shards.get(1).name()), List.of(), 128), directory);
+    AppUser user = store.create(user("direct"));
+
+    directoryDb.jdbcTemplate().update("DELETE FROM user_directory");
+
+    assertEquals(user.getId(), store.findByNormalizedIdentifier("direct").orElseThrow().getId());
+    assertTrue(store.existsByUsername("direct"));
+    assertTrue(store.findByNormalizedIdentifier("direct@example.com").isEmpty());
+    assertThrows(DuplicateKeyException.class, () -> store.create(user("Direct")));
+  }
+
+  @Test
+  @DisplayName("a reservation whose user never reached a shard is released")
+  void abandonedReservationsAreReleased() {
+    String db = UUID.randomUUID().toString().substring(0, 8);
+    Shard directoryDb = migrated("directory-" + db);
+    UserDirectory directory = new UserDirectory(directoryDb.jdbcTemplate());
+    List<Shard> shards = List.of(migrated("a-" + db), migrated("b-" + db));
+    ShardRouter router = new ShardRouter(shards, List.of(shards.get(0).name(), shards.get(1).name()), List.of(), 128);
+    ShardedUserStore store = new ShardedUserStore(router, directory);
+    long kept = store.create(user("kept")).getId();
+    long orphan = directory.insert("orphan", "orphan@example.com"); // as if the node died before the shard write
+    directory.insert("in-flight", "in-flight@example.com");
+    directoryDb.jdbcTemplate().update("UPDATE user_directory SET created_at = ? WHERE id IN (?, ?)",
+        Timestamp.valueOf(LocalDateTime.now().minusMinutes(10)), kept, orphan);
+
+    DirectoryReconciler reconciler = new DirectoryReconciler(router, directory, Duration.ofMinutes(1), Duration.ofDays(1));
+
+    assertEquals(List.of(orphan), reconciler.reconcile());
+    assertFalse(directory.existsByEmail("orphan@example.com"));
+    assertTrue(directory.existsByEmail("in-flight@example.com"));
+    assertTrue(store.findById(kept).isPresent());
+    assertEquals(List.of(), reconciler.reconcile());
+  }
+
+  @Test
+  @DisplayName("adding a shard moves only the users the new ring gives it, and they stay reachable")
+  void rebalanceAfterAddingAShard() {
+    String db = UUID.randomUUID().toString().substring(0, 8);
+    UserDirectory directory = new UserDirectory(migrated("directory-" + db).jdbcTemplate());
+    List<Shard> shards = List.of(migrated("a-" + db), migrated("b-" + db), migrated("c-" + db));
+    String a = shards.get(0).name();
+    String b = shards.get(1).name();
+    String c = shards.get(2).name();
+
+    ShardedUserStore before = new ShardedUserStore(new ShardRouter(shards, List.of(a, b), List.of(), 128), directory);
+    Map<Long, String> users = new HashMap<>();
+    for (int i = 0; i < 300; i++) {
+      users.put(before.create(user("move-" + i)).getId(), Identifiers.normalize("move-" + i));
+    }
+
+    ShardRouter router = new ShardRouter(shards, List.of(a, b, c), List.of(a, b), 128);
+    ShardedUserStore during = new ShardedUserStore(router, directory);
+    // nothing moved yet: found on the previous owner
+    users.keySet().forEach(id -> assertTrue(during.findById(id).isPresent()));
+
+    long expectedMoves = users.values().stream().filter(username -> router.owner(username).name().equals(c)).count();
+    assertTrue(expectedMoves > 50 && expectedMoves < 150, "c should take about a third: " + expectedMoves);
+
+    ShardRebalancer.Result result = new ShardRebalancer(router, directory).rebalance();
+    assertEquals(300, result.scanned());
+    assertEquals(expectedMoves, result.moved());
+    assertEquals(0, result.registered());
+    assertTrue(result.conflicts().isEmpty());
+
+    ShardedUserStore after = new ShardedUserStore(new ShardRouter(shards, List.of(a, b, c), List.of(), 128), directory);
+    users.forEach((id, username) -> {
+      assertEquals(username, after.findById(id).orElseThrow().getUsernameNormalized());
+      assertTrue(after.findByNormalizedIdentifier(username + "@example.com").isPresent());
+      for (Shard shard : shards) {
+        assertEquals(shard == router.owner(username) ? 1 : 0, count(shard, id));
+      }
+    });
+    assertEquals(0, new ShardRebalancer(router, directory).rebalance().moved());
+  }
+
+  @Test
+  @DisplayName("the rebalancer adopts users of a database from before sharding")
+  void rebalanceAdoptsUnshardedUsers() {
+    String db = UUID.randomUUID().toString().substring(0, 8);
+    UserDirectory directory = new UserDirectory(migrated("directory-" + db).jdbcTemplate());
+    Shard legacy = migrated("legacy-" + db);
+    Shard fresh = migrated("fresh-" + db);
+    for (int i = 0; i < 40; i++) {
+      legacy.jdbcTemplate().update("INSERT INTO app_users (username, username_normalized, email, email_normalized,"
+          + " password_hash, enabled, account_locked, created_at) VALUES (?, ?, ?, ?, 'x', TRUE, FALSE, ?)",
+          "Legacy-" + i, "legacy-" + i, "Legacy-" + i + "@Example.com", "legacy-" + i + "@example.com",
+          Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    ShardRouter router = new ShardRouter(List.of(legacy, fresh), List.of(legacy.name(), fresh.name()),
+        List.of(legacy.name()), 128);
+    ShardRebalancer.Result result = new ShardRebalancer(router, directory).rebalance();
+
+    assertEquals(40, result.registered());
+    assertTrue(result.moved() > 0);
+    ShardedUserStore store = new ShardedUserStore(router, directory);
+    for (int i = 0; i < 40; i++) {
+      AppUser user = store.findByNormalizedIdentifier("legacy-" + i + "@example.com").orElseThrow();
+      assertEquals("Legacy-" + i, user.getUsername());
+      assertEquals(1, count(legacy, user.getId()) + count(fresh, user.getId()));
+      assertEquals(1, count(router.owner("legacy-" + i), user.getId()));
+    }
+  }
+
+  private AppUser register() {
+    String username = "shard-" + UUID.randomUUID();
+    return authService.register(username, username + "@Example.com", PASSWORD);
+  }
+
+  private boolean authenticate(String identifier) {
+    try {
+      return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(identifier, PASSWORD))
+          .isAuthenticated();
+    } catch (AuthenticationException e) {
+      return false;
+    }
+  }
+
+  private static AppUser user(String username) {
+    return AppUser.builder()
+        .username(username)
+        .email(username + "@example.com")
+        .passwordHash("x")
+        .build();
+  }
+
+  private static int count(Shard shard, long id) {
+    return shard.jdbcTemplate().queryForObject("SELECT COUNT(*) FROM app_users WHERE id = ?", Integer.class, id);
+  }
+
+  private static Shard migrated(String name) {
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(
+        "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+    Flyway.configure().dataSource(dataSource).load().migrate();
+    return new Shard(name, new JdbcTemplate(dataSource), new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+  }
+}
@@ -0,0 +1,228 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.service.AuthService;
+import com.alae.iam.manual_auth_mysql.tracing.OtlpJsonFileExporter;
+import com.alae.iam.manual_auth_mysql.tracing.SpanData;
+import com.alae.iam.manual_auth_mysql.tracing.TailSampler;
+import com.alae.iam.manual_auth_mysql.tracing.TraceContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:tracing;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.tracing.enabled=true",
+    "app.tracing.sampling.slow-threshold=1h",
+    "app.tracing.sampling.rate=0",
+    "app.tracing.sampling.trusted-callers=10.0.0.2"
+})
+@AutoConfigureMockMvc
+class TracingTests {
+
+  private static final Path TRACES = Path.of("target", "test-traces", UUID.randomUUID().toString());
+  private static final String INBOUND_TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+  private static final String INBOUND_SPAN_ID = "00f067aa0ba902b7";
+
+  @Autowired MockMvc mvc;
+  @Autowired AuthService authService;
+  @Autowired OtlpJsonFileExporter exporter;
+  @Autowired ObjectMapper objectMapper;
+
+  @DynamicPropertySource
+  static void traceDirectory(DynamicPropertyRegistry registry) {
+    registry.add("app.tracing.file.directory", TRACES::toString);
+  }
+
+  @Test
+  @DisplayName("parses traceparent headers and rejects malformed ones")
+  void parseTraceparent() {
+    TraceContext context = TraceContext.parse("00-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-01");
+    assertEquals(new TraceContext(INBOUND_TRACE_ID, INBOUND_SPAN_ID, true), context);
+    assertEquals("00-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-01", context.toHeader());
+    assertFalse(TraceContext.parse("00-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-00").sampled());
+    // a later version with extra fields is read as 00
+    assertNotNull(TraceContext.parse("01-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-01-extra"));
+
+    assertNull(TraceContext.parse(null));
+    assertNull(TraceContext.parse("ff-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-01"));
+    assertNull(TraceContext.parse("00-" + "0".repeat(32) + "-" + INBOUND_SPAN_ID + "-01"));
+    assertNull(TraceContext.parse("00-" + INBOUND_TRACE_ID + "-" + "0".repeat(16) + "-01"));
+    assertNull(TraceContext.parse("00-" + INBOUND_TRACE_ID.toUpperCase() + "-" + INBOUND_SPAN_ID + "-01"));
+    assertNull(TraceContext.parse("00-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-01-extra"));
+  }
+
+  @Test
+  @DisplayName("a failed login is kept, continues the inbound trace and splits into pipeline stages")
+  void failedLoginIsKept() throws Exception {
+    String username = register();
+    int before = lines().size();
+
+    mvc.perform(login(username, "wrong-password")
+            .header(TraceContext.HEADER, "00-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-00"))
+        .andExpect(status().isUnauthorized());
+    exporter.flush();
+
+    List<String> lines = lines();
+    assertEquals(before + 1, lines.size());
+    Map<String, JsonNode> spans = spansByName(lines.get(lines.size() - 1));
+    JsonNode root = spans.get("POST /api/auth/login");
+    assertEquals(INBOUND_TRACE_ID, root.get("traceId").asText());
+    assertEquals(INBOUND_SPAN_ID, root.get("parentSpanId").asText());
+    assertEquals(2, root.get("kind").asInt());
+    assertEquals("401", attribute(root, "http.response.status_code").get("intValue").asText());
+
+    JsonNode authenticate = spans.get("auth.authenticate");
+    assertEquals(root.get("spanId"), authenticate.get("parentSpanId"));
+    assertEquals(authenticate.get("spanId"), spans.get("auth.lookup").get("parentSpanId"));
+    JsonNode match = spans.get("auth.password_match");
+    assertFalse(attribute(match, "auth.password_matches").get("boolValue").asBoolean());
+    assertTrue(Long.parseLong(match.get("endTimeUnixNano").asText()) >= Long.parseLong(match.get("startTimeUnixNano").asText()));
+    assertFalse(spans.containsKey("auth.complete_login"));
+  }
+
+  @Test
+  @DisplayName("a fast successful login is dropped unless a trusted caller sampled it")
+  void fastSuccessIsDropped() throws Exception {
+    String username = register();
+    int before = lines().size();
+
+    mvc.perform(login(username, "password123")).andExpect(status().isOk());
+    exporter.flush();
+    assertEquals(before, lines().size());
+
+    // MockMvc calls from 127.0.0.1, which is not trusted: the flag is ignored
+    mvc.perform(login(username, "password123")
+            .header(TraceContext.HEADER, "00-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-01"))
+        .andExpect(status().isOk());
+    exporter.flush();
+    assertEquals(before, lines().size());
+
+    mvc.perform(login(username, "password123")
+            .header(TraceContext.HEADER, "00-" + INBOUND_TRACE_ID + "-" + INBOUND_SPAN_ID + "-01")
+            .with(request -> {
+              request.setRemoteAddr("10.0.0.2");
+              return request;
+            }))
+        .andExpect(status().isOk());
+    exporter.flush();
+    List<String> lines = lines();
+    assertEquals(before + 1, lines.size());
+    Map<String, JsonNode> spans = spansByName(lines.get(lines.size() - 1));
+    assertEquals(spans.get("auth.complete_login").get("spanId"), spans.get("auth.save_context").get("parentSpanId"));
+    assertTrue(attribute(spans.get("auth.save_context"), "auth.session_created").get("boolValue").asBoolean());
+  }
+
+  @Nested
+  class Sampling {
+
+    @Test
+    @DisplayName("keeps slow traces and errors, drops the rest at rate 0")
+    void tailSampling() {
+      TailSampler sampler = new TailSampler(Duration.ofMillis(100), false, 0);
+      SpanData fast = span(Duration.ofMillis(5), false, 200);
+      SpanData slow = span(Duration.ofMillis(150), false, 200);
+      SpanData failed = span(Duration.ofMillis(5), false, 401);
+      SpanData error = span(Duration.ofMillis(5), true, 500);
+
+      assertFalse(sampler.keep(List.of(fast), fast, false));
+      assertTrue(sampler.keep(List.of(fast), fast, true));
+      assertTrue(sampler.keep(List.of(slow), slow, false));
+      assertTrue(sampler.keep(List.of(error, fast), fast, false));
+      assertFalse(sampler.keep(List.of(failed), failed, false));
+      assertTrue(new TailSampler(Duration.ofMillis(100), true, 0).keep(List.of(failed), failed, false));
+    }
+
+    @Test
+    @DisplayName("the file rolls past its maximum size and keeps max-history files")
+    void fileRolls(@TempDir Path directory) throws Exception {
+      OtlpJsonFileExporter rolling = new OtlpJsonFileExporter(directory, 2_000, 2, 1024, "test", new SimpleMeterRegistry());
+      for (int i = 0; i < 100; i++) {
+        rolling.export(List.of(span(Duration.ofMillis(i), false, 200)));
+      }
+      rolling.close();
+
+      assertTrue(Files.exists(directory.resolve("traces.jsonl")));
+      assertTrue(Files.exists(directory.resolve("traces.1.jsonl")));
+      assertTrue(Files.exists(directory.resolve("traces.2.jsonl")));
+      assertFalse(Files.exists(directory.resolve("traces.3.jsonl")));
+      for (String file : List.of("traces.jsonl", "traces.1.jsonl", "traces.2.jsonl")) {
+        assertTrue(Files.size(directory.resolve(file)) <= 2_000, file);
+        for (String line : Files.readAllLines(directory.resolve(file))) {
+          assertEquals(1, objectMapper.readTree(line).get("resourceSpans").size());
+        }
+      }
+    }
+
+    private SpanData span(Duration duration, boolean error, int status) {
+      long start = System.currentTimeMillis() * 1_000_000;
+      return new SpanData(INBOUND_TRACE_ID, INBOUND_SPAN_ID, null, "GET /", SpanData.Kind.SERVER, start,
+          start + duration.toNanos(), error, null, Map.of("http.response.status_code", status));
+    }
+  }
+
+  private String register() {
+    String username = "traced-" + UUID.randomUUID().toString().substring(0, 8);
+    authService.register(username, username + "@example.com", "password123");
+    return username;
+  }
+
+  private MockHttpServletRequestBuilder login(String usernameOrEmail, String password) throws Exception {
+    return post("/api/auth/login")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Map.of("usernameOrEmail", usernameOrEmail, "password", password)));
+  }
+
+  private List<String> lines() throws Exception {
+    Path file = TRACES.resolve("traces.jsonl");
+    return Files.exists(file) ? Files.readAllLines(file) : List.of();
+  }
+
+  private Map<String, JsonNode> spansByName(String line) throws Exception {
+    JsonNode spans = objectMapper.readTree(line).at("/resourceSpans/0/scopeSpans/0/spans");
+    Map<String, JsonNode> byName = new HashMap<>();
+    List<String> names = new ArrayList<>();
+    for (JsonNode span : spans) {
+      byName.put(span.get("name").asText(), span);
+      names.add(span.get("name").asText());
+    }
+    assertEquals(names.size(), byName.size(), "span names repeat: " + names);
+    return byName;
+  }
+
+  private static JsonNode attribute(JsonNode span, String key) {
+    for (JsonNode attribute : span.get("attributes")) {
+      if (attribute.get("key").asText().equals(key)) {
+        return attribute.get("value");
+      }
+    }
+    fail("no attribute " + key + " on " + span.get("name"));
+    return null;
+  }
+}
@@ -0,0 +1,266 @@
+package com.alae.iam.manual_auth_mysql;
+
+import com.alae.iam.manual_auth_mysql.config.security.ScopedSecurityContextFilter;
+import com.alae.iam.manual_auth_mysql.config.security.ScopedSecurityContextTaskDecorator;
+import com.alae.iam.manual_auth_mysql.config.security.ScopedValueSecurityContextHolderStrategy;
+import com.alae.iam.manual_auth_mysql.domain.AuthPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:scoped-context;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "app.security.context-holder=scoped-value"
+})
+@AutoConfigureMockMvc
+class ScopedValueSecurityContextTests {
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+  @Autowired SecurityContextHolderStrategy strategy;
+
+  @AfterEach
+  void clearContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  @DisplayName("login → me works with the context held in a ScopedValue")
+  void loginFlow() throws Exception {
+    assertInstanceOf(ScopedValueSecurityContextHolderStrategy.class, strategy);
+    assertSame(strategy, SecurityContextHolder.getContextHolderStrategy());
+    String username = "user-" + UUID.randomUUID().toString().substring(0, 8);
+    mvc.perform(post("/api/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of(
+                "username", username, "email", username + "@example.com", "password", "secret"))))
+        .andExpect(status().isCreated());
+
+    MvcResult login = mvc.perform(post("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of("usernameOrEmail", username, "password", "secret"))))
+        .andExpect(status().isOk())
+        .andReturn();
+    MockHttpSession session = (MockHttpSession) login.getRequest().getSession(false);
+    assertNotNull(session);
+
+    mvc.perform(get("/api/auth/me").session(session))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username").value(username));
+    mvc.perform(get("/api/auth/me"))
+        .andExpect(status().isUnauthorized());
+    // nothing was left on the test thread
+    assertNull(SecurityContextHolder.getContext().getAuthentication());
+  }
+
+  @Test
+  @DisplayName("the filter gives each request its own context, gone when the request ends")
+  void filterBindsPerRequest() throws Exception {
+    ScopedSecurityContextFilter filter = new ScopedSecurityContextFilter();
+    Authentication user = user(1);
+
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), (request, response) -> {
+      assertTrue(ScopedValueSecurityContextHolderStrategy.isBound());
+      assertNull(strategy.getContext().getAuthentication());
+      strategy.setContext(new SecurityContextImpl(user));
+      assertSame(user, SecurityContextHolder.getContext().getAuthentication());
+    });
+
+    assertFalse(ScopedValueSecurityContextHolderStrategy.isBound());
+    assertNull(strategy.getContext().getAuthentication());
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+        (request, response) -> assertNull(strategy.getContext().getAuthentication()));
+  }
+
+  @Test
+  @DisplayName("async and error dispatches are bound as well")
+  void filterBindsRedispatches() throws Exception {
+    ScopedSecurityContextFilter filter = new ScopedSecurityContextFilter();
+    for (DispatcherType type : List.of(DispatcherType.ASYNC, DispatcherType.ERROR)) {
+      MockHttpServletRequest request = new MockHttpServletRequest();
+      request.setDispatcherType(type);
+      AtomicBoolean bound = new AtomicBoolean();
+
+      filter.doFilter(request, new MockHttpServletResponse(),
+          (req, res) -> bound.set(ScopedValueSecurityContextHolderStrategy.isBound()));
+
+      assertTrue(bound.get(), type.name());
+    }
+  }
+
+  @Test
+  @DisplayName("the task decorator hands the context to the task, and nothing to the pooled thread")
+  void taskDecoratorPropagates() throws Exception {
+    ScopedSecurityContextTaskDecorator decorator = new ScopedSecurityContextTaskDecorator(strategy);
+    Authentication user = user(2);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      AtomicReference<Authentication> seen = new AtomicReference<>();
+      Runnable task = ScopedValueSecurityContextHolderStrategy.callWith(new SecurityContextImpl(user),
+          () -> decorator.decorate(() -> seen.set(strategy.getContext().getAuthentication())));
+      executor.submit(task).get(5, TimeUnit.SECONDS);
+      assertSame(user, seen.get());
+
+      AtomicReference<Authentication> after = new AtomicReference<>(user);
+      executor.submit(() -> after.set(strategy.getContext().getAuthentication())).get(5, TimeUnit.SECONDS);
+      assertNull(after.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("outside any binding the strategy falls back to a ThreadLocal")
+  void fallsBackOutsideScope() {
+    assertFalse(ScopedValueSecurityContextHolderStrategy.isBound());
+    Authentication user = user(3);
+    strategy.setContext(new SecurityContextImpl(user));
+
+    assertSame(user, ((ScopedValueSecurityContextHolderStrategy) strategy).fallback().getContext().getAuthentication());
+    ScopedValueSecurityContextHolderStrategy.callWith(null, () -> {
+      assertNull(strategy.getContext().getAuthentication());
+      return null;
+    });
+    strategy.clearContext();
+    assertNull(strategy.getContext().getAuthentication());
+  }
+
+  /**
+   * Context access cost and memory per in-flight request, ThreadLocal against ScopedValue. Run with
+   * {@code ./mvnw test -Dperf=true -Dtest=ScopedValueSecurityContextTests} (on JDK 25).
+   */
+  @Nested
+  @Perf.Enabled
+  class Benchmark {
+
+    private static final int LOOKUPS = 50_000_000;
+    private static final int REQUESTS = 100_000;
+
+    @Test
+    @DisplayName("getContext cost and heap per parked virtual-thread request")
+    void threadLocalVersusScopedValue() throws Exception {
+      SecurityContextHolderStrategy threadLocal = ((ScopedValueSecurityContextHolderStrategy) strategy).fallback();
+
+      threadLocal.setContext(new SecurityContextImpl(user(4)));
+      long threadLocalNanos = lookups(threadLocal);
+      threadLocal.clearContext();
+      long scopedNanos = ScopedValueSecurityContextHolderStrategy.callWith(new SecurityContextImpl(user(5)),
+          () -> lookups(strategy));
+
+      long bare = heapPerRequest(() -> {});
+      long threadLocalBytes = heapPerRequest(() -> threadLocal.setContext(context())) - bare;
+      long scopedBytes = heapPerRequest(() -> strategy.setContext(context()), true) - bare;
+
+      Perf.report("ThreadLocal: %.2f ns per getContext, %,d bytes per in-flight request",
+          (double) threadLocalNanos / LOOKUPS, threadLocalBytes);
+      Perf.report("ScopedValue: %.2f ns per getContext, %,d bytes per in-flight request",
+          (double) scopedNanos / LOOKUPS, scopedBytes);
+    }
+
+    private long lookups(SecurityContextHolderStrategy holder) {
+      int found = 0;
+      for (int i = 0; i < LOOKUPS / 5; i++) {
+        found += holder.getContext().getAuthentication() != null ? 1 : 0;
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < LOOKUPS; i++) {
+        found += holder.getContext().getAuthentication() != null ? 1 : 0;
+      }
+      long nanos = System.nanoTime() - start;
+      assertEquals(LOOKUPS + LOOKUPS / 5, found);
+      return nanos;
+    }
+
+    private long heapPerRequest(Runnable holdContext) throws InterruptedException {
+      return heapPerRequest(holdContext, false);
+    }
+
+    /**
+     * Starts {@value #REQUESTS} virtual threads that set a context, as a request would, and park
+     * until they are all counted.
+     */
+    private long heapPerRequest(Runnable holdContext, boolean scoped) throws InterruptedException {
+      CountDownLatch started = new CountDownLatch(REQUESTS);
+      CountDownLatch release = new CountDownLatch(1);
+      Runnable request = () -> {
+        holdContext.run();
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      };
+      long heapBefore = usedHeap();
+      List<Thread> threads = new ArrayList<>(REQUESTS);
+      for (int i = 0; i < REQUESTS; i++) {
+        threads.add(Thread.ofVirtual().start(scoped
+            ? () -> ScopedValueSecurityContextHolderStrategy.callWith(null, () -> {
+                request.run();
+                return null;
+              })
+            : request));
+      }
+      started.await();
+      long bytes = (usedHeap() - heapBefore) / REQUESTS;
+      release.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      return bytes;
+    }
+
+    private SecurityContext context() {
+      return new SecurityContextImpl(user(Thread.currentThread().threadId()));
+    }
+
+    private long usedHeap() {
+      System.gc();
+      return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+  }
+
+  private static Authentication user(long id) {
+    return UsernamePasswordAuthenticationToken.authenticated(
+        new AuthPrincipal(id, "user-" + id, "user-" + id + "@example.com"), null, Collections.emptyList());
+  }
+}